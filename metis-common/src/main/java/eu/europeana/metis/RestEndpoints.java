@@ -56,17 +56,21 @@ public final class RestEndpoints {
 
   /* METIS-DEREFERENCE Endpoints*/
   public static final String DEREFERENCE = "/dereference";
+  public static final String DEREFERENCE_BATCH = "/dereference/batch";
   public static final String VOCABULARY = "/vocabulary";
   public static final String VOCABULARY_BYNAME = "/vocabulary/{name}";
   public static final String VOCABULARIES = "/vocabularies";
   public static final String ENTITY = "/entity";
   public static final String ENTITY_DELETE = "/entity/{uri}";
   public static final String CACHE_EMPTY = "/cache";
+  public static final String CACHE_VOCABULARY = "/cache/vocabulary/{name}";
 
   /* METIS ENRICHMENT Endpoint */
   public static final String ENRICHMENT_DELETE = "/delete";
   public static final String ENRICHMENT_BYURI = "/getByUri";
   public static final String ENRICHMENT_ENRICH = "/enrich";
+  public static final String ENRICHMENT_ENRICH_BATCH = "/enrich/batch";
+  public static final String ENRICHMENT_CACHE_STATISTICS = "/enrich/cache/statistics";
 
   /*METIS REDIRECTS Endpoint*/
   public static final String REDIRECT_SINGLE = "/redirect/single";
@@ -102,6 +106,7 @@ public final class RestEndpoints {
   /* METIS SCHEMA VALIDATION ENDPOINT */
   public static final String SCHEMA_VALIDATE = "/schema/validate/{schema}";
   public static final String SCHEMA_BATCH_VALIDATE = "/schema/validate/batch/{schema}";
+  public static final String SCHEMA_BATCH_VALIDATE_STREAM = "/schema/validate/batch/{schema}/stream";
   public static final String SCHEMAS_DOWNLOAD_BY_NAME = "/schemas/download/schema/{name}/{version}";
   public static final String SCHEMAS_MANAGE_BY_NAME = "/schemas/schema/{name}/{version}";
   public static final String SCHEMAS_UPDATE_BY_NAME = "/schemas/schema/update/{name}/{version}";
@@ -3,11 +3,12 @@ package eu.europeana.metis.utils;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
@@ -59,16 +60,56 @@ public class ZipFileReader {
   }
 
   List<String> getRecordsFromZipFile(ZipFile zipFile) throws IOException {
-    final List<String> result = new ArrayList<>();
-    final Iterator<? extends ZipEntry> entries = zipFile.stream().iterator();
-    while (entries.hasNext()) {
-      final ZipEntry zipEntry = entries.next();
-      if (!accept(zipEntry)) {
-        continue;
+    try {
+      return getRecordStreamFromZipFile(zipFile).collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * This method provides the files in a ZIP file as a lazy stream of strings: the files are only
+   * read (one at the time) when the stream is consumed, so that the records don't need to be all in
+   * memory at the same time. This method only considers files in the main directory. This method
+   * creates a temporary file that is removed when the returned stream is closed, so the caller
+   * <b>must</b> close the stream (e.g. using a try-with-resources construction).
+   *
+   * @param providedZipFile Input stream containing the zip file. This method is not responsible for
+   *        closing the stream.
+   * @return A stream of records. When consumed, the stream may throw an
+   *         {@link UncheckedIOException} in case of problems with reading the zip file.
+   * @throws IOException In case of problems with the temporary file or with opening the zip file.
+   */
+  public Stream<String> getRecordStreamFromZipFile(InputStream providedZipFile)
+      throws IOException {
+
+    // Create temporary file.
+    final String prefix = UUID.randomUUID().toString();
+    final File tempFile = File.createTempFile(prefix, ".zip");
+    FileUtils.copyInputStreamToFile(providedZipFile, tempFile);
+    LOGGER.info("Temp file: {} created.", tempFile);
+
+    // Open temporary zip file: it will be deleted when the stream is closed.
+    final ZipFile zipFile = new ZipFile(tempFile, ZipFile.OPEN_READ | ZipFile.OPEN_DELETE);
+    return getRecordStreamFromZipFile(zipFile).onClose(() -> {
+      try {
+        zipFile.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
-      result.add(IOUtils.toString(zipFile.getInputStream(zipEntry), StandardCharsets.UTF_8.name()));
+    });
+  }
+
+  Stream<String> getRecordStreamFromZipFile(ZipFile zipFile) {
+    return zipFile.stream().filter(this::accept).map(zipEntry -> readEntry(zipFile, zipEntry));
+  }
+
+  private static String readEntry(ZipFile zipFile, ZipEntry zipEntry) {
+    try (final InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+      return IOUtils.toString(inputStream, StandardCharsets.UTF_8.name());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
-    return result;
   }
 
   boolean accept(ZipEntry zipEntry) {
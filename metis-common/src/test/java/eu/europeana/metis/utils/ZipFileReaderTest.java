@@ -7,7 +7,10 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -68,6 +71,23 @@ class ZipFileReaderTest {
     assertEquals(goodEntries, result);
   }
 
+  @Test
+  void testGetRecordStreamFromZipFileIsLazy() throws IOException {
+
+    // Create a zip file with entries whose content is equal to the name.
+    final List<String> names = Arrays.asList("A", "B", "C");
+    final ZipFile zipFile = mock(ZipFile.class);
+    doReturn(names.stream().map(name -> createEntry(name, false))).when(zipFile).stream();
+    doAnswer(invocation -> IOUtils.toInputStream(((ZipEntry) invocation.getArgument(0)).getName()))
+        .when(zipFile).getInputStream(any());
+
+    // Creating the stream should not read anything: consuming it should read only what's needed.
+    final Stream<String> result = new ZipFileReader().getRecordStreamFromZipFile(zipFile);
+    verify(zipFile, never()).getInputStream(any());
+    assertEquals(Arrays.asList("A", "B"), result.limit(2).collect(Collectors.toList()));
+    verify(zipFile, times(2)).getInputStream(any());
+  }
+
   @Test
   void testAccept() {
     // Test against directories and special Mac files. Entry examples taken from actual zip file.
@@ -0,0 +1,19 @@
+package eu.europeana.metis.dereference;
+
+/**
+ * The reason why a resource could not be dereferenced. Negative results are cached (for a short
+ * time, depending on this type) so that repeated requests for the resource fail fast.
+ */
+public enum NegativeEntryType {
+
+  /**
+   * The source of the resource was reached, but did not yield a (usable) entity.
+   */
+  NOT_FOUND,
+
+  /**
+   * The source of the resource could not be reached (e.g. a connection problem, a timeout or a
+   * server error).
+   */
+  SOURCE_UNAVAILABLE
+}
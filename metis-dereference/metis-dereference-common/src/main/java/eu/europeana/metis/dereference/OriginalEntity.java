@@ -27,6 +27,22 @@ public class OriginalEntity {
      * The RDF/XML that describes the entity
      */
     private String xml;
+
+    /**
+     * The URL from which the RDF/XML was downloaded (the URI followed by one of the suffixes)
+     */
+    private String sourceUrl;
+
+    /**
+     * The ETag header of the response, used for conditional requests when refreshing
+     */
+    private String etag;
+
+    /**
+     * The Last-Modified header of the response, used for conditional requests when refreshing
+     */
+    private String lastModified;
+
     @XmlElement
     public String getURI() {
         return URI;
@@ -51,4 +67,31 @@ public class OriginalEntity {
     public void setId(String id) {
         this.id = id;
     }
+
+    @XmlElement
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public void setSourceUrl(String sourceUrl) {
+        this.sourceUrl = sourceUrl;
+    }
+
+    @XmlElement
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    @XmlElement
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
 }
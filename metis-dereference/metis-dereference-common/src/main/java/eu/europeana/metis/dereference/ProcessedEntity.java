@@ -18,6 +18,12 @@ public class ProcessedEntity {
   /** The ID of the vocabulary of which the resource is part. **/
   private String vocabularyId;
 
+  /** If the resource could not be dereferenced: the reason. Null for positive entries. **/
+  private NegativeEntryType negativeEntryType;
+
+  /** The time (in milliseconds since the epoch) at which this entry expires from the cache. **/
+  private long expirationTime;
+
   @XmlElement
   public String getResourceId() {
     return resourceId;
@@ -44,4 +50,22 @@ public class ProcessedEntity {
   public void setVocabularyId(String vocabularyId) {
     this.vocabularyId = vocabularyId;
   }
+
+  @XmlElement
+  public NegativeEntryType getNegativeEntryType() {
+    return negativeEntryType;
+  }
+
+  public void setNegativeEntryType(NegativeEntryType negativeEntryType) {
+    this.negativeEntryType = negativeEntryType;
+  }
+
+  @XmlElement
+  public long getExpirationTime() {
+    return expirationTime;
+  }
+
+  public void setExpirationTime(long expirationTime) {
+    this.expirationTime = expirationTime;
+  }
 }
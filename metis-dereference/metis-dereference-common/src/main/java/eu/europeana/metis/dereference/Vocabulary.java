@@ -56,6 +56,12 @@ public class Vocabulary implements Serializable {
    */
   private int iterations;
 
+  /**
+   * The time (in seconds) that dereferenced entities of this vocabulary are cached. If 0, the
+   * default time is used.
+   */
+  private int cacheTimeToLive;
+
   /**
    * The name of the vocabulary
    */
@@ -113,6 +119,15 @@ public class Vocabulary implements Serializable {
     this.iterations = iterations;
   }
 
+  @XmlElement
+  public int getCacheTimeToLive() {
+    return cacheTimeToLive;
+  }
+
+  public void setCacheTimeToLive(int cacheTimeToLive) {
+    this.cacheTimeToLive = cacheTimeToLive;
+  }
+
   @XmlElement
   public Set<String> getRules() {
     return this.rules == null ? null : Collections.unmodifiableSet(this.rules);
@@ -1,8 +1,11 @@
 package eu.europeana.metis.dereference.rest;
 
+import eu.europeana.enrichment.api.external.model.DereferenceResult;
+import eu.europeana.enrichment.api.external.model.DereferenceResultList;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
 import eu.europeana.metis.CommonStringValues;
 import eu.europeana.metis.RestEndpoints;
+import eu.europeana.metis.dereference.rest.exceptions.DereferenceBadRequestException;
 import eu.europeana.metis.dereference.rest.exceptions.DereferenceException;
 import eu.europeana.metis.dereference.service.DereferenceService;
 import io.swagger.annotations.Api;
@@ -10,11 +13,14 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import javax.xml.bind.JAXBException;
 import javax.xml.transform.TransformerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -31,17 +37,31 @@ import org.springframework.web.bind.annotation.ResponseBody;
 public class DereferencingController {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DereferencingController.class);
+  private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
 
   private final DereferenceService dereferenceService;
+  private final int maxBatchSize;
+
+  /**
+   * Constructor with the default maximum batch size.
+   *
+   * @param dereferenceService An instance for processing dereference requests.
+   */
+  public DereferencingController(DereferenceService dereferenceService) {
+    this(dereferenceService, DEFAULT_MAX_BATCH_SIZE);
+  }
 
   /**
    * Constructor.
    *
    * @param dereferenceService An instance for processing dereference requests.
+   * @param maxBatchSize The maximum number of resource IDs in a batch request.
    */
   @Autowired
-  public DereferencingController(DereferenceService dereferenceService) {
+  public DereferencingController(DereferenceService dereferenceService,
+      @Value("${dereference.batch.max.size:" + DEFAULT_MAX_BATCH_SIZE + "}") int maxBatchSize) {
     this.dereferenceService = dereferenceService;
+    this.maxBatchSize = maxBatchSize;
   }
 
   /**
@@ -87,4 +107,40 @@ public class DereferencingController {
     }
     return dereferencedEntities;
   }
+
+  /**
+   * Dereference a batch of URIs. The URIs are dereferenced in parallel.
+   *
+   * @param resourceIds The resource IDs to dereference
+   * @return The dereferenced entities, one result for each resource ID
+   * @throws DereferenceBadRequestException In case the batch contains too many resource IDs, or
+   * contains null values.
+   */
+  @RequestMapping(value = RestEndpoints.DEREFERENCE_BATCH, method = RequestMethod.POST,
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  @ResponseBody
+  @ApiOperation(value = "Dereference a batch of URIs", response = DereferenceResultList.class)
+  public DereferenceResultList dereferenceBatch(@RequestBody List<String> resourceIds) {
+    if (resourceIds.size() > maxBatchSize) {
+      throw new DereferenceBadRequestException(String.format(
+          "A batch can contain at most %d uris, but %d were given.", maxBatchSize,
+          resourceIds.size()));
+    }
+    if (resourceIds.contains(null)) {
+      throw new DereferenceBadRequestException("A batch can not contain null uris.");
+    }
+    final Map<String, EnrichmentResultList> results;
+    try {
+      results = dereferenceService.dereference(resourceIds);
+    } catch (RuntimeException | JAXBException | TransformerException | URISyntaxException e) {
+      LOGGER.warn("Problem occurred while dereferencing a batch of resources.", e);
+      throw new DereferenceException(String
+          .format("Dereferencing failed for batch of %d uris with root cause: %s",
+              resourceIds.size(), e.getMessage()), e);
+    }
+    return new DereferenceResultList(results.entrySet().stream()
+        .map(entry -> new DereferenceResult(entry.getKey(), entry.getValue()))
+        .collect(Collectors.toList()));
+  }
 }
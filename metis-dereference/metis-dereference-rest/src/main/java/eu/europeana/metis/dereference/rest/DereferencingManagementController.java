@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import eu.europeana.metis.RestEndpoints;
 import eu.europeana.metis.dereference.Vocabulary;
+import eu.europeana.metis.dereference.rest.exceptions.VocabularyNotFoundException;
 import eu.europeana.metis.dereference.service.DereferencingManagementService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -145,4 +146,23 @@ public class DereferencingManagementController {
   public void emptyCache() {
     service.emptyCache();
   }
+
+  /**
+   * Remove the cached entities of a vocabulary. Unlike {@link #emptyCache()}, this does not affect
+   * other entries in the cache.
+   *
+   * @param name The name of the vocabulary
+   * @return OK
+   * @throws VocabularyNotFoundException In case there is no vocabulary with the given name.
+   */
+  @RequestMapping(value = RestEndpoints.CACHE_VOCABULARY, method = RequestMethod.DELETE)
+  @ResponseBody
+  @ApiOperation(value = "Remove the cached entities of a vocabulary")
+  public void expireCacheForVocabulary(@ApiParam("name") @PathVariable("name") String name) {
+    try {
+      service.expireCacheForVocabulary(name);
+    } catch (IllegalArgumentException e) {
+      throw new VocabularyNotFoundException(e.getMessage());
+    }
+  }
 }
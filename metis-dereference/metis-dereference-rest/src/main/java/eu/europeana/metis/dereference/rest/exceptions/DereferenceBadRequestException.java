@@ -0,0 +1,26 @@
+package eu.europeana.metis.dereference.rest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception indicating that a dereference request is invalid (e.g. contains too many resources).
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid dereference request")
+public class DereferenceBadRequestException extends RuntimeException {
+
+  /**
+   * Required for implementations of {@link java.io.Serializable}
+   **/
+  private static final long serialVersionUID = -3960281370524627478L;
+
+  /**
+   * Constructs a new exception with the specified detail message.
+   *
+   * @param message the detail message. The detail message is saved for later retrieval by the
+   * {@link #getMessage()} method.
+   */
+  public DereferenceBadRequestException(String message) {
+    super(message);
+  }
+}
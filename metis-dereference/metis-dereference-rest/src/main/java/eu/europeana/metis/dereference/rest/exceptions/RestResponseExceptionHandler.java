@@ -22,6 +22,22 @@ public class RestResponseExceptionHandler {
         response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
         return new ServerError(exception.getMessage());
     }
+
+    @ResponseBody
+    @ExceptionHandler(DereferenceBadRequestException.class)
+    public ServerError handleBadRequest(HttpServletResponse response,
+        DereferenceBadRequestException exception) {
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        return new ServerError(exception.getMessage());
+    }
+
+    @ResponseBody
+    @ExceptionHandler(VocabularyNotFoundException.class)
+    public ServerError handleNotFound(HttpServletResponse response,
+        VocabularyNotFoundException exception) {
+        response.setStatus(HttpStatus.NOT_FOUND.value());
+        return new ServerError(exception.getMessage());
+    }
 }
 
 class ServerError{
@@ -0,0 +1,26 @@
+package eu.europeana.metis.dereference.rest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception indicating that a request refers to a vocabulary that does not exist.
+ */
+@ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "Vocabulary not found")
+public class VocabularyNotFoundException extends RuntimeException {
+
+  /**
+   * Required for implementations of {@link java.io.Serializable}
+   **/
+  private static final long serialVersionUID = 4617398035736271552L;
+
+  /**
+   * Constructs a new exception with the specified detail message.
+   *
+   * @param message the detail message. The detail message is saved for later retrieval by the
+   * {@link #getMessage()} method.
+   */
+  public VocabularyNotFoundException(String message) {
+    super(message);
+  }
+}
@@ -1,6 +1,7 @@
 package eu.europeana.metis.dereference.rest;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -14,7 +15,10 @@ import eu.europeana.enrichment.api.external.model.Label;
 import eu.europeana.metis.dereference.rest.exceptions.RestResponseExceptionHandler;
 import eu.europeana.metis.dereference.service.DereferenceService;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.xml.transform.TransformerException;
@@ -74,6 +78,49 @@ class DereferencingControllerTest {
         .andExpect(xpath("metis:results/edm:Agent/rdaGr2:dateOfBirth[@xml:lang='en']", namespaceMap).string("10-10-10"));
   }
 
+  @Test
+  void dereferenceBatch_outputXML() throws Exception {
+    final Map<String, EnrichmentResultList> results = new LinkedHashMap<>();
+    results.put("http://www.fennek-it.nl",
+        new EnrichmentResultList(Collections.singletonList(getAgent("http://www.fennek-it.nl"))));
+    results.put("http://www.unknown.nl", new EnrichmentResultList());
+    when(dereferenceServiceMock
+        .dereference(Arrays.asList("http://www.fennek-it.nl", "http://www.unknown.nl")))
+        .thenReturn(results);
+
+    dereferencingControllerMock.perform(post("/dereference/batch")
+        .accept(MediaType.APPLICATION_XML_VALUE)
+        .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .content("[ \"http://www.fennek-it.nl\", \"http://www.unknown.nl\" ]"))
+        .andExpect(status().is(200))
+        .andExpect(xpath("count(metis:dereferenceResults/metis:dereferenceResult)", namespaceMap).number(2.0))
+        .andExpect(xpath("metis:dereferenceResults/metis:dereferenceResult[1]/@uri", namespaceMap).string("http://www.fennek-it.nl"))
+        .andExpect(xpath("metis:dereferenceResults/metis:dereferenceResult[1]/metis:results/edm:Agent/@rdf:about", namespaceMap).string("http://www.fennek-it.nl"))
+        .andExpect(xpath("metis:dereferenceResults/metis:dereferenceResult[2]/@uri", namespaceMap).string("http://www.unknown.nl"))
+        .andExpect(xpath("count(metis:dereferenceResults/metis:dereferenceResult[2]/metis:results/*)", namespaceMap).number(0.0));
+  }
+
+  @Test
+  void dereferenceBatch_invalidBatch() throws Exception {
+    final MockMvc controllerWithSmallBatches = MockMvcBuilders
+        .standaloneSetup(new DereferencingController(dereferenceServiceMock, 2))
+        .setControllerAdvice(new RestResponseExceptionHandler())
+        .build();
+    controllerWithSmallBatches.perform(post("/dereference/batch")
+        .accept(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .content("[ \"http://a.nl/1\", \"http://a.nl/2\", \"http://a.nl/3\" ]"))
+        .andExpect(status().is(400))
+        .andExpect(content().string(
+            "{\"errorMessage\":\"A batch can contain at most 2 uris, but 3 were given.\"}"));
+    controllerWithSmallBatches.perform(post("/dereference/batch")
+        .accept(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)
+        .content("[ \"http://a.nl/1\", null ]"))
+        .andExpect(status().is(400));
+    verifyZeroInteractions(dereferenceServiceMock);
+  }
+
   @Test
   void exceptionHandling() throws Exception {
     when(dereferenceServiceMock.dereference("http://www.fennek-it.nl")).thenThrow(new TransformerException("myException"));
@@ -3,6 +3,7 @@ package eu.europeana.metis.dereference.rest;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -40,6 +41,7 @@ class DereferencingManagementControllerTest {
   private String testDeleteVocabularyResult = "";
   private String testDeleteEntityResult = "";
   private String testEmptyCacheResult = "";
+  private String testExpireCacheResult = "";
 
   @BeforeEach
   void setUp() {
@@ -116,7 +118,7 @@ class DereferencingManagementControllerTest {
     dereferencingManagementControllerMock.perform(get("/vocabulary/dummy"))
         .andExpect(status().is(200))
         .andExpect(content().string(
-            "{\"id\":\"Dummy\",\"uri\":null,\"suffix\":null,\"typeRules\":null,\"rules\":null,\"xslt\":null,\"iterations\":0,\"name\":\"Dummy\",\"type\":null}"));
+            "{\"id\":\"Dummy\",\"uri\":null,\"suffix\":null,\"typeRules\":null,\"rules\":null,\"xslt\":null,\"iterations\":0,\"cacheTimeToLive\":0,\"name\":\"Dummy\",\"type\":null}"));
   }
 
   @Test
@@ -138,7 +140,7 @@ class DereferencingManagementControllerTest {
     dereferencingManagementControllerMock.perform(get("/vocabularies"))
         .andExpect(status().is(200))
         .andExpect(content().string(
-            "[{\"id\":\"Dummy1\",\"uri\":null,\"suffix\":null,\"typeRules\":null,\"rules\":null,\"xslt\":null,\"iterations\":0,\"name\":\"Dummy1\",\"type\":null},{\"id\":\"Dummy2\",\"uri\":null,\"suffix\":null,\"typeRules\":null,\"rules\":null,\"xslt\":null,\"iterations\":0,\"name\":\"Dummy2\",\"type\":null}]"));
+            "[{\"id\":\"Dummy1\",\"uri\":null,\"suffix\":null,\"typeRules\":null,\"rules\":null,\"xslt\":null,\"iterations\":0,\"cacheTimeToLive\":0,\"name\":\"Dummy1\",\"type\":null},{\"id\":\"Dummy2\",\"uri\":null,\"suffix\":null,\"typeRules\":null,\"rules\":null,\"xslt\":null,\"iterations\":0,\"cacheTimeToLive\":0,\"name\":\"Dummy2\",\"type\":null}]"));
   }
 
   @Test
@@ -183,6 +185,28 @@ class DereferencingManagementControllerTest {
     assertEquals("OK", testEmptyCacheResult);
   }
 
+  @Test
+  void testExpireCacheForVocabulary() throws Exception {
+    doAnswer((Answer<Void>) invocationOnMock -> {
+      testExpireCacheResult = invocationOnMock.getArgument(0);
+      return null;
+    }).when(dereferencingManagementServiceMock).expireCacheForVocabulary(any(String.class));
+
+    dereferencingManagementControllerMock.perform(delete("/cache/vocabulary/Dummy"))
+        .andExpect(status().is(200));
+
+    assertEquals("Dummy", testExpireCacheResult);
+  }
+
+  @Test
+  void testExpireCacheForUnknownVocabulary() throws Exception {
+    doThrow(new IllegalArgumentException("No vocabulary found with name: Unknown"))
+        .when(dereferencingManagementServiceMock).expireCacheForVocabulary("Unknown");
+
+    dereferencingManagementControllerMock.perform(delete("/cache/vocabulary/Unknown"))
+        .andExpect(status().is(404));
+  }
+
   private static byte[] convertObjectToJsonBytes(Object object) throws IOException {
     ObjectMapper mapper = new ObjectMapper();
     mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
@@ -1,6 +1,8 @@
 package eu.europeana.metis.dereference.service;
 
 import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Map;
 import javax.xml.bind.JAXBException;
 import javax.xml.transform.TransformerException;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
@@ -21,4 +23,18 @@ public interface DereferenceService {
    */
   EnrichmentResultList dereference(String resourceId)
       throws TransformerException, JAXBException, URISyntaxException;
+
+  /**
+   * Dereference multiple URIs. The URIs are dereferenced in parallel.
+   *
+   * @param resourceIds The resource IDs (URIs) to dereference
+   * @return The dereferenced entities, keyed by resource ID, in the order of the resource IDs
+   * @throws TransformerException In case the data of one of the resources does not satisfy the
+   * expected format.
+   * @throws JAXBException In case the data of one of the resources does not specify the expected
+   * format.
+   * @throws URISyntaxException In case one of the resource IDs could not be read as URI.
+   */
+  Map<String, EnrichmentResultList> dereference(Collection<String> resourceIds)
+      throws TransformerException, JAXBException, URISyntaxException;
 }
@@ -58,4 +58,13 @@ public interface DereferencingManagementService {
      * Empty the cache
      */
     void emptyCache();
+
+    /**
+     * Remove the processed entities of a vocabulary from the cache. Other entries in the cache are
+     * not affected.
+     *
+     * @param name The name of the vocabulary
+     * @throws IllegalArgumentException In case there is no vocabulary with the given name.
+     */
+    void expireCacheForVocabulary(String name);
 }
@@ -1,15 +1,31 @@
 package eu.europeana.metis.dereference.service;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.TransformerException;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -24,14 +40,20 @@ import eu.europeana.enrichment.api.external.model.Place;
 import eu.europeana.enrichment.api.external.model.Resource;
 import eu.europeana.enrichment.api.external.model.Timespan;
 import eu.europeana.enrichment.rest.client.EnrichmentClient;
+import eu.europeana.metis.dereference.NegativeEntryType;
 import eu.europeana.metis.dereference.ProcessedEntity;
 import eu.europeana.metis.dereference.Vocabulary;
 import eu.europeana.metis.dereference.service.dao.CacheDao;
 import eu.europeana.metis.dereference.service.dao.VocabularyDao;
+import eu.europeana.metis.dereference.service.utils.CachePolicy;
+import eu.europeana.metis.dereference.service.utils.ExpiringCache;
 import eu.europeana.metis.dereference.service.utils.GraphUtils;
+import eu.europeana.metis.dereference.service.utils.HostLimitedExecutor;
 import eu.europeana.metis.dereference.service.utils.IncomingRecordToEdmConverter;
+import eu.europeana.metis.dereference.service.utils.IncomingRecordToEdmConverterCache;
 import eu.europeana.metis.dereference.service.utils.RdfRetriever;
 import eu.europeana.metis.dereference.service.utils.VocabularyCandidates;
+import eu.europeana.metis.dereference.service.utils.VocabularyIndex;
 
 /**
  * Mongo implementation of the dereference service Created by ymamakis on 2/11/16.
@@ -39,11 +61,34 @@ import eu.europeana.metis.dereference.service.utils.VocabularyCandidates;
 public class MongoDereferenceService implements DereferenceService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MongoDereferenceService.class);
+  private static final int DEFAULT_BATCH_THREAD_COUNT = 10;
+  private static final Duration VOCABULARY_INDEX_REFRESH_INTERVAL = Duration.ofMinutes(1);
+  private static final int BROADER_RESOURCE_THREAD_COUNT = 10;
+  private static final int MAX_CONCURRENT_BROADER_RESOURCE_REQUESTS_PER_HOST = 2;
+  private static final Duration BROADER_RESOURCE_SEARCH_TIMEOUT = Duration.ofSeconds(30);
+  private static final int BROADER_RESOURCE_CACHE_SIZE = 10_000;
+  private static final Duration BROADER_RESOURCE_CACHE_TIME_TO_LIVE = Duration.ofHours(1);
+  private static final int REFRESH_THREAD_COUNT = 2;
+  private static final int POPULARITY_CACHE_SIZE = 100_000;
+
+  private static volatile JAXBContext jaxbContext;
 
   private final RdfRetriever retriever;
   private final CacheDao cacheDao;
-  private final VocabularyDao vocabularyDao;
+  private final VocabularyIndex vocabularyIndex;
   private final EnrichmentClient enrichmentClient;
+  private final ExecutorService batchExecutor;
+  private final ExecutorService broaderResourceExecutor;
+  private final HostLimitedExecutor broaderResourceResolver;
+  private final ExpiringCache<String, EnrichmentBase> broaderResourceCache =
+      new ExpiringCache<>(BROADER_RESOURCE_CACHE_SIZE, BROADER_RESOURCE_CACHE_TIME_TO_LIVE);
+  private final CachePolicy cachePolicy;
+  private final ExecutorService refreshExecutor;
+  private final ExpiringCache<String, AtomicInteger> recentHits;
+  private final Set<String> refreshesInProgress = ConcurrentHashMap.newKeySet();
+  private final IncomingRecordToEdmConverterCache converterCache =
+      new IncomingRecordToEdmConverterCache();
+  private final Queue<Unmarshaller> unmarshallerPool = new ConcurrentLinkedQueue<>();
 
   /**
    * Constructor.
@@ -56,10 +101,69 @@ public class MongoDereferenceService implements DereferenceService {
   @Autowired
   public MongoDereferenceService(RdfRetriever retriever, CacheDao cacheDao,
       VocabularyDao vocabularyDao, EnrichmentClient enrichmentClient) {
+    this(retriever, cacheDao, vocabularyDao, enrichmentClient, DEFAULT_BATCH_THREAD_COUNT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param retriever Object that retrieves entities from their source services.
+   * @param cacheDao Object that accesses the cache of processed entities.
+   * @param vocabularyDao Object that accesses vocabularies.
+   * @param enrichmentClient Object that accesses the enrichment service.
+   * @param batchThreadCount The number of threads on which the resources of batch requests are
+   * dereferenced.
+   */
+  public MongoDereferenceService(RdfRetriever retriever, CacheDao cacheDao,
+      VocabularyDao vocabularyDao, EnrichmentClient enrichmentClient, int batchThreadCount) {
+    this(retriever, cacheDao, vocabularyDao, enrichmentClient, batchThreadCount,
+        new CachePolicy());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param retriever Object that retrieves entities from their source services.
+   * @param cacheDao Object that accesses the cache of processed entities.
+   * @param vocabularyDao Object that accesses vocabularies.
+   * @param enrichmentClient Object that accesses the enrichment service.
+   * @param batchThreadCount The number of threads on which the resources of batch requests are
+   * dereferenced.
+   * @param cachePolicy The policy for caching processed entities.
+   */
+  public MongoDereferenceService(RdfRetriever retriever, CacheDao cacheDao,
+      VocabularyDao vocabularyDao, EnrichmentClient enrichmentClient, int batchThreadCount,
+      CachePolicy cachePolicy) {
     this.retriever = retriever;
     this.cacheDao = cacheDao;
-    this.vocabularyDao = vocabularyDao;
+    this.vocabularyIndex = new VocabularyIndex(vocabularyDao::getAll,
+        VOCABULARY_INDEX_REFRESH_INTERVAL);
     this.enrichmentClient = enrichmentClient;
+    this.batchExecutor = Executors.newFixedThreadPool(batchThreadCount);
+    this.broaderResourceExecutor = Executors.newFixedThreadPool(BROADER_RESOURCE_THREAD_COUNT);
+    this.broaderResourceResolver = new HostLimitedExecutor(broaderResourceExecutor,
+        MAX_CONCURRENT_BROADER_RESOURCE_REQUESTS_PER_HOST);
+    this.cachePolicy = cachePolicy;
+    this.refreshExecutor = Executors.newFixedThreadPool(REFRESH_THREAD_COUNT);
+    this.recentHits = new ExpiringCache<>(POPULARITY_CACHE_SIZE,
+        cachePolicy.getPopularityPeriod());
+    vocabularyDao.addChangeListener(vocabularyName -> {
+      vocabularyIndex.invalidate();
+      converterCache.invalidate(vocabularyName);
+      broaderResourceCache.clear();
+    });
+    cacheDao.addExpirationListener(broaderResourceCache::clear);
+  }
+
+  /**
+   * Stops the threads used for batch requests, for resolving broader resources and for refreshing
+   * cached entities.
+   */
+  @PreDestroy
+  public void close() {
+    batchExecutor.shutdown();
+    broaderResourceExecutor.shutdown();
+    refreshExecutor.shutdown();
   }
 
   @Override
@@ -84,6 +188,54 @@ public class MongoDereferenceService implements DereferenceService {
     return new EnrichmentResultList(resultList);
   }
 
+  @Override
+  public Map<String, EnrichmentResultList> dereference(Collection<String> resourceIds)
+      throws TransformerException, JAXBException, URISyntaxException {
+
+    // Start dereferencing all resources (each only once).
+    final Map<String, Future<EnrichmentResultList>> tasks = new LinkedHashMap<>();
+    for (String resourceId : resourceIds) {
+      if (resourceId == null) {
+        throw new IllegalArgumentException("Parameter resourceIds cannot contain null.");
+      }
+      tasks.computeIfAbsent(resourceId,
+          key -> batchExecutor.submit(() -> dereference(resourceId)));
+    }
+
+    // Collect the results. If one fails, cancel the others.
+    final Map<String, EnrichmentResultList> result = new LinkedHashMap<>();
+    try {
+      for (Entry<String, Future<EnrichmentResultList>> task : tasks.entrySet()) {
+        result.put(task.getKey(), getResult(task.getValue()));
+      }
+    } finally {
+      tasks.values().forEach(task -> task.cancel(true));
+    }
+    return result;
+  }
+
+  private static EnrichmentResultList getResult(Future<EnrichmentResultList> task)
+      throws TransformerException, JAXBException, URISyntaxException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while dereferencing.", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof TransformerException) {
+        throw (TransformerException) cause;
+      } else if (cause instanceof JAXBException) {
+        throw (JAXBException) cause;
+      } else if (cause instanceof URISyntaxException) {
+        throw (URISyntaxException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
   /**
    * <p>
    * This method dereferences a resource. If the resource's vocabulary specifies a positive
@@ -113,24 +265,14 @@ public class MongoDereferenceService implements DereferenceService {
       return Collections.emptyList();
     }
 
-    // Create value resolver that catches exceptions and logs them.
-    final Function<String, EnrichmentBase> valueResolver = key -> {
-      Pair<EnrichmentBase, Vocabulary> result;
-      try {
-        result = retrieveCachedEntity(key);
-        return result == null ? null : result.getLeft();
-      } catch (JAXBException | TransformerException | URISyntaxException e) {
-        LOGGER.warn("Problem occurred while dereferencing broader resource " + key + ".", e);
-        return null;
-      }
-    };
-
-    // Perform the breadth-first search to search for broader terms (if needed).
+    // Perform the breadth-first search to search for broader terms (if needed). The resources at
+    // the same distance are resolved concurrently.
     final int iterations = resource.getRight().getIterations();
     final Collection<EnrichmentBase> result;
     if (iterations > 0) {
-      result = GraphUtils.breadthFirstSearch(resourceId, resource.getLeft(),
-          resource.getRight().getIterations(), valueResolver, this::extractBroaderResources);
+      result = GraphUtils.parallelBreadthFirstSearch(resourceId, resource.getLeft(),
+          resource.getRight().getIterations(), this::resolveBroaderResource,
+          this::extractBroaderResources, BROADER_RESOURCE_SEARCH_TIMEOUT);
     } else {
       result = Collections.singleton(resource.getLeft());
     }
@@ -139,6 +281,31 @@ public class MongoDereferenceService implements DereferenceService {
     return result;
   }
 
+  /**
+   * Resolves a broader resource. Broader resources are typically shared by many resources, so
+   * they are kept in an in-memory cache. Exceptions are caught and logged.
+   */
+  private CompletableFuture<EnrichmentBase> resolveBroaderResource(String resourceId) {
+    final EnrichmentBase cachedResource = broaderResourceCache.get(resourceId);
+    if (cachedResource != null) {
+      return CompletableFuture.completedFuture(cachedResource);
+    }
+    return broaderResourceResolver.submit(resourceId, () -> {
+      try {
+        final Pair<EnrichmentBase, Vocabulary> result = retrieveCachedEntity(resourceId);
+        if (result == null) {
+          return null;
+        }
+        broaderResourceCache.put(resourceId, result.getLeft());
+        return result.getLeft();
+      } catch (JAXBException | TransformerException | URISyntaxException e) {
+        LOGGER.warn("Problem occurred while dereferencing broader resource " + resourceId + ".",
+            e);
+        return null;
+      }
+    });
+  }
+
   private void extractBroaderResources(EnrichmentBase resource, Set<String> destination) {
     final Stream<String> resourceIdStream;
     if (resource instanceof Concept) {
@@ -160,37 +327,38 @@ public class MongoDereferenceService implements DereferenceService {
   private Pair<EnrichmentBase, Vocabulary> retrieveCachedEntity(String resourceId)
       throws JAXBException, TransformerException, URISyntaxException {
 
-    // Try to get the entity and its vocabulary from the cache.
+    // Try to get the entity and its vocabulary from the cache. Negative entries fail fast.
     final ProcessedEntity cachedEntity = cacheDao.get(resourceId);
+    if (cachedEntity != null && cachedEntity.getNegativeEntryType() != null) {
+      return null;
+    }
     String entityString = null;
     Vocabulary vocabulary = null;
     if (cachedEntity != null) {
       entityString = cachedEntity.getXml();
       vocabulary = cachedEntity.getVocabularyId() == null ? null
-          : vocabularyDao.get(cachedEntity.getVocabularyId());
+          : vocabularyIndex.getById(cachedEntity.getVocabularyId());
     }
 
     // If we have the entity, but the vocabulary ID is no longer registered, try to get the
     // vocabulary without resolving the resource.
     final VocabularyCandidates candidates =
-        VocabularyCandidates.findVocabulariesForUrl(resourceId, vocabularyDao::getByUriSearch);
+        VocabularyCandidates.findVocabulariesForUrl(resourceId, vocabularyIndex);
     if (entityString != null && vocabulary == null) {
       vocabulary = candidates.findVocabularyWithoutTypeRules();
     }
 
-    // If not in the cache, or no vocabulary was found, we need to resolve the resource.
+    // If not in the cache, or no vocabulary was found, we need to resolve the resource. Otherwise,
+    // we may need to refresh it.
     if (entityString == null || vocabulary == null) {
       final Pair<String, Vocabulary> transformedEntity =
-          retrieveTransformedEntity(resourceId, candidates);
+          retrieveAndCacheTransformedEntity(resourceId, candidates);
       if (transformedEntity != null) {
         entityString = transformedEntity.getLeft();
         vocabulary = transformedEntity.getRight();
-        final ProcessedEntity entityToCache = new ProcessedEntity();
-        entityToCache.setXml(entityString);
-        entityToCache.setResourceId(resourceId);
-        entityToCache.setVocabularyId(vocabulary.getId());
-        cacheDao.save(entityToCache);
       }
+    } else {
+      refreshAheadIfNeeded(resourceId, cachedEntity);
     }
 
     // Parse the entity.
@@ -198,18 +366,125 @@ public class MongoDereferenceService implements DereferenceService {
     if (entityString == null || vocabulary == null) {
       result = null;
     } else {
-      final StringReader reader = new StringReader(entityString);
-      final JAXBContext context = JAXBContext.newInstance(EnrichmentBase.class);
-      final EnrichmentBase resource =
-          (EnrichmentBase) context.createUnmarshaller().unmarshal(reader);
-      result = new ImmutablePair<>(resource, vocabulary);
+      result = new ImmutablePair<>(unmarshal(entityString), vocabulary);
     }
 
     return result;
   }
 
-  private Pair<String, Vocabulary> retrieveTransformedEntity(String resourceId,
+  /**
+   * Resolves the resource and caches the result. If the resource could not be resolved, a negative
+   * entry is cached (registered with all candidate vocabularies), so that repeated requests fail
+   * fast until the entry expires.
+   */
+  private Pair<String, Vocabulary> retrieveAndCacheTransformedEntity(String resourceId,
       VocabularyCandidates candidates) throws TransformerException {
+    Pair<String, Vocabulary> transformedEntity;
+    NegativeEntryType negativeEntryType = NegativeEntryType.NOT_FOUND;
+    try {
+      transformedEntity = retrieveTransformedEntity(resourceId, candidates);
+    } catch (IOException e) {
+      LOGGER.info("Source unavailable for resource {}: {}", resourceId, e.getMessage());
+      transformedEntity = null;
+      negativeEntryType = NegativeEntryType.SOURCE_UNAVAILABLE;
+    }
+    if (transformedEntity != null) {
+      cacheEntity(resourceId, transformedEntity.getLeft(), transformedEntity.getRight());
+    } else if (!candidates.isEmpty()) {
+      final Duration timeToLive = cachePolicy.getTimeToLive(negativeEntryType);
+      final ProcessedEntity entityToCache = new ProcessedEntity();
+      entityToCache.setResourceId(resourceId);
+      entityToCache.setNegativeEntryType(negativeEntryType);
+      entityToCache.setExpirationTime(System.currentTimeMillis() + timeToLive.toMillis());
+      cacheDao.save(entityToCache, timeToLive, candidates.getCandidateVocabularyIds());
+    }
+    return transformedEntity;
+  }
+
+  private void cacheEntity(String resourceId, String entityString, Vocabulary vocabulary) {
+    final Duration timeToLive = cachePolicy.getTimeToLive(vocabulary);
+    final ProcessedEntity entityToCache = new ProcessedEntity();
+    entityToCache.setXml(entityString);
+    entityToCache.setResourceId(resourceId);
+    entityToCache.setVocabularyId(vocabulary.getId());
+    entityToCache.setExpirationTime(System.currentTimeMillis() + timeToLive.toMillis());
+    cacheDao.save(entityToCache, timeToLive, vocabulary.getId() == null
+        ? Collections.emptySet() : Collections.singleton(vocabulary.getId()));
+  }
+
+  /**
+   * Counts the hit on a cached entity and, if the entity is popular and about to expire, refreshes
+   * it in the background (at most one refresh per entity at the same time).
+   */
+  private void refreshAheadIfNeeded(String resourceId, ProcessedEntity cachedEntity) {
+    AtomicInteger hits = recentHits.get(resourceId);
+    if (hits == null) {
+      hits = new AtomicInteger();
+      recentHits.put(resourceId, hits);
+    }
+    if (cachePolicy.shouldRefreshAhead(cachedEntity, hits.incrementAndGet(),
+        System.currentTimeMillis()) && refreshesInProgress.add(resourceId)) {
+      try {
+        refreshExecutor.execute(() -> {
+          try {
+            refreshCachedEntity(resourceId);
+          } finally {
+            refreshesInProgress.remove(resourceId);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        refreshesInProgress.remove(resourceId);
+        LOGGER.debug("Refresh of resource {} was rejected.", resourceId, e);
+      }
+    }
+  }
+
+  private void refreshCachedEntity(String resourceId) {
+    try {
+      final VocabularyCandidates candidates =
+          VocabularyCandidates.findVocabulariesForUrl(resourceId, vocabularyIndex);
+      final Pair<String, Vocabulary> transformedEntity =
+          retrieveTransformedEntity(resourceId, candidates);
+      if (transformedEntity != null) {
+        cacheEntity(resourceId, transformedEntity.getLeft(), transformedEntity.getRight());
+      }
+    } catch (IOException | TransformerException | URISyntaxException e) {
+      LOGGER.warn("Problem occurred while refreshing resource " + resourceId + ".", e);
+    }
+  }
+
+  /**
+   * Unmarshals an entity. The JAXB context is shared and the unmarshallers (which are not
+   * thread-safe) are pooled: each is used by one thread at a time.
+   */
+  private EnrichmentBase unmarshal(String entityString) throws JAXBException {
+    Unmarshaller unmarshaller = unmarshallerPool.poll();
+    if (unmarshaller == null) {
+      unmarshaller = getJaxbContext().createUnmarshaller();
+    }
+    try {
+      return (EnrichmentBase) unmarshaller.unmarshal(new StringReader(entityString));
+    } finally {
+      unmarshallerPool.offer(unmarshaller);
+    }
+  }
+
+  private static JAXBContext getJaxbContext() throws JAXBException {
+    JAXBContext result = jaxbContext;
+    if (result == null) {
+      synchronized (MongoDereferenceService.class) {
+        result = jaxbContext;
+        if (result == null) {
+          result = JAXBContext.newInstance(EnrichmentBase.class);
+          jaxbContext = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private Pair<String, Vocabulary> retrieveTransformedEntity(String resourceId,
+      VocabularyCandidates candidates) throws TransformerException, IOException {
 
     // Get the original entity given the list of vocabulary candidates
     final String originalEntity = retrieveOriginalEntity(resourceId, candidates);
@@ -226,16 +501,19 @@ public class MongoDereferenceService implements DereferenceService {
     }
 
     // Transform the original entity.
-    final IncomingRecordToEdmConverter converter = new IncomingRecordToEdmConverter(vocabulary);
+    final IncomingRecordToEdmConverter converter = converterCache.getConverter(vocabulary);
     final String transformedEntity = converter.convert(originalEntity, resourceId);
     return new ImmutablePair<>(transformedEntity, vocabulary);
   }
 
-  private String retrieveOriginalEntity(String resourceId, VocabularyCandidates candidates) {
+  private String retrieveOriginalEntity(String resourceId, VocabularyCandidates candidates)
+      throws IOException {
     if (candidates.isEmpty()) {
       return null;
     }
-    final String originalEntity = retriever.retrieve(resourceId, candidates.getCandidateSuffixes());
+
+    // The processed entity is not (or no longer) cached: refresh the original entity.
+    final String originalEntity = retriever.refresh(resourceId, candidates.getCandidateSuffixes());
     if (originalEntity == null) {
       LOGGER.info("No entity XML for uri {}", resourceId);
     }
@@ -5,6 +5,11 @@ import eu.europeana.metis.dereference.Vocabulary;
 import eu.europeana.metis.dereference.service.dao.CacheDao;
 import eu.europeana.metis.dereference.service.dao.EntityDao;
 import eu.europeana.metis.dereference.service.dao.VocabularyDao;
+import eu.europeana.metis.dereference.service.utils.CachePolicy;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +27,7 @@ public class MongoDereferencingManagementService implements DereferencingManagem
   private final VocabularyDao vocabularyDao;
   private final CacheDao cacheDao;
   private final EntityDao entityDao;
+  private final CachePolicy cachePolicy = new CachePolicy();
 
   /**
    * Constructor.
@@ -38,6 +44,31 @@ public class MongoDereferencingManagementService implements DereferencingManagem
     this.entityDao = entityDao;
   }
 
+  /**
+   * Starts migrating the cached entities that were saved without a time to live (by earlier
+   * versions) in the background. See {@link CacheDao#migrateEntitiesWithoutTimeToLive(Function)}.
+   */
+  @PostConstruct
+  public void startCacheMigration() {
+    final Thread thread = new Thread(this::migrateCache, "dereference-cache-migration");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  void migrateCache() {
+    try {
+      final Map<String, Vocabulary> vocabulariesById = vocabularyDao.getAll().stream()
+          .filter(vocabulary -> vocabulary.getId() != null)
+          .collect(Collectors.toMap(Vocabulary::getId, Function.identity(), (v1, v2) -> v1));
+      final long count = cacheDao.migrateEntitiesWithoutTimeToLive(
+          vocabularyId -> cachePolicy.getTimeToLive(
+              vocabularyId == null ? null : vocabulariesById.get(vocabularyId)));
+      LOGGER.info("Migrated {} cached entities without time to live.", count);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not migrate the cached entities without time to live.", e);
+    }
+  }
+
 
   @Override
   public void saveVocabulary(Vocabulary vocabulary) {
@@ -47,15 +78,17 @@ public class MongoDereferencingManagementService implements DereferencingManagem
 
   @Override
   public void updateVocabulary(Vocabulary vocabulary) {
+    final Vocabulary existingVocabulary = vocabularyDao.findByName(vocabulary.getName());
     vocabularyDao.update(vocabulary);
-    cacheDao.emptyCache();
+    expireCache(existingVocabulary);
     LOGGER.info("Updated vocabulary with name: {}", vocabulary.getName());
   }
 
   @Override
   public void deleteVocabulary(String name) {
+    final Vocabulary existingVocabulary = vocabularyDao.findByName(name);
     vocabularyDao.delete(name);
-    cacheDao.emptyCache();
+    expireCache(existingVocabulary);
     LOGGER.info("Deleted vocabulary with name: {}", name);
   }
 
@@ -88,4 +121,21 @@ public class MongoDereferencingManagementService implements DereferencingManagem
   public void emptyCache() {
     cacheDao.emptyCache();
   }
+
+  @Override
+  public void expireCacheForVocabulary(String name) {
+    final Vocabulary vocabulary = vocabularyDao.findByName(name);
+    if (vocabulary == null) {
+      throw new IllegalArgumentException("No vocabulary found with name: " + name);
+    }
+    expireCache(vocabulary);
+  }
+
+  private void expireCache(Vocabulary vocabulary) {
+    if (vocabulary != null && vocabulary.getId() != null) {
+      final long count = cacheDao.expireByVocabulary(vocabulary.getId());
+      LOGGER.info("Removed {} cached entities of vocabulary with name: {}", count,
+          vocabulary.getName());
+    }
+  }
 }
@@ -2,22 +2,42 @@ package eu.europeana.metis.dereference.service.dao;
 
 import eu.europeana.metis.cache.redis.RedisProvider;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.europeana.metis.dereference.ProcessedEntity;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 
 /**
- * DAO for Cache of processed entities (Redis)
+ * DAO for Cache of processed entities (Redis). Entries can be saved with a time to live. For each
+ * vocabulary, the resource IDs of the entries are kept in a sorted set (scored by their expiration
+ * time), so that the entries of one vocabulary can be removed without emptying the whole cache.
+ * Expired resource IDs are removed from this set when entries are saved, and the set itself expires
+ * when its last entry does.
  */
 public class CacheDao implements AbstractDao<ProcessedEntity> {
   
   private static final Logger LOGGER = LoggerFactory.getLogger(CacheDao.class);
+  private static final String VOCABULARY_INDEX_KEY_PREFIX = "dereference-vocabulary-entries:";
+  private static final int EXPIRE_BATCH_SIZE = 1000;
+  private static final String MIGRATION_DONE_KEY = "dereference-cache-migrated";
+  private static final int MIGRATION_SCAN_BATCH_SIZE = 1000;
+  private static final long NO_TIME_TO_LIVE = -1;
+
   private final RedisProvider redisProvider;
   private final ObjectMapper om = new ObjectMapper();
+  private final List<Runnable> expirationListeners = new CopyOnWriteArrayList<>();
 
   /**
    * Constructor.
@@ -50,6 +70,103 @@ public class CacheDao implements AbstractDao<ProcessedEntity> {
     }
   }
 
+  /**
+   * Save an entity that expires after the given time. The entity is registered with the given
+   * vocabularies (see {@link #expireByVocabulary(String)}).
+   *
+   * @param entity The entity to save.
+   * @param timeToLive The time after which the entity expires. Is rounded up to whole seconds.
+   * @param vocabularyIds The IDs of the vocabularies with which to register the entity.
+   */
+  public void save(ProcessedEntity entity, Duration timeToLive, Collection<String> vocabularyIds) {
+    final int seconds = toSeconds(timeToLive);
+    try (Jedis jedis = redisProvider.getJedis()) {
+      jedis.setex(entity.getResourceId(), seconds, om.writeValueAsString(entity));
+      for (String vocabularyId : vocabularyIds) {
+        registerWithVocabulary(jedis, entity.getResourceId(), seconds, vocabularyId);
+      }
+    } catch (JsonProcessingException e) {
+      LOGGER.warn("Unable to save entity", e);
+    }
+  }
+
+  private static int toSeconds(Duration timeToLive) {
+    return (int) Math.max(1, (timeToLive.toMillis() + 999) / 1000);
+  }
+
+  private static void registerWithVocabulary(Jedis jedis, String resourceId, int seconds,
+      String vocabularyId) {
+    final long currentTime = System.currentTimeMillis();
+    final String indexKey = VOCABULARY_INDEX_KEY_PREFIX + vocabularyId;
+    jedis.zadd(indexKey, currentTime + seconds * 1000L, resourceId);
+    jedis.zremrangeByScore(indexKey, Double.NEGATIVE_INFINITY, currentTime);
+    final Long indexTimeToLive = jedis.ttl(indexKey);
+    if (indexTimeToLive == null || indexTimeToLive < seconds) {
+      jedis.expire(indexKey, seconds);
+    }
+  }
+
+  /**
+   * Migrate the entities that were saved without a time to live (by earlier versions of this
+   * class): they are given a time to live and are registered with their vocabulary, so that they
+   * expire like any other entity. The keys are found incrementally (using SCAN) so that Redis is not
+   * blocked for other clients. Keys that don't hold a processed entity are not affected. The
+   * migration only needs to be done once: if it was done before, this method does nothing.
+   *
+   * @param timeToLiveFunction Returns the time to live for the ID of a vocabulary (which may be
+   * null).
+   * @return The number of migrated entities.
+   */
+  public long migrateEntitiesWithoutTimeToLive(Function<String, Duration> timeToLiveFunction) {
+    long count = 0;
+    try (Jedis jedis = redisProvider.getJedis()) {
+      if (Boolean.TRUE.equals(jedis.exists(MIGRATION_DONE_KEY))) {
+        return 0;
+      }
+      final ScanParams scanParams = new ScanParams().count(MIGRATION_SCAN_BATCH_SIZE);
+      String cursor = ScanParams.SCAN_POINTER_START;
+      do {
+        final ScanResult<String> scanResult = jedis.scan(cursor, scanParams);
+        for (String key : scanResult.getResult()) {
+          if (migrateEntityWithoutTimeToLive(jedis, key, timeToLiveFunction)) {
+            count++;
+          }
+        }
+        cursor = scanResult.getStringCursor();
+      } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+      jedis.set(MIGRATION_DONE_KEY, Long.toString(System.currentTimeMillis()));
+    }
+    return count;
+  }
+
+  private boolean migrateEntityWithoutTimeToLive(Jedis jedis, String key,
+      Function<String, Duration> timeToLiveFunction) {
+    if (key.startsWith(VOCABULARY_INDEX_KEY_PREFIX) || key.equals(MIGRATION_DONE_KEY)) {
+      return false;
+    }
+    final Long timeToLive = jedis.ttl(key);
+    if (timeToLive == null || timeToLive != NO_TIME_TO_LIVE) {
+      return false;
+    }
+    final ProcessedEntity entity;
+    try {
+      final String value = jedis.get(key);
+      entity = value == null ? null : om.readValue(value, ProcessedEntity.class);
+    } catch (IOException | JedisDataException e) {
+      LOGGER.debug("Key {} does not hold a processed entity.", key, e);
+      return false;
+    }
+    if (entity == null || !key.equals(entity.getResourceId())) {
+      return false;
+    }
+    final int seconds = toSeconds(timeToLiveFunction.apply(entity.getVocabularyId()));
+    jedis.expire(key, seconds);
+    if (entity.getVocabularyId() != null) {
+      registerWithVocabulary(jedis, key, seconds, entity.getVocabularyId());
+    }
+    return true;
+  }
+
   @Override
   public void delete(String resourceId) {
     try (Jedis jedis = redisProvider.getJedis()) {
@@ -62,6 +179,31 @@ public class CacheDao implements AbstractDao<ProcessedEntity> {
     save(entity);
   }
 
+  /**
+   * Remove the entities that are registered with the given vocabulary from the cache. Other entries
+   * in the cache are not affected.
+   *
+   * @param vocabularyId The ID of the vocabulary.
+   * @return The number of removed entities.
+   */
+  public long expireByVocabulary(String vocabularyId) {
+    final String indexKey = VOCABULARY_INDEX_KEY_PREFIX + vocabularyId;
+    long count = 0;
+    try (Jedis jedis = redisProvider.getJedis()) {
+      jedis.zremrangeByScore(indexKey, Double.NEGATIVE_INFINITY, System.currentTimeMillis());
+      Set<String> resourceIds = jedis.zrange(indexKey, 0, EXPIRE_BATCH_SIZE - 1L);
+      while (resourceIds != null && !resourceIds.isEmpty()) {
+        final String[] resourceIdArray = resourceIds.toArray(new String[0]);
+        jedis.del(resourceIdArray);
+        jedis.zrem(indexKey, resourceIdArray);
+        count += resourceIdArray.length;
+        resourceIds = jedis.zrange(indexKey, 0, EXPIRE_BATCH_SIZE - 1L);
+      }
+    }
+    notifyExpirationListeners();
+    return count;
+  }
+
   /**
    * Empty the cache of processed entities
    */
@@ -69,5 +211,21 @@ public class CacheDao implements AbstractDao<ProcessedEntity> {
     try (Jedis jedis = redisProvider.getJedis()) {
       jedis.flushAll();
     }
+    notifyExpirationListeners();
+  }
+
+  /**
+   * Register a listener that is notified after entities are removed from the cache through {@link
+   * #expireByVocabulary(String)} or {@link #emptyCache()}, so that information derived from these
+   * entities can be discarded as well. Note that removals by other processes are not notified.
+   *
+   * @param listener The listener.
+   */
+  public void addExpirationListener(Runnable listener) {
+    expirationListeners.add(listener);
+  }
+
+  private void notifyExpirationListeners() {
+    expirationListeners.forEach(Runnable::run);
   }
 }
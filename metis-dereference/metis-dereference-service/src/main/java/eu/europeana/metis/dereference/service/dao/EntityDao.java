@@ -47,6 +47,18 @@ public class EntityDao implements AbstractDao<OriginalEntity> {
     Query<OriginalEntity> query = ds.createQuery(OriginalEntity.class).filter("URI", resourceId);
     UpdateOperations<OriginalEntity> ops = ds.createUpdateOperations(OriginalEntity.class);
     ops.set("xml", entity.getXml());
+    setOrUnset(ops, "sourceUrl", entity.getSourceUrl());
+    setOrUnset(ops, "etag", entity.getEtag());
+    setOrUnset(ops, "lastModified", entity.getLastModified());
     ds.update(query, ops);
   }
+
+  private static void setOrUnset(UpdateOperations<OriginalEntity> ops, String field,
+      String value) {
+    if (value == null) {
+      ops.unset(field);
+    } else {
+      ops.set(field, value);
+    }
+  }
 }
@@ -1,6 +1,8 @@
 package eu.europeana.metis.dereference.service.dao;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import org.mongodb.morphia.Datastore;
 import org.mongodb.morphia.Morphia;
@@ -16,6 +18,7 @@ import eu.europeana.metis.dereference.Vocabulary;
 public class VocabularyDao {
 
   private Datastore ds;
+  private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
 
   public VocabularyDao(MongoClient mongo, String db) {
     Morphia morphia = new Morphia();
@@ -42,7 +45,9 @@ public class VocabularyDao {
    * @return The ID under which the vocabulary was saved.
    */
   public String save(Vocabulary entity) {
-    return (String) ds.save(entity).getId();
+    final String id = (String) ds.save(entity).getId();
+    notifyChangeListeners(entity.getName());
+    return id;
   }
 
   /**
@@ -52,6 +57,7 @@ public class VocabularyDao {
    */
   public void delete(String name) {
     ds.delete(ds.createQuery(Vocabulary.class).filter("name", name));
+    notifyChangeListeners(name);
   }
 
   /**
@@ -64,6 +70,7 @@ public class VocabularyDao {
     UpdateOperations<Vocabulary> ops = ds.createUpdateOperations(Vocabulary.class);
 
     ops.set("iterations", entity.getIterations());
+    ops.set("cacheTimeToLive", entity.getCacheTimeToLive());
     if (entity.getRules() == null) {
       ops.unset("rules");
     } else {
@@ -81,6 +88,21 @@ public class VocabularyDao {
     ops.set("xslt", entity.getXslt());
     ops.set("suffix", entity.getSuffix());
     ds.update(query, ops);
+    notifyChangeListeners(entity.getName());
+  }
+
+  /**
+   * Register a listener that is notified after a vocabulary is saved, updated or deleted through
+   * this object. Note that changes made by other processes are not notified.
+   *
+   * @param listener The listener, receiving the name of the changed vocabulary
+   */
+  public void addChangeListener(Consumer<String> listener) {
+    changeListeners.add(listener);
+  }
+
+  private void notifyChangeListeners(String name) {
+    changeListeners.forEach(listener -> listener.accept(name));
   }
 
   /**
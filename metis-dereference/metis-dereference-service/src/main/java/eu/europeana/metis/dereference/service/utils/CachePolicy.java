@@ -0,0 +1,110 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import eu.europeana.metis.dereference.NegativeEntryType;
+import eu.europeana.metis.dereference.ProcessedEntity;
+import eu.europeana.metis.dereference.Vocabulary;
+import java.time.Duration;
+
+/**
+ * <p>
+ * The policy for caching dereferenced entities:
+ * <ul>
+ * <li>Positive entries (entities that were dereferenced) expire after the time to live of their
+ * vocabulary (see {@link Vocabulary#getCacheTimeToLive()}), or after a default time.</li>
+ * <li>Negative entries (resources that could not be dereferenced) expire after a short time that
+ * depends on the reason (see {@link NegativeEntryType}): if the source is unavailable, we try again
+ * sooner than if the source did not have the entity.</li>
+ * <li>Popular positive entries are refreshed shortly before they expire, so that they are not
+ * missing from the cache at the moment they are needed.</li>
+ * </ul>
+ * </p>
+ * <p>This class is immutable.</p>
+ */
+public class CachePolicy {
+
+  private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofDays(7);
+  private static final Duration DEFAULT_NOT_FOUND_TIME_TO_LIVE = Duration.ofHours(1);
+  private static final Duration DEFAULT_SOURCE_UNAVAILABLE_TIME_TO_LIVE = Duration.ofMinutes(5);
+  private static final Duration DEFAULT_REFRESH_AHEAD_PERIOD = Duration.ofHours(1);
+  private static final int DEFAULT_REFRESH_AHEAD_MINIMUM_HITS = 5;
+
+  private final Duration defaultTimeToLive;
+  private final Duration notFoundTimeToLive;
+  private final Duration sourceUnavailableTimeToLive;
+  private final Duration refreshAheadPeriod;
+  private final int refreshAheadMinimumHits;
+
+  /**
+   * Constructor for the default policy.
+   */
+  public CachePolicy() {
+    this(DEFAULT_TIME_TO_LIVE, DEFAULT_NOT_FOUND_TIME_TO_LIVE,
+        DEFAULT_SOURCE_UNAVAILABLE_TIME_TO_LIVE, DEFAULT_REFRESH_AHEAD_PERIOD,
+        DEFAULT_REFRESH_AHEAD_MINIMUM_HITS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param defaultTimeToLive The time to live of positive entries for vocabularies that don't
+   * specify a time to live.
+   * @param notFoundTimeToLive The time to live of negative entries of type {@link
+   * NegativeEntryType#NOT_FOUND}.
+   * @param sourceUnavailableTimeToLive The time to live of negative entries of type {@link
+   * NegativeEntryType#SOURCE_UNAVAILABLE}.
+   * @param refreshAheadPeriod The period before the expiration of a positive entry in which it is
+   * refreshed (if it is popular).
+   * @param refreshAheadMinimumHits The minimum number of recent hits for an entry to be popular.
+   */
+  public CachePolicy(Duration defaultTimeToLive, Duration notFoundTimeToLive,
+      Duration sourceUnavailableTimeToLive, Duration refreshAheadPeriod,
+      int refreshAheadMinimumHits) {
+    this.defaultTimeToLive = defaultTimeToLive;
+    this.notFoundTimeToLive = notFoundTimeToLive;
+    this.sourceUnavailableTimeToLive = sourceUnavailableTimeToLive;
+    this.refreshAheadPeriod = refreshAheadPeriod;
+    this.refreshAheadMinimumHits = refreshAheadMinimumHits;
+  }
+
+  /**
+   * @param vocabulary The vocabulary of a positive entry. Can be null if the vocabulary is not
+   * known.
+   * @return The time to live of the entry.
+   */
+  public Duration getTimeToLive(Vocabulary vocabulary) {
+    return vocabulary != null && vocabulary.getCacheTimeToLive() > 0
+        ? Duration.ofSeconds(vocabulary.getCacheTimeToLive()) : defaultTimeToLive;
+  }
+
+  /**
+   * @param type The type of a negative entry.
+   * @return The time to live of the entry.
+   */
+  public Duration getTimeToLive(NegativeEntryType type) {
+    return type == NegativeEntryType.SOURCE_UNAVAILABLE ? sourceUnavailableTimeToLive
+        : notFoundTimeToLive;
+  }
+
+  /**
+   * @return The period during which the hits on an entry are counted to determine whether it is
+   * popular. This is the same as the refresh-ahead period.
+   */
+  public Duration getPopularityPeriod() {
+    return refreshAheadPeriod;
+  }
+
+  /**
+   * Determines whether an entry should be refreshed ahead of its expiration.
+   *
+   * @param entity The cached entry.
+   * @param recentHits The number of hits on the entry in the popularity period.
+   * @param currentTime The current time (in milliseconds since the epoch).
+   * @return Whether the entry is a popular positive entry that expires within the refresh-ahead
+   * period.
+   */
+  public boolean shouldRefreshAhead(ProcessedEntity entity, int recentHits, long currentTime) {
+    return entity.getNegativeEntryType() == null && entity.getExpirationTime() > 0
+        && recentHits >= refreshAheadMinimumHits
+        && entity.getExpirationTime() - currentTime < refreshAheadPeriod.toMillis();
+  }
+}
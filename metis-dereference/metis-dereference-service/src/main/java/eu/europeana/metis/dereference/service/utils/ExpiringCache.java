@@ -0,0 +1,79 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A simple in-memory cache with a maximum size and a maximum age for its entries. When the cache is
+ * full, the least recently used entry is evicted. This class is thread-safe.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class ExpiringCache<K, V> {
+
+  private final long timeToLiveInNanos;
+  private final Map<K, Entry<V>> entries;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize The maximum number of entries.
+   * @param timeToLive The time after which an entry expires.
+   */
+  public ExpiringCache(int maxSize, Duration timeToLive) {
+    this.timeToLiveInNanos = timeToLive.toNanos();
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the value for the given key.
+   *
+   * @param key The key.
+   * @return The value, or null if there is no (unexpired) value for this key.
+   */
+  public synchronized V get(K key) {
+    final Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.creationTime >= timeToLiveInNanos) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Sets the value for the given key.
+   *
+   * @param key The key.
+   * @param value The value. Is not null.
+   */
+  public synchronized void put(K key, V value) {
+    entries.put(key, new Entry<>(value));
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private static class Entry<V> {
+
+    private final long creationTime = System.nanoTime();
+    private final V value;
+
+    Entry(V value) {
+      this.value = value;
+    }
+  }
+}
@@ -1,10 +1,17 @@
 package eu.europeana.metis.dereference.service.utils;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -80,4 +87,103 @@ public final class GraphUtils {
     // Done: the result is all discovered nodes (their values).
     return allFoundNodes.values();
   }
+
+  /**
+   * This utility method performs the same search as {@link #breadthFirstSearch(Object, Object, int,
+   * Function, BiConsumer)}, but resolves the nodes of each level concurrently: all nodes that are
+   * discovered at a given distance are requested at the same time, and the search continues with
+   * the next level when they have all been resolved. Each node is requested at most once.
+   *
+   * @param sourceNodeKey The key of the source node.
+   * @param sourceNodeValue The value of the source node.
+   * @param maxDistance The maximum distance that we search. If this is less or equal to 0, only the
+   *        source node will be returned.
+   * @param valueResolver A function that starts obtaining a value for a given key. The value could
+   *        be null. If the future completes exceptionally, the node is treated as if its value is
+   *        null.
+   * @param neighborExtractor A function that accepts two parameters: a value and a set of keys. The
+   *        function extracts all neighbors (keys) from the provided value and adds them to the set
+   *        of keys.
+   * @param timeout The maximum time that the search may take. When it is reached, the search stops
+   *        and the values that were found so far are returned. Can be null, in which case there is
+   *        no timeout.
+   * @param <K> The type of the node keys.
+   * @param <V> The type of the node values.
+   * @return The values that are within the specified distance from the source node (and that were
+   *         found before the timeout).
+   */
+  public static <K, V> Collection<V> parallelBreadthFirstSearch(K sourceNodeKey,
+      V sourceNodeValue, int maxDistance, Function<K, CompletableFuture<V>> valueResolver,
+      BiConsumer<V, Set<K>> neighborExtractor, Duration timeout) {
+
+    final Long deadline = timeout == null ? null : (System.nanoTime() + timeout.toNanos());
+
+    // The map keeps track of all nodes that we have found, the set of all nodes that we requested.
+    final Map<K, V> allFoundNodes = new LinkedHashMap<>();
+    allFoundNodes.put(sourceNodeKey, sourceNodeValue);
+    final Set<K> allRequestedNodes = new HashSet<>();
+    allRequestedNodes.add(sourceNodeKey);
+
+    // Discover new neighbors one level at a time.
+    Set<K> nodesFoundDuringLastIteration = new HashSet<>();
+    nodesFoundDuringLastIteration.add(sourceNodeKey);
+    for (int distance = 0; distance < maxDistance && !nodesFoundDuringLastIteration.isEmpty();
+        distance++) {
+
+      // Visit the nodes discovered during the last iteration to discover its neighbors.
+      final Set<K> neighbors = new HashSet<>();
+      nodesFoundDuringLastIteration.stream().map(allFoundNodes::get)
+          .forEach(value -> neighborExtractor.accept(value, neighbors));
+
+      // Request all new neighbors at the same time and wait for them.
+      final Map<K, CompletableFuture<V>> requests = new LinkedHashMap<>();
+      neighbors.stream().filter(allRequestedNodes::add)
+          .forEach(nodeKey -> requests.put(nodeKey, valueResolver.apply(nodeKey)));
+      final boolean completed = awaitAll(requests.values(), deadline);
+
+      // Save the values that we found and fill the list for the next iteration.
+      nodesFoundDuringLastIteration = new HashSet<>();
+      for (Entry<K, CompletableFuture<V>> request : requests.entrySet()) {
+        final V value = getValueIfAvailable(request.getValue());
+        if (value != null) {
+          nodesFoundDuringLastIteration.add(request.getKey());
+          allFoundNodes.put(request.getKey(), value);
+        }
+      }
+
+      // If we ran out of time, we stop here.
+      if (!completed) {
+        requests.values().forEach(request -> request.cancel(true));
+        break;
+      }
+    }
+
+    // Done: the result is all discovered nodes (their values).
+    return allFoundNodes.values();
+  }
+
+  private static boolean awaitAll(Collection<? extends CompletableFuture<?>> futures,
+      Long deadline) {
+    final CompletableFuture<Void> all = CompletableFuture
+        .allOf(futures.toArray(new CompletableFuture<?>[0]));
+    try {
+      if (deadline == null) {
+        all.get();
+      } else {
+        all.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+    } catch (ExecutionException e) {
+      // Some of the futures completed exceptionally: we will ignore those.
+    } catch (TimeoutException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
+
+  private static <V> V getValueIfAvailable(CompletableFuture<V> future) {
+    return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+  }
 }
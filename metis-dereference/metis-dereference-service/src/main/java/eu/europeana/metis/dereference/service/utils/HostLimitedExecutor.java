@@ -0,0 +1,106 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Executes tasks that access a resource on an underlying executor, limiting the number of tasks
+ * that access the same host at the same time. This way, one (slow) host can neither be overloaded
+ * nor take up all threads: tasks for other hosts can still proceed. This class is thread-safe.
+ */
+public class HostLimitedExecutor {
+
+  private final Executor executor;
+  private final int maxConcurrentTasksPerHost;
+  private final Map<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param executor The executor on which to run the tasks.
+   * @param maxConcurrentTasksPerHost The maximum number of tasks for the same host that are run at
+   * the same time.
+   */
+  public HostLimitedExecutor(Executor executor, int maxConcurrentTasksPerHost) {
+    if (maxConcurrentTasksPerHost < 1) {
+      throw new IllegalArgumentException(
+          "The number of concurrent tasks per host must be positive.");
+    }
+    this.executor = executor;
+    this.maxConcurrentTasksPerHost = maxConcurrentTasksPerHost;
+  }
+
+  /**
+   * Submits a task.
+   *
+   * @param resourceId The ID (URI) of the resource that the task accesses.
+   * @param task The task.
+   * @param <T> The type of the result of the task.
+   * @return The future result of the task.
+   */
+  public <T> CompletableFuture<T> submit(String resourceId, Supplier<T> task) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    hostQueues.computeIfAbsent(getHost(resourceId), host -> new HostQueue()).submit(() -> {
+      if (result.isDone()) {
+        return;
+      }
+      try {
+        result.complete(task.get());
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  private static String getHost(String resourceId) {
+    try {
+      final String host = new URI(resourceId.replace(" ", "%20")).getHost();
+      return host == null ? "" : host;
+    } catch (URISyntaxException e) {
+      return "";
+    }
+  }
+
+  /**
+   * Queues the tasks for one host: only a limited number of them is executed at the same time.
+   */
+  private class HostQueue {
+
+    private final Queue<Runnable> waitingTasks = new ArrayDeque<>();
+    private int activeTaskCount = 0;
+
+    synchronized void submit(Runnable task) {
+      if (activeTaskCount < maxConcurrentTasksPerHost) {
+        activeTaskCount++;
+        executor.execute(() -> run(task));
+      } else {
+        waitingTasks.add(task);
+      }
+    }
+
+    private void run(Runnable task) {
+      try {
+        task.run();
+      } finally {
+        final Runnable nextTask;
+        synchronized (this) {
+          nextTask = waitingTasks.poll();
+          if (nextTask == null) {
+            activeTaskCount--;
+          }
+        }
+        if (nextTask != null) {
+          executor.execute(() -> run(nextTask));
+        }
+      }
+    }
+  }
+}
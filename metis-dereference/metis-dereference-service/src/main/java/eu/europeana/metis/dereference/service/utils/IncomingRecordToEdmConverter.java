@@ -15,7 +15,8 @@ import org.slf4j.LoggerFactory;
 import eu.europeana.metis.dereference.Vocabulary;
 
 /**
- * Convert an incoming record to EDM.
+ * Convert an incoming record to EDM. This class is thread-safe: the XSLT is compiled once and a new
+ * transformer is created for each conversion.
  */
 public class IncomingRecordToEdmConverter {
 
@@ -0,0 +1,93 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import eu.europeana.metis.dereference.Vocabulary;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.transform.TransformerException;
+
+/**
+ * Caches the {@link IncomingRecordToEdmConverter} of each vocabulary, so that the XSLT of a
+ * vocabulary is only compiled once. Converters are keyed by vocabulary ID and a hash of the XSLT:
+ * if the XSLT of a vocabulary changes, a new converter is created. Converters can also be removed
+ * explicitly (see {@link #invalidate(String)}), e.g. when a vocabulary is updated. This class
+ * is thread-safe.
+ */
+public class IncomingRecordToEdmConverterCache {
+
+  private static final String XSLT_HASH_ALGORITHM = "SHA-256";
+
+  private final Map<String, CachedConverter> convertersByVocabularyId = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the converter for the given vocabulary, creating it if needed.
+   *
+   * @param vocabulary The vocabulary for which to perform the conversion.
+   * @return The converter.
+   * @throws TransformerException In case the conversion could not be set up.
+   */
+  public IncomingRecordToEdmConverter getConverter(Vocabulary vocabulary)
+      throws TransformerException {
+
+    // Vocabularies without ID cannot be cached.
+    if (vocabulary.getId() == null) {
+      return new IncomingRecordToEdmConverter(vocabulary);
+    }
+
+    // Check whether we have a converter for this version of the XSLT.
+    final byte[] xsltHash = computeHash(vocabulary.getXslt());
+    final CachedConverter cachedConverter = convertersByVocabularyId.get(vocabulary.getId());
+    if (cachedConverter != null && MessageDigest.isEqual(cachedConverter.xsltHash, xsltHash)) {
+      return cachedConverter.converter;
+    }
+
+    // If not, create one. Concurrent threads may do the same: the last one will be kept.
+    final IncomingRecordToEdmConverter converter = new IncomingRecordToEdmConverter(vocabulary);
+    convertersByVocabularyId.put(vocabulary.getId(),
+        new CachedConverter(vocabulary.getName(), xsltHash, converter));
+    return converter;
+  }
+
+  /**
+   * Removes the converter of the given vocabulary from the cache.
+   *
+   * @param vocabularyName The name of the vocabulary.
+   */
+  public void invalidate(String vocabularyName) {
+    convertersByVocabularyId.values()
+        .removeIf(converter -> Objects.equals(vocabularyName, converter.vocabularyName));
+  }
+
+  /**
+   * @return The number of cached converters.
+   */
+  int size() {
+    return convertersByVocabularyId.size();
+  }
+
+  private static byte[] computeHash(String xslt) {
+    try {
+      return MessageDigest.getInstance(XSLT_HASH_ALGORITHM)
+          .digest(Objects.toString(xslt, "").getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class CachedConverter {
+
+    private final String vocabularyName;
+    private final byte[] xsltHash;
+    private final IncomingRecordToEdmConverter converter;
+
+    CachedConverter(String vocabularyName, byte[] xsltHash,
+        IncomingRecordToEdmConverter converter) {
+      this.vocabularyName = vocabularyName;
+      this.xsltHash = xsltHash;
+      this.converter = converter;
+    }
+  }
+}
@@ -1,65 +1,208 @@
 package eu.europeana.metis.dereference.service.utils;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import eu.europeana.metis.dereference.OriginalEntity;
 import eu.europeana.metis.dereference.service.dao.EntityDao;
 
 /**
+ * <p>
  * Helper class to retrieve a remote unmapped entity Created by ymamakis on 2/11/16.
+ * </p>
+ * <p>
+ * Remote entities are retrieved using a pooled HTTP client, subject to connect and read timeouts
+ * and a maximum response size. The different suffixes of a resource are tried concurrently. The
+ * ETag and Last-Modified headers of the response are stored with the entity, so that it can be
+ * refreshed with a conditional request (see {@link #refresh(String, Set)}). Resources that could
+ * not be found are not stored.
+ * </p>
  */
 @Service
 public class RdfRetriever {
 
   private static final int MAX_NUMBER_OF_REDIRECTS = 5;
+  private static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+  private static final int DEFAULT_SOCKET_TIMEOUT = 30_000;
+  private static final int DEFAULT_MAX_RESPONSE_SIZE = 5 * 1024 * 1024;
+  private static final int MAX_CONNECTIONS = 100;
+  private static final int MAX_CONNECTIONS_PER_HOST = 10;
+  private static final int THREAD_COUNT = 50;
+
+  private static final AtomicInteger THREAD_POOL_COUNTER = new AtomicInteger();
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RdfRetriever.class);
 
   private final EntityDao entityDao;
+  private final CloseableHttpClient client;
+  private final ExecutorService executor;
+  private final int maxResponseSize;
 
   /**
-   * Constructor.
-   * 
+   * Constructor using the default timeouts and response size limit.
+   *
    * @param entityDao Object that accesses the cache of original entities.
    */
+  @Autowired
   public RdfRetriever(EntityDao entityDao) {
+    this(entityDao, DEFAULT_CONNECT_TIMEOUT, DEFAULT_SOCKET_TIMEOUT, DEFAULT_MAX_RESPONSE_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param entityDao Object that accesses the cache of original entities.
+   * @param connectTimeout The connection timeout in milliseconds.
+   * @param socketTimeout The socket (read) timeout in milliseconds.
+   * @param maxResponseSize The maximum size of a response in bytes. Larger responses are rejected.
+   */
+  public RdfRetriever(EntityDao entityDao, int connectTimeout, int socketTimeout,
+      int maxResponseSize) {
     this.entityDao = entityDao;
+    this.maxResponseSize = maxResponseSize;
+    final RequestConfig requestConfig = RequestConfig.custom()
+        .setMaxRedirects(MAX_NUMBER_OF_REDIRECTS).setConnectTimeout(connectTimeout)
+        .setConnectionRequestTimeout(connectTimeout).setSocketTimeout(socketTimeout).build();
+    this.client = HttpClients.custom().useSystemProperties().setDefaultRequestConfig(requestConfig)
+        .setMaxConnTotal(MAX_CONNECTIONS).setMaxConnPerRoute(MAX_CONNECTIONS_PER_HOST).build();
+    final int poolNumber = THREAD_POOL_COUNTER.incrementAndGet();
+    final AtomicInteger threadCounter = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+      final Thread thread = new Thread(runnable,
+          "rdf-retriever-" + poolNumber + "-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Stops the threads and closes the connections used for retrieving entities.
+   */
+  @PreDestroy
+  public void close() {
+    executor.shutdown();
+    try {
+      client.close();
+    } catch (IOException e) {
+      LOGGER.warn("Problem closing the HTTP client.", e);
+    }
   }
 
   /**
    * Retrieve a remote entity from a resource as a String. If possible, obtain it from the cache of
    * original resources. If not, we will try the source service of the resource. We try every suffix
-   * in a random order until we find one that works (i.e. yield a non-null result that is not HTML).
-   * 
+   * concurrently and use the first one that works (i.e. yield a non-null result that is not HTML).
+   * Only entities that were found are saved in the cache of original resources: negative results
+   * are not stored permanently.
+   *
    * @param resourceId The remote entity to retrieve (resource IDs are in fact URIs)
    * @param possibleSuffixes The suffixes we will try to append to the entity to form the remote
    *        address.
-   * @return The original entity containing a string representation of the remote entity. This
-   *         method does not return null, but the returned entity may contain a null XML value.
+   * @return The string representation of the remote entity, or null if it could not be found.
    */
   public String retrieve(String resourceId, Set<String> possibleSuffixes) {
 
-    // Get the entity from the own store
-    OriginalEntity originalEntity = entityDao.get(resourceId);
+    // Get the entity from the own store. Entities without content are ignored.
+    final OriginalEntity cachedEntity = entityDao.get(resourceId);
+    if (cachedEntity != null && cachedEntity.getXml() != null) {
+      return cachedEntity.getXml();
+    }
 
     // If we can't find it, get it from the remote source.
-    if (originalEntity == null) {
-      originalEntity = retrieveFromSource(resourceId, possibleSuffixes);
-      entityDao.save(originalEntity);
+    final Response response = retrieveFromSource(resourceId, possibleSuffixes);
+    if (!isSuccess(response)) {
+      return null;
     }
+    saveEntity(resourceId, cachedEntity, response);
+    return response.content;
+  }
 
-    // Done.
-    return originalEntity.getXml();
+  /**
+   * <p>
+   * Retrieve a remote entity from the source service of the resource, replacing the version in the
+   * cache of original resources. If the cached version has an ETag or Last-Modified value, we first
+   * send a conditional request to the URL it was retrieved from: if the entity has not changed, the
+   * cached version is kept. Otherwise, we try every suffix as in {@link #retrieve(String, Set)}.
+   * </p>
+   * <p>
+   * If the source is unavailable, the cached version (if any) is returned. If the source no longer
+   * has the entity, the cached version is removed. Cached versions without a source URL (i.e. that
+   * were set manually or retrieved before source URLs were recorded) are not refreshed.
+   * </p>
+   *
+   * @param resourceId The remote entity to retrieve (resource IDs are in fact URIs)
+   * @param possibleSuffixes The suffixes we will try to append to the entity to form the remote
+   *        address.
+   * @return The string representation of the remote entity, or null if it could not be found.
+   * @throws IOException In case the source could not be reached and there is no cached version.
+   */
+  public String refresh(String resourceId, Set<String> possibleSuffixes) throws IOException {
+
+    // Check whether we have a version that we can or should not refresh.
+    final OriginalEntity cachedEntity = entityDao.get(resourceId);
+    final String cachedXml = cachedEntity == null ? null : cachedEntity.getXml();
+    if (cachedXml != null && cachedEntity.getSourceUrl() == null) {
+      return cachedXml;
+    }
+
+    // Try a conditional request for the cached version (if possible).
+    if (cachedXml != null
+        && (cachedEntity.getEtag() != null || cachedEntity.getLastModified() != null)) {
+      final Response response = retrieveFromSource(resourceId, cachedEntity.getSourceUrl(),
+          cachedEntity);
+      if (response == Response.NOT_MODIFIED) {
+        return cachedXml;
+      }
+      if (isSuccess(response)) {
+        saveEntity(resourceId, cachedEntity, response);
+        return response.content;
+      }
+    }
+
+    // Otherwise, retrieve it again.
+    final Response response = retrieveFromSource(resourceId, possibleSuffixes);
+    if (isSuccess(response)) {
+      saveEntity(resourceId, cachedEntity, response);
+      return response.content;
+    }
+    if (response == Response.UNAVAILABLE) {
+      if (cachedXml != null) {
+        LOGGER.info("Source unavailable for resource {}: keeping the cached version.", resourceId);
+        return cachedXml;
+      }
+      throw new IOException("The source of resource " + resourceId + " could not be reached.");
+    }
+    if (cachedEntity != null) {
+      entityDao.delete(resourceId);
+    }
+    return null;
   }
 
-  private OriginalEntity retrieveFromSource(String resourceId, Set<String> possibleSuffixes) {
+  private Response retrieveFromSource(String resourceId, Set<String> possibleSuffixes) {
 
     // Sanity check for null values.
     if (resourceId == null) {
@@ -67,73 +210,183 @@ public class RdfRetriever {
     }
 
     // Try to retrieve the entity for the different suffixes, stopping when we succeed.
-    String content = null;
+    return retrieveFromSourceConcurrently(resourceId, possibleSuffixes);
+  }
+
+  private static boolean isSuccess(Response response) {
+    return response != null && response.content != null;
+  }
+
+  private void saveEntity(String resourceId, OriginalEntity cachedEntity, Response response) {
+    final OriginalEntity originalEntity = new OriginalEntity();
+    originalEntity.setURI(resourceId);
+    originalEntity.setXml(response.content);
+    originalEntity.setSourceUrl(response.url);
+    originalEntity.setEtag(response.etag);
+    originalEntity.setLastModified(response.lastModified);
+    if (cachedEntity == null) {
+      entityDao.save(originalEntity);
+    } else {
+      entityDao.update(resourceId, originalEntity);
+    }
+  }
+
+  private Response retrieveFromSourceConcurrently(String resourceId,
+      Set<String> possibleSuffixes) {
+
+    // Start a request for every suffix. The first one to succeed completes the result.
+    final CompletableFuture<Response> firstSuccess = new CompletableFuture<>();
+    final List<HttpGet> requests = new ArrayList<>(possibleSuffixes.size());
+    final List<CompletableFuture<Response>> tasks = new ArrayList<>(possibleSuffixes.size());
     for (String suffix : possibleSuffixes) {
-      content = retrieveFromSource(resourceId, suffix);
-      if (content != null) {
-        break;
+      final HttpGet request = createRequest(resourceId, resourceId + suffix);
+      if (request == null) {
+        continue;
       }
+      requests.add(request);
+      tasks.add(CompletableFuture
+          .supplyAsync(() -> retrieveFromSource(resourceId, request, null), executor)
+          .whenComplete((response, exception) -> {
+            if (isSuccess(response)) {
+              firstSuccess.complete(response);
+            }
+          }));
     }
 
-    // Compile the entity, regardless of whether we have any content.
-    OriginalEntity originalEntity = new OriginalEntity();
-    originalEntity.setURI(resourceId);
-    originalEntity.setXml(content);
-    return originalEntity;
+    // If none succeeds, report whether the source was unavailable for all of them.
+    CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+        .whenComplete((result, exception) -> {
+          final boolean unavailable = !tasks.isEmpty() && tasks.stream().allMatch(
+              task -> !task.isCompletedExceptionally() && task.join() == Response.UNAVAILABLE);
+          firstSuccess.complete(unavailable ? Response.UNAVAILABLE : null);
+        });
+
+    // Wait for the result and abort the requests that are still in progress.
+    try {
+      return firstSuccess.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      LOGGER.warn("Failed to retrieve: {} with message: {}", resourceId,
+          e.getCause().getMessage());
+      return null;
+    } finally {
+      requests.forEach(HttpGet::abort);
+    }
+  }
+
+  private Response retrieveFromSource(String resourceId, String url, OriginalEntity cachedEntity) {
+    final HttpGet request = createRequest(resourceId, url);
+    return request == null ? null : retrieveFromSource(resourceId, request, cachedEntity);
   }
 
-  private static String retrieveFromSource(String resourceId, String suffix) {
+  private static HttpGet createRequest(String resourceId, String url) {
     try {
-      return retrieveFromSource(resourceId, resourceId + suffix, MAX_NUMBER_OF_REDIRECTS);
-    } catch (IOException e) {
+      return new HttpGet(url);
+    } catch (IllegalArgumentException e) {
       LOGGER.warn("Failed to retrieve: {} with message: {}", resourceId, e.getMessage());
-      LOGGER.debug("Problem retrieving resource.", e);
       return null;
     }
   }
 
-  private static String retrieveFromSource(String resourceId, String url, int redirectsLeft)
+  private Response retrieveFromSource(String resourceId, HttpGet request,
+      OriginalEntity cachedEntity) {
+    try {
+      return executeRequest(resourceId, request, cachedEntity);
+    } catch (IOException e) {
+      if (!request.isAborted()) {
+        LOGGER.warn("Failed to retrieve: {} with message: {}", resourceId, e.getMessage());
+        LOGGER.debug("Problem retrieving resource.", e);
+      }
+      return Response.UNAVAILABLE;
+    }
+  }
+
+  private Response executeRequest(String resourceId, HttpGet request, OriginalEntity cachedEntity)
       throws IOException {
 
-    // Make the connection and retrieve the result.
-    final HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
-    urlConnection.setRequestProperty("accept", "application/rdf+xml");
-    final String resultString =
-        IOUtils.toString(urlConnection.getInputStream(), StandardCharsets.UTF_8);
-    final int responseCode = urlConnection.getResponseCode();
-    final String contentType = urlConnection.getContentType();
-    
-    // Log in case of unexpected issues.
-    if (responseCode != HttpURLConnection.HTTP_OK) {
-      LOGGER.info("Status code {} for url {} for resource {}.", responseCode, url, resourceId);
-    }
-
-    // Check the response code.
-    final String result;
-    if (responseCode == HttpURLConnection.HTTP_MOVED_TEMP
-        || responseCode == HttpURLConnection.HTTP_MOVED_PERM
-        || responseCode == HttpURLConnection.HTTP_SEE_OTHER) {
-
-      // Perform redirect
-      final String location = urlConnection.getHeaderField("Location");
-      if (redirectsLeft > 0 && location != null) {
-        result = retrieveFromSource(resourceId, location, redirectsLeft - 1);
-      } else {
-        result = null;
+    // Set up the request. If we have a cached entity, make it a conditional request.
+    request.setHeader(HttpHeaders.ACCEPT, "application/rdf+xml");
+    if (cachedEntity != null && cachedEntity.getEtag() != null) {
+      request.setHeader(HttpHeaders.IF_NONE_MATCH, cachedEntity.getEtag());
+    }
+    if (cachedEntity != null && cachedEntity.getLastModified() != null) {
+      request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cachedEntity.getLastModified());
+    }
+
+    // Execute the request (redirects are followed by the client).
+    final String url = request.getURI().toString();
+    try (final CloseableHttpResponse response = client.execute(request)) {
+
+      // Check the response code.
+      final int responseCode = response.getStatusLine().getStatusCode();
+      if (responseCode == HttpStatus.SC_NOT_MODIFIED && cachedEntity != null) {
+        return Response.NOT_MODIFIED;
+      }
+      if (responseCode != HttpStatus.SC_OK) {
+        LOGGER.info("Status code {} for url {} for resource {}.", responseCode, url, resourceId);
+        return responseCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR ? Response.UNAVAILABLE : null;
       }
-    } else {
 
       // Check that we didn't receive HTML input.
-      if (contentType != null && contentType.startsWith("text/html")) {
-        result = null;
-      } else if (resultString != null && resultString.contains("<html>")) {
-        result = null;
-      } else {
-        result = resultString;
+      final HttpEntity entity = response.getEntity();
+      final Header contentType = entity == null ? null : entity.getContentType();
+      if (entity == null
+          || (contentType != null && contentType.getValue().startsWith("text/html"))) {
+        return null;
+      }
+
+      // Read the content, checking that it is not too large.
+      if (entity.getContentLength() > maxResponseSize) {
+        LOGGER.info("Response for url {} for resource {} is too large: {} bytes.", url,
+            resourceId, entity.getContentLength());
+        return null;
+      }
+      final byte[] content;
+      try (final InputStream stream = new BoundedInputStream(entity.getContent(),
+          maxResponseSize + 1L)) {
+        content = IOUtils.toByteArray(stream);
+      }
+      if (content.length > maxResponseSize) {
+        LOGGER.info("Response for url {} for resource {} is larger than {} bytes.", url,
+            resourceId, maxResponseSize);
+        return null;
       }
+      final String resultString = new String(content, StandardCharsets.UTF_8);
+      if (resultString.contains("<html>")) {
+        return null;
+      }
+
+      // Done
+      return new Response(url, resultString, getHeader(response, HttpHeaders.ETAG),
+          getHeader(response, HttpHeaders.LAST_MODIFIED));
     }
+  }
+
+  private static String getHeader(CloseableHttpResponse response, String name) {
+    final Header header = response.getFirstHeader(name);
+    return header == null ? null : header.getValue();
+  }
 
-    // Done
-    return result;
+  private static class Response {
+
+    /** The entity was not modified since the cached version was retrieved. **/
+    static final Response NOT_MODIFIED = new Response(null, null, null, null);
+
+    /** The source could not be reached, or reported a server error. **/
+    static final Response UNAVAILABLE = new Response(null, null, null, null);
+
+    final String url;
+    final String content;
+    final String etag;
+    final String lastModified;
+
+    Response(String url, String content, String etag, String lastModified) {
+      this.url = url;
+      this.content = content;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
   }
 }
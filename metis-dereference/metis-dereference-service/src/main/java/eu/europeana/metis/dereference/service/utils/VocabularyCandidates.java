@@ -5,6 +5,7 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -94,6 +95,26 @@ public final class VocabularyCandidates {
     return new VocabularyCandidates(resourceId, candidates);
   }
 
+  /**
+   * Return the vocabularies that match the given resource identifier, using the given index. The
+   * same matching rules apply as detailed in {@link #findVocabulariesForUrl(String, Function)}, but
+   * the persistence is not accessed.
+   *
+   * @param resourceId The resource identifier (URI) that we receive and that we are to match.
+   * @param vocabularyIndex The index of the vocabularies.
+   * @return The list of vocabularies that match the given URI. May be empty list if none are found.
+   *         This method does not return null.
+   * @throws URISyntaxException In case the resource ID could not be read as URI.
+   */
+  public static VocabularyCandidates findVocabulariesForUrl(String resourceId,
+      VocabularyIndex vocabularyIndex) throws URISyntaxException {
+    final List<Vocabulary> candidates = vocabularyIndex.findVocabulariesForUrl(resourceId);
+    if (candidates.isEmpty()) {
+      LOGGER.info("No vocabularies found for uri {}", resourceId);
+    }
+    return new VocabularyCandidates(resourceId, candidates);
+  }
+
   private static boolean vocabularyMatchesUri(String resourceId, Vocabulary vocabulary) {
 
     // If there are no URI rules, the resource ID must start with the vocabulary URI.
@@ -181,6 +202,16 @@ public final class VocabularyCandidates {
         .collect(Collectors.toSet());
   }
 
+  /**
+   * Collects the IDs of all the candidates (ignoring candidates without ID).
+   *
+   * @return The collection of IDs. Is not null.
+   */
+  public Set<String> getCandidateVocabularyIds() {
+    return candidates.stream().map(Vocabulary::getId).filter(Objects::nonNull)
+        .collect(Collectors.toSet());
+  }
+
   /**
    * Returns whether there are any candidates that matched the provided resource.
    * 
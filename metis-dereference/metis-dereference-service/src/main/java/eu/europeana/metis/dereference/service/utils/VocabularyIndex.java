@@ -0,0 +1,267 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import eu.europeana.metis.dereference.Vocabulary;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * An in-memory index of the vocabularies, so that the vocabularies for a resource can be found
+ * without accessing the persistence. The vocabularies are grouped by the host name of their URI.
+ * For each host, the URI prefixes of the vocabularies (the vocabulary URI, or the vocabulary URI
+ * followed by one of the rules if there are rules) are stored in a trie: the vocabularies matching
+ * a resource are found in one pass over the resource ID.
+ * </p>
+ * <p>
+ * The index is loaded when it is first used. It is reloaded right away when it is invalidated (see
+ * {@link #invalidate()}), e.g. when a vocabulary is changed, so that the change is visible as soon
+ * as the invalidation is done. It is also reloaded after the refresh interval has passed (to pick up
+ * changes made by other processes): this happens in the background, and until the new index is
+ * ready, the current one is used. If such a reload fails, the current index continues to be used
+ * and reloading is tried again after a short delay. This class is thread-safe.
+ * </p>
+ */
+public class VocabularyIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VocabularyIndex.class);
+
+  private static final long RELOAD_RETRY_DELAY_IN_NANOS = Duration.ofSeconds(30).toNanos();
+
+  private final Supplier<List<Vocabulary>> vocabularySource;
+  private final long refreshIntervalInNanos;
+  private final Executor reloadExecutor;
+  private final AtomicLong invalidationCount = new AtomicLong();
+  private final AtomicBoolean reloadInProgress = new AtomicBoolean();
+  private volatile boolean lastReloadFailed;
+  private volatile long lastReloadFailureTime;
+  private volatile Snapshot snapshot;
+
+  /**
+   * Constructor.
+   *
+   * @param vocabularySource The source of all vocabularies (e.g. the persistence).
+   * @param refreshInterval The interval after which the index is reloaded from the source. Can be
+   * null, in which case the index is only reloaded after it is invalidated.
+   */
+  public VocabularyIndex(Supplier<List<Vocabulary>> vocabularySource, Duration refreshInterval) {
+    this(vocabularySource, refreshInterval, VocabularyIndex::startReloadThread);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param vocabularySource The source of all vocabularies (e.g. the persistence).
+   * @param refreshInterval The interval after which the index is reloaded from the source. Can be
+   * null, in which case the index is only reloaded after it is invalidated.
+   * @param reloadExecutor The executor on which the index is reloaded.
+   */
+  VocabularyIndex(Supplier<List<Vocabulary>> vocabularySource, Duration refreshInterval,
+      Executor reloadExecutor) {
+    this.vocabularySource = vocabularySource;
+    this.refreshIntervalInNanos = refreshInterval == null ? Long.MAX_VALUE
+        : refreshInterval.toNanos();
+    this.reloadExecutor = reloadExecutor;
+  }
+
+  private static void startReloadThread(Runnable reload) {
+    final Thread thread = new Thread(reload, "vocabulary-index-reload");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Invalidates the index and reloads it on the calling thread, so that lookups made after this
+   * method returns see the current vocabularies. If the reload fails, the index is discarded: it
+   * will be loaded when it is next used (rather than using outdated vocabularies).
+   */
+  public void invalidate() {
+    final long currentInvalidationCount = invalidationCount.incrementAndGet();
+    lastReloadFailed = false;
+    if (snapshot == null) {
+      return;
+    }
+    try {
+      install(new Snapshot(vocabularySource.get(), currentInvalidationCount));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not reload the vocabulary index: it will be loaded when next used.", e);
+      discard(currentInvalidationCount);
+    }
+  }
+
+  /**
+   * Returns the vocabulary with the given ID.
+   *
+   * @param vocabularyId The ID of the vocabulary.
+   * @return The vocabulary, or null if there is no such vocabulary.
+   */
+  public Vocabulary getById(String vocabularyId) {
+    return getSnapshot().vocabulariesById.get(vocabularyId);
+  }
+
+  /**
+   * Returns the vocabularies that match the given resource identifier. The matching rules are the
+   * same as those of {@link VocabularyCandidates#findVocabulariesForUrl(String,
+   * java.util.function.Function)}.
+   *
+   * @param resourceId The resource identifier (URI).
+   * @return The matching vocabularies. Is not null, but may be empty.
+   * @throws URISyntaxException In case the resource ID could not be read as URI.
+   */
+  public List<Vocabulary> findVocabulariesForUrl(String resourceId) throws URISyntaxException {
+    final PrefixTrie trie = getSnapshot().triesByHost.get(getHost(resourceId));
+    return trie == null ? Collections.emptyList() : trie.findPrefixesOf(resourceId);
+  }
+
+  private Snapshot getSnapshot() {
+    final Snapshot current = snapshot;
+    if (current == null) {
+      return loadFirstSnapshot();
+    }
+    if (isValid(current)) {
+      return current;
+    }
+    startReload();
+    return snapshot;
+  }
+
+  private synchronized Snapshot loadFirstSnapshot() {
+    if (snapshot == null) {
+      final long currentInvalidationCount = invalidationCount.get();
+      snapshot = new Snapshot(vocabularySource.get(), currentInvalidationCount);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Makes the given snapshot the current one, unless the current one was loaded after a later
+   * invalidation (e.g. a background reload that finishes after a reload following an invalidation).
+   */
+  private synchronized void install(Snapshot newSnapshot) {
+    final Snapshot current = snapshot;
+    if (current == null || current.invalidationCount <= newSnapshot.invalidationCount) {
+      snapshot = newSnapshot;
+    }
+  }
+
+  private synchronized void discard(long failedInvalidationCount) {
+    final Snapshot current = snapshot;
+    if (current != null && current.invalidationCount < failedInvalidationCount) {
+      snapshot = null;
+    }
+  }
+
+  private boolean isValid(Snapshot candidate) {
+    return candidate.invalidationCount == invalidationCount.get()
+        && System.nanoTime() - candidate.creationTime < refreshIntervalInNanos;
+  }
+
+  private void startReload() {
+    if (lastReloadFailed
+        && System.nanoTime() - lastReloadFailureTime < RELOAD_RETRY_DELAY_IN_NANOS) {
+      return;
+    }
+    if (!reloadInProgress.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      reloadExecutor.execute(this::reload);
+    } catch (RuntimeException e) {
+      reloadInProgress.set(false);
+      LOGGER.warn("Could not start reloading the vocabulary index: using the current one.", e);
+    }
+  }
+
+  private void reload() {
+    try {
+      final long currentInvalidationCount = invalidationCount.get();
+      install(new Snapshot(vocabularySource.get(), currentInvalidationCount));
+      lastReloadFailed = false;
+    } catch (RuntimeException e) {
+      lastReloadFailureTime = System.nanoTime();
+      lastReloadFailed = true;
+      LOGGER.warn("Could not reload the vocabulary index: using the current one.", e);
+    } finally {
+      reloadInProgress.set(false);
+    }
+  }
+
+  private static String getHost(String uri) throws URISyntaxException {
+    return new URI(uri.replace(" ", "%20")).getHost();
+  }
+
+  private static class Snapshot {
+
+    private final long creationTime = System.nanoTime();
+    private final long invalidationCount;
+    private final Map<String, Vocabulary> vocabulariesById = new HashMap<>();
+    private final Map<String, PrefixTrie> triesByHost = new HashMap<>();
+
+    Snapshot(List<Vocabulary> vocabularies, long invalidationCount) {
+      this.invalidationCount = invalidationCount;
+      for (Vocabulary vocabulary : vocabularies) {
+        if (vocabulary.getId() != null) {
+          vocabulariesById.put(vocabulary.getId(), vocabulary);
+        }
+        final String host;
+        try {
+          host = vocabulary.getUri() == null ? null : getHost(vocabulary.getUri());
+        } catch (URISyntaxException e) {
+          LOGGER.warn("Vocabulary {} has an invalid URI: {}", vocabulary.getName(),
+              vocabulary.getUri());
+          continue;
+        }
+        if (host == null) {
+          continue;
+        }
+        final PrefixTrie trie = triesByHost.computeIfAbsent(host, key -> new PrefixTrie());
+        if (vocabulary.getRules() == null || vocabulary.getRules().isEmpty()) {
+          trie.add(vocabulary.getUri(), vocabulary);
+        } else {
+          vocabulary.getRules().forEach(rule -> trie.add(vocabulary.getUri() + rule, vocabulary));
+        }
+      }
+      LOGGER.info("Vocabulary index loaded with {} vocabularies for {} hosts.",
+          vocabularies.size(), triesByHost.size());
+    }
+  }
+
+  private static class PrefixTrie {
+
+    private final Map<Character, PrefixTrie> children = new HashMap<>();
+    private final List<Vocabulary> vocabularies = new ArrayList<>();
+
+    void add(String prefix, Vocabulary vocabulary) {
+      PrefixTrie node = this;
+      for (int i = 0; i < prefix.length(); i++) {
+        node = node.children.computeIfAbsent(prefix.charAt(i), key -> new PrefixTrie());
+      }
+      node.vocabularies.add(vocabulary);
+    }
+
+    List<Vocabulary> findPrefixesOf(String value) {
+      final Set<Vocabulary> result = new LinkedHashSet<>(vocabularies);
+      PrefixTrie node = this;
+      for (int i = 0; i < value.length() && node != null; i++) {
+        node = node.children.get(value.charAt(i));
+        if (node != null) {
+          result.addAll(node.vocabularies);
+        }
+      }
+      return new ArrayList<>(result);
+    }
+  }
+}
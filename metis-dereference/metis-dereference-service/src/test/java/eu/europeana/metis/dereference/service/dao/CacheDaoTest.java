@@ -0,0 +1,126 @@
+package eu.europeana.metis.dereference.service.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import eu.europeana.metis.cache.redis.RedisProvider;
+import eu.europeana.metis.dereference.ProcessedEntity;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+class CacheDaoTest {
+
+  private static final String INDEX_KEY = "dereference-vocabulary-entries:vocabulary";
+
+  private Jedis jedis;
+  private CacheDao cacheDao;
+
+  @BeforeEach
+  void setUp() {
+    jedis = mock(Jedis.class);
+    final RedisProvider redisProvider = mock(RedisProvider.class);
+    doReturn(jedis).when(redisProvider).getJedis();
+    cacheDao = new CacheDao(redisProvider);
+  }
+
+  @Test
+  void saveShouldRegisterTheEntityWithAnExpiringIndex() {
+    final ProcessedEntity entity = new ProcessedEntity();
+    entity.setResourceId("http://dummy.com/1");
+    doReturn(-1L).when(jedis).ttl(INDEX_KEY);
+
+    final long before = System.currentTimeMillis();
+    cacheDao.save(entity, Duration.ofSeconds(60), Collections.singleton("vocabulary"));
+    final long after = System.currentTimeMillis();
+
+    verify(jedis).setex(eq("http://dummy.com/1"), eq(60), anyString());
+    final ArgumentCaptor<Double> expirationTime = ArgumentCaptor.forClass(Double.class);
+    verify(jedis).zadd(eq(INDEX_KEY), expirationTime.capture(), eq("http://dummy.com/1"));
+    assertTrue(expirationTime.getValue() >= before + 60_000);
+    assertTrue(expirationTime.getValue() <= after + 60_000);
+    final ArgumentCaptor<Double> removalTime = ArgumentCaptor.forClass(Double.class);
+    verify(jedis).zremrangeByScore(eq(INDEX_KEY), eq(Double.NEGATIVE_INFINITY),
+        removalTime.capture());
+    assertTrue(removalTime.getValue() >= before);
+    assertTrue(removalTime.getValue() <= after);
+    verify(jedis).expire(INDEX_KEY, 60);
+
+    // If the index lives longer already, its expiration is not changed.
+    doReturn(120L).when(jedis).ttl(INDEX_KEY);
+    cacheDao.save(entity, Duration.ofSeconds(30), Collections.singleton("vocabulary"));
+    verify(jedis, never()).expire(INDEX_KEY, 30);
+  }
+
+  @Test
+  void expireByVocabularyShouldRemoveTheRegisteredEntities() {
+    doReturn(new LinkedHashSet<>(Arrays.asList("id1", "id2")), Collections.emptySet()).when(jedis)
+        .zrange(INDEX_KEY, 0, 999);
+    final AtomicInteger notificationCount = new AtomicInteger();
+    cacheDao.addExpirationListener(notificationCount::incrementAndGet);
+
+    assertEquals(2, cacheDao.expireByVocabulary("vocabulary"));
+    verify(jedis).zremrangeByScore(eq(INDEX_KEY), eq(Double.NEGATIVE_INFINITY), anyDouble());
+    verify(jedis).del("id1", "id2");
+    verify(jedis).zrem(INDEX_KEY, "id1", "id2");
+    verify(jedis, never()).flushAll();
+    assertEquals(1, notificationCount.get());
+
+    cacheDao.emptyCache();
+    verify(jedis).flushAll();
+    assertEquals(2, notificationCount.get());
+    verify(jedis, never()).expire(anyString(), anyInt());
+  }
+
+  @Test
+  void migrateShouldGiveEntitiesWithoutTimeToLiveATimeToLive() {
+    final List<String> keys = Arrays.asList("http://dummy.com/1", "http://dummy.com/2",
+        "http://dummy.com/3", "other", INDEX_KEY);
+    doReturn(new ScanResult<>(ScanParams.SCAN_POINTER_START, keys)).when(jedis)
+        .scan(eq(ScanParams.SCAN_POINTER_START), any(ScanParams.class));
+    doReturn(-1L).when(jedis).ttl("http://dummy.com/1");
+    doReturn("{\"resourceId\":\"http://dummy.com/1\",\"xml\":\"<xml/>\","
+        + "\"vocabularyId\":\"vocabulary\"}").when(jedis).get("http://dummy.com/1");
+    doReturn(100L).when(jedis).ttl("http://dummy.com/2");
+    doReturn(-1L).when(jedis).ttl("http://dummy.com/3");
+    doReturn("{\"resourceId\":\"http://dummy.com/3\",\"xml\":\"<xml/>\"}").when(jedis)
+        .get("http://dummy.com/3");
+    doReturn(-1L).when(jedis).ttl("other");
+    doReturn("not an entity").when(jedis).get("other");
+    doReturn(-1L).when(jedis).ttl(INDEX_KEY);
+
+    assertEquals(2, cacheDao.migrateEntitiesWithoutTimeToLive(
+        vocabularyId -> vocabularyId == null ? Duration.ofSeconds(30) : Duration.ofSeconds(60)));
+    verify(jedis).expire("http://dummy.com/1", 60);
+    verify(jedis).zadd(eq(INDEX_KEY), anyDouble(), eq("http://dummy.com/1"));
+    verify(jedis).expire(INDEX_KEY, 60);
+    verify(jedis).expire("http://dummy.com/3", 30);
+    verify(jedis, never()).expire(eq("http://dummy.com/2"), anyInt());
+    verify(jedis, never()).expire(eq("other"), anyInt());
+    verify(jedis, never()).setex(anyString(), anyInt(), anyString());
+    verify(jedis).set(eq("dereference-cache-migrated"), anyString());
+
+    // The migration is only done once.
+    doReturn(true).when(jedis).exists("dereference-cache-migrated");
+    assertEquals(0, cacheDao.migrateEntitiesWithoutTimeToLive(vocabularyId -> Duration.ZERO));
+    verify(jedis).scan(anyString(), any(ScanParams.class));
+  }
+}
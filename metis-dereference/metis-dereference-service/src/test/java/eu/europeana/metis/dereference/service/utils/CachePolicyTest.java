@@ -0,0 +1,48 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.metis.dereference.NegativeEntryType;
+import eu.europeana.metis.dereference.ProcessedEntity;
+import eu.europeana.metis.dereference.Vocabulary;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class CachePolicyTest {
+
+  private final CachePolicy policy = new CachePolicy(Duration.ofDays(7), Duration.ofHours(1),
+      Duration.ofMinutes(5), Duration.ofMinutes(10), 3);
+
+  @Test
+  void testTimeToLive() {
+    final Vocabulary vocabulary = new Vocabulary();
+    assertEquals(Duration.ofDays(7), policy.getTimeToLive(vocabulary));
+    vocabulary.setCacheTimeToLive(60);
+    assertEquals(Duration.ofMinutes(1), policy.getTimeToLive(vocabulary));
+    assertEquals(Duration.ofDays(7), policy.getTimeToLive((Vocabulary) null));
+    assertEquals(Duration.ofHours(1), policy.getTimeToLive(NegativeEntryType.NOT_FOUND));
+    assertEquals(Duration.ofMinutes(5),
+        policy.getTimeToLive(NegativeEntryType.SOURCE_UNAVAILABLE));
+  }
+
+  @Test
+  void testShouldRefreshAhead() {
+    final long now = 1_000_000_000L;
+    final ProcessedEntity entity = new ProcessedEntity();
+    entity.setExpirationTime(now + Duration.ofMinutes(5).toMillis());
+
+    // Popular entries that expire soon are refreshed.
+    assertTrue(policy.shouldRefreshAhead(entity, 3, now));
+    assertFalse(policy.shouldRefreshAhead(entity, 2, now));
+    assertFalse(policy.shouldRefreshAhead(entity, 3, now - Duration.ofMinutes(10).toMillis()));
+
+    // Entries without expiration time and negative entries are not.
+    entity.setNegativeEntryType(NegativeEntryType.NOT_FOUND);
+    assertFalse(policy.shouldRefreshAhead(entity, 3, now));
+    entity.setNegativeEntryType(null);
+    entity.setExpirationTime(0);
+    assertFalse(policy.shouldRefreshAhead(entity, 3, now));
+  }
+}
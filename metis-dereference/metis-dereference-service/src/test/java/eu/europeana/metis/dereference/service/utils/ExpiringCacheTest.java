@@ -0,0 +1,32 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class ExpiringCacheTest {
+
+  @Test
+  void leastRecentlyUsedEntriesShouldBeEvicted() {
+    final ExpiringCache<String, String> cache = new ExpiringCache<>(2, Duration.ofHours(1));
+    cache.put("a", "1");
+    cache.put("b", "2");
+    assertEquals("1", cache.get("a"));
+    cache.put("c", "3");
+    assertEquals("1", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("3", cache.get("c"));
+
+    cache.clear();
+    assertNull(cache.get("a"));
+  }
+
+  @Test
+  void expiredEntriesShouldNotBeReturned() {
+    final ExpiringCache<String, String> cache = new ExpiringCache<>(2, Duration.ZERO);
+    cache.put("a", "1");
+    assertNull(cache.get("a"));
+  }
+}
@@ -1,6 +1,7 @@
 package eu.europeana.metis.dereference.service.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -10,9 +11,13 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import org.junit.jupiter.api.Test;
@@ -90,4 +95,47 @@ class GraphUtilsTest {
       verify(neighborExtractor, times(1)).accept(eq(value), any());
     }
   }
+  /**
+   * This method tests the parallel breadth first search with the same graph as {@link
+   * #testBreadthFirstSearch()}.
+   */
+  @Test
+  void testParallelBreadthFirstSearch() {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Function<Integer, Long> valueResolver = spy(new ValueResolver());
+      final BiConsumer<Long, Set<Integer>> neighborExtractor = spy(new NeighborExtractor());
+
+      // Perform the functionality and check result.
+      final Collection<Long> resultCollection = GraphUtils.parallelBreadthFirstSearch(3, 8L, 5,
+          exponent -> CompletableFuture.supplyAsync(() -> valueResolver.apply(exponent), executor),
+          neighborExtractor, Duration.ofSeconds(10));
+      final Set<Long> result = new HashSet<>(resultCollection);
+      assertEquals(9, result.size());
+      for (int exponent = 0; exponent < 9; exponent++) {
+        assertTrue(result.contains(Math.round(Math.pow(2, exponent))));
+      }
+
+      // Check that each node is resolved and visited only once.
+      verify(valueResolver, times(9)).apply(anyInt());
+      verify(neighborExtractor, times(8)).accept(anyLong(), any());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * This method tests that the parallel breadth first search stops when the timeout is reached, and
+   * returns the nodes found until then.
+   */
+  @Test
+  void testParallelBreadthFirstSearchWithTimeout() {
+    final ValueResolver valueResolver = new ValueResolver();
+    final Collection<Long> result = GraphUtils.parallelBreadthFirstSearch(3, 8L, 5,
+        exponent -> exponent > 3 ? new CompletableFuture<>()
+            : CompletableFuture.completedFuture(valueResolver.apply(exponent)),
+        new NeighborExtractor(), Duration.ofMillis(100));
+    assertTrue(result.contains(4L));
+    assertFalse(result.contains(16L));
+  }
 }
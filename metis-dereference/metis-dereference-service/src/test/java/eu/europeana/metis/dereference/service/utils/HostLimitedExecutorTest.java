@@ -0,0 +1,64 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class HostLimitedExecutorTest {
+
+  @Test
+  void concurrentTasksPerHostShouldBeLimited() {
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final HostLimitedExecutor hostLimitedExecutor = new HostLimitedExecutor(executor, 2);
+      final Map<String, AtomicInteger> activeTasks = new ConcurrentHashMap<>();
+      final Map<String, AtomicInteger> maxActiveTasks = new ConcurrentHashMap<>();
+      final List<CompletableFuture<String>> results = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        for (String host : new String[]{"a.org", "b.org"}) {
+          final String resourceId = "http://" + host + "/" + i;
+          results.add(hostLimitedExecutor.submit(resourceId, () -> {
+            final int active = activeTasks.computeIfAbsent(host, key -> new AtomicInteger())
+                .incrementAndGet();
+            maxActiveTasks.computeIfAbsent(host, key -> new AtomicInteger())
+                .accumulateAndGet(active, Math::max);
+            try {
+              Thread.sleep(20);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            activeTasks.get(host).decrementAndGet();
+            return resourceId;
+          }));
+        }
+      }
+      assertEquals("http://b.org/9", results.get(19).join());
+      results.forEach(CompletableFuture::join);
+      assertEquals(2, maxActiveTasks.get("a.org").get());
+      assertEquals(2, maxActiveTasks.get("b.org").get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void failuresShouldBeReported() {
+    final HostLimitedExecutor hostLimitedExecutor = new HostLimitedExecutor(Runnable::run, 1);
+    final IllegalStateException failure = new IllegalStateException();
+    final CompletableFuture<Object> result = hostLimitedExecutor.submit("http://a.org/1", () -> {
+      throw failure;
+    });
+    assertSame(failure, assertThrows(CompletionException.class, result::join).getCause());
+  }
+}
@@ -0,0 +1,56 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import eu.europeana.metis.dereference.Vocabulary;
+import javax.xml.transform.TransformerException;
+import org.junit.jupiter.api.Test;
+
+class IncomingRecordToEdmConverterCacheTest {
+
+  private static final String XSLT_TEMPLATE =
+      "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+          + "<xsl:param name=\"targetId\"/>"
+          + "<xsl:template match=\"/\"><%s><xsl:value-of select=\"$targetId\"/></%1$s>"
+          + "</xsl:template></xsl:stylesheet>";
+
+  private static Vocabulary createVocabulary(String id, String name, String tag) {
+    final Vocabulary vocabulary = new Vocabulary();
+    vocabulary.setId(id);
+    vocabulary.setName(name);
+    vocabulary.setXslt(String.format(XSLT_TEMPLATE, tag));
+    return vocabulary;
+  }
+
+  @Test
+  void convertersShouldBeCachedByVocabularyIdAndXslt() throws TransformerException {
+    final IncomingRecordToEdmConverterCache cache = new IncomingRecordToEdmConverterCache();
+    final IncomingRecordToEdmConverter converter = cache
+        .getConverter(createVocabulary("1", "one", "a"));
+    assertSame(converter, cache.getConverter(createVocabulary("1", "one", "a")));
+    assertNotSame(converter, cache.getConverter(createVocabulary("2", "two", "a")));
+    assertEquals(2, cache.size());
+
+    // A changed XSLT leads to a new converter, which replaces the old one.
+    final IncomingRecordToEdmConverter changedConverter = cache
+        .getConverter(createVocabulary("1", "one", "b"));
+    assertNotSame(converter, changedConverter);
+    assertEquals(2, cache.size());
+    assertEquals("<b>http://id/1</b>", changedConverter.convert("<record/>", "http://id/1")
+        .replaceAll("<\\?.*?\\?>", ""));
+  }
+
+  @Test
+  void convertersShouldBeInvalidatedByName() throws TransformerException {
+    final IncomingRecordToEdmConverterCache cache = new IncomingRecordToEdmConverterCache();
+    final IncomingRecordToEdmConverter converter = cache
+        .getConverter(createVocabulary("1", "one", "a"));
+    cache.getConverter(createVocabulary("2", "two", "a"));
+
+    cache.invalidate("one");
+    assertEquals(1, cache.size());
+    assertNotSame(converter, cache.getConverter(createVocabulary("1", "one", "a")));
+  }
+}
@@ -0,0 +1,210 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.europeana.metis.dereference.OriginalEntity;
+import eu.europeana.metis.dereference.service.dao.EntityDao;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class RdfRetrieverTest {
+
+  private static final String RDF = "<rdf:RDF>entity</rdf:RDF>";
+  private static final String ETAG = "\"version-1\"";
+
+  private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+  private final List<String> conditionalRequests = new CopyOnWriteArrayList<>();
+  private HttpServer server;
+  private String resourceId;
+  private EntityDao entityDao;
+  private RdfRetriever retriever;
+
+  @FunctionalInterface
+  private interface Handler {
+
+    void handle(HttpExchange exchange) throws IOException;
+  }
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", exchange -> {
+      final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+      if (ifNoneMatch != null) {
+        conditionalRequests.add(ifNoneMatch);
+      }
+      final Handler handler = handlers.get(exchange.getRequestURI().getPath());
+      if (handler == null) {
+        respond(exchange, 404, "text/plain", "Not found");
+      } else {
+        handler.handle(exchange);
+      }
+    });
+    server.start();
+    resourceId = "http://localhost:" + server.getAddress().getPort() + "/entity";
+    entityDao = mock(EntityDao.class);
+    retriever = new RdfRetriever(entityDao, 1000, 1000, 1000);
+  }
+
+  @AfterEach
+  void tearDown() {
+    retriever.close();
+    server.stop(0);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String contentType,
+      String content) throws IOException {
+    final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream stream = exchange.getResponseBody()) {
+      stream.write(bytes);
+    }
+  }
+
+  private OriginalEntity captureSavedEntity() {
+    final ArgumentCaptor<OriginalEntity> captor = ArgumentCaptor.forClass(OriginalEntity.class);
+    verify(entityDao).save(captor.capture());
+    return captor.getValue();
+  }
+
+  @Test
+  void retrieveShouldUseTheFirstSuffixThatSucceeds() {
+    final CountDownLatch release = new CountDownLatch(1);
+    handlers.put("/entity.slow", exchange -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      respond(exchange, 200, "application/rdf+xml", "<rdf:RDF>slow</rdf:RDF>");
+    });
+    handlers.put("/entity.html", exchange -> respond(exchange, 200, "text/html", "<html/>"));
+    handlers.put("/entity.rdf", exchange -> {
+      exchange.getResponseHeaders().set("ETag", ETAG);
+      respond(exchange, 200, "application/rdf+xml", RDF);
+    });
+
+    try {
+      assertEquals(RDF, retriever.retrieve(resourceId,
+          new LinkedHashSet<>(Arrays.asList(".slow", ".missing", ".html", ".rdf"))));
+    } finally {
+      release.countDown();
+    }
+    final OriginalEntity saved = captureSavedEntity();
+    assertEquals(resourceId, saved.getURI());
+    assertEquals(RDF, saved.getXml());
+    assertEquals(resourceId + ".rdf", saved.getSourceUrl());
+    assertEquals(ETAG, saved.getEtag());
+  }
+
+  @Test
+  void retrieveShouldRejectResponsesThatAreTooLarge() {
+    final StringBuilder largeContent = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      largeContent.append(RDF);
+    }
+    handlers.put("/entity", exchange -> respond(exchange, 200, "application/rdf+xml",
+        largeContent.toString()));
+    handlers.put("/entity.chunked", exchange -> {
+      exchange.getResponseHeaders().set("Content-Type", "application/rdf+xml");
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream stream = exchange.getResponseBody()) {
+        stream.write(largeContent.toString().getBytes(StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        // The client may close the connection before all content is written.
+      }
+    });
+
+    assertNull(
+        retriever.retrieve(resourceId, new LinkedHashSet<>(Arrays.asList("", ".chunked"))));
+    verify(entityDao, never()).save(any());
+  }
+
+  @Test
+  void retrieveShouldUseTheCachedEntity() {
+    final OriginalEntity cachedEntity = new OriginalEntity();
+    cachedEntity.setXml(RDF);
+    doReturn(cachedEntity).when(entityDao).get(resourceId);
+    assertEquals(RDF, retriever.retrieve(resourceId, new LinkedHashSet<>(Arrays.asList(".rdf"))));
+    verify(entityDao, never()).save(any());
+  }
+
+  @Test
+  void refreshShouldReportUnavailableSources() throws IOException {
+    handlers.put("/entity.rdf", exchange -> respond(exchange, 503, "text/plain", "Unavailable"));
+    final LinkedHashSet<String> suffixes = new LinkedHashSet<>(Arrays.asList(".rdf"));
+    assertThrows(IOException.class, () -> retriever.refresh(resourceId, suffixes));
+
+    // If we have a cached version, it is kept.
+    final OriginalEntity cachedEntity = new OriginalEntity();
+    cachedEntity.setXml(RDF);
+    cachedEntity.setSourceUrl(resourceId + ".rdf");
+    doReturn(cachedEntity).when(entityDao).get(resourceId);
+    assertEquals(RDF, retriever.refresh(resourceId, suffixes));
+
+    // If the source no longer has the entity, the cached version is removed.
+    handlers.remove("/entity.rdf");
+    assertNull(retriever.refresh(resourceId, suffixes));
+    verify(entityDao).delete(resourceId);
+    verify(entityDao, never()).save(any());
+  }
+
+  @Test
+  void refreshShouldUseConditionalRequests() throws IOException {
+    final OriginalEntity cachedEntity = new OriginalEntity();
+    cachedEntity.setURI(resourceId);
+    cachedEntity.setXml(RDF);
+    cachedEntity.setSourceUrl(resourceId + ".rdf");
+    cachedEntity.setEtag(ETAG);
+    doReturn(cachedEntity).when(entityDao).get(resourceId);
+
+    // Not modified: the cached entity is kept.
+    handlers.put("/entity.rdf", exchange -> {
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+    });
+    assertEquals(RDF, retriever.refresh(resourceId, new LinkedHashSet<>(Arrays.asList(".rdf"))));
+    assertEquals(Arrays.asList(ETAG), conditionalRequests);
+    verify(entityDao, never()).update(anyString(), any());
+
+    // Modified: the cached entity is replaced.
+    final String newRdf = "<rdf:RDF>new</rdf:RDF>";
+    handlers.put("/entity.rdf", exchange -> {
+      exchange.getResponseHeaders().set("ETag", "\"version-2\"");
+      respond(exchange, 200, "application/rdf+xml", newRdf);
+    });
+    assertEquals(newRdf,
+        retriever.refresh(resourceId, new LinkedHashSet<>(Arrays.asList(".rdf"))));
+    final ArgumentCaptor<OriginalEntity> captor = ArgumentCaptor.forClass(OriginalEntity.class);
+    verify(entityDao).update(eq(resourceId), captor.capture());
+    assertEquals(newRdf, captor.getValue().getXml());
+    assertEquals("\"version-2\"", captor.getValue().getEtag());
+  }
+}
@@ -76,6 +76,19 @@ class VocabularyCandidatesTest {
 
   }
 
+  @Test
+  void findVocabulariesForUrlWithIndex() throws URISyntaxException {
+    final Vocabulary vocabulary = new Vocabulary();
+    vocabulary.setId("v1");
+    vocabulary.setUri("http://dummy.com/path/");
+    final VocabularyIndex index =
+        new VocabularyIndex(() -> Collections.singletonList(vocabulary), null);
+    assertEquals(Collections.singletonList(vocabulary), VocabularyCandidates
+        .findVocabulariesForUrl("http://dummy.com/path/123456", index).getCandidates());
+    assertTrue(VocabularyCandidates.findVocabulariesForUrl("http://dummy.com/other/123456", index)
+        .isEmpty());
+  }
+
   @Test
   void findVocabulariesForUrlWithoutVocabularies() throws URISyntaxException {
 
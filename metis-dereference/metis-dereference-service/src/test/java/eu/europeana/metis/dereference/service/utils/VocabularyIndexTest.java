@@ -0,0 +1,158 @@
+package eu.europeana.metis.dereference.service.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.metis.dereference.Vocabulary;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class VocabularyIndexTest {
+
+  private static Vocabulary createVocabulary(String id, String uri, String... rules) {
+    final Vocabulary vocabulary = new Vocabulary();
+    vocabulary.setId(id);
+    vocabulary.setName("name " + id);
+    vocabulary.setUri(uri);
+    if (rules.length > 0) {
+      vocabulary.setRules(new HashSet<>(Arrays.asList(rules)));
+    }
+    return vocabulary;
+  }
+
+  private static Set<String> findIds(VocabularyIndex index, String resourceId)
+      throws URISyntaxException {
+    return index.findVocabulariesForUrl(resourceId).stream().map(Vocabulary::getId)
+        .collect(Collectors.toSet());
+  }
+
+  @Test
+  void vocabulariesShouldBeMatchedOnUriAndRules() throws URISyntaxException {
+    final List<Vocabulary> vocabularies = Arrays.asList(
+        createVocabulary("c1", "http://dummy.com/complex/path1/", "voc1", "voc2"),
+        createVocabulary("c2", "http://dummy.com/complex/path1/"),
+        createVocabulary("c3", "http://dummy.com/"),
+        createVocabulary("w1", "http://dummy.com/complex/path2/"),
+        createVocabulary("w2", "http://dummy.com/complex/path1/", "voc2"),
+        createVocabulary("w3", "http://other.com/complex/path1/"),
+        createVocabulary("w4", "dummy.com/complex/path1/"));
+    final VocabularyIndex index = new VocabularyIndex(() -> vocabularies, null);
+
+    assertEquals(new HashSet<>(Arrays.asList("c1", "c2", "c3")),
+        findIds(index, "http://dummy.com/complex/path1/voc1/123456"));
+    assertEquals(new HashSet<>(Arrays.asList("c1", "c2", "c3", "w2")),
+        findIds(index, "http://dummy.com/complex/path1/voc2/123456"));
+    assertEquals(Collections.singleton("c3"), findIds(index, "http://dummy.com/other"));
+    assertTrue(findIds(index, "http://unknown.com/complex/path1/voc1").isEmpty());
+
+    assertSame(vocabularies.get(1), index.getById("c2"));
+    assertNull(index.getById("unknown"));
+  }
+
+  @Test
+  void indexShouldBeReloadedWhenInvalidated() throws URISyntaxException {
+    final List<Vocabulary> vocabularies = new ArrayList<>();
+    vocabularies.add(createVocabulary("v1", "http://dummy.com/"));
+    final AtomicInteger loadCount = new AtomicInteger();
+    final VocabularyIndex index = new VocabularyIndex(() -> {
+      loadCount.incrementAndGet();
+      return new ArrayList<>(vocabularies);
+    }, Duration.ofHours(1), Runnable::run);
+
+    assertEquals(Collections.singleton("v1"), findIds(index, "http://dummy.com/1"));
+    vocabularies.add(createVocabulary("v2", "http://dummy.com/"));
+    assertEquals(Collections.singleton("v1"), findIds(index, "http://dummy.com/1"));
+    assertNull(index.getById("v2"));
+    assertEquals(1, loadCount.get());
+
+    index.invalidate();
+    assertEquals(new HashSet<>(Arrays.asList("v1", "v2")), findIds(index, "http://dummy.com/1"));
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  void indexShouldBeReloadedAfterTheRefreshInterval() throws URISyntaxException {
+    final AtomicInteger loadCount = new AtomicInteger();
+    final VocabularyIndex index = new VocabularyIndex(() -> {
+      loadCount.incrementAndGet();
+      return Collections.emptyList();
+    }, Duration.ZERO, Runnable::run);
+    findIds(index, "http://dummy.com/1");
+    findIds(index, "http://dummy.com/1");
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  void staleIndexShouldBeUsedWhileRefreshing() throws URISyntaxException {
+    final List<Vocabulary> vocabularies = new ArrayList<>();
+    vocabularies.add(createVocabulary("v1", "http://dummy.com/"));
+    final AtomicBoolean sourceAvailable = new AtomicBoolean(true);
+    final List<Runnable> reloads = new ArrayList<>();
+    final VocabularyIndex index = new VocabularyIndex(() -> {
+      if (!sourceAvailable.get()) {
+        throw new IllegalStateException("Source is not available.");
+      }
+      return new ArrayList<>(vocabularies);
+    }, Duration.ZERO, reloads::add);
+    assertEquals(Collections.singleton("v1"), findIds(index, "http://dummy.com/1"));
+    assertTrue(reloads.isEmpty());
+
+    // The current index is used until the refresh is done.
+    vocabularies.add(createVocabulary("v2", "http://dummy.com/"));
+    assertEquals(Collections.singleton("v1"), findIds(index, "http://dummy.com/1"));
+    assertNull(index.getById("v2"));
+    assertEquals(1, reloads.size());
+    reloads.remove(0).run();
+    assertEquals(new HashSet<>(Arrays.asList("v1", "v2")), findIds(index, "http://dummy.com/1"));
+    reloads.remove(0).run();
+
+    // If the refresh fails, the current index continues to be used and is not reloaded right away.
+    sourceAvailable.set(false);
+    assertEquals(new HashSet<>(Arrays.asList("v1", "v2")), findIds(index, "http://dummy.com/1"));
+    reloads.remove(0).run();
+    assertEquals(new HashSet<>(Arrays.asList("v1", "v2")), findIds(index, "http://dummy.com/1"));
+    assertTrue(reloads.isEmpty());
+  }
+
+  @Test
+  void invalidationShouldReloadTheIndexRightAway() throws URISyntaxException {
+    final List<Vocabulary> vocabularies = new ArrayList<>();
+    vocabularies.add(createVocabulary("v1", "http://dummy.com/"));
+    final AtomicBoolean sourceAvailable = new AtomicBoolean(true);
+    final List<Runnable> reloads = new ArrayList<>();
+    final VocabularyIndex index = new VocabularyIndex(() -> {
+      if (!sourceAvailable.get()) {
+        throw new IllegalStateException("Source is not available.");
+      }
+      return new ArrayList<>(vocabularies);
+    }, Duration.ofHours(1), reloads::add);
+    assertEquals(Collections.singleton("v1"), findIds(index, "http://dummy.com/1"));
+
+    // The change is visible as soon as the invalidation is done.
+    vocabularies.add(createVocabulary("v2", "http://dummy.com/"));
+    index.invalidate();
+    assertEquals(new HashSet<>(Arrays.asList("v1", "v2")), findIds(index, "http://dummy.com/1"));
+    assertTrue(reloads.isEmpty());
+
+    // If the reload fails, the outdated index is not used.
+    sourceAvailable.set(false);
+    index.invalidate();
+    assertThrows(IllegalStateException.class, () -> findIds(index, "http://dummy.com/1"));
+    sourceAvailable.set(true);
+    assertEquals(new HashSet<>(Arrays.asList("v1", "v2")), findIds(index, "http://dummy.com/1"));
+    assertTrue(reloads.isEmpty());
+  }
+}
@@ -0,0 +1,330 @@
+package eu.europeana.enrichment.rest.client;
+
+import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dereferences resources concurrently on a fixed number of threads, or on the calling threads. This
+ * class is thread-safe and is meant to be shared by all threads that process records:
+ * <ul>
+ * <li>Requests for the same resource that are in progress at the same time (e.g. from different
+ * records that are processed in parallel) are combined: the resource is only dereferenced once.</li>
+ * <li>The number of concurrent requests for resources on the same host is limited, so that one
+ * (slow) vocabulary host can neither be overloaded nor take up all threads: requests for other
+ * hosts can still proceed.</li>
+ * <li>Dereferencing the resources of one record is subject to a deadline.</li>
+ * </ul>
+ */
+class ConcurrentDereferencer {
+
+  private static final AtomicInteger THREAD_POOL_COUNTER = new AtomicInteger();
+
+  /**
+   * Dereferences one resource.
+   */
+  @FunctionalInterface
+  interface DereferenceFunction {
+
+    EnrichmentResultList dereference(String resourceId) throws Exception;
+  }
+
+  private final DereferenceFunction dereferenceFunction;
+  private final ExecutorService executor;
+  private final int maxConcurrentRequestsPerHost;
+  private final Duration recordDeadline;
+  private final Map<String, CompletableFuture<EnrichmentResultList>> requestsInProgress =
+      new ConcurrentHashMap<>();
+  private final Map<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor for dereferencing on the calling thread: the resources of a record are
+   * dereferenced one after the other. There is no limit on the number of concurrent requests per
+   * host (other than the number of calling threads) and no deadline. Requests for the same resource
+   * that are in progress at the same time are still combined.
+   *
+   * @param dereferenceFunction The function that dereferences one resource.
+   */
+  ConcurrentDereferencer(DereferenceFunction dereferenceFunction) {
+    this.dereferenceFunction = dereferenceFunction;
+    this.executor = null;
+    this.maxConcurrentRequestsPerHost = Integer.MAX_VALUE;
+    this.recordDeadline = null;
+  }
+
+  /**
+   * Constructor for dereferencing on a pool of threads. The pool is shut down by {@link
+   * #close()}.
+   *
+   * @param dereferenceFunction The function that dereferences one resource.
+   * @param threadCount The number of threads on which to dereference. The threads are daemon
+   * threads that are created when needed.
+   * @param maxConcurrentRequestsPerHost The maximum number of resources on the same host that are
+   * dereferenced at the same time.
+   * @param recordDeadline The maximum time it may take to dereference the resources of one record.
+   * Can be null, in which case there is no deadline.
+   */
+  ConcurrentDereferencer(DereferenceFunction dereferenceFunction, int threadCount,
+      int maxConcurrentRequestsPerHost, Duration recordDeadline) {
+    if (threadCount < 1 || maxConcurrentRequestsPerHost < 1) {
+      throw new IllegalArgumentException(
+          "The number of threads and of concurrent requests per host must be positive.");
+    }
+    this.dereferenceFunction = dereferenceFunction;
+    this.executor = Executors.newFixedThreadPool(threadCount, createThreadFactory());
+    this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+    this.recordDeadline = recordDeadline;
+  }
+
+  private static ThreadFactory createThreadFactory() {
+    final int poolNumber = THREAD_POOL_COUNTER.incrementAndGet();
+    final AtomicInteger threadCounter = new AtomicInteger();
+    return runnable -> {
+      final Thread thread = new Thread(runnable,
+          "dereference-" + poolNumber + "-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Dereferences the given resources (of one record) and waits for the results.
+   *
+   * @param resourceIds The IDs of the resources. Null values are ignored.
+   * @return The results, in the order of the resource IDs. Resources for which the result is null
+   * are included (with a null value).
+   * @throws DereferenceOrEnrichException In case dereferencing one of the resources failed, or did
+   * not complete before the deadline.
+   */
+  Map<String, EnrichmentResultList> dereference(Collection<String> resourceIds)
+      throws DereferenceOrEnrichException {
+    return waitForResults(startDereferencing(resourceIds));
+  }
+
+  /**
+   * Starts (or joins) dereferencing the given resources without waiting for the results. If there
+   * are no threads, the resources are dereferenced before this method returns. Failures are not
+   * thrown but reported by the returned requests (see {@link #waitForResults(Map)}).
+   *
+   * @param resourceIds The IDs of the resources. Null values are ignored.
+   * @return The requests, in the order of the resource IDs.
+   */
+  Map<String, CompletableFuture<EnrichmentResultList>> startDereferencing(
+      Collection<String> resourceIds) {
+    final Map<String, CompletableFuture<EnrichmentResultList>> requests = new LinkedHashMap<>();
+    for (String resourceId : resourceIds) {
+      if (resourceId != null) {
+        requests.computeIfAbsent(resourceId, this::getOrStartRequest);
+      }
+    }
+    return requests;
+  }
+
+  /**
+   * Returns the deadline for dereferencing the resources of a record, if dereferencing starts now.
+   * Use this to share one deadline between several calls to {@link #waitForResults(Map,
+   * Instant)}.
+   *
+   * @return The deadline. Is null if there is no deadline.
+   */
+  Instant getDeadline() {
+    return recordDeadline == null ? null : Instant.now().plus(recordDeadline);
+  }
+
+  /**
+   * Waits for the given requests (of one record) to complete. The deadline starts when this method
+   * is called.
+   *
+   * @param requests The requests, as returned by {@link #startDereferencing(Collection)}.
+   * @return The results, in the order of the requests. Resources for which the result is null are
+   * included (with a null value).
+   * @throws DereferenceOrEnrichException In case dereferencing one of the resources failed, or did
+   * not complete before the deadline.
+   */
+  Map<String, EnrichmentResultList> waitForResults(
+      Map<String, CompletableFuture<EnrichmentResultList>> requests)
+      throws DereferenceOrEnrichException {
+    return waitForResults(requests, getDeadline());
+  }
+
+  /**
+   * Waits for the given requests (of one record) to complete.
+   *
+   * @param requests The requests, as returned by {@link #startDereferencing(Collection)}.
+   * @param deadline The deadline (see {@link #getDeadline()}). Can be null, in which case there is
+   * no deadline.
+   * @return The results, in the order of the requests. Resources for which the result is null are
+   * included (with a null value).
+   * @throws DereferenceOrEnrichException In case dereferencing one of the resources failed, or did
+   * not complete before the deadline.
+   */
+  Map<String, EnrichmentResultList> waitForResults(
+      Map<String, CompletableFuture<EnrichmentResultList>> requests, Instant deadline)
+      throws DereferenceOrEnrichException {
+
+    // Wait for the requests to complete.
+    final CompletableFuture<Void> allRequests = CompletableFuture
+        .allOf(requests.values().toArray(new CompletableFuture<?>[0]));
+    try {
+      if (deadline == null) {
+        allRequests.get();
+      } else {
+        final long remainingMillis = Math.max(0, Duration.between(Instant.now(), deadline)
+            .toMillis());
+        allRequests.get(remainingMillis, TimeUnit.MILLISECONDS);
+      }
+    } catch (TimeoutException e) {
+      throw new DereferenceOrEnrichException(
+          "Dereferencing did not complete within " + recordDeadline.toMillis() + " ms.", e);
+    } catch (ExecutionException e) {
+      throw new DereferenceOrEnrichException(
+          "Exception occurred while trying to perform dereferencing.", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DereferenceOrEnrichException("Interrupted while dereferencing.", e);
+    }
+
+    // Compile the result.
+    final Map<String, EnrichmentResultList> result = new LinkedHashMap<>();
+    requests.forEach((resourceId, request) -> result.put(resourceId, request.join()));
+    return result;
+  }
+
+  private CompletableFuture<EnrichmentResultList> getOrStartRequest(String resourceId) {
+    final CompletableFuture<EnrichmentResultList> newRequest = new CompletableFuture<>();
+    final CompletableFuture<EnrichmentResultList> existingRequest = requestsInProgress
+        .putIfAbsent(resourceId, newRequest);
+    if (existingRequest != null) {
+      return existingRequest;
+    }
+    final DereferenceTask task = new DereferenceTask(resourceId, newRequest);
+    if (executor == null) {
+      task.run();
+    } else {
+      hostQueues.computeIfAbsent(getHost(resourceId), host -> new HostQueue()).submit(task);
+    }
+    return newRequest;
+  }
+
+  /**
+   * Shuts down the pool of threads (if any). Requests that are being executed are completed. Other
+   * requests (including requests made after this method is called) fail with a {@link
+   * RejectedExecutionException}.
+   */
+  void close() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private static String getHost(String resourceId) {
+    try {
+      final String host = new URI(resourceId).getHost();
+      return host == null ? "" : host;
+    } catch (URISyntaxException e) {
+      return "";
+    }
+  }
+
+  /**
+   * Dereferences one resource and completes the request for it.
+   */
+  private class DereferenceTask implements Runnable {
+
+    private final String resourceId;
+    private final CompletableFuture<EnrichmentResultList> request;
+
+    DereferenceTask(String resourceId, CompletableFuture<EnrichmentResultList> request) {
+      this.resourceId = resourceId;
+      this.request = request;
+    }
+
+    @Override
+    public void run() {
+      try {
+        final EnrichmentResultList result = dereferenceFunction.dereference(resourceId);
+        requestsInProgress.remove(resourceId, request);
+        request.complete(result);
+      } catch (Exception e) {
+        fail(e);
+      }
+    }
+
+    void fail(Exception exception) {
+      requestsInProgress.remove(resourceId, request);
+      request.completeExceptionally(exception);
+    }
+  }
+
+  /**
+   * Queues the tasks for one host: only a limited number of them is executed at the same time. If
+   * the threads are shut down, the task that could not be executed and all waiting tasks fail.
+   */
+  private class HostQueue {
+
+    private final Queue<DereferenceTask> waitingTasks = new ArrayDeque<>();
+    private int activeTaskCount = 0;
+
+    void submit(DereferenceTask task) {
+      synchronized (this) {
+        if (activeTaskCount >= maxConcurrentRequestsPerHost) {
+          waitingTasks.add(task);
+          return;
+        }
+        activeTaskCount++;
+      }
+      execute(task);
+    }
+
+    private void execute(DereferenceTask task) {
+      try {
+        executor.execute(() -> run(task));
+      } catch (RejectedExecutionException e) {
+        final List<DereferenceTask> rejectedTasks = new ArrayList<>();
+        rejectedTasks.add(task);
+        synchronized (this) {
+          activeTaskCount--;
+          rejectedTasks.addAll(waitingTasks);
+          waitingTasks.clear();
+        }
+        rejectedTasks.forEach(rejectedTask -> rejectedTask.fail(e));
+      }
+    }
+
+    private void run(DereferenceTask task) {
+      try {
+        task.run();
+      } finally {
+        final DereferenceTask nextTask;
+        synchronized (this) {
+          nextTask = waitingTasks.poll();
+          if (nextTask == null) {
+            activeTaskCount--;
+          }
+        }
+        if (nextTask != null) {
+          execute(nextTask);
+        }
+      }
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package eu.europeana.enrichment.rest.client;
 
+import eu.europeana.enrichment.api.external.model.DereferenceResultList;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
 import eu.europeana.metis.RestEndpoints;
 import eu.europeana.metis.dereference.Vocabulary;
@@ -8,9 +9,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -166,6 +170,52 @@ public class DereferenceClient {
         .getBody();
   }
 
+  /**
+   * Dereference multiple entities in one request. The dereference service resolves them in
+   * parallel.
+   *
+   * @param resourceIds the resource IDs (URIs) to dereference. Cannot be or contain null. The
+   * service accepts a limited number of resource IDs per request.
+   * @return The referenced responses, keyed by resource ID, in the order of the resource IDs.
+   * Resource IDs that are not HTTP(S) URIs are mapped to null (and are not sent to the service).
+   */
+  public Map<String, EnrichmentResultList> dereference(Collection<String> resourceIds) {
+    if (resourceIds == null) {
+      throw new IllegalArgumentException("Parameter resourceIds cannot be null.");
+    }
+
+    // Find the resource IDs with the right scheme.
+    final Map<String, EnrichmentResultList> result = new LinkedHashMap<>();
+    final List<String> resourceIdsToSend = new ArrayList<>();
+    for (String resourceId : resourceIds) {
+      if (resourceId == null) {
+        throw new IllegalArgumentException("Parameter resourceIds cannot contain null.");
+      }
+      result.put(resourceId, null);
+      if (resourceId.startsWith("http")) {
+        resourceIdsToSend.add(resourceId);
+      }
+    }
+    if (resourceIdsToSend.isEmpty()) {
+      return result;
+    }
+
+    // Execute the dereference call.
+    final HttpHeaders headers = new HttpHeaders();
+    headers.setAccept(Arrays.asList(MediaType.APPLICATION_XML));
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    final HttpEntity<List<String>> entity = new HttpEntity<>(resourceIdsToSend, headers);
+    final DereferenceResultList resultList = restTemplate
+        .exchange(hostUrl + RestEndpoints.DEREFERENCE_BATCH, HttpMethod.POST, entity,
+            DereferenceResultList.class).getBody();
+    if (resultList != null) {
+      resultList.getResults().forEach(
+          dereferenceResult -> result.put(dereferenceResult.getResourceId(),
+              dereferenceResult.getResult()));
+    }
+    return result;
+  }
+
   void setRestTemplate(RestTemplate restTemplate) {
     this.restTemplate = restTemplate;
   }
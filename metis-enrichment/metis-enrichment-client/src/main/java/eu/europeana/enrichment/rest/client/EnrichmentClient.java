@@ -2,10 +2,12 @@ package eu.europeana.enrichment.rest.client;
 
 import static eu.europeana.metis.RestEndpoints.ENRICHMENT_BYURI;
 import static eu.europeana.metis.RestEndpoints.ENRICHMENT_ENRICH;
+import static eu.europeana.metis.RestEndpoints.ENRICHMENT_ENRICH_BATCH;
 
 import eu.europeana.enrichment.api.exceptions.UnknownException;
 import eu.europeana.enrichment.api.external.InputValueList;
 import eu.europeana.enrichment.api.external.model.EnrichmentBase;
+import eu.europeana.enrichment.api.external.model.EnrichmentResultBatch;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
 import eu.europeana.enrichment.utils.InputValue;
 import java.io.UnsupportedEncodingException;
@@ -58,6 +60,25 @@ public class EnrichmentClient {
     }
   }
 
+  /**
+   * Enrich REST call invocation that keeps the enrichments of the values apart.
+   *
+   * @param values The values to be enriched
+   * @return The enrichments generated for the input values: one list for each value, in the same
+   * order as the values
+   */
+  public EnrichmentResultBatch enrichBatch(List<InputValue> values) {
+    InputValueList inList = new InputValueList();
+    inList.setInputValues(values);
+
+    try {
+      return template.postForObject(endpoint + ENRICHMENT_ENRICH_BATCH, inList,
+          EnrichmentResultBatch.class);
+    } catch (RestClientException e) {
+      throw new UnknownException("Enrichment client call failed.", e);
+    }
+  }
+
   /**
    * Get enrichment information based on a specified URI.
    *
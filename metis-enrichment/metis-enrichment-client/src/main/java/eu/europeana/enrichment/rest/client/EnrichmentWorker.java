@@ -1,7 +1,9 @@
 package eu.europeana.enrichment.rest.client;
 
+import eu.europeana.corelib.definitions.jibx.ProvidedCHOType;
 import eu.europeana.corelib.definitions.jibx.RDF;
 import eu.europeana.enrichment.api.external.model.EnrichmentBase;
+import eu.europeana.enrichment.api.external.model.EnrichmentResultBatch;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
 import eu.europeana.enrichment.utils.DereferenceUtils;
 import eu.europeana.enrichment.utils.EnrichmentUtils;
@@ -9,15 +11,24 @@ import eu.europeana.enrichment.utils.EntityMergeEngine;
 import eu.europeana.enrichment.utils.InputValue;
 import eu.europeana.enrichment.utils.RdfConversionUtils;
 import eu.europeana.metis.utils.ExternalRequestUtil;
+import java.io.Closeable;
 import java.io.UnsupportedEncodingException;
 import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import java.util.function.ObjIntConsumer;
 import org.apache.commons.collections.CollectionUtils;
 import org.jibx.runtime.JiBXException;
@@ -30,11 +41,12 @@ import org.springframework.web.client.HttpServerErrorException;
  *
  * @author jochen
  */
-public class EnrichmentWorker {
+public class EnrichmentWorker implements Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(EnrichmentWorker.class);
   private static final int EXTERNAL_CALL_MAX_RETRIES = 30;
   private static final int EXTERNAL_CALL_PERIOD_BETWEEN_RETRIES_IN_MILLIS = 1000;
+  private static final int MAX_VALUES_PER_ENRICHMENT_REQUEST = 1000;
   private static final Map<Class<?>, String> mapWithRetrieableExceptions;
 
   static {
@@ -47,6 +59,7 @@ public class EnrichmentWorker {
   private final EnrichmentClient enrichmentClient;
   private final DereferenceClient dereferenceClient;
   private final EntityMergeEngine entityMergeEngine;
+  private final ConcurrentDereferencer dereferencer;
 
   /**
    * Contains the Modes that are allowed for enrichment.
@@ -56,7 +69,7 @@ public class EnrichmentWorker {
   }
 
   /**
-   * Constructor.
+   * Constructor. The resources of a record are dereferenced on the calling thread.
    *
    * @param dereferenceUrl The URL of the dereference service.
    * @param enrichmentUrl The URL of the enrichment service.
@@ -67,7 +80,29 @@ public class EnrichmentWorker {
   }
 
   /**
-   * Constructor.
+   * Constructor with settings for concurrent dereferencing. The resources of a record are
+   * dereferenced on a pool of threads that is shared by all records processed by this worker.
+   * Resources that are requested by multiple records at the same time are dereferenced only once.
+   * The pool of threads is shut down by {@link #close()}.
+   *
+   * @param dereferenceUrl The URL of the dereference service.
+   * @param enrichmentUrl The URL of the enrichment service.
+   * @param dereferenceThreadCount The number of threads on which to dereference.
+   * @param maxConcurrentDereferenceRequestsPerHost The maximum number of resources on the same
+   * host that are dereferenced at the same time.
+   * @param dereferenceDeadlinePerRecord The maximum time it may take to dereference the resources
+   * of one record (including retries), after which processing of the record fails. Can be null, in
+   * which case there is no deadline.
+   */
+  public EnrichmentWorker(String dereferenceUrl, String enrichmentUrl, int dereferenceThreadCount,
+      int maxConcurrentDereferenceRequestsPerHost, Duration dereferenceDeadlinePerRecord) {
+    this(new DereferenceClient(dereferenceUrl), new EnrichmentClient(enrichmentUrl),
+        new EntityMergeEngine(), dereferenceThreadCount, maxConcurrentDereferenceRequestsPerHost,
+        dereferenceDeadlinePerRecord);
+  }
+
+  /**
+   * Constructor. The resources of a record are dereferenced on the calling thread.
    *
    * @param dereferenceClient The dereference client.
    * @param enrichmentClient The enrichment client.
@@ -78,6 +113,38 @@ public class EnrichmentWorker {
     this.dereferenceClient = dereferenceClient;
     this.enrichmentClient = enrichmentClient;
     this.entityMergeEngine = entityMergeEngine;
+    this.dereferencer = new ConcurrentDereferencer(this::dereferenceWithRetries);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param dereferenceClient The dereference client.
+   * @param enrichmentClient The enrichment client.
+   * @param entityMergeEngine The engine to be used for merging entities into the RDF.
+   * @param dereferenceThreadCount The number of threads on which to dereference.
+   * @param maxConcurrentDereferenceRequestsPerHost The maximum number of resources on the same
+   * host that are dereferenced at the same time.
+   * @param dereferenceDeadlinePerRecord The maximum time it may take to dereference the resources
+   * of one record. Can be null.
+   */
+  EnrichmentWorker(DereferenceClient dereferenceClient, EnrichmentClient enrichmentClient,
+      EntityMergeEngine entityMergeEngine, int dereferenceThreadCount,
+      int maxConcurrentDereferenceRequestsPerHost, Duration dereferenceDeadlinePerRecord) {
+    this.dereferenceClient = dereferenceClient;
+    this.enrichmentClient = enrichmentClient;
+    this.entityMergeEngine = entityMergeEngine;
+    this.dereferencer = new ConcurrentDereferencer(this::dereferenceWithRetries,
+        dereferenceThreadCount, maxConcurrentDereferenceRequestsPerHost,
+        dereferenceDeadlinePerRecord);
+  }
+
+  /**
+   * Shuts down the pool of threads on which resources are dereferenced (if any).
+   */
+  @Override
+  public void close() {
+    dereferencer.close();
   }
 
   /**
@@ -163,6 +230,57 @@ public class EnrichmentWorker {
     return rdf;
   }
 
+  /**
+   * Performs dereference and enrichment on a batch of input RDFs to produce target RDFs. This
+   * yields the same result as calling {@link #process(RDF, Mode)} for each RDF, but is more
+   * efficient for large numbers of records:
+   * <ul>
+   * <li>The values to enrich are collected from all RDFs and deduplicated, and then enriched in
+   * one or a few calls to the enrichment service (depending on the number of distinct values).</li>
+   * <li>Each resource is dereferenced only once for all RDFs in the batch, and the resources of
+   * all RDFs are dereferenced at the same time (if this worker dereferences on a pool of
+   * threads).</li>
+   * </ul>
+   *
+   * @param rdfs The RDFs to be processed.
+   * @param mode The processing mode to be applied.
+   * @return The processed RDFs, in the same order. Note: these will be the same objects as the
+   * input objects.
+   * @throws DereferenceOrEnrichException In case something goes wrong. If dereferencing fails for
+   * some of the RDFs, the message lists all of these RDFs (by index and record ID).
+   */
+  public List<RDF> process(final List<RDF> rdfs, Mode mode) throws DereferenceOrEnrichException {
+
+    // Sanity checks
+    if (rdfs == null || rdfs.contains(null)) {
+      throw new IllegalArgumentException("Input RDFs cannot be null.");
+    }
+    if (mode == null) {
+      throw new IllegalArgumentException("Mode cannot be null.");
+    }
+
+    // Preparation
+    LOGGER.info("Received {} RDFs for enrichment/dereferencing. Mode: {}", rdfs.size(), mode);
+
+    // Dereferencing
+    if (Mode.DEREFERENCE_AND_ENRICHMENT == mode || Mode.DEREFERENCE_ONLY == mode) {
+      LOGGER.debug("Performing dereferencing...");
+      performDereferencing(rdfs);
+      LOGGER.debug("Dereferencing completed.");
+    }
+
+    // Enrichment
+    if (Mode.DEREFERENCE_AND_ENRICHMENT == mode || Mode.ENRICHMENT_ONLY == mode) {
+      LOGGER.debug("Performing enrichment...");
+      performEnrichment(rdfs);
+      LOGGER.debug("Enrichment completed.");
+    }
+
+    // Done
+    LOGGER.debug("Processing complete.");
+    return rdfs;
+  }
+
   private String convertRdfToStringForLogging(final RDF rdf) {
     try {
       return convertRdfToString(rdf);
@@ -215,11 +333,78 @@ public class EnrichmentWorker {
     }
   }
 
+  private void performEnrichment(final List<RDF> rdfs) throws DereferenceOrEnrichException {
+
+    // [1] Extract fields from the RDFs for enrichment, keeping only one copy of each value.
+    LOGGER.debug("Extracting fields from RDFs for enrichment...");
+    final Map<InputValueKey, Integer> distinctValueIndices = new HashMap<>();
+    final List<InputValue> distinctValues = new ArrayList<>();
+    final List<Set<Integer>> valueIndicesPerRdf = new ArrayList<>(rdfs.size());
+    for (RDF rdf : rdfs) {
+      final Set<Integer> valueIndices = new LinkedHashSet<>();
+      final List<InputValue> fieldsForEnrichment = extractFieldsForEnrichment(rdf);
+      for (InputValue value : CollectionUtils.isEmpty(fieldsForEnrichment)
+          ? Collections.<InputValue>emptyList() : fieldsForEnrichment) {
+        valueIndices.add(distinctValueIndices.computeIfAbsent(new InputValueKey(value), key -> {
+          distinctValues.add(value);
+          return distinctValues.size() - 1;
+        }));
+      }
+      valueIndicesPerRdf.add(valueIndices);
+    }
+    LOGGER.debug("Extracted {} distinct values from {} RDFs.", distinctValues.size(), rdfs.size());
+
+    // [2] Get the information with which to enrich the RDFs using the extracted fields
+    LOGGER.debug("Using extracted fields to gather enrichment information...");
+    final List<EnrichmentResultList> enrichmentInformation = enrichFieldsInBatches(distinctValues);
+
+    // [3] Merge the acquired information into each RDF and set the additional field values.
+    LOGGER.debug("Merging Enrichment Information...");
+    for (int i = 0; i < rdfs.size(); i++) {
+      final List<EnrichmentBase> rdfEnrichmentInformation = valueIndicesPerRdf.get(i).stream()
+          .map(enrichmentInformation::get).filter(Objects::nonNull)
+          .map(EnrichmentResultList::getResult).filter(Objects::nonNull).flatMap(List::stream)
+          .collect(Collectors.toList());
+      if (!rdfEnrichmentInformation.isEmpty()) {
+        entityMergeEngine.mergeEntities(rdfs.get(i), rdfEnrichmentInformation);
+      }
+      EnrichmentUtils.setAdditionalData(rdfs.get(i));
+    }
+    LOGGER.debug("Enrichment completed.");
+  }
+
+  private List<EnrichmentResultList> enrichFieldsInBatches(List<InputValue> fieldsForEnrichment)
+      throws DereferenceOrEnrichException {
+    final List<EnrichmentResultList> result = new ArrayList<>(fieldsForEnrichment.size());
+    for (int from = 0; from < fieldsForEnrichment.size();
+        from += MAX_VALUES_PER_ENRICHMENT_REQUEST) {
+      final List<InputValue> batch = fieldsForEnrichment.subList(from,
+          Math.min(from + MAX_VALUES_PER_ENRICHMENT_REQUEST, fieldsForEnrichment.size()));
+      final EnrichmentResultBatch batchResult;
+      try {
+        batchResult = ExternalRequestUtil
+            .retryableExternalRequest(() -> enrichmentClient.enrichBatch(batch),
+                mapWithRetrieableExceptions, EXTERNAL_CALL_MAX_RETRIES,
+                EXTERNAL_CALL_PERIOD_BETWEEN_RETRIES_IN_MILLIS);
+      } catch (Exception e) {
+        throw new DereferenceOrEnrichException(
+            "Exception occurred while trying to perform enrichment.", e);
+      }
+      if (batchResult == null || batchResult.getResults().size() != batch.size()) {
+        throw new DereferenceOrEnrichException(String.format(
+            "Enrichment of %d values did not return one result for each value.", batch.size()),
+            null);
+      }
+      result.addAll(batchResult.getResults());
+    }
+    return result;
+  }
+
   private void performDereferencing(final RDF rdf) throws DereferenceOrEnrichException {
 
     // [1] Extract fields from the RDF for dereferencing
     LOGGER.debug(" Extracting fields from RDF for dereferencing...");
-    Set<String> resourceIds = extractValuesForDereferencing(rdf);
+    final Set<String> resourceIds = extractValuesForDereferencing(rdf);
     if (LOGGER.isDebugEnabled()) {
       logExtractionResult(resourceIds, EnrichmentWorker::logStringWithCounter);
     }
@@ -227,47 +412,82 @@ public class EnrichmentWorker {
     // [2] Get the information with which to enrich (via dereferencing) the RDF using the extracted
     // fields
     LOGGER.debug("Using extracted fields to gather enrichment-via-dereferencing information...");
-    List<EnrichmentResultList> dereferenceInformation = dereferenceFields(resourceIds);
+    final Map<String, EnrichmentResultList> dereferenceResults = dereferencer
+        .dereference(resourceIds);
+
+    // [3] Merge the acquired information into the RDF
+    mergeDereferenceResults(rdf, dereferenceResults);
+  }
+
+  private void performDereferencing(final List<RDF> rdfs) throws DereferenceOrEnrichException {
+
+    // [1] Extract fields from the RDFs for dereferencing and start dereferencing all of them. As
+    // the resources of all RDFs are dereferenced at the same time, they share the same deadline.
+    LOGGER.debug("Extracting fields from RDFs for dereferencing...");
+    final List<Set<String>> resourceIdsPerRdf = rdfs.stream()
+        .map(this::extractValuesForDereferencing).collect(Collectors.toList());
+    final Instant deadline = dereferencer.getDeadline();
+    final Map<String, CompletableFuture<EnrichmentResultList>> requests = dereferencer
+        .startDereferencing(resourceIdsPerRdf.stream().flatMap(Set::stream)
+            .collect(Collectors.toCollection(LinkedHashSet::new)));
+
+    // [2] Merge the acquired information into each RDF, keeping track of the RDFs that failed.
+    final List<String> failures = new ArrayList<>();
+    DereferenceOrEnrichException firstFailure = null;
+    for (int i = 0; i < rdfs.size(); i++) {
+      final Map<String, CompletableFuture<EnrichmentResultList>> rdfRequests =
+          new LinkedHashMap<>();
+      resourceIdsPerRdf.get(i).stream().filter(Objects::nonNull)
+          .forEach(resourceId -> rdfRequests.put(resourceId, requests.get(resourceId)));
+      try {
+        mergeDereferenceResults(rdfs.get(i),
+            dereferencer.waitForResults(rdfRequests, deadline));
+      } catch (DereferenceOrEnrichException e) {
+        LOGGER.warn("Dereferencing failed for record {} ({}).", i, getRecordId(rdfs.get(i)), e);
+        failures.add(String.format("record %d (%s): %s", i, getRecordId(rdfs.get(i)),
+            e.getCause() == null ? e.getMessage() : e.getCause().getMessage()));
+        firstFailure = firstFailure == null ? e : firstFailure;
+      }
+    }
+    if (firstFailure != null) {
+      throw new DereferenceOrEnrichException(String.format(
+          "Dereferencing failed for %d of %d records: %s", failures.size(), rdfs.size(),
+          String.join("; ", failures)), firstFailure);
+    }
+  }
+
+  private void mergeDereferenceResults(final RDF rdf,
+      Map<String, EnrichmentResultList> dereferenceResults) {
+    final List<EnrichmentResultList> dereferenceInformation = new ArrayList<>();
+    dereferenceResults.forEach((resourceId, result) -> {
+      if (result == null || result.getResult() == null || result.getResult().isEmpty()) {
+        LOGGER.debug("==== Null or empty value received for reference {}", resourceId);
+      } else {
+        dereferenceInformation.add(result);
+      }
+    });
     if (LOGGER.isDebugEnabled()) {
       logDereferencingOrEnrichmentResult(dereferenceInformation);
     }
-
-    // [3] Merge the acquired information into the RDF
     LOGGER.debug("Merging Dereference Information...");
     for (EnrichmentResultList dereferenceResultList : dereferenceInformation) {
-      if (dereferenceResultList != null && dereferenceResultList.getResult() != null
-          && !dereferenceResultList.getResult().isEmpty()) {
-        entityMergeEngine.mergeEntities(rdf, dereferenceResultList.getResult());
-      }
+      entityMergeEngine.mergeEntities(rdf, dereferenceResultList.getResult());
     }
     LOGGER.debug("Dereference completed.");
   }
 
-  private List<EnrichmentResultList> dereferenceFields(Set<String> resourceIds)
-      throws DereferenceOrEnrichException {
-    List<EnrichmentResultList> dereferenceInformation = new ArrayList<>();
-    try {
-      for (String resourceId : resourceIds) {
-        if (resourceId == null) {
-          continue;
-        }
-        LOGGER.debug("== Processing {}", resourceId);
-        EnrichmentResultList result =
-            ExternalRequestUtil
-                .retryableExternalRequest(() -> dereferenceClient.dereference(resourceId),
-                    mapWithRetrieableExceptions, EXTERNAL_CALL_MAX_RETRIES,
-                    EXTERNAL_CALL_PERIOD_BETWEEN_RETRIES_IN_MILLIS);
-        if (result == null || result.getResult() == null || result.getResult().isEmpty()) {
-          LOGGER.debug("==== Null or empty value received for reference {}", resourceId);
-        } else {
-          dereferenceInformation.add(result);
-        }
-      }
-    } catch (Exception e) {
-      throw new DereferenceOrEnrichException(
-          "Exception occurred while trying to perform dereferencing.", e);
-    }
-    return dereferenceInformation;
+  private static String getRecordId(RDF rdf) {
+    return Optional.ofNullable(rdf.getProvidedCHOList()).flatMap(
+        providedChos -> providedChos.stream().filter(Objects::nonNull).findFirst())
+        .map(ProvidedCHOType::getAbout).orElse("unknown record ID");
+  }
+
+  private EnrichmentResultList dereferenceWithRetries(String resourceId) throws Exception {
+    LOGGER.debug("== Processing {}", resourceId);
+    return ExternalRequestUtil
+        .retryableExternalRequest(() -> dereferenceClient.dereference(resourceId),
+            mapWithRetrieableExceptions, EXTERNAL_CALL_MAX_RETRIES,
+            EXTERNAL_CALL_PERIOD_BETWEEN_RETRIES_IN_MILLIS);
   }
 
   private static void logStringWithCounter(String field, int count) {
@@ -320,6 +540,41 @@ public class EnrichmentWorker {
     }
   }
 
+  /**
+   * Identifies an input value for the purpose of deduplication. The original field is not
+   * considered as it does not influence the enrichment result.
+   */
+  private static class InputValueKey {
+
+    private final String value;
+    private final String language;
+    private final List<?> vocabularies;
+
+    InputValueKey(InputValue inputValue) {
+      this.value = inputValue.getValue();
+      this.language = inputValue.getLanguage();
+      this.vocabularies = inputValue.getVocabularies();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (other == null || getClass() != other.getClass()) {
+        return false;
+      }
+      final InputValueKey that = (InputValueKey) other;
+      return Objects.equals(value, that.value) && Objects.equals(language, that.language)
+          && Objects.equals(vocabularies, that.vocabularies);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(value, language, vocabularies);
+    }
+  }
+
   List<InputValue> extractFieldsForEnrichment(RDF rdf) {
     return EnrichmentUtils.extractFieldsForEnrichmentFromRDF(rdf);
   }
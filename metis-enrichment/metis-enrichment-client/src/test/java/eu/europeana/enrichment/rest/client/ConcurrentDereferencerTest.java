@@ -0,0 +1,218 @@
+package eu.europeana.enrichment.rest.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentDereferencerTest {
+
+  @Test
+  public void resultsShouldBeReturnedInOrder() throws DereferenceOrEnrichException {
+    final Map<String, EnrichmentResultList> results = new ConcurrentHashMap<>();
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      final EnrichmentResultList result = new EnrichmentResultList();
+      results.put(resourceId, result);
+      return result;
+    }, 4, 4, null);
+
+    final List<String> resourceIds = Arrays.asList("http://a.org/3", "http://b.org/1", null,
+        "http://a.org/2", "http://a.org/3");
+    final Map<String, EnrichmentResultList> result = dereferencer.dereference(resourceIds);
+    assertEquals(Arrays.asList("http://a.org/3", "http://b.org/1", "http://a.org/2"),
+        new ArrayList<>(result.keySet()));
+    result.forEach((resourceId, list) -> assertSame(results.get(resourceId), list));
+  }
+
+  @Test
+  public void concurrentRequestsForTheSameResourceShouldBeCombined() throws Exception {
+    final AtomicInteger callCount = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      callCount.incrementAndGet();
+      started.countDown();
+      release.await();
+      return new EnrichmentResultList();
+    }, 4, 4, null);
+
+    final ExecutorService records = Executors.newFixedThreadPool(2);
+    try {
+      final List<String> resourceIds = Collections.singletonList("http://a.org/1");
+      final Future<Map<String, EnrichmentResultList>> first = records
+          .submit(() -> dereferencer.dereference(resourceIds));
+      started.await(5, TimeUnit.SECONDS);
+      final Future<Map<String, EnrichmentResultList>> second = records
+          .submit(() -> dereferencer.dereference(resourceIds));
+      Thread.sleep(100);
+      release.countDown();
+      assertSame(first.get(5, TimeUnit.SECONDS).get("http://a.org/1"),
+          second.get(5, TimeUnit.SECONDS).get("http://a.org/1"));
+      assertEquals(1, callCount.get());
+    } finally {
+      records.shutdownNow();
+    }
+  }
+
+  @Test
+  public void concurrentRequestsPerHostShouldBeLimited() throws DereferenceOrEnrichException {
+    final Map<String, AtomicInteger> activeRequests = new ConcurrentHashMap<>();
+    final Map<String, AtomicInteger> maxActiveRequests = new ConcurrentHashMap<>();
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      final String host = resourceId.substring(0, resourceId.lastIndexOf('/'));
+      final int active = activeRequests.computeIfAbsent(host, key -> new AtomicInteger())
+          .incrementAndGet();
+      maxActiveRequests.computeIfAbsent(host, key -> new AtomicInteger())
+          .accumulateAndGet(active, Math::max);
+      Thread.sleep(20);
+      activeRequests.get(host).decrementAndGet();
+      return new EnrichmentResultList();
+    }, 8, 2, null);
+
+    final List<String> resourceIds = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      resourceIds.add("http://a.org/" + i);
+      resourceIds.add("http://b.org/" + i);
+    }
+    assertEquals(20, dereferencer.dereference(resourceIds).size());
+    assertEquals(2, maxActiveRequests.get("http://a.org").get());
+    assertEquals(2, maxActiveRequests.get("http://b.org").get());
+  }
+
+  @Test
+  public void slowRequestsShouldNotExceedTheDeadline() throws DereferenceOrEnrichException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      if (resourceId.startsWith("http://slow.org")) {
+        release.await();
+      }
+      return new EnrichmentResultList();
+    }, 2, 1, Duration.ofMillis(200));
+    try {
+      final DereferenceOrEnrichException exception = assertThrows(
+          DereferenceOrEnrichException.class, () -> dereferencer
+              .dereference(Arrays.asList("http://slow.org/1", "http://fast.org/1")));
+      assertTrue(exception.getMessage().contains("200 ms"));
+
+      // Other hosts are not affected by the slow host.
+      assertEquals(1, dereferencer.dereference(Collections.singletonList("http://fast.org/2"))
+          .size());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void recordsShouldShareTheDeadline() {
+    final CountDownLatch release = new CountDownLatch(1);
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      release.await();
+      return new EnrichmentResultList();
+    }, 4, 4, Duration.ofMillis(200));
+    try {
+      final Map<String, CompletableFuture<EnrichmentResultList>> requests = dereferencer
+          .startDereferencing(Arrays.asList("http://a.org/1", "http://b.org/1", "http://c.org/1"));
+      final Instant deadline = dereferencer.getDeadline();
+
+      // Waiting for the records one by one should not take longer than one deadline.
+      final long startTime = System.nanoTime();
+      for (Map.Entry<String, CompletableFuture<EnrichmentResultList>> request : requests
+          .entrySet()) {
+        assertThrows(DereferenceOrEnrichException.class, () -> dereferencer.waitForResults(
+            Collections.singletonMap(request.getKey(), request.getValue()), deadline));
+      }
+      assertTrue(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(500));
+    } finally {
+      release.countDown();
+      dereferencer.close();
+    }
+  }
+
+  @Test
+  public void failuresShouldBeReported() {
+    final IllegalStateException failure = new IllegalStateException();
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      throw failure;
+    }, 1, 1, null);
+    final DereferenceOrEnrichException exception = assertThrows(DereferenceOrEnrichException.class,
+        () -> dereferencer.dereference(Collections.singletonList("http://a.org/1")));
+    assertSame(failure, exception.getCause());
+  }
+
+  @Test
+  public void withoutThreadsResourcesShouldBeDereferencedOnTheCallingThread()
+      throws DereferenceOrEnrichException {
+    final List<Thread> threads = new ArrayList<>();
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      threads.add(Thread.currentThread());
+      return new EnrichmentResultList();
+    });
+    final Map<String, EnrichmentResultList> result = dereferencer
+        .dereference(Arrays.asList("http://a.org/1", "http://a.org/2"));
+    assertEquals(2, result.size());
+    assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), threads);
+    dereferencer.close();
+  }
+
+  @Test
+  public void closeShouldShutDownTheThreads() throws DereferenceOrEnrichException {
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(
+        resourceId -> new EnrichmentResultList(), 2, 2, null);
+    dereferencer.dereference(Collections.singletonList("http://a.org/1"));
+    dereferencer.close();
+
+    // Requests after closing fail (also when they are repeated) instead of waiting forever.
+    for (int i = 0; i < 2; i++) {
+      final DereferenceOrEnrichException exception = assertThrows(
+          DereferenceOrEnrichException.class,
+          () -> dereferencer.dereference(Collections.singletonList("http://a.org/2")));
+      assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  @Test
+  public void waitingRequestsShouldFailAfterClosing() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ConcurrentDereferencer dereferencer = new ConcurrentDereferencer(resourceId -> {
+      started.countDown();
+      release.await();
+      return new EnrichmentResultList();
+    }, 2, 1, null);
+
+    // The first request is executed, the others wait for it (as they are for the same host).
+    final Map<String, CompletableFuture<EnrichmentResultList>> requests = dereferencer
+        .startDereferencing(Arrays.asList("http://a.org/1", "http://a.org/2", "http://a.org/3"));
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    dereferencer.close();
+    release.countDown();
+
+    // The executed request completes, the waiting ones fail.
+    assertTrue(requests.get("http://a.org/1").get(10, TimeUnit.SECONDS) != null);
+    for (String resourceId : Arrays.asList("http://a.org/2", "http://a.org/3")) {
+      final ExecutionException exception = assertThrows(ExecutionException.class,
+          () -> requests.get(resourceId).get(10, TimeUnit.SECONDS));
+      assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+  }
+}
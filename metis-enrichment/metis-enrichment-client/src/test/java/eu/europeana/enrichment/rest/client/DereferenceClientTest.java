@@ -1,7 +1,11 @@
 package eu.europeana.enrichment.rest.client;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
@@ -10,10 +14,17 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import eu.europeana.enrichment.api.external.model.Agent;
+import eu.europeana.enrichment.api.external.model.DereferenceResult;
+import eu.europeana.enrichment.api.external.model.DereferenceResultList;
 import eu.europeana.enrichment.api.external.model.EnrichmentBase;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
+import eu.europeana.metis.RestEndpoints;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
@@ -60,4 +71,42 @@ public class DereferenceClientTest {
 	    assertEquals(res.getResult().get(0).getAbout(), agent1.getAbout());
 	    assertEquals(res.getResult().get(1).getAbout(), agent2.getAbout());
 	}
+
+	@Test
+	public void testDereferenceBatch() {
+		Agent agent = new Agent();
+		agent.setAbout("http://dummy1");
+		DereferenceResultList resultList = new DereferenceResultList(Arrays.asList(
+				new DereferenceResult("http://dummy1",
+						new EnrichmentResultList(Collections.singletonList(agent))),
+				new DereferenceResult("http://dummy2", new EnrichmentResultList())));
+
+		final RestTemplate restTemplate = mock(RestTemplate.class);
+		doReturn(new ResponseEntity<>(resultList, HttpStatus.OK)).when(restTemplate).exchange(
+				eq("dummyId" + RestEndpoints.DEREFERENCE_BATCH), eq(HttpMethod.POST),
+				any(HttpEntity.class), eq(DereferenceResultList.class));
+		final DereferenceClient dereferenceClient = new DereferenceClient("dummyId");
+		dereferenceClient.setRestTemplate(restTemplate);
+
+		Map<String, EnrichmentResultList> res = dereferenceClient
+				.dereference(Arrays.asList("http://dummy2", "dummy3", "http://dummy1"));
+
+		assertEquals(Arrays.asList("http://dummy2", "dummy3", "http://dummy1"),
+				new ArrayList<>(res.keySet()));
+		assertEquals(agent.getAbout(), res.get("http://dummy1").getResult().get(0).getAbout());
+		assertTrue(res.get("http://dummy2").getResult().isEmpty());
+		assertNull(res.get("dummy3"));
+		verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.POST),
+				any(HttpEntity.class), eq(DereferenceResultList.class));
+	}
+
+	@Test
+	public void testDereferenceBatchWithNullResourceId() {
+		final DereferenceClient dereferenceClient = new DereferenceClient("dummyId");
+		dereferenceClient.setRestTemplate(mock(RestTemplate.class));
+		assertThrows(IllegalArgumentException.class, () -> dereferenceClient
+				.dereference(Arrays.asList("http://dummy", null)));
+		assertThrows(IllegalArgumentException.class,
+				() -> dereferenceClient.dereference((Collection<String>) null));
+	}
 }
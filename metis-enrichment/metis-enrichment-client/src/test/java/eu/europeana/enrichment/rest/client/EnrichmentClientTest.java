@@ -1,6 +1,7 @@
 package eu.europeana.enrichment.rest.client;
 
 import static eu.europeana.metis.RestEndpoints.ENRICHMENT_ENRICH;
+import static eu.europeana.metis.RestEndpoints.ENRICHMENT_ENRICH_BATCH;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.AdditionalMatchers.not;
@@ -17,10 +18,12 @@ import eu.europeana.enrichment.api.exceptions.UnknownException;
 import eu.europeana.enrichment.api.external.InputValueList;
 import eu.europeana.enrichment.api.external.model.Agent;
 import eu.europeana.enrichment.api.external.model.EnrichmentBase;
+import eu.europeana.enrichment.api.external.model.EnrichmentResultBatch;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
 import eu.europeana.enrichment.utils.InputValue;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpEntity;
@@ -78,6 +81,29 @@ public class EnrichmentClientTest {
     assertThrows(UnknownException.class, () -> enrichmentClient.enrich(values));
   }
 
+  @Test
+  public void testEnrichBatch() {
+    Agent agent = new Agent();
+    agent.setAbout("Test Agent");
+
+    EnrichmentResultBatch result = new EnrichmentResultBatch(Arrays.asList(
+        new EnrichmentResultList(), new EnrichmentResultList(Arrays.asList(agent))));
+
+    final RestTemplate restTemplate = mock(RestTemplate.class);
+    doReturn(result).when(restTemplate)
+        .postForObject(eq("http://dummy" + ENRICHMENT_ENRICH_BATCH), any(InputValueList.class),
+            eq(EnrichmentResultBatch.class));
+
+    final EnrichmentClient enrichmentClient = new EnrichmentClient("http://dummy");
+    enrichmentClient.setRestTemplate(restTemplate);
+
+    List<InputValue> values = new ArrayList<>();
+    EnrichmentResultBatch res = enrichmentClient.enrichBatch(values);
+
+    assertEquals(2, res.getResults().size());
+    assertEquals(agent.getAbout(), res.getResults().get(1).getResult().get(0).getAbout());
+  }
+
   @Test
   public void testGetByUri() {
     Agent agent = new Agent();
@@ -3,10 +3,13 @@ package eu.europeana.enrichment.rest.client;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -15,6 +18,7 @@ import static org.mockito.Mockito.verify;
 import eu.europeana.corelib.definitions.jibx.RDF;
 import eu.europeana.enrichment.api.external.model.Agent;
 import eu.europeana.enrichment.api.external.model.EnrichmentBase;
+import eu.europeana.enrichment.api.external.model.EnrichmentResultBatch;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
 import eu.europeana.enrichment.api.external.model.Place;
 import eu.europeana.enrichment.api.external.model.Timespan;
@@ -26,6 +30,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -97,7 +102,7 @@ public class EnrichmentWorkerTest {
     final DereferenceClient dereferenceClient = Mockito.mock(DereferenceClient.class);
     doReturn(DEREFERENCE_RESULT.get(0),
         DEREFERENCE_RESULT.subList(1, DEREFERENCE_RESULT.size()).toArray()).when(dereferenceClient)
-        .dereference(any());
+        .dereference(anyString());
     final EntityMergeEngine entityMergeEngine = Mockito.mock(EntityMergeEngine.class);
 
     // Create enrichment worker and mock the enrichment and dereferencing results.
@@ -327,7 +332,7 @@ public class EnrichmentWorkerTest {
     final String outputString = "OutputString";
     doReturn(inputRdf).when(worker).convertStringToRdf(anyString());
     doReturn(outputString).when(worker).convertRdfToString(inputRdf);
-    doReturn(inputRdf).when(worker).process(any(), any());
+    doReturn(inputRdf).when(worker).process(any(RDF.class), any());
 
     // Perform the operations and verify the result
     final RDF returnedRdf = worker.process(inputRdf);
@@ -336,7 +341,7 @@ public class EnrichmentWorkerTest {
     assertEquals(outputString, returnedString);
 
     // Validate the method calls to the actual worker method
-    verify(worker, times(2)).process(any(), any());
+    verify(worker, times(2)).process(any(RDF.class), any());
     verify(worker, times(2)).process(inputRdf, Mode.DEREFERENCE_AND_ENRICHMENT);
 
     // Test null string input
@@ -348,6 +353,105 @@ public class EnrichmentWorkerTest {
     }
   }
 
+  @Test
+  public void testEnrichmentWorkerBatch() throws DereferenceOrEnrichException {
+    // Create mocks of the dependencies
+    final Place place1 = new Place();
+    place1.setAbout("place1");
+    final Place place2 = new Place();
+    place2.setAbout("place2");
+    final Agent agent1 = new Agent();
+    agent1.setAbout("agent1");
+    final EnrichmentClient enrichmentClient = Mockito.mock(EnrichmentClient.class);
+    doReturn(new EnrichmentResultBatch(Arrays.asList(
+        new EnrichmentResultList(Collections.singletonList(place1)), new EnrichmentResultList(),
+        new EnrichmentResultList(Arrays.asList(place2, agent1))))).when(enrichmentClient)
+        .enrichBatch(any());
+    final DereferenceClient dereferenceClient = Mockito.mock(DereferenceClient.class);
+    doReturn(DEREFERENCE_RESULT.get(0)).when(dereferenceClient).dereference(anyString());
+    final EntityMergeEngine entityMergeEngine = Mockito.mock(EntityMergeEngine.class);
+
+    // Create enrichment worker and mock the enrichment and dereferencing values: the records
+    // share one value (with a different original field) and one resource.
+    final EnrichmentWorker worker =
+        spy(new EnrichmentWorker(dereferenceClient, enrichmentClient, entityMergeEngine));
+    final RDF rdf1 = new RDF();
+    final RDF rdf2 = new RDF();
+    doReturn(Arrays.asList(new InputValue("orig1", "value1", "lang1", EntityClass.PLACE),
+        new InputValue("orig2", "value2", null, EntityClass.AGENT))).when(worker)
+        .extractFieldsForEnrichment(rdf1);
+    doReturn(Arrays.asList(new InputValue("orig3", "value2", null, EntityClass.AGENT),
+        new InputValue("orig4", "value3", null, EntityClass.PLACE, EntityClass.AGENT)))
+        .when(worker).extractFieldsForEnrichment(rdf2);
+    doReturn(new HashSet<>(Arrays.asList("enrich1", "enrich2"))).when(worker)
+        .extractValuesForDereferencing(rdf1);
+    doReturn(new HashSet<>(Arrays.asList("enrich1", "enrich3"))).when(worker)
+        .extractValuesForDereferencing(rdf2);
+
+    // Execute the worker
+    final List<RDF> result = worker.process(Arrays.asList(rdf1, rdf2),
+        Mode.DEREFERENCE_AND_ENRICHMENT);
+    assertEquals(Arrays.asList(rdf1, rdf2), result);
+
+    // Each resource is dereferenced only once.
+    verify(dereferenceClient, times(3)).dereference(anyString());
+    verify(dereferenceClient, times(1)).dereference("enrich1");
+    verify(entityMergeEngine, times(4))
+        .mergeEntities(any(), same(DEREFERENCE_RESULT.get(0).getResult()));
+
+    // The distinct values are enriched in one call.
+    verify(enrichmentClient, never()).enrich(any());
+    verify(enrichmentClient, times(1)).enrichBatch(enrichmentExtractionCaptor.capture());
+    assertEquals(Arrays.asList("value1", "value2", "value3"),
+        enrichmentExtractionCaptor.getValue().stream().map(InputValue::getValue)
+            .collect(Collectors.toList()));
+
+    // The results are assigned to the records (they are merged after the dereference results).
+    verify(entityMergeEngine, times(3)).mergeEntities(same(rdf1), enrichmentResultCaptor.capture());
+    assertEquals(Collections.singletonList(place1), enrichmentResultCaptor.getValue());
+    verify(entityMergeEngine, times(3)).mergeEntities(same(rdf2), enrichmentResultCaptor.capture());
+    assertEquals(Arrays.asList(place2, agent1), enrichmentResultCaptor.getValue());
+  }
+
+  @Test
+  public void testEnrichmentWorkerBatchWithDereferenceFailures() {
+    final DereferenceClient dereferenceClient = Mockito.mock(DereferenceClient.class);
+    doReturn(DEREFERENCE_RESULT.get(0)).when(dereferenceClient).dereference("enrich1");
+    doThrow(new IllegalStateException("source unavailable")).when(dereferenceClient)
+        .dereference("enrich2");
+    final EntityMergeEngine entityMergeEngine = Mockito.mock(EntityMergeEngine.class);
+    final EnrichmentWorker worker =
+        spy(new EnrichmentWorker(dereferenceClient, null, entityMergeEngine));
+    final RDF rdf1 = new RDF();
+    final RDF rdf2 = new RDF();
+    final RDF rdf3 = new RDF();
+    doReturn(Collections.singleton("enrich2")).when(worker).extractValuesForDereferencing(rdf1);
+    doReturn(Collections.singleton("enrich1")).when(worker).extractValuesForDereferencing(rdf2);
+    doReturn(Collections.singleton("enrich2")).when(worker).extractValuesForDereferencing(rdf3);
+
+    // All records are processed and the failed records are reported.
+    final DereferenceOrEnrichException exception = assertThrows(
+        DereferenceOrEnrichException.class,
+        () -> worker.process(Arrays.asList(rdf1, rdf2, rdf3), Mode.DEREFERENCE_ONLY));
+    assertTrue(exception.getMessage().startsWith("Dereferencing failed for 2 of 3 records"));
+    assertTrue(exception.getMessage().contains("record 0 (unknown record ID): source unavailable"));
+    assertTrue(exception.getMessage().contains("record 2 (unknown record ID): source unavailable"));
+    verify(entityMergeEngine, times(1))
+        .mergeEntities(same(rdf2), same(DEREFERENCE_RESULT.get(0).getResult()));
+  }
+
+  @Test
+  public void testEnrichmentWorkerBatchWithMissingResults() {
+    final EnrichmentClient enrichmentClient = Mockito.mock(EnrichmentClient.class);
+    doReturn(new EnrichmentResultBatch()).when(enrichmentClient).enrichBatch(any());
+    final EnrichmentWorker worker =
+        spy(new EnrichmentWorker(null, enrichmentClient, new EntityMergeEngine()));
+    doReturn(Arrays.asList(ENRICHMENT_EXTRACT_RESULT)).when(worker)
+        .extractFieldsForEnrichment(any());
+    assertThrows(DereferenceOrEnrichException.class, () -> worker
+        .process(Collections.singletonList(new RDF()), Mode.ENRICHMENT_ONLY));
+  }
+
   @Test
   public void testEnrichmentWorkerNullValues() throws DereferenceOrEnrichException {
     // Create enrichment worker
@@ -355,7 +459,7 @@ public class EnrichmentWorkerTest {
 
     // Test null string input
     try {
-      worker.process(null, Mode.DEREFERENCE_AND_ENRICHMENT);
+      worker.process((RDF) null, Mode.DEREFERENCE_AND_ENRICHMENT);
       fail("Expected an exception to occur.");
     } catch (IllegalArgumentException e) {
       // This is expected
@@ -368,5 +472,12 @@ public class EnrichmentWorkerTest {
     } catch (IllegalArgumentException e) {
       // This is expected
     }
+    // Test null list input
+    try {
+      worker.process((List<RDF>) null, Mode.DEREFERENCE_AND_ENRICHMENT);
+      fail("Expected an exception to occur.");
+    } catch (IllegalArgumentException e) {
+      // This is expected
+    }
   }
 }
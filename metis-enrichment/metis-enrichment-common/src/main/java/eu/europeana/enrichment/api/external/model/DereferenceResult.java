@@ -0,0 +1,43 @@
+package eu.europeana.enrichment.api.external.model;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * Contains the result of dereferencing one resource: the resource ID and the entities that were
+ * found for it.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class DereferenceResult {
+
+  @XmlAttribute(name = "uri")
+  private String resourceId;
+
+  @XmlElement(namespace = "http://www.europeana.eu/schemas/metis", name = "results")
+  private EnrichmentResultList result;
+
+  public DereferenceResult() {
+    // Required for XML mapping.
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param resourceId the resource ID (URI) that was dereferenced
+   * @param result the entities found for the resource
+   */
+  public DereferenceResult(String resourceId, EnrichmentResultList result) {
+    this.resourceId = resourceId;
+    this.result = result;
+  }
+
+  public String getResourceId() {
+    return resourceId;
+  }
+
+  public EnrichmentResultList getResult() {
+    return result;
+  }
+}
@@ -0,0 +1,36 @@
+package eu.europeana.enrichment.api.external.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Contains a list of {@link DereferenceResult} results: one for each dereferenced resource.
+ */
+@XmlRootElement(namespace = "http://www.europeana.eu/schemas/metis", name = "dereferenceResults")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class DereferenceResultList {
+
+  @XmlElement(namespace = "http://www.europeana.eu/schemas/metis", name = "dereferenceResult")
+  private final List<DereferenceResult> results = new ArrayList<>();
+
+  public DereferenceResultList() {
+  }
+
+  /**
+   * Constructor with initial {@link DereferenceResult} list.
+   *
+   * @param results the list to initialize the class with
+   */
+  public DereferenceResultList(Collection<DereferenceResult> results) {
+    this.results.addAll(results);
+  }
+
+  public List<DereferenceResult> getResults() {
+    return results;
+  }
+}
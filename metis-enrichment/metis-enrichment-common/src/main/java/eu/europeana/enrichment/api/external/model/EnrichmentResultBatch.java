@@ -0,0 +1,37 @@
+package eu.europeana.enrichment.api.external.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Contains the results of enriching a list of values: one {@link EnrichmentResultList} for each
+ * value, in the same order as the values.
+ */
+@XmlRootElement(namespace = "http://www.europeana.eu/schemas/metis", name = "enrichmentResultBatch")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class EnrichmentResultBatch {
+
+  @XmlElement(namespace = "http://www.europeana.eu/schemas/metis", name = "results")
+  private final List<EnrichmentResultList> results = new ArrayList<>();
+
+  public EnrichmentResultBatch() {
+  }
+
+  /**
+   * Constructor with initial {@link EnrichmentResultList} list.
+   *
+   * @param results the list to initialize the class with
+   */
+  public EnrichmentResultBatch(Collection<EnrichmentResultList> results) {
+    this.results.addAll(results);
+  }
+
+  public List<EnrichmentResultList> getResults() {
+    return results;
+  }
+}
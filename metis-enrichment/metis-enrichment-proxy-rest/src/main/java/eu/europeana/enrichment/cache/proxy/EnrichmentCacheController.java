@@ -28,12 +28,14 @@ public class EnrichmentCacheController {
   }
 
   /**
-   * Recreate the redis cache from the mongo datastore. This will take some time
+   * Recreate the redis cache from the mongo datastore. This will take some time. The cache remains
+   * available (with the old data) until the new data is complete.
    */
   @RequestMapping(value = "/recreate", method = RequestMethod.POST)
   @ResponseStatus(value = HttpStatus.OK)
   @ApiOperation(value = "Start recreating the cache",
-      notes = "Recreate the redis cache from the mongo datastore. This will take some time")
+      notes = "Recreate the redis cache from the mongo datastore. This will take some time. The "
+          + "cache remains available (with the old data) until the new data is complete.")
   public void populate() {
     enricher.recreate();
   }
@@ -52,16 +54,14 @@ public class EnrichmentCacheController {
   }
 
   /**
-   * Empty Cache. This will remove ALL entries in the cache (Redis). If the same redis instance/cluster
-   * is used for multiple services then the cache for other services is cleared as well.
-   *
-   * @return OK
+   * Empty Cache. This will remove ALL enrichment entries in the cache (Redis). Entries of other
+   * services using the same redis instance/cluster are not affected.
    */
   @RequestMapping(value = RestEndpoints.CACHE_EMPTY, method = RequestMethod.DELETE)
   @ResponseBody
   @ApiOperation(value = "Empty the cache", notes =
-      "This will remove ALL entries in the cache (Redis). If the same redis instance/cluster "
-          + "is used for multiple services then the cache for other services is cleared as well.")
+      "This will remove ALL enrichment entries in the cache (Redis). Entries of other services "
+          + "using the same redis instance/cluster are not affected.")
   public void emptyCache() {
     enricher.emptyCache();
   }
@@ -1,5 +1,6 @@
 package eu.europeana.enrichment.cache.proxy.config;
 
+import eu.europeana.enrichment.service.EntityEncoding;
 import eu.europeana.enrichment.service.RedisInternalEnricher;
 import eu.europeana.enrichment.utils.EnrichmentEntityDao;
 import eu.europeana.metis.cache.redis.RedisProvider;
@@ -42,6 +43,8 @@ public class Application implements WebMvcConfigurer {
   private int redisPort;
   @Value("${redis.password:\"\"}")
   private String redisPassword;
+  @Value("${enrichment.cache.encoding:JSON}")
+  private EntityEncoding entityEncoding;
 
   @Override
   public void addViewControllers(ViewControllerRegistry registry) {
@@ -68,7 +71,7 @@ public class Application implements WebMvcConfigurer {
 
   @Bean(name = "redisInternalEnricher")
   RedisInternalEnricher getRedisInternalEnricher() {
-    return new RedisInternalEnricher(getEntityDao(), getRedisProvider(), true);
+    return new RedisInternalEnricher(getEntityDao(), getRedisProvider(), entityEncoding, true);
   }
 
   @Bean
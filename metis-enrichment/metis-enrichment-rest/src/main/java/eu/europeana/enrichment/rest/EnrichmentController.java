@@ -4,11 +4,13 @@ import eu.europeana.enrichment.api.external.EntityWrapper;
 import eu.europeana.enrichment.api.external.InputValueList;
 import eu.europeana.enrichment.api.external.UriList;
 import eu.europeana.enrichment.api.external.model.EnrichmentBase;
+import eu.europeana.enrichment.api.external.model.EnrichmentResultBatch;
 import eu.europeana.enrichment.api.external.model.EnrichmentResultList;
 import eu.europeana.enrichment.rest.exception.EnrichmentException;
 import eu.europeana.enrichment.service.Converter;
 import eu.europeana.enrichment.service.Enricher;
 import eu.europeana.enrichment.service.EntityRemover;
+import eu.europeana.enrichment.service.NearCacheStatistics;
 import eu.europeana.metis.RestEndpoints;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -16,7 +18,9 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -127,4 +131,51 @@ public class EnrichmentController {
       throw new EnrichmentException("Error converting object.", e);
     }
   }
+
+  /**
+   * Enrich a number of values, keeping the enrichments of the values apart. This allows clients to
+   * enrich the values of many records in one call and to assign the results to the records.
+   *
+   * @param input A list of values
+   * @return the enrichment values: one wrapped structured list for each input value, in the same
+   * order as the input values
+   * @throws EnrichmentException if an exception occurred during enrichment
+   */
+  @RequestMapping(value = RestEndpoints.ENRICHMENT_ENRICH_BATCH, method = RequestMethod.POST,
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  @ResponseBody
+  @ApiOperation(value = "Enrich a series of field value pairs, with results per value",
+      response = EnrichmentResultBatch.class)
+  @ApiResponses(value = {
+      @ApiResponse(code = 400, message = "Error processing the result")
+  })
+  public EnrichmentResultBatch enrichBatch(@ApiParam("input") @RequestBody InputValueList input)
+      throws EnrichmentException {
+
+    try {
+      final List<EnrichmentResultList> results = new ArrayList<>();
+      for (List<EntityWrapper> wrapperList : enricher
+          .tagExternalPerValue(input.getInputValues())) {
+        results.add(converter.convert(wrapperList));
+      }
+      return new EnrichmentResultBatch(results);
+    } catch (IOException e) {
+      LOGGER.error("Error converting object.", e);
+      throw new EnrichmentException("Error converting object.", e);
+    }
+  }
+
+  /**
+   * Get the statistics of the in-process caches used during enrichment
+   *
+   * @return the statistics (including the hit ratios), keyed by the name of the cache
+   */
+  @RequestMapping(value = RestEndpoints.ENRICHMENT_CACHE_STATISTICS, method = RequestMethod.GET,
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ResponseBody
+  @ApiOperation(value = "Retrieve the statistics of the enrichment caches")
+  public Map<String, NearCacheStatistics> getCacheStatistics() {
+    return enricher.getCacheStatistics();
+  }
 }
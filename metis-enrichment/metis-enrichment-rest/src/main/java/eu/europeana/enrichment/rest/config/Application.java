@@ -4,10 +4,12 @@ import com.fasterxml.jackson.module.jaxb.JaxbAnnotationModule;
 import eu.europeana.corelib.web.socks.SocksProxy;
 import eu.europeana.enrichment.service.Converter;
 import eu.europeana.enrichment.service.Enricher;
+import eu.europeana.enrichment.service.EntityEncoding;
 import eu.europeana.enrichment.service.EntityRemover;
 import eu.europeana.enrichment.service.RedisInternalEnricher;
 import eu.europeana.enrichment.utils.EnrichmentEntityDao;
 import eu.europeana.metis.cache.redis.RedisProvider;
+import java.time.Duration;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -69,6 +71,18 @@ public class Application implements WebMvcConfigurer, InitializingBean {
   @Value("${enrichment.proxy.url}")
   private String enrichmentProxyUrl;
 
+  //Near cache (in-process, in front of Redis)
+  @Value("${enrichment.cache.maxEntries:100000}")
+  private int nearCacheMaxEntries;
+  @Value("${enrichment.cache.maxSizeInMegabytes:256}")
+  private long nearCacheMaxSizeInMegabytes;
+  @Value("${enrichment.cache.timeToLiveInSeconds:600}")
+  private long nearCacheTimeToLiveInSeconds;
+
+  //Local label matching (in-process dictionary of all labels)
+  @Value("${enrichment.labelDictionary.enabled:false}")
+  private boolean labelDictionaryEnabled;
+
   private RedisProvider redisProvider;
 
   /**
@@ -125,7 +139,13 @@ public class Application implements WebMvcConfigurer, InitializingBean {
 
   @Bean(name = "redisInternalEnricher")
   RedisInternalEnricher getRedisInternalEnricher() {
-    return new RedisInternalEnricher(getEntityDao(), getRedisProvider(), false);
+    final RedisInternalEnricher enricher = new RedisInternalEnricher(getEntityDao(),
+        getRedisProvider(), nearCacheMaxEntries, nearCacheMaxSizeInMegabytes * 1024 * 1024,
+        Duration.ofSeconds(nearCacheTimeToLiveInSeconds), EntityEncoding.JSON, false);
+    if (labelDictionaryEnabled) {
+      enricher.enableLabelDictionary();
+    }
+    return enricher;
   }
 
   @Bean
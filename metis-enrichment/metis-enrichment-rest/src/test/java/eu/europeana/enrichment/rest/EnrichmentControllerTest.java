@@ -182,6 +182,51 @@ public class EnrichmentControllerTest {
         .andExpect(jsonPath("$.errorMessage", is("Error converting object.")));
   }
 
+  @Test
+  public void enrichBatch_XML() throws Exception {
+    String body =
+          "{\n"
+        + "  \"inputValue\": [\n"
+        + "    {\n"
+        + "      \"value\": \"Music\",\n"
+        + "      \"vocabularies\": [\n"
+        + "        \"CONCEPT\"\n"
+        + "      ]\n"
+        + "    },\n"
+        + "    {\n"
+        + "      \"value\": \"Fennek\",\n"
+        + "      \"vocabularies\": [\n"
+        + "        \"AGENT\"\n"
+        + "      ]\n"
+        + "    }\n"
+        + "  ]\n"
+        + "}";
+
+    Map<String, String> namespaceMap = getNamespaceMap();
+
+    List<EntityWrapper> agentWrappers = new ArrayList<>();
+    agentWrappers.add(new EntityWrapper());
+    List<List<EntityWrapper>> wrappers = new ArrayList<>();
+    wrappers.add(new ArrayList<>());
+    wrappers.add(agentWrappers);
+    when(enrichmerMock.tagExternalPerValue(anyList())).thenReturn(wrappers);
+
+    EnrichmentResultList agentResultList = new EnrichmentResultList();
+    agentResultList.getResult().add(getAgent("http://www.fennek-it.nl"));
+    when(converterMock.convert(anyList()))
+        .thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).isEmpty()
+            ? new EnrichmentResultList() : agentResultList);
+
+    enrichmentControllerMock.perform(post("/enrich/batch")
+        .content(body)
+        .accept(MediaType.APPLICATION_XML_VALUE)
+        .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+        .andExpect(status().is(200))
+        .andExpect(xpath("count(metis:enrichmentResultBatch/metis:results)", namespaceMap).number(2.0))
+        .andExpect(xpath("count(metis:enrichmentResultBatch/metis:results[1]/*)", namespaceMap).number(0.0))
+        .andExpect(xpath("metis:enrichmentResultBatch/metis:results[2]/edm:Agent/@rdf:about", namespaceMap).string("http://www.fennek-it.nl"));
+  }
+
   private Agent getAgent(String uri) {
     Agent agent = new Agent();
     agent.setAbout(uri);
@@ -2,7 +2,9 @@ package eu.europeana.enrichment.service;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,6 +46,18 @@ public class Enricher {
     return new ArrayList<>(redisEnricher.tag(values));
   }
 
+  /**
+   * Enrichment method that keeps the enrichments of the values apart.
+   *
+   * @param values The values to enrich
+   * @return The resulting enrichment lists: one for each value, in the same order as the values
+   * @throws IOException if enrichment fails
+   */
+  public List<List<EntityWrapper>> tagExternalPerValue(List<InputValue> values)
+      throws IOException {
+    return redisEnricher.tagPerValue(values);
+  }
+
   /**
    * Enrich a URI
    *
@@ -58,4 +72,17 @@ public class Enricher {
     }
     return null;
   }
+
+  /**
+   * Returns the statistics (including the hit ratios) of the in-process caches used during
+   * enrichment.
+   *
+   * @return the statistics, keyed by the name of the cache
+   */
+  public Map<String, NearCacheStatistics> getCacheStatistics() {
+    final Map<String, NearCacheStatistics> result = new LinkedHashMap<>();
+    result.put("entities", redisEnricher.getEntityCacheStatistics());
+    result.put("labels", redisEnricher.getLabelCacheStatistics());
+    return result;
+  }
 }
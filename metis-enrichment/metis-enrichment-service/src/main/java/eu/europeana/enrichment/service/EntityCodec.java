@@ -0,0 +1,64 @@
+package eu.europeana.enrichment.service;
+
+import eu.europeana.enrichment.api.external.EntityWrapper;
+import java.io.IOException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.module.SimpleModule;
+import org.codehaus.jackson.smile.SmileConstants;
+import org.codehaus.jackson.smile.SmileFactory;
+
+/**
+ * Encodes and decodes the entities stored in the Redis cache. Encoded entities are recognized by
+ * the header that Smile documents start with (JSON documents can't start this way), so that
+ * decoding does not depend on the encoding that was chosen when the cache was populated. This
+ * class is thread-safe.
+ */
+class EntityCodec {
+
+  private final ObjectMapper jsonMapper;
+  private final ObjectMapper smileMapper;
+
+  /**
+   * Constructor.
+   *
+   * @param module The module to register with the object mappers (can be null).
+   */
+  EntityCodec(SimpleModule module) {
+    this.jsonMapper = new ObjectMapper();
+    this.smileMapper = new ObjectMapper(new SmileFactory());
+    if (module != null) {
+      jsonMapper.registerModule(module);
+      smileMapper.registerModule(module);
+    }
+  }
+
+  /**
+   * Encodes an entity.
+   *
+   * @param entity The entity.
+   * @param encoding The encoding to use.
+   * @return The encoded entity.
+   * @throws IOException In case the entity could not be encoded.
+   */
+  byte[] encode(EntityWrapper entity, EntityEncoding encoding) throws IOException {
+    return (encoding == EntityEncoding.SMILE ? smileMapper : jsonMapper).writeValueAsBytes(entity);
+  }
+
+  /**
+   * Decodes an entity (in any of the supported encodings).
+   *
+   * @param encodedEntity The encoded entity.
+   * @return The entity.
+   * @throws IOException In case the entity could not be decoded.
+   */
+  EntityWrapper decode(byte[] encodedEntity) throws IOException {
+    return (isSmile(encodedEntity) ? smileMapper : jsonMapper)
+        .readValue(encodedEntity, EntityWrapper.class);
+  }
+
+  private static boolean isSmile(byte[] encodedEntity) {
+    return encodedEntity.length >= 3 && encodedEntity[0] == SmileConstants.HEADER_BYTE_1
+        && encodedEntity[1] == SmileConstants.HEADER_BYTE_2
+        && encodedEntity[2] == SmileConstants.HEADER_BYTE_3;
+  }
+}
@@ -0,0 +1,20 @@
+package eu.europeana.enrichment.service;
+
+/**
+ * The encodings in which entities can be stored in the Redis cache. The encoding is chosen when
+ * the cache is populated. Readers recognize the encoding of each stored entity, so entities in
+ * different encodings can be read by the same reader.
+ */
+public enum EntityEncoding {
+
+  /**
+   * Textual JSON. This is the original encoding.
+   */
+  JSON,
+
+  /**
+   * Smile: a binary equivalent of JSON. It is more compact and faster to decode, as strings (like
+   * the nested contextual entity) are stored with their length and need no escaping.
+   */
+  SMILE
+}
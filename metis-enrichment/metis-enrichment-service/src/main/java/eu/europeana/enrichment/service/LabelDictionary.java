@@ -0,0 +1,250 @@
+package eu.europeana.enrichment.service;
+
+import eu.europeana.enrichment.api.internal.MongoTerm;
+import eu.europeana.enrichment.utils.EnrichmentEntityDao;
+import eu.europeana.enrichment.utils.EntityClass;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory dictionary of the labels of the entities, mapping each label to the URIs of the
+ * entities that have this label. It is built once from the {@link MongoTerm}s and partitioned by
+ * entity class and language in the same way as the label keys in Redis: each term is available
+ * under its own language and under the default language ({@link
+ * RedisInternalEnricher#DEFAULT_LANGUAGE}).
+ * <p>
+ * Each partition is a static trie stored in a few flat arrays: the outgoing edges of a node are
+ * stored contiguously and sorted by character, so that a lookup takes one binary search per
+ * character of the label and no hashing or object allocation. Entities that are removed after the
+ * dictionary is built are filtered out of the results. This class is thread-safe.
+ * </p>
+ */
+class LabelDictionary {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LabelDictionary.class);
+
+  private final Map<EntityClass, Map<String, LabelTrie>> partitions;
+  private final Set<String> removedUris = ConcurrentHashMap.newKeySet();
+
+  private LabelDictionary(Map<EntityClass, Map<String, LabelTrie>> partitions) {
+    this.partitions = partitions;
+  }
+
+  /**
+   * Builds a dictionary from the terms in Mongo.
+   *
+   * @param entityDao The DAO for the entities in Mongo.
+   * @param entityClasses The entity classes to include.
+   * @return The dictionary.
+   */
+  static LabelDictionary build(EnrichmentEntityDao entityDao,
+      Collection<EntityClass> entityClasses) {
+    return build(entityClasses, entityDao::streamAllMongoTerms);
+  }
+
+  /**
+   * Builds a dictionary from the given terms.
+   *
+   * @param entityClasses The entity classes to include.
+   * @param termSource The source of the terms for an entity class. The returned streams are
+   * closed after use.
+   * @return The dictionary.
+   */
+  static LabelDictionary build(Collection<EntityClass> entityClasses,
+      Function<EntityClass, Stream<MongoTerm>> termSource) {
+    final long startTime = System.nanoTime();
+    final Map<EntityClass, Map<String, LabelTrie>> partitions = new EnumMap<>(EntityClass.class);
+    final Map<String, String> uris = new HashMap<>();
+    for (EntityClass entityClass : entityClasses) {
+      final Map<String, List<LabelEntry>> entriesByLanguage = new HashMap<>();
+      try (final Stream<MongoTerm> terms = termSource.apply(entityClass)) {
+        terms.filter(term -> term.getLabel() != null && term.getCodeUri() != null)
+            .forEach(term -> {
+              final String uri = uris.computeIfAbsent(term.getCodeUri(), Function.identity());
+              final LabelEntry entry = new LabelEntry(term.getLabel(), uri);
+              entriesByLanguage.computeIfAbsent(RedisInternalEnricher.DEFAULT_LANGUAGE,
+                  key -> new ArrayList<>()).add(entry);
+              if (term.getLang() != null) {
+                entriesByLanguage.computeIfAbsent(term.getLang(), key -> new ArrayList<>())
+                    .add(entry);
+              }
+            });
+      }
+      final Map<String, LabelTrie> partition = new HashMap<>();
+      entriesByLanguage.forEach((language, entries) -> partition.put(language,
+          LabelTrie.build(entries)));
+      partitions.put(entityClass, partition);
+    }
+    if (LOGGER.isInfoEnabled()) {
+      LOGGER.info("Label dictionary built with {} entities and {} trie nodes in {} ms.",
+          uris.size(), partitions.values().stream().flatMap(partition -> partition.values()
+              .stream()).mapToInt(LabelTrie::getNodeCount).sum(),
+          (System.nanoTime() - startTime) / 1_000_000);
+    }
+    return new LabelDictionary(partitions);
+  }
+
+  /**
+   * Finds the URIs of the entities with the given label (an exact match).
+   *
+   * @param entityClass The entity class.
+   * @param language The language of the label (or the default language).
+   * @param label The label, in lower case.
+   * @return The URIs. Is not null, but may be empty.
+   */
+  Set<String> find(EntityClass entityClass, String language, String label) {
+    final LabelTrie trie = partitions.getOrDefault(entityClass, Collections.emptyMap())
+        .get(language);
+    if (trie == null) {
+      return Collections.emptySet();
+    }
+    final List<String> uris = trie.find(label);
+    if (uris.isEmpty()) {
+      return Collections.emptySet();
+    }
+    final Set<String> result = new LinkedHashSet<>(uris);
+    if (!removedUris.isEmpty()) {
+      result.removeAll(removedUris);
+    }
+    return result;
+  }
+
+  /**
+   * Excludes the given entities from the results of future lookups.
+   *
+   * @param uris The URIs of the entities that are removed.
+   */
+  void remove(Collection<String> uris) {
+    removedUris.addAll(uris);
+  }
+
+  private static class LabelEntry {
+
+    private final String label;
+    private final String uri;
+
+    LabelEntry(String label, String uri) {
+      this.label = label;
+      this.uri = uri;
+    }
+  }
+
+  /**
+   * A static trie. Node 0 is the root. The edges leaving node n are at the positions from
+   * edgeOffsets[n] (inclusive) to edgeOffsets[n + 1] (exclusive) in edgeChars and edgeTargets,
+   * sorted by character. The URIs of the labels ending in node n are at the positions from
+   * valueOffsets[n] to valueOffsets[n + 1] in values.
+   */
+  private static class LabelTrie {
+
+    private final int[] edgeOffsets;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] valueOffsets;
+    private final String[] values;
+
+    private LabelTrie(int[] edgeOffsets, char[] edgeChars, int[] edgeTargets, int[] valueOffsets,
+        String[] values) {
+      this.edgeOffsets = edgeOffsets;
+      this.edgeChars = edgeChars;
+      this.edgeTargets = edgeTargets;
+      this.valueOffsets = valueOffsets;
+      this.values = values;
+    }
+
+    /**
+     * Builds the trie from the sorted entries, breadth first: nodes are numbered in the order in
+     * which they are processed, so that the edges (and values) of each node end up contiguous.
+     */
+    static LabelTrie build(List<LabelEntry> entries) {
+      entries.sort(Comparator.comparing((LabelEntry entry) -> entry.label)
+          .thenComparing(entry -> entry.uri));
+      final int maxNodeCount = 1 + entries.stream().mapToInt(entry -> entry.label.length()).sum();
+      final int[] edgeOffsets = new int[maxNodeCount + 1];
+      final char[] edgeChars = new char[maxNodeCount];
+      final int[] edgeTargets = new int[maxNodeCount];
+      final int[] valueOffsets = new int[maxNodeCount + 1];
+      final String[] values = new String[entries.size()];
+      int nodeCount = 1;
+      int edgeCount = 0;
+      int valueCount = 0;
+
+      // Each item holds the range of entries below the node and the depth of the node.
+      final Queue<int[]> queue = new ArrayDeque<>();
+      queue.add(new int[]{0, entries.size(), 0});
+      int node = 0;
+      while (!queue.isEmpty()) {
+        final int[] item = queue.remove();
+        int from = item[0];
+        final int to = item[1];
+        final int depth = item[2];
+        edgeOffsets[node] = edgeCount;
+        valueOffsets[node] = valueCount;
+
+        // The labels ending in this node come first (they are a prefix of the others).
+        while (from < to && entries.get(from).label.length() == depth) {
+          final String uri = entries.get(from).uri;
+          if (valueCount == valueOffsets[node] || !values[valueCount - 1].equals(uri)) {
+            values[valueCount] = uri;
+            valueCount++;
+          }
+          from++;
+        }
+
+        // The remaining labels are grouped by their next character.
+        while (from < to) {
+          final char character = entries.get(from).label.charAt(depth);
+          int groupEnd = from + 1;
+          while (groupEnd < to && entries.get(groupEnd).label.charAt(depth) == character) {
+            groupEnd++;
+          }
+          edgeChars[edgeCount] = character;
+          edgeTargets[edgeCount] = nodeCount;
+          edgeCount++;
+          nodeCount++;
+          queue.add(new int[]{from, groupEnd, depth + 1});
+          from = groupEnd;
+        }
+        node++;
+      }
+      edgeOffsets[nodeCount] = edgeCount;
+      valueOffsets[nodeCount] = valueCount;
+      return new LabelTrie(Arrays.copyOf(edgeOffsets, nodeCount + 1),
+          Arrays.copyOf(edgeChars, edgeCount), Arrays.copyOf(edgeTargets, edgeCount),
+          Arrays.copyOf(valueOffsets, nodeCount + 1), Arrays.copyOf(values, valueCount));
+    }
+
+    List<String> find(String label) {
+      int node = 0;
+      for (int i = 0; i < label.length(); i++) {
+        final int edge = Arrays.binarySearch(edgeChars, edgeOffsets[node], edgeOffsets[node + 1],
+            label.charAt(i));
+        if (edge < 0) {
+          return Collections.emptyList();
+        }
+        node = edgeTargets[edge];
+      }
+      return Arrays.asList(values).subList(valueOffsets[node], valueOffsets[node + 1]);
+    }
+
+    int getNodeCount() {
+      return edgeOffsets.length - 1;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package eu.europeana.enrichment.service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A small in-process cache that is bounded both in the number of entries and in their (estimated)
+ * size in bytes. Entries expire after a fixed time to live. When the cache is full, the least
+ * recently used entries are evicted. This class is thread-safe: the entries are distributed over a
+ * number of segments that are locked independently, so that concurrent lookups of different keys
+ * don't block each other. The number and total size of the entries are kept in atomic counters.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values. The values are shared between callers, so they should not be
+ * modified.
+ */
+class NearCache<K, V> {
+
+  private static final int SEGMENT_COUNT = 16;
+
+  private final int maxEntries;
+  private final long maxSizeInBytes;
+  private final long timeToLiveInNanos;
+  private final ToLongFunction<V> sizeEstimator;
+  private final LongSupplier nanoTimeSupplier;
+  private final List<Segment<K, V>> segments;
+  private final AtomicInteger entryCount = new AtomicInteger();
+  private final AtomicLong sizeInBytes = new AtomicLong();
+  private final NearCacheStatistics statistics;
+
+  /**
+   * Constructor.
+   *
+   * @param maxEntries The maximum number of entries in the cache.
+   * @param maxSizeInBytes The maximum total (estimated) size of the entries in the cache.
+   * @param timeToLive The time after which an entry expires.
+   * @param sizeEstimator Estimates the size of a value in bytes.
+   */
+  NearCache(int maxEntries, long maxSizeInBytes, Duration timeToLive,
+      ToLongFunction<V> sizeEstimator) {
+    this(maxEntries, maxSizeInBytes, timeToLive, sizeEstimator, System::nanoTime);
+  }
+
+  NearCache(int maxEntries, long maxSizeInBytes, Duration timeToLive,
+      ToLongFunction<V> sizeEstimator, LongSupplier nanoTimeSupplier) {
+    if (maxEntries < 1 || maxSizeInBytes < 1 || timeToLive.isNegative() || timeToLive.isZero()) {
+      throw new IllegalArgumentException("The bounds of the cache must be positive.");
+    }
+    this.maxEntries = maxEntries;
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.timeToLiveInNanos = timeToLive.toNanos();
+    this.sizeEstimator = sizeEstimator;
+    this.nanoTimeSupplier = nanoTimeSupplier;
+    this.segments = Stream.generate(Segment<K, V>::new).limit(SEGMENT_COUNT)
+        .collect(Collectors.toList());
+    this.statistics = new NearCacheStatistics(maxEntries, maxSizeInBytes, entryCount::get,
+        sizeInBytes::get);
+  }
+
+  private Segment<K, V> getSegment(K key) {
+    final int hash = key.hashCode();
+    return segments.get((hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1));
+  }
+
+  /**
+   * Returns the value for the given key.
+   *
+   * @param key The key.
+   * @return The value, or null if the cache contains no (unexpired) value for the key.
+   */
+  V get(K key) {
+    final Segment<K, V> segment = getSegment(key);
+    final long now = nanoTimeSupplier.getAsLong();
+    final CacheEntry<V> entry;
+    final boolean expired;
+    synchronized (segment) {
+      entry = segment.entries.get(key);
+      expired = entry != null && entry.expiryTime - now <= 0;
+      if (expired) {
+        removeEntry(segment, key);
+      } else if (entry != null) {
+        entry.lastAccessTime = now;
+      }
+    }
+    if (expired) {
+      statistics.recordExpiry();
+    }
+    if (entry == null || expired) {
+      statistics.recordMiss();
+      return null;
+    }
+    statistics.recordHit();
+    return entry.value;
+  }
+
+  /**
+   * Adds a value to the cache, replacing any value that the cache already contains for the key.
+   * Values that are larger than the maximum size of the cache are not added.
+   *
+   * @param key The key.
+   * @param value The value. Is not null.
+   */
+  void put(K key, V value) {
+    final long size = sizeEstimator.applyAsLong(value);
+    final Segment<K, V> segment = getSegment(key);
+    final long now = nanoTimeSupplier.getAsLong();
+    synchronized (segment) {
+      removeEntry(segment, key);
+      if (size > maxSizeInBytes) {
+        return;
+      }
+      segment.entries.put(key, new CacheEntry<>(value, size, now + timeToLiveInNanos, now));
+      entryCount.incrementAndGet();
+      sizeInBytes.addAndGet(size);
+    }
+    while ((entryCount.get() > maxEntries || sizeInBytes.get() > maxSizeInBytes)
+        && evictLeastRecentlyUsedEntry()) {
+      statistics.recordEviction();
+    }
+  }
+
+  /**
+   * Evicts the least recently used entry. Within a segment, the entries are ordered by access, so
+   * this is the least recently used of the first entries of all segments.
+   *
+   * @return Whether an entry was evicted.
+   */
+  private boolean evictLeastRecentlyUsedEntry() {
+    Segment<K, V> oldestSegment = null;
+    long oldestAccessTime = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        final Iterator<CacheEntry<V>> iterator = segment.entries.values().iterator();
+        if (iterator.hasNext()) {
+          final long accessTime = iterator.next().lastAccessTime;
+          if (oldestSegment == null || accessTime - oldestAccessTime < 0) {
+            oldestSegment = segment;
+            oldestAccessTime = accessTime;
+          }
+        }
+      }
+    }
+    if (oldestSegment == null) {
+      return false;
+    }
+    synchronized (oldestSegment) {
+      final Iterator<CacheEntry<V>> iterator = oldestSegment.entries.values().iterator();
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      final CacheEntry<V> removed = iterator.next();
+      iterator.remove();
+      entryCount.decrementAndGet();
+      sizeInBytes.addAndGet(-removed.size);
+    }
+    return true;
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  void clear() {
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        segment.entries.values().forEach(entry -> {
+          entryCount.decrementAndGet();
+          sizeInBytes.addAndGet(-entry.size);
+        });
+        segment.entries.clear();
+      }
+    }
+  }
+
+  private void removeEntry(Segment<K, V> segment, K key) {
+    final CacheEntry<V> removed = segment.entries.remove(key);
+    if (removed != null) {
+      entryCount.decrementAndGet();
+      sizeInBytes.addAndGet(-removed.size);
+    }
+  }
+
+  /**
+   * @return The statistics of this cache.
+   */
+  NearCacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  private static class Segment<K, V> {
+
+    // Locked: access only when synchronized on the segment.
+    private final Map<K, CacheEntry<V>> entries = new LinkedHashMap<>(16, 0.75F, true);
+  }
+
+  private static class CacheEntry<V> {
+
+    private final V value;
+    private final long size;
+    private final long expiryTime;
+    private long lastAccessTime;
+
+    CacheEntry(V value, long size, long expiryTime, long lastAccessTime) {
+      this.value = value;
+      this.size = size;
+      this.expiryTime = expiryTime;
+      this.lastAccessTime = lastAccessTime;
+    }
+  }
+}
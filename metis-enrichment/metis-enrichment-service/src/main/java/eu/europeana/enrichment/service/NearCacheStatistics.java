@@ -0,0 +1,111 @@
+package eu.europeana.enrichment.service;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * This class contains the statistics of an in-process cache used during enrichment (e.g. the
+ * cache of decoded entities). This class is thread-safe.
+ */
+public class NearCacheStatistics {
+
+  private final int maxEntries;
+  private final long maxSizeInBytes;
+  private final IntSupplier entryCountSupplier;
+  private final LongSupplier sizeInBytesSupplier;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder expiryCount = new LongAdder();
+
+  NearCacheStatistics(int maxEntries, long maxSizeInBytes, IntSupplier entryCountSupplier,
+      LongSupplier sizeInBytesSupplier) {
+    this.maxEntries = maxEntries;
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.entryCountSupplier = entryCountSupplier;
+    this.sizeInBytesSupplier = sizeInBytesSupplier;
+  }
+
+  void recordHit() {
+    hitCount.increment();
+  }
+
+  void recordMiss() {
+    missCount.increment();
+  }
+
+  void recordEviction() {
+    evictionCount.increment();
+  }
+
+  void recordExpiry() {
+    expiryCount.increment();
+  }
+
+  /**
+   * @return The maximum number of entries in the cache.
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @return The maximum total (estimated) size of the entries in the cache.
+   */
+  public long getMaxSizeInBytes() {
+    return maxSizeInBytes;
+  }
+
+  /**
+   * @return The number of entries currently in the cache.
+   */
+  public int getEntryCount() {
+    return entryCountSupplier.getAsInt();
+  }
+
+  /**
+   * @return The total (estimated) size of the entries currently in the cache.
+   */
+  public long getSizeInBytes() {
+    return sizeInBytesSupplier.getAsLong();
+  }
+
+  /**
+   * @return The number of lookups for which the cache contained a value.
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return The number of lookups for which the cache did not contain a value.
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return The fraction of the lookups for which the cache contained a value (1 if there were no
+   * lookups).
+   */
+  public double getHitRatio() {
+    final long hits = getHitCount();
+    final long lookups = hits + getMissCount();
+    return lookups == 0 ? 1.0 : ((double) hits / lookups);
+  }
+
+  /**
+   * @return The number of entries that were removed to make room for other entries.
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  /**
+   * @return The number of entries that were removed because they expired.
+   */
+  public long getExpiryCount() {
+    return expiryCount.sum();
+  }
+}
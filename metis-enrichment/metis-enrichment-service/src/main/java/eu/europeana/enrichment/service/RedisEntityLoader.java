@@ -0,0 +1,237 @@
+package eu.europeana.enrichment.service;
+
+import eu.europeana.corelib.solr.entity.ContextualClassImpl;
+import eu.europeana.enrichment.api.external.EntityWrapper;
+import eu.europeana.enrichment.api.internal.MongoTerm;
+import eu.europeana.enrichment.api.internal.MongoTermList;
+import eu.europeana.enrichment.utils.EnrichmentEntityDao;
+import eu.europeana.enrichment.utils.EntityClass;
+import eu.europeana.metis.cache.redis.RedisProvider;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Loads all entities of one entity class from Mongo into Redis. The terms are streamed from a
+ * database cursor and processed in batches: the term lists of a batch are retrieved in one query,
+ * the parents are resolved in one query per level of the hierarchy (parent chains are remembered
+ * for the rest of the load) and the batch is written to Redis in one pipeline. Instances of this
+ * class are not thread-safe, but different instances (for different entity classes) can run in
+ * parallel.
+ */
+class RedisEntityLoader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RedisEntityLoader.class);
+
+  private static final int BATCH_SIZE = 1000;
+
+  private final EnrichmentEntityDao entityDao;
+  private final RedisProvider redisProvider;
+  private final ObjectMapper objectMapper;
+  private final EntityCodec entityCodec;
+  private final EntityEncoding entityEncoding;
+  private final EntityClass entityClass;
+  private final String cachedEntityPrefix;
+
+  private final Map<String, ParentNode> parentNodes = new HashMap<>();
+  private final Map<String, List<String>> parentChains = new HashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param entityDao The DAO for the entities in Mongo.
+   * @param redisProvider The provider of Redis connections.
+   * @param objectMapper The object mapper with which to serialize the contextual entities.
+   * @param entityCodec The codec with which to encode the entities.
+   * @param entityEncoding The encoding in which to store the entities.
+   * @param entityClass The class of the entities to load.
+   * @param cachedEntityPrefix The prefix of the Redis keys for this entity class.
+   */
+  RedisEntityLoader(EnrichmentEntityDao entityDao, RedisProvider redisProvider,
+      ObjectMapper objectMapper, EntityCodec entityCodec, EntityEncoding entityEncoding,
+      EntityClass entityClass, String cachedEntityPrefix) {
+    this.entityDao = entityDao;
+    this.redisProvider = redisProvider;
+    this.objectMapper = objectMapper;
+    this.entityCodec = entityCodec;
+    this.entityEncoding = entityEncoding;
+    this.entityClass = entityClass;
+    this.cachedEntityPrefix = cachedEntityPrefix;
+  }
+
+  /**
+   * Loads all entities of the entity class into Redis.
+   *
+   * @return The number of terms that were processed.
+   */
+  long load() {
+    final long termCount = entityDao.countMongoTerms(entityClass);
+    LOGGER.info("Found entities of type {}: {}", entityClass, termCount);
+    final long startTime = System.nanoTime();
+    long processedCount = 0;
+    final Jedis jedis = redisProvider.getJedis();
+    try (final Stream<MongoTerm> terms = entityDao.streamAllMongoTerms(entityClass)) {
+      final Iterator<MongoTerm> iterator = terms.iterator();
+      final List<MongoTerm> batch = new ArrayList<>(BATCH_SIZE);
+      while (iterator.hasNext()) {
+        batch.add(iterator.next());
+        if (batch.size() == BATCH_SIZE || !iterator.hasNext()) {
+          loadBatch(batch, jedis);
+          processedCount += batch.size();
+          batch.clear();
+          logProgress(processedCount, termCount, startTime);
+        }
+      }
+    } finally {
+      jedis.close();
+    }
+    return processedCount;
+  }
+
+  private void logProgress(long processedCount, long termCount, long startTime) {
+    if (LOGGER.isInfoEnabled()) {
+      final double seconds = Math.max(System.nanoTime() - startTime, 1) / 1_000_000_000.0;
+      LOGGER.info("Elements of type {} added: {} out of: {} ({} per second)", entityClass,
+          processedCount, termCount, Math.round(processedCount / seconds));
+    }
+  }
+
+  private void loadBatch(List<MongoTerm> batch, Jedis jedis) {
+
+    // Retrieve the term lists and resolve their parents.
+    final Map<String, MongoTermList<ContextualClassImpl>> termLists = entityDao.findByCodes(
+        batch.stream().map(MongoTerm::getCodeUri).collect(Collectors.toSet()), entityClass);
+    resolveParents(termLists.values().stream().map(MongoTermList::getParent)
+        .filter(parent -> parent != null).collect(Collectors.toSet()));
+
+    // Write the batch.
+    final Map<String, String> representations = new HashMap<>();
+    final Pipeline pipeline = jedis.pipelined();
+    for (MongoTerm term : batch) {
+      final MongoTermList<ContextualClassImpl> termList = termLists.get(term.getCodeUri());
+      if (termList == null) {
+        continue;
+      }
+      try {
+        String representation = representations.get(term.getCodeUri());
+        if (representation == null) {
+          representation = objectMapper.writeValueAsString(termList.getRepresentation());
+          representations.put(term.getCodeUri(), representation);
+        }
+        writeTerm(term, termList, representation, pipeline);
+      } catch (IOException exception) {
+        LOGGER.warn("", exception);
+      }
+    }
+    pipeline.sync();
+  }
+
+  private void writeTerm(MongoTerm term, MongoTermList<ContextualClassImpl> termList,
+      String representation, Pipeline pipeline) throws IOException {
+    final EntityWrapper entityWrapper = new EntityWrapper();
+    entityWrapper.setOriginalField("");
+    entityWrapper.setEntityClass(entityClass);
+    entityWrapper.setContextualEntity(representation);
+    entityWrapper.setOriginalValue(term.getOriginalLabel());
+    entityWrapper.setUrl(term.getCodeUri());
+    final List<String> labelKeys = new ArrayList<>(2);
+    labelKeys.add(RedisInternalEnricher.getLabelKey(cachedEntityPrefix,
+        RedisInternalEnricher.DEFAULT_LANGUAGE, term.getLabel()));
+    if (term.getLang() != null) {
+      labelKeys.add(RedisInternalEnricher.getLabelKey(cachedEntityPrefix, term.getLang(),
+          term.getLabel()));
+    }
+    for (String labelKey : labelKeys) {
+      pipeline.sadd(labelKey, term.getCodeUri());
+    }
+    pipeline.sadd(RedisInternalEnricher.getLabelIndexKey(cachedEntityPrefix, term.getCodeUri()),
+        labelKeys.toArray(new String[0]));
+    pipeline.hset(RedisInternalEnricher.toBytes(RedisInternalEnricher.getUriKey(cachedEntityPrefix)),
+        RedisInternalEnricher.toBytes(term.getCodeUri()),
+        entityCodec.encode(entityWrapper, entityEncoding));
+    final List<String> parents = getParentChain(termList.getParent());
+    if (!parents.isEmpty()) {
+      pipeline.sadd(RedisInternalEnricher.getParentKey(cachedEntityPrefix, term.getCodeUri()),
+          parents.toArray(new String[0]));
+    }
+    if (termList.getOwlSameAs() != null) {
+      for (String sameAs : termList.getOwlSameAs()) {
+        pipeline.hset(RedisInternalEnricher.getSameAsKey(cachedEntityPrefix), sameAs,
+            term.getCodeUri());
+      }
+    }
+  }
+
+  /**
+   * Makes sure that the given parents, and all their ancestors, are known. This requires one query
+   * per level of the hierarchy for the parents that have not been seen before.
+   */
+  private void resolveParents(Set<String> parents) {
+    Set<String> codeUrisToFind = parents.stream()
+        .filter(parent -> !parentNodes.containsKey(parent)).collect(Collectors.toSet());
+    while (!codeUrisToFind.isEmpty()) {
+      final Map<String, MongoTermList<ContextualClassImpl>> found = entityDao
+          .findByCodes(codeUrisToFind, entityClass);
+      final Set<String> nextCodeUrisToFind = new HashSet<>();
+      for (String codeUri : codeUrisToFind) {
+        final MongoTermList<ContextualClassImpl> termList = found.get(codeUri);
+        parentNodes.put(codeUri, termList == null ? ParentNode.NOT_FOUND
+            : new ParentNode(termList.getCodeUri(), termList.getParent()));
+        if (termList != null && termList.getParent() != null) {
+          nextCodeUrisToFind.add(termList.getParent());
+        }
+      }
+      nextCodeUrisToFind.removeIf(parentNodes::containsKey);
+      codeUrisToFind = nextCodeUrisToFind;
+    }
+  }
+
+  /**
+   * Returns the chain of ancestors starting with the given parent (which must have been resolved).
+   * The chain stops at the first ancestor that can't be found or that was seen before.
+   */
+  private List<String> getParentChain(String parent) {
+    if (parent == null) {
+      return new ArrayList<>();
+    }
+    return parentChains.computeIfAbsent(parent, key -> {
+      final List<String> chain = new ArrayList<>();
+      final Set<String> visited = new HashSet<>();
+      String current = parent;
+      while (current != null && visited.add(current)) {
+        final ParentNode node = parentNodes.get(current);
+        if (node == null || node == ParentNode.NOT_FOUND) {
+          break;
+        }
+        chain.add(node.codeUri);
+        current = node.parent;
+      }
+      return chain;
+    });
+  }
+
+  private static class ParentNode {
+
+    static final ParentNode NOT_FOUND = new ParentNode(null, null);
+
+    private final String codeUri;
+    private final String parent;
+
+    ParentNode(String codeUri, String parent) {
+      this.codeUri = codeUri;
+      this.parent = parent;
+    }
+  }
+}
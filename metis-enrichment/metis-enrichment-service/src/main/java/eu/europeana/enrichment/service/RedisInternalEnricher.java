@@ -2,18 +2,36 @@ package eu.europeana.enrichment.service;
 
 import eu.europeana.enrichment.api.external.EntityWrapper;
 import eu.europeana.enrichment.api.external.ObjectIdSerializer;
-import eu.europeana.enrichment.api.internal.MongoTerm;
-import eu.europeana.enrichment.api.internal.MongoTermList;
 import eu.europeana.enrichment.utils.EnrichmentEntityDao;
 import eu.europeana.enrichment.utils.EntityClass;
 import eu.europeana.enrichment.utils.InputValue;
 import eu.europeana.metis.cache.redis.RedisProvider;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -22,6 +40,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 
 
 /**
@@ -43,30 +65,107 @@ public class RedisInternalEnricher {
 
   private static final String CACHED_ENTITY = "entity" + CACHE_NAME_SEPARATOR;
   private static final String CACHED_PARENT = "parent" + CACHE_NAME_SEPARATOR;
+  private static final String CACHED_LABELS = "labels" + CACHE_NAME_SEPARATOR;
   private static final String CACHED_SAMEAS = "sameas";
   private static final String CACHED_URI = "uri";
 
-  private static final String CACHED_ENTITY_DEF = CACHED_ENTITY + "def" + CACHE_NAME_SEPARATOR;
+  static final String DEFAULT_LANGUAGE = "def";
   private static final String CACHED_ENTITY_WILDCARD = CACHED_ENTITY + "*";
 
   private static final String CACHED_ENRICHMENT_STATUS = "enrichmentstatus";
+  private static final String CACHED_ACTIVE_VERSION = "enrichmentversion:active";
+  private static final String CACHED_LAST_VERSION = "enrichmentversion:last";
+  private static final String VERSION_PREFIX = "v";
+  private static final String VERSIONED_KEY_WILDCARD = VERSION_PREFIX + "[0-9]*"
+      + CACHE_NAME_SEPARATOR;
+  private static final Pattern ENTITY_KEY_PATTERN = Pattern.compile("^(?:" + VERSION_PREFIX
+      + "(\\d{1,18})" + CACHE_NAME_SEPARATOR + ")?(?:" + CACHED_AGENT + "|" + CACHED_CONCEPT
+      + "|" + CACHED_PLACE + "|" + CACHED_TIMESPAN + ")(?:(?:" + CACHED_ENTITY + "|"
+      + CACHED_PARENT + "|" + CACHED_LABELS + ").*|" + CACHED_SAMEAS + "|" + CACHED_URI + ")$",
+      Pattern.DOTALL);
+
+  private static final String SWITCH_ACTIVE_VERSION_SCRIPT =
+      "local current = redis.call('GET', KEYS[1]) "
+          + "if not current or not tonumber(current) "
+          + "or tonumber(current) < tonumber(ARGV[1]) then "
+          + "redis.call('SET', KEYS[1], ARGV[1]) return {1, current or ''} end "
+          + "return {0, current}";
+
+  private static final long ACTIVE_VERSION_REFRESH_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final long INACTIVE_VERSION_GRACE_PERIOD_IN_MILLIS =
+      2 * TimeUnit.NANOSECONDS.toMillis(ACTIVE_VERSION_REFRESH_INTERVAL_IN_NANOS);
+  private static final int SCAN_BATCH_SIZE = 1000;
 
   private static final int SECONDS_PER_MINUTE = 60;
   private static final int MILLISECONDS_PER_SECOND = 1000;
   private static final int LANGUAGE_TAG_LENGTH = 2;
-  private static final int COUNT_OF_ITEMS_COLLECTED_TO_LOG = 100;
+
+  private static final int DEFAULT_NEAR_CACHE_MAX_ENTRIES = 100_000;
+  private static final long DEFAULT_NEAR_CACHE_MAX_SIZE_IN_BYTES = 256L * 1024 * 1024;
+  private static final Duration DEFAULT_NEAR_CACHE_TIME_TO_LIVE = Duration.ofMinutes(10);
+  private static final long ESTIMATED_OBJECT_OVERHEAD_IN_BYTES = 48;
 
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
   private static final List<EntityType> ENTITY_TYPES = createEntityTypeList();
   private final EnrichmentEntityDao entityDao;
   private final RedisProvider redisProvider;
+  private final NearCache<String, EntityWrapper> entityCache;
+  private final NearCache<String, Set<String>> labelCache;
+  private final EntityCodec entityCodec;
+  private final EntityEncoding entityEncoding;
+  private volatile ActiveNamespace activeNamespace;
+  private volatile LabelDictionary labelDictionary;
+  private volatile String labelDictionaryNamespace;
+  private final AtomicBoolean labelDictionaryRebuildInProgress = new AtomicBoolean(false);
 
   public RedisInternalEnricher(EnrichmentEntityDao entityDao, RedisProvider provider,
       boolean populate) {
+    this(entityDao, provider, DEFAULT_NEAR_CACHE_MAX_ENTRIES, DEFAULT_NEAR_CACHE_MAX_SIZE_IN_BYTES,
+        DEFAULT_NEAR_CACHE_TIME_TO_LIVE, EntityEncoding.JSON, populate);
+  }
+
+  /**
+   * Constructor with default settings for the in-process caches.
+   *
+   * @param entityDao The DAO for the entities in Mongo.
+   * @param provider The provider of Redis connections.
+   * @param entityEncoding The encoding in which to store the entities when populating Redis.
+   * Entities in any encoding can be read.
+   * @param populate Whether to populate Redis from Mongo if this has not been done yet.
+   */
+  public RedisInternalEnricher(EnrichmentEntityDao entityDao, RedisProvider provider,
+      EntityEncoding entityEncoding, boolean populate) {
+    this(entityDao, provider, DEFAULT_NEAR_CACHE_MAX_ENTRIES, DEFAULT_NEAR_CACHE_MAX_SIZE_IN_BYTES,
+        DEFAULT_NEAR_CACHE_TIME_TO_LIVE, entityEncoding, populate);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param entityDao The DAO for the entities in Mongo.
+   * @param provider The provider of Redis connections.
+   * @param nearCacheMaxEntries The maximum number of entries in each of the in-process caches (one
+   * for decoded entities, one for label and parent lookups) in front of Redis.
+   * @param nearCacheMaxSizeInBytes The maximum (estimated) size of each of the in-process caches.
+   * @param nearCacheTimeToLive The time after which entries in the in-process caches expire. This
+   * bounds the time it takes for changes made by other instances to become visible.
+   * @param entityEncoding The encoding in which to store the entities when populating Redis.
+   * Entities in any encoding can be read.
+   * @param populate Whether to populate Redis from Mongo if this has not been done yet.
+   */
+  public RedisInternalEnricher(EnrichmentEntityDao entityDao, RedisProvider provider,
+      int nearCacheMaxEntries, long nearCacheMaxSizeInBytes, Duration nearCacheTimeToLive,
+      EntityEncoding entityEncoding, boolean populate) {
     this.entityDao = entityDao;
+    this.entityCache = new NearCache<>(nearCacheMaxEntries, nearCacheMaxSizeInBytes,
+        nearCacheTimeToLive, RedisInternalEnricher::estimateSize);
+    this.labelCache = new NearCache<>(nearCacheMaxEntries, nearCacheMaxSizeInBytes,
+        nearCacheTimeToLive, RedisInternalEnricher::estimateSize);
     SimpleModule sm = new SimpleModule("test", Version.unknownVersion());
     sm.addSerializer(new ObjectIdSerializer());
     OBJECT_MAPPER.registerModule(sm);
+    this.entityCodec = new EntityCodec(sm);
+    this.entityEncoding = entityEncoding;
     redisProvider = provider;
     if (populate) {
       Jedis jedis = redisProvider.getJedis();
@@ -108,130 +207,322 @@ public class RedisInternalEnricher {
   }
 
   /**
-   * Restarts the population of Mongo to Redis
+   * Restarts the population of Mongo to Redis. The data is written to a new version of the cache,
+   * while lookups keep using the current version. When the new version is complete, it is made the
+   * active version and the data of older versions is removed. If another process made a newer
+   * version active in the meantime, the new version is removed instead.
    */
-  public void recreate() {
+  public synchronized void recreate() {
     LOGGER.info("Recreate triggered.");
-    Jedis jedis = redisProvider.getJedis();
-    jedis.del(CACHED_ENRICHMENT_STATUS);
-    jedis.close();
     populate();
+    if (labelDictionary != null) {
+      enableLabelDictionary();
+    }
   }
 
   /**
-   * Removes all information from Redis
+   * Enables local label matching: builds an in-memory dictionary of all labels from Mongo and uses
+   * it (instead of the label keys in Redis) to find the entities matching the values to enrich.
+   * This saves a round trip to Redis for every enrichment, at the cost of keeping all labels in
+   * memory. The dictionary is rebuilt when the cache is recreated. Calling this method when the
+   * dictionary is already enabled rebuilds it. Instances that did not recreate the cache themselves
+   * rebuild the dictionary in the background when they notice that the active version changed: the
+   * current dictionary is used until the new one is ready.
+   */
+  public void enableLabelDictionary() {
+    final String namespace;
+    try (final Jedis jedis = redisProvider.getJedis()) {
+      namespace = getNamespace(jedis.get(CACHED_ACTIVE_VERSION));
+    }
+    labelDictionary = buildLabelDictionary();
+    labelDictionaryNamespace = namespace;
+  }
+
+  private LabelDictionary buildLabelDictionary() {
+    return LabelDictionary.build(entityDao, ENTITY_TYPES.stream()
+        .map(type -> type.entityClass).collect(Collectors.toList()));
+  }
+
+  private void rebuildLabelDictionaryInBackground(String namespace) {
+    if (!labelDictionaryRebuildInProgress.compareAndSet(false, true)) {
+      return;
+    }
+    LOGGER.info("Active version changed: rebuilding the label dictionary in the background.");
+    final Thread thread = new Thread(() -> {
+      try {
+        labelDictionary = buildLabelDictionary();
+        labelDictionaryNamespace = namespace;
+        LOGGER.info("Label dictionary rebuilt.");
+      } catch (RuntimeException e) {
+        LOGGER.warn("Could not rebuild the label dictionary: using the current one.", e);
+      } finally {
+        labelDictionaryRebuildInProgress.set(false);
+      }
+    }, "label-dictionary-rebuild");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Removes all enrichment information (all versions) from Redis. Other information in the same
+   * Redis instance is not affected.
    */
   public void emptyCache() {
     LOGGER.info("Empty cache");
-    Jedis jedis = redisProvider.getJedis();
-    jedis.flushAll();
-    jedis.close();
+    unlinkEntityKeys(key -> true);
+    try (final Jedis jedis = redisProvider.getJedis()) {
+      jedis.unlink(CACHED_ENRICHMENT_STATUS, CACHED_ACTIVE_VERSION, CACHED_LAST_VERSION);
+    }
+    activeNamespace = null;
+    clearNearCaches();
   }
 
   /**
-   * Remove a list of uris from redis.
+   * Remove a list of uris from redis. The label keys containing the URIs are found using the reverse
+   * index, so that all changes can be made in two pipelined round trips.
    *
    * @param uris the list of uris to be removed
    */
   public void remove(List<String> uris) {
-    Jedis jedis = redisProvider.getJedis();
-    for (String str : uris) {
-      jedis.del(CACHED_CONCEPT + CACHED_PARENT + str);
-      jedis.del(CACHED_AGENT + CACHED_PARENT + str);
-      jedis.del(CACHED_TIMESPAN + CACHED_PARENT + str);
-      jedis.del(CACHED_PLACE + CACHED_PARENT + str);
-      jedis.hdel(CACHED_CONCEPT + CACHED_URI, str);
-      jedis.hdel(CACHED_AGENT + CACHED_URI, str);
-      jedis.hdel(CACHED_TIMESPAN + CACHED_URI, str);
-      jedis.hdel(CACHED_PLACE + CACHED_URI, str);
-      Set<String> conceptKeys = jedis.keys(CACHED_CONCEPT + CACHED_ENTITY_WILDCARD);
-      for (String key : conceptKeys) {
-        jedis.srem(key, str);
-      }
-      Set<String> agentKeys = jedis.keys(CACHED_AGENT + CACHED_ENTITY_WILDCARD);
-      for (String key : agentKeys) {
-        jedis.srem(key, str);
+    final String namespace;
+    try (final Jedis jedis = redisProvider.getJedis()) {
+      namespace = getActiveNamespace(() -> jedis);
+
+      // Find the label keys for the URIs.
+      final Pipeline lookupPipeline = jedis.pipelined();
+      final Map<String, Response<Set<String>>> labelKeysByIndexKey = new HashMap<>();
+      for (EntityType type : ENTITY_TYPES) {
+        for (String uri : uris) {
+          final String indexKey = getLabelIndexKey(namespace + type.cachedEntityPrefix, uri);
+          labelKeysByIndexKey.put(indexKey, lookupPipeline.smembers(indexKey));
+        }
       }
-      Set<String> placeKeys = jedis.keys(CACHED_PLACE + CACHED_ENTITY_WILDCARD);
-      for (String key : placeKeys) {
-        jedis.srem(key, str);
+      lookupPipeline.sync();
+
+      // Remove the URIs.
+      final Pipeline removalPipeline = jedis.pipelined();
+      for (EntityType type : ENTITY_TYPES) {
+        final String cachedEntityPrefix = namespace + type.cachedEntityPrefix;
+        for (String uri : uris) {
+          final String indexKey = getLabelIndexKey(cachedEntityPrefix, uri);
+          for (String labelKey : labelKeysByIndexKey.get(indexKey).get()) {
+            removalPipeline.srem(labelKey, uri);
+          }
+          removalPipeline.unlink(getParentKey(cachedEntityPrefix, uri), indexKey);
+          removalPipeline.hdel(getUriKey(cachedEntityPrefix), uri);
+        }
       }
-      Set<String> timespanKeys = jedis.keys(CACHED_TIMESPAN + CACHED_ENTITY_WILDCARD);
-      for (String key : timespanKeys) {
-        jedis.srem(key, str);
+      removalPipeline.sync();
+    }
+    final LabelDictionary dictionary = labelDictionary;
+    if (dictionary != null) {
+      dictionary.remove(uris);
+    }
+
+    // Data written before the reverse index existed has no index: scan the label keys instead.
+    if (namespace.isEmpty()) {
+      final String[] urisToRemove = uris.toArray(new String[0]);
+      for (EntityType type : ENTITY_TYPES) {
+        scanKeys(type.cachedEntityPrefix + CACHED_ENTITY_WILDCARD,
+            (jedis, keys) -> {
+              final Pipeline pipeline = jedis.pipelined();
+              keys.forEach(key -> pipeline.srem(key, urisToRemove));
+              pipeline.sync();
+            });
       }
     }
-    jedis.close();
+    clearNearCaches();
   }
 
   private void populate() {
     long startTime = System.currentTimeMillis();
     setStatus("started");
-    for (EntityType type : ENTITY_TYPES) {
-      loadEntities(type);
+    final String version;
+    try (final Jedis jedis = redisProvider.getJedis()) {
+      version = Long.toString(jedis.incr(CACHED_LAST_VERSION));
+    }
+    final String namespace = getNamespace(version);
+    LOGGER.info("Populating Redis version {}.", version);
+    final ExecutorService executorService = Executors.newFixedThreadPool(ENTITY_TYPES.size());
+    try {
+      final List<Future<Long>> results = new ArrayList<>();
+      for (EntityType type : ENTITY_TYPES) {
+        final RedisEntityLoader loader = new RedisEntityLoader(entityDao, redisProvider,
+            OBJECT_MAPPER, entityCodec, entityEncoding, type.entityClass,
+            namespace + type.cachedEntityPrefix);
+        results.add(executorService.submit(loader::load));
+      }
+      long termCount = 0;
+      for (Future<Long> result : results) {
+        termCount += result.get();
+      }
+      LOGGER.info("Terms processed in populating Redis: {}", termCount);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while populating Redis.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Error while populating Redis.", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    // Switch to the new version, unless another process already switched to a newer one.
+    final long newVersion = Long.parseLong(version);
+    final boolean switched = switchActiveVersion(newVersion);
+    if (switched) {
+      activeNamespace = null;
+      clearNearCaches();
     }
     setStatus("finished");
     int totalSeconds = (int) ((System.currentTimeMillis() - startTime) / MILLISECONDS_PER_SECOND);
     int seconds = totalSeconds % SECONDS_PER_MINUTE;
     int minutes = (totalSeconds - seconds) / SECONDS_PER_MINUTE;
     LOGGER.info("Time spent in populating Redis. minutes: {}, seconds: {}", minutes, seconds);
+
+    // If we did not switch, our version will never be used: remove it.
+    if (!switched) {
+      final long removedCount = unlinkEntityKeys(key -> isEntityKeyOfVersion(key, newVersion));
+      LOGGER.info("Removed {} keys of unused version {} from Redis.", removedCount, version);
+      return;
+    }
+
+    // Remove the older versions, after giving other instances time to see the switch.
+    try {
+      Thread.sleep(INACTIVE_VERSION_GRACE_PERIOD_IN_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.warn("Interrupted: the older versions in Redis are not removed.", e);
+      return;
+    }
+    final long removedCount = unlinkEntityKeys(key -> isInactiveEntityKey(key, newVersion));
+    LOGGER.info("Removed {} keys of older versions from Redis.", removedCount);
   }
 
-  private void setStatus(String status) {
-    Jedis jedis = redisProvider.getJedis();
-    jedis.set(CACHED_ENRICHMENT_STATUS, status);
-    jedis.close();
+  /**
+   * Makes the given version the active version, but only if the currently active version is older
+   * (or there is none). This check and the switch happen atomically in Redis, so that processes
+   * populating Redis at the same time can never switch back to an older version.
+   *
+   * @param newVersion The version to switch to.
+   * @return Whether the switch was made.
+   */
+  private boolean switchActiveVersion(long newVersion) {
+    final List<?> result;
+    try (final Jedis jedis = redisProvider.getJedis()) {
+      result = (List<?>) jedis.eval(SWITCH_ACTIVE_VERSION_SCRIPT,
+          Collections.singletonList(CACHED_ACTIVE_VERSION),
+          Collections.singletonList(Long.toString(newVersion)));
+    }
+    final boolean switched = Long.valueOf(1).equals(result.get(0));
+    final Object currentVersion = result.get(1);
+    if (switched) {
+      LOGGER.info("Switched Redis from version {} to version {}.", currentVersion, newVersion);
+    } else {
+      LOGGER.warn("Not switching Redis to version {}: version {} is already active.", newVersion,
+          currentVersion);
+    }
+    return switched;
   }
 
-  private void loadEntities(EntityType entityType) {
-    Jedis jedis = redisProvider.getJedis();
-    List<MongoTerm> terms = entityDao.getAllMongoTerms(entityType.entityClass);
-    int termCount = terms.size();
-    LOGGER.info("Found entities of type {}: {}", entityType.entityClass, termCount);
-    int i = 0;
-    for (MongoTerm term : terms) {
-      loadEntity(entityType, term, jedis);
-      i++;
-      if (i % COUNT_OF_ITEMS_COLLECTED_TO_LOG == 0) {
-        LOGGER.info("Elements added: {} out of: {}", i, termCount);
+  /**
+   * Removes all entity keys (of any version) matching the given predicate. The keys are found
+   * incrementally (using SCAN, matching the prefix of each entity type) and removed in batches
+   * (using UNLINK) so that Redis is not blocked for other clients. Keys that don't have the exact
+   * shape of an entity key (see {@link #isEntityKey(String)}) are never removed: they may belong to
+   * other applications using the same Redis instance.
+   *
+   * @return The number of keys removed.
+   */
+  private long unlinkEntityKeys(Predicate<String> keysToRemove) {
+    final LongAdder removedCount = new LongAdder();
+    for (EntityType type : ENTITY_TYPES) {
+      for (String prefix : Arrays.asList("", VERSIONED_KEY_WILDCARD)) {
+        scanKeys(prefix + type.cachedEntityPrefix + "*", (jedis, keys) -> {
+          final String[] keysToUnlink = keys.stream().filter(RedisInternalEnricher::isEntityKey)
+              .filter(keysToRemove).toArray(String[]::new);
+          if (keysToUnlink.length > 0) {
+            removedCount.add(jedis.unlink(keysToUnlink));
+          }
+        });
       }
     }
-    jedis.close();
+    return removedCount.sum();
   }
 
-  private void loadEntity(EntityType entityType, MongoTerm term, Jedis jedis) {
-    MongoTermList<?> termList = entityDao.findByCode(term.getCodeUri(), entityType.entityClass);
-    if (termList != null) {
-      try {
-        EntityWrapper entityWrapper = new EntityWrapper();
-        entityWrapper.setOriginalField("");
-        entityWrapper.setEntityClass(entityType.entityClass);
-        entityWrapper.setContextualEntity(
-            this.getObjectMapper().writeValueAsString(termList.getRepresentation()));
-        entityWrapper.setOriginalValue(term.getOriginalLabel());
-        entityWrapper.setUrl(term.getCodeUri());
-        jedis.sadd(entityType.cachedEntityPrefix + CACHED_ENTITY_DEF + term.getLabel(),
-            term.getCodeUri());
-        if (term.getLang() != null) {
-          jedis.sadd(entityType.cachedEntityPrefix + CACHED_ENTITY + term.getLang() +
-              CACHE_NAME_SEPARATOR + term.getLabel(), term.getCodeUri());
-        }
-        jedis.hset(entityType.cachedEntityPrefix + CACHED_URI, term.getCodeUri(),
-            OBJECT_MAPPER.writeValueAsString(entityWrapper));
-        List<String> parents = this.findParents(termList.getParent(), entityType.entityClass);
-        if (!parents.isEmpty()) {
-          jedis.sadd(entityType.cachedEntityPrefix + CACHED_PARENT + term.getCodeUri(),
-              parents.toArray(new String[]{}));
-        }
-        if (termList.getOwlSameAs() != null) {
-          for (String sameAs : termList.getOwlSameAs()) {
-            jedis.hset(entityType.cachedEntityPrefix + CACHED_SAMEAS, sameAs, term.getCodeUri());
-          }
+  /**
+   * Iterates incrementally (using SCAN) over all keys matching the given pattern, so that Redis is
+   * not blocked for other clients. The keys are processed in batches.
+   *
+   * @param pattern The pattern.
+   * @param batchProcessor Processes a batch of keys (using the given connection).
+   */
+  private void scanKeys(String pattern, BiConsumer<Jedis, List<String>> batchProcessor) {
+    try (final Jedis jedis = redisProvider.getJedis()) {
+      final ScanParams scanParams = new ScanParams().count(SCAN_BATCH_SIZE).match(pattern);
+      String cursor = ScanParams.SCAN_POINTER_START;
+      do {
+        final ScanResult<String> scanResult = jedis.scan(cursor, scanParams);
+        if (!scanResult.getResult().isEmpty()) {
+          batchProcessor.accept(jedis, scanResult.getResult());
         }
-      } catch (IOException exception) {
-        LOGGER.warn("", exception);
-      }
+        cursor = scanResult.getStringCursor();
+      } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+    }
+  }
+
+  static boolean isEntityKey(String key) {
+    return ENTITY_KEY_PATTERN.matcher(key).matches();
+  }
+
+  static boolean isInactiveEntityKey(String key, long activeVersion) {
+    final Matcher matcher = ENTITY_KEY_PATTERN.matcher(key);
+    if (!matcher.matches()) {
+      return false;
     }
+    final String version = matcher.group(1);
+    return version == null || Long.parseLong(version) < activeVersion;
+  }
+
+  static boolean isEntityKeyOfVersion(String key, long version) {
+    final Matcher matcher = ENTITY_KEY_PATTERN.matcher(key);
+    return matcher.matches() && matcher.group(1) != null
+        && Long.parseLong(matcher.group(1)) == version;
+  }
+
+  /**
+   * Returns the namespace of the keys of the given version. Before versioning was introduced, the
+   * keys had no namespace: this is the namespace used if no version is active.
+   */
+  static String getNamespace(String version) {
+    return version == null ? "" : (VERSION_PREFIX + version + CACHE_NAME_SEPARATOR);
+  }
+
+  /**
+   * Returns the namespace of the active version. This is checked at a fixed interval, so that
+   * switching to a new version is picked up without needing a round trip for every lookup. If the
+   * label dictionary is enabled and was built for another version, it is rebuilt.
+   */
+  private String getActiveNamespace(Supplier<Jedis> jedisSupplier) {
+    final ActiveNamespace current = activeNamespace;
+    if (current != null && current.expiryTime - System.nanoTime() > 0) {
+      return current.namespace;
+    }
+    final String namespace = getNamespace(jedisSupplier.get().get(CACHED_ACTIVE_VERSION));
+    activeNamespace = new ActiveNamespace(namespace,
+        System.nanoTime() + ACTIVE_VERSION_REFRESH_INTERVAL_IN_NANOS);
+    if (labelDictionary != null && !namespace.equals(labelDictionaryNamespace)) {
+      rebuildLabelDictionaryInBackground(namespace);
+    }
+    return namespace;
+  }
+
+  private void setStatus(String status) {
+    Jedis jedis = redisProvider.getJedis();
+    jedis.set(CACHED_ENRICHMENT_STATUS, status);
+    jedis.close();
   }
 
   /**
@@ -239,138 +530,363 @@ public class RedisInternalEnricher {
    * the external resources to recreate the DB The enrichment is performed by lowercasing every
    * value so that searchability in the DB is enhanced, but the Capitalized version is always
    * retrieved
+   * <p>
+   * All values are looked up together in a fixed number of pipelined round trips to Redis
+   * (independent of the number of values): one to find the URIs matching the labels, one to find
+   * the parents of these URIs and one to fetch the entities of all these URIs (each distinct URI
+   * is fetched only once). If the label dictionary is enabled (see {@link
+   * #enableLabelDictionary()}), the labels are matched locally instead, which saves the first round
+   * trip. Label lookups, parent lookups and decoded entities are kept in
+   * in-process near caches, so that lookups for popular values need neither Redis nor JSON
+   * decoding.
+   * </p>
    *
    * @param values The values to enrich
    * @return A list of enrichments
    */
   protected List<EntityWrapper> tag(List<InputValue> values) throws IOException {
+    return tagPerValue(values).stream().flatMap(List::stream).collect(Collectors.toList());
+  }
 
-    List<EntityWrapper> entities = new ArrayList<>();
+  /**
+   * Like {@link #tag(List)}, but keeps the enrichments of the values apart.
+   *
+   * @param values The values to enrich
+   * @return The enrichments for each value, in the same order as the values: the list contains
+   * one (possibly empty) list for each value.
+   */
+  protected List<List<EntityWrapper>> tagPerValue(List<InputValue> values) throws IOException {
+
+    try (final RedisConnection connection = new RedisConnection()) {
+      return tagPerValue(values, connection);
+    }
+  }
+
+  private List<List<EntityWrapper>> tagPerValue(List<InputValue> values,
+      RedisConnection connection) throws IOException {
+
+    // Determine the lookups to perform: one for each value and vocabulary.
+    final String namespace = getActiveNamespace(connection::getJedis);
+    final List<EntityLookup> lookups = new ArrayList<>();
+    final List<List<EntityWrapper>> result = new ArrayList<>(values.size());
     for (InputValue inputValue : values) {
+      final List<EntityWrapper> valueResult = new ArrayList<>();
+      result.add(valueResult);
       if (inputValue.getVocabularies() == null) {
         continue;
       }
       for (EntityClass voc : inputValue.getVocabularies()) {
-        entities.addAll(findEntities(inputValue.getValue().toLowerCase(Locale.US),
-            inputValue.getOriginalField(), inputValue.getLanguage(), voc));
+        lookups.add(new EntityLookup(voc, namespace + getCachedEntityPrefix(voc),
+            getLanguage(inputValue.getLanguage()), inputValue.getValue().toLowerCase(Locale.US),
+            inputValue.getOriginalField(), valueResult));
       }
     }
-    return entities;
+    if (lookups.isEmpty()) {
+      return result;
+    }
+
+    // Find the URIs for all labels: locally if the label dictionary is enabled.
+    final LabelDictionary dictionary = labelDictionary;
+    final Map<String, Set<String>> urisByLabelKey;
+    if (dictionary == null) {
+      urisByLabelKey = getSetMembers(connection,
+          lookups.stream().map(lookup -> lookup.labelKey).collect(Collectors.toSet()));
+    } else {
+      urisByLabelKey = new HashMap<>();
+      lookups.forEach(lookup -> urisByLabelKey.computeIfAbsent(lookup.labelKey,
+          key -> dictionary.find(lookup.entityClass, lookup.language, lookup.label)));
+    }
+
+    // Find the parents for all these URIs.
+    final Map<String, Set<String>> urisByPrefix = new HashMap<>();
+    for (EntityLookup lookup : lookups) {
+      urisByPrefix.computeIfAbsent(lookup.cachedEntityPrefix, key -> new HashSet<>())
+          .addAll(urisByLabelKey.get(lookup.labelKey));
+    }
+    final Set<String> parentKeys = urisByPrefix.entrySet().stream()
+        .flatMap(entry -> entry.getValue().stream()
+            .map(uri -> getParentKey(entry.getKey(), uri))).collect(Collectors.toSet());
+    final Map<String, Set<String>> parentsByParentKey = getSetMembers(connection, parentKeys);
+
+    // Fetch all entities (including the parents), each URI only once.
+    urisByPrefix.forEach((prefix, uris) -> uris.addAll(uris.stream()
+        .map(uri -> parentsByParentKey.get(getParentKey(prefix, uri)))
+        .flatMap(Set::stream).collect(Collectors.toList())));
+    final Map<String, EntityWrapper> entitiesByEntityKey = getEntities(connection, urisByPrefix);
+
+    // Compile the result. The entities are copied as they may be shared with the near cache.
+    for (EntityLookup lookup : lookups) {
+      final List<EntityWrapper> entities = lookup.result;
+      for (String uri : urisByLabelKey.get(lookup.labelKey)) {
+        final EntityWrapper entity = entitiesByEntityKey.get(lookup.cachedEntityPrefix + uri);
+        if (entity == null) {
+          continue;
+        }
+        final EntityWrapper entityCopy = copyEntity(entity);
+        entityCopy.setOriginalField(lookup.originalField);
+        entities.add(entityCopy);
+        for (String parent : parentsByParentKey
+            .get(getParentKey(lookup.cachedEntityPrefix, uri))) {
+          final EntityWrapper parentEntity = entitiesByEntityKey
+              .get(lookup.cachedEntityPrefix + parent);
+          if (parentEntity != null) {
+            entities.add(copyEntity(parentEntity));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static EntityWrapper copyEntity(EntityWrapper entity) {
+    final EntityWrapper result = new EntityWrapper();
+    result.setEntityClass(entity.getEntityClass());
+    result.setOriginalField(entity.getOriginalField());
+    result.setContextualEntity(entity.getContextualEntity());
+    result.setUrl(entity.getUrl());
+    result.setOriginalValue(entity.getOriginalValue());
+    return result;
+  }
+
+  private Map<String, Set<String>> getSetMembers(RedisConnection connection, Set<String> keys) {
+    final Map<String, Set<String>> result = new HashMap<>();
+    final List<String> requestedKeys = new ArrayList<>();
+    for (String key : keys) {
+      final Set<String> cachedMembers = labelCache.get(key);
+      if (cachedMembers == null) {
+        requestedKeys.add(key);
+      } else {
+        result.put(key, cachedMembers);
+      }
+    }
+    if (requestedKeys.isEmpty()) {
+      return result;
+    }
+    final Pipeline pipeline = connection.getJedis().pipelined();
+    final Map<String, Response<Set<String>>> responses = new HashMap<>();
+    requestedKeys.forEach(key -> responses.put(key, pipeline.smembers(key)));
+    pipeline.sync();
+    responses.forEach((key, response) -> {
+      final Set<String> members = Collections.unmodifiableSet(response.get());
+      labelCache.put(key, members);
+      result.put(key, members);
+    });
+    return result;
   }
 
-  private List<String> findParents(String parent, EntityClass entityClass) {
-    List<String> parentEntities = new ArrayList<>();
-    MongoTermList<?> parents = entityDao.findByCode(parent, entityClass);
-    if (parents != null) {
-      parentEntities.add(parents.getCodeUri());
-      if (parents.getParent() != null && !parent.equals(parents.getParent())) {
-        parentEntities.addAll(this.findParents(parents.getParent(), entityClass));
+  private Map<String, EntityWrapper> getEntities(RedisConnection connection,
+      Map<String, Set<String>> urisByPrefix) throws IOException {
+    final Map<String, EntityWrapper> result = new HashMap<>();
+    final Map<String, List<String>> requestedUrisByPrefix = new HashMap<>();
+    urisByPrefix.forEach((prefix, uris) -> {
+      final List<String> requestedUris = new ArrayList<>();
+      for (String uri : uris) {
+        final EntityWrapper cachedEntity = entityCache.get(prefix + uri);
+        if (cachedEntity == null) {
+          requestedUris.add(uri);
+        } else {
+          result.put(prefix + uri, cachedEntity);
+        }
+      }
+      if (!requestedUris.isEmpty()) {
+        requestedUrisByPrefix.put(prefix, requestedUris);
       }
+    });
+    if (requestedUrisByPrefix.isEmpty()) {
+      return result;
     }
+    final Pipeline pipeline = connection.getJedis().pipelined();
+    final Map<String, Response<List<byte[]>>> responses = new HashMap<>();
+    requestedUrisByPrefix.forEach((prefix, uris) -> responses.put(prefix, pipeline.hmget(
+        toBytes(getUriKey(prefix)), uris.stream().map(RedisInternalEnricher::toBytes)
+            .toArray(byte[][]::new))));
+    pipeline.sync();
+    for (Entry<String, Response<List<byte[]>>> response : responses.entrySet()) {
+      final List<String> requestedUris = requestedUrisByPrefix.get(response.getKey());
+      final List<byte[]> values = response.getValue().get();
+      for (int i = 0; i < requestedUris.size(); i++) {
+        final String entityKey = response.getKey() + requestedUris.get(i);
+        if (values.get(i) == null) {
+          LOGGER.warn("Could not find entity with URI {} in Redis.", requestedUris.get(i));
+        } else {
+          final EntityWrapper entity = entityCodec.decode(values.get(i));
+          entityCache.put(entityKey, entity);
+          result.put(entityKey, entity);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return The statistics of the near cache of entities (keyed by their URIs).
+   */
+  public NearCacheStatistics getEntityCacheStatistics() {
+    return entityCache.getStatistics();
+  }
+
+  /**
+   * @return The statistics of the near cache of label and parent lookups (resolving to URIs).
+   */
+  public NearCacheStatistics getLabelCacheStatistics() {
+    return labelCache.getStatistics();
+  }
+
+  private void clearNearCaches() {
+    entityCache.clear();
+    labelCache.clear();
+  }
+
+  private static long estimateSize(EntityWrapper entity) {
+    return ESTIMATED_OBJECT_OVERHEAD_IN_BYTES + estimateSize(entity.getOriginalField())
+        + estimateSize(entity.getContextualEntity()) + estimateSize(entity.getUrl())
+        + estimateSize(entity.getOriginalValue());
+  }
+
+  private static long estimateSize(Set<String> members) {
+    return ESTIMATED_OBJECT_OVERHEAD_IN_BYTES
+        + members.stream().mapToLong(RedisInternalEnricher::estimateSize).sum();
+  }
+
+  private static long estimateSize(String value) {
+    return value == null ? 0 : (ESTIMATED_OBJECT_OVERHEAD_IN_BYTES + 2L * value.length());
+  }
+
+  private static String getLanguage(String lang) {
+    return StringUtils.isEmpty(lang) || lang.length() != LANGUAGE_TAG_LENGTH ? DEFAULT_LANGUAGE
+        : lang;
+  }
+
+  static String getLabelKey(String cachedEntityPrefix, String language, String label) {
+    return cachedEntityPrefix + CACHED_ENTITY + language + CACHE_NAME_SEPARATOR + label;
+  }
+
+  static String getUriKey(String cachedEntityPrefix) {
+    return cachedEntityPrefix + CACHED_URI;
+  }
 
-    return parentEntities;
+  static String getParentKey(String cachedEntityPrefix, String uri) {
+    return cachedEntityPrefix + CACHED_PARENT + uri;
+  }
+
+  /**
+   * Returns the key of the reverse index for the given URI: this is the set of label keys (see
+   * {@link #getLabelKey(String, String, String)}) that contain the URI.
+   */
+  static String getLabelIndexKey(String cachedEntityPrefix, String uri) {
+    return cachedEntityPrefix + CACHED_LABELS + uri;
   }
 
-  private List<EntityWrapper> findEntities(String lowerCase, String field, String lang,
-      EntityClass entityClass) throws IOException {
-    final String cachedEntityPrefix;
+  static String getSameAsKey(String cachedEntityPrefix) {
+    return cachedEntityPrefix + CACHED_SAMEAS;
+  }
+
+  private static String getCachedEntityPrefix(EntityClass entityClass) {
     switch (entityClass) {
       case AGENT:
-        cachedEntityPrefix = CACHED_AGENT;
-        break;
+        return CACHED_AGENT;
       case CONCEPT:
-        cachedEntityPrefix = CACHED_CONCEPT;
-        break;
+        return CACHED_CONCEPT;
       case PLACE:
-        cachedEntityPrefix = CACHED_PLACE;
-        break;
+        return CACHED_PLACE;
       case TIMESPAN:
-        cachedEntityPrefix = CACHED_TIMESPAN;
-        break;
+        return CACHED_TIMESPAN;
       default:
         throw new IllegalStateException("Unknown entity class: " + entityClass.name());
     }
-    return findEntities(lowerCase, field, lang, cachedEntityPrefix);
   }
 
-  private List<EntityWrapper> findEntities(String value, String originalField, String lang,
-      String cachedEntityPrefix) throws IOException {
-    Set<EntityWrapper> result = new HashSet<>();
-
-    if (StringUtils.isEmpty(lang) || lang.length() != LANGUAGE_TAG_LENGTH) {
-      lang = "def";
-    }
+  public EntityWrapper getByUri(String uri) throws IOException {
     Jedis jedis = redisProvider.getJedis();
-    if (!jedis.isConnected()) {
-      jedis.connect();
-    }
-    final String cacheKey = cachedEntityPrefix + CACHED_ENTITY + lang + CACHE_NAME_SEPARATOR + value;
-    if (jedis.exists(cacheKey)) {
-      Set<String> urisToCheck = jedis.smembers(cacheKey);
-      for (String uri : urisToCheck) {
-        EntityWrapper entity = OBJECT_MAPPER
-            .readValue(jedis.hget(cachedEntityPrefix + CACHED_URI, uri), EntityWrapper.class);
-        entity.setOriginalField(originalField);
-        result.add(entity);
-        if (jedis.exists(cachedEntityPrefix + CACHED_PARENT + uri)) {
-          Set<String> parents = jedis.smembers(cachedEntityPrefix + CACHED_PARENT + uri);
-          for (String parent : parents) {
-            EntityWrapper parentEntity = OBJECT_MAPPER.readValue(
-                jedis.hget(cachedEntityPrefix + CACHED_URI, parent), EntityWrapper.class);
-            result.add(parentEntity);
-          }
-        }
+    final String namespace = getActiveNamespace(() -> jedis);
+    final List<String> cachedEntityPrefixes = Arrays.asList(namespace + CACHED_AGENT,
+        namespace + CACHED_CONCEPT, namespace + CACHED_TIMESPAN, namespace + CACHED_PLACE);
+    EntityWrapper entityWrapper = null;
+    for (String cachedEntityPrefix : cachedEntityPrefixes) {
+      final EntityWrapper entity = getEntity(jedis, cachedEntityPrefix, uri);
+      if (entity != null) {
+        entityWrapper = entity;
+      }
+    }
+    for (String cachedEntityPrefix : cachedEntityPrefixes) {
+      final String sameAsUri = jedis.hget(getSameAsKey(cachedEntityPrefix), uri);
+      final EntityWrapper entity =
+          sameAsUri == null ? null : getEntity(jedis, cachedEntityPrefix, sameAsUri);
+      if (entity != null) {
+        entityWrapper = entity;
       }
     }
     jedis.close();
-    return new ArrayList<>(result);
+    return entityWrapper;
   }
 
-  public EntityWrapper getByUri(String uri) throws IOException {
-    Jedis jedis = redisProvider.getJedis();
-    EntityWrapper entityWrapper = null;
-    if (jedis.hexists(CACHED_AGENT + CACHED_URI, uri)) {
-      entityWrapper =
-          OBJECT_MAPPER.readValue(jedis.hget(CACHED_AGENT + CACHED_URI, uri), EntityWrapper.class);
-    }
-    if (jedis.hexists(CACHED_CONCEPT + CACHED_URI, uri)) {
-      entityWrapper = OBJECT_MAPPER.readValue(jedis.hget(CACHED_CONCEPT + CACHED_URI, uri),
-          EntityWrapper.class);
-    }
-    if (jedis.hexists(CACHED_TIMESPAN + CACHED_URI, uri)) {
-      entityWrapper = OBJECT_MAPPER.readValue(jedis.hget(CACHED_TIMESPAN + CACHED_URI, uri),
-          EntityWrapper.class);
-    }
-    if (jedis.hexists(CACHED_PLACE + CACHED_URI, uri)) {
-      entityWrapper =
-          OBJECT_MAPPER.readValue(jedis.hget(CACHED_PLACE + CACHED_URI, uri), EntityWrapper.class);
-    }
+  /**
+   * A Redis connection that is only obtained when it is first needed (lookups that can be answered
+   * completely from the near caches don't need one).
+   */
+  private class RedisConnection implements AutoCloseable {
 
-    if (jedis.hexists(CACHED_AGENT + CACHED_SAMEAS, uri)) {
-      entityWrapper = OBJECT_MAPPER.readValue(
-          jedis.hget(CACHED_AGENT + CACHED_URI, jedis.hget(CACHED_AGENT + CACHED_SAMEAS, uri)),
-          EntityWrapper.class);
-    }
-    if (jedis.hexists(CACHED_CONCEPT + CACHED_SAMEAS, uri)) {
-      entityWrapper = OBJECT_MAPPER.readValue(
-          jedis.hget(CACHED_CONCEPT + CACHED_URI, jedis.hget(CACHED_CONCEPT + CACHED_SAMEAS, uri)),
-          EntityWrapper.class);
+    private Jedis jedis;
+
+    Jedis getJedis() {
+      if (jedis == null) {
+        jedis = redisProvider.getJedis();
+        if (!jedis.isConnected()) {
+          jedis.connect();
+        }
+      }
+      return jedis;
     }
-    if (jedis.hexists(CACHED_TIMESPAN + CACHED_SAMEAS, uri)) {
-      entityWrapper = OBJECT_MAPPER.readValue(jedis.hget(CACHED_TIMESPAN + CACHED_URI,
-          jedis.hget(CACHED_TIMESPAN + CACHED_SAMEAS, uri)), EntityWrapper.class);
+
+    @Override
+    public void close() {
+      if (jedis != null) {
+        jedis.close();
+      }
     }
-    if (jedis.hexists(CACHED_PLACE + CACHED_SAMEAS, uri)) {
-      entityWrapper = OBJECT_MAPPER.readValue(
-          jedis.hget(CACHED_PLACE + CACHED_URI, jedis.hget(CACHED_PLACE + CACHED_SAMEAS, uri)),
-          EntityWrapper.class);
+  }
+
+  private EntityWrapper getEntity(Jedis jedis, String cachedEntityPrefix, String uri)
+      throws IOException {
+    final byte[] encodedEntity = jedis.hget(toBytes(getUriKey(cachedEntityPrefix)), toBytes(uri));
+    return encodedEntity == null ? null : entityCodec.decode(encodedEntity);
+  }
+
+  static byte[] toBytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static class ActiveNamespace {
+
+    private final String namespace;
+    private final long expiryTime;
+
+    ActiveNamespace(String namespace, long expiryTime) {
+      this.namespace = namespace;
+      this.expiryTime = expiryTime;
     }
-    jedis.close();
-    return entityWrapper;
   }
 
-  private ObjectMapper getObjectMapper() {
-    return OBJECT_MAPPER;
+  private static class EntityLookup {
+
+    private final EntityClass entityClass;
+    private final String cachedEntityPrefix;
+    private final String language;
+    private final String label;
+    private final String labelKey;
+    private final String originalField;
+    private final List<EntityWrapper> result;
+
+    EntityLookup(EntityClass entityClass, String cachedEntityPrefix, String language,
+        String label, String originalField, List<EntityWrapper> result) {
+      this.entityClass = entityClass;
+      this.cachedEntityPrefix = cachedEntityPrefix;
+      this.language = language;
+      this.label = label;
+      this.labelKey = getLabelKey(cachedEntityPrefix, language, label);
+      this.originalField = originalField;
+      this.result = result;
+    }
   }
 
   private static class EntityType {
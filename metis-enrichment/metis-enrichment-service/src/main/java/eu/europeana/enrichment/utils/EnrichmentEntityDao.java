@@ -30,10 +30,13 @@ import eu.europeana.enrichment.api.internal.PlaceTermList;
 import eu.europeana.enrichment.api.internal.TimespanTermList;
 import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.mongojack.DBCursor;
 import org.mongojack.DBSort;
@@ -75,6 +78,8 @@ public class EnrichmentEntityDao implements Closeable {
   private static final String TERM_LABEL = "label";
   private static final String TERM_MODIFIED = "modified";
 
+  private static final int CURSOR_BATCH_SIZE = 1000;
+
   private JacksonDBCollection<ConceptTermList, String> cColl;
   private JacksonDBCollection<PlaceTermList, String> pColl;
   private JacksonDBCollection<TimespanTermList, String> tColl;
@@ -357,6 +362,61 @@ public class EnrichmentEntityDao implements Closeable {
     return MongoTermList.cast(result);
   }
 
+  /**
+   * Find TermLists by codeURI. This is equivalent to calling {@link #findByCode(String,
+   * EntityClass)} for each code URI, but uses only one query.
+   *
+   * @param codeUris The code URIs to find.
+   * @param entityClass The type of the entities.
+   * @return The term lists, keyed by code URI. Code URIs for which no term list is found are
+   * absent.
+   */
+  public Map<String, MongoTermList<ContextualClassImpl>> findByCodes(Collection<String> codeUris,
+      EntityClass entityClass) {
+    initDbIfNeeded();
+    final Map<String, MongoTermList<ContextualClassImpl>> result = new HashMap<>();
+    if (codeUris.isEmpty()) {
+      return result;
+    }
+    switch (entityClass) {
+      case CONCEPT:
+        collectByCode(cColl.find(new BasicDBObject(ENTITY_TYPE_PROPERTY, CONCEPT_TYPE))
+            .in(TERM_CODE_URI, codeUris), result);
+        break;
+      case PLACE:
+        collectByCode(pColl.find(new BasicDBObject(ENTITY_TYPE_PROPERTY, PLACE_TYPE))
+            .in(TERM_CODE_URI, codeUris), result);
+        break;
+      case AGENT:
+        collectByCode(aColl.find(new BasicDBObject(ENTITY_TYPE_PROPERTY, AGENT_TYPE))
+            .in(TERM_CODE_URI, codeUris), result);
+        break;
+      case TIMESPAN:
+        collectByCode(tColl.find(new BasicDBObject(ENTITY_TYPE_PROPERTY, TIMESPAN_TYPE))
+            .in(TERM_CODE_URI, codeUris), result);
+        break;
+      case ORGANIZATION:
+        collectByCode(oColl.find(new BasicDBObject(ENTITY_TYPE_PROPERTY, ORGANIZATION_TYPE))
+            .in(TERM_CODE_URI, codeUris), result);
+        break;
+      default:
+        break;
+    }
+    return result;
+  }
+
+  private static <S extends ContextualClassImpl, T extends MongoTermList<S>> void collectByCode(
+      DBCursor<T> cursor, Map<String, MongoTermList<ContextualClassImpl>> result) {
+    try {
+      while (cursor.hasNext()) {
+        final T termList = cursor.next();
+        result.putIfAbsent(termList.getCodeUri(), MongoTermList.cast(termList));
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+
   private TimespanTermList findTimespanByCode(String codeUri) {
     DBCursor<TimespanTermList> curs = tColl
         .find(new BasicDBObject(ENTITY_TYPE_PROPERTY, TIMESPAN_TYPE))
@@ -445,12 +505,37 @@ public class EnrichmentEntityDao implements Closeable {
   }
 
   public List<MongoTerm> getAllMongoTerms(EntityClass entityClass) {
+    try (final Stream<MongoTerm> terms = streamAllMongoTerms(entityClass)) {
+      return terms.collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Streams all terms of the given entity class. The terms are read lazily from a database cursor
+   * (so that they need not all be in memory at the same time). The stream should be closed after
+   * use to release the cursor.
+   *
+   * @param entityClass The type of the entity e.g. organization
+   * @return The terms.
+   */
+  public Stream<MongoTerm> streamAllMongoTerms(EntityClass entityClass) {
     initDbIfNeeded();
     JacksonDBCollection<MongoTerm, String> collection = JacksonDBCollection.wrap(
         db.getCollection(getTableName(entityClass)), MongoTerm.class,
         String.class);
-    DBCursor<MongoTerm> curs = collection.find();
-    return StreamSupport.stream(curs.spliterator(), false).collect(Collectors.toList());
+    DBCursor<MongoTerm> curs = collection.find().batchSize(CURSOR_BATCH_SIZE);
+    return StreamSupport.stream(curs.spliterator(), false).onClose(curs::close);
+  }
+
+  /**
+   * Counts the terms of the given entity class.
+   *
+   * @param entityClass The type of the entity e.g. organization
+   * @return The number of terms.
+   */
+  public long countMongoTerms(EntityClass entityClass) {
+    initDbIfNeeded();
+    return db.getCollection(getTableName(entityClass)).count();
   }
 
   /**
@@ -0,0 +1,43 @@
+package eu.europeana.enrichment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.enrichment.api.external.EntityWrapper;
+import eu.europeana.enrichment.utils.EntityClass;
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.module.SimpleModule;
+import org.junit.jupiter.api.Test;
+
+class EntityCodecTest {
+
+  private final EntityCodec codec = new EntityCodec(
+      new SimpleModule("test", Version.unknownVersion()));
+
+  private static EntityWrapper createEntity() {
+    final EntityWrapper entity = new EntityWrapper();
+    entity.setUrl("http://data.europeana.eu/place/base/1");
+    entity.setOriginalField("edm:currentLocation");
+    entity.setEntityClass(EntityClass.PLACE);
+    entity.setContextualEntity("{\"about\":\"http://data.europeana.eu/place/base/1\","
+        + "\"prefLabel\":{\"en\":[\"Paris\"],\"fr\":[\"Paris\"]}}");
+    return entity;
+  }
+
+  @Test
+  void entitiesShouldSurviveARoundTripInEitherEncoding() throws Exception {
+    for (EntityEncoding encoding : EntityEncoding.values()) {
+      final EntityWrapper result = codec.decode(codec.encode(createEntity(), encoding));
+      assertEquals(createEntity().getUrl(), result.getUrl());
+      assertEquals(createEntity().getOriginalField(), result.getOriginalField());
+      assertEquals(createEntity().getEntityClass(), result.getEntityClass());
+      assertEquals(createEntity().getContextualEntity(), result.getContextualEntity());
+    }
+  }
+
+  @Test
+  void smileShouldBeSmallerThanJson() throws Exception {
+    assertTrue(codec.encode(createEntity(), EntityEncoding.SMILE).length < codec
+        .encode(createEntity(), EntityEncoding.JSON).length);
+  }
+}
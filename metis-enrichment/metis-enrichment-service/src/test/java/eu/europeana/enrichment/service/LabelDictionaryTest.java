@@ -0,0 +1,72 @@
+package eu.europeana.enrichment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import eu.europeana.enrichment.api.internal.MongoTerm;
+import eu.europeana.enrichment.utils.EntityClass;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LabelDictionaryTest {
+
+  private LabelDictionary dictionary;
+
+  private static MongoTerm createTerm(String codeUri, String label, String lang) {
+    final MongoTerm term = new MongoTerm();
+    term.setCodeUri(codeUri);
+    term.setLabel(label);
+    term.setLang(lang);
+    return term;
+  }
+
+  @BeforeEach
+  void setUp() {
+    dictionary = LabelDictionary.build(Arrays.asList(EntityClass.PLACE, EntityClass.AGENT),
+        entityClass -> entityClass == EntityClass.PLACE ? Stream.of(
+            createTerm("paris", "paris", "fr"),
+            createTerm("paris", "parijs", "nl"),
+            createTerm("paris-texas", "paris", "en"),
+            createTerm("paris", "paris", "en"),
+            createTerm("par", "par", null),
+            createTerm("parma", "parma", "it"),
+            createTerm("invalid", null, "en"))
+            : Stream.of(createTerm("pa", "pa", "en")));
+  }
+
+  @Test
+  void labelsShouldBeFoundPerLanguage() {
+    assertEquals(Collections.singleton("paris"),
+        dictionary.find(EntityClass.PLACE, "fr", "paris"));
+    assertEquals(new HashSet<>(Arrays.asList("paris", "paris-texas")),
+        dictionary.find(EntityClass.PLACE, "en", "paris"));
+    assertEquals(new HashSet<>(Arrays.asList("paris", "paris-texas")),
+        dictionary.find(EntityClass.PLACE, RedisInternalEnricher.DEFAULT_LANGUAGE, "paris"));
+    assertEquals(Collections.singleton("par"),
+        dictionary.find(EntityClass.PLACE, RedisInternalEnricher.DEFAULT_LANGUAGE, "par"));
+    assertEquals(Collections.singleton("pa"), dictionary.find(EntityClass.AGENT, "en", "pa"));
+  }
+
+  @Test
+  void onlyExactMatchesShouldBeFound() {
+    assertTrue(dictionary.find(EntityClass.PLACE, "nl", "paris").isEmpty());
+    assertTrue(dictionary.find(EntityClass.PLACE, "en", "par").isEmpty());
+    assertTrue(dictionary.find(EntityClass.PLACE, "it", "parmas").isEmpty());
+    assertTrue(dictionary.find(EntityClass.PLACE, "it", "").isEmpty());
+    assertTrue(dictionary.find(EntityClass.PLACE, "de", "paris").isEmpty());
+    assertTrue(dictionary.find(EntityClass.AGENT, "en", "paris").isEmpty());
+    assertTrue(dictionary.find(EntityClass.CONCEPT, "en", "paris").isEmpty());
+  }
+
+  @Test
+  void removedEntitiesShouldNotBeFound() {
+    dictionary.remove(Collections.singletonList("paris"));
+    assertEquals(Collections.singleton("paris-texas"),
+        dictionary.find(EntityClass.PLACE, "en", "paris"));
+    assertTrue(dictionary.find(EntityClass.PLACE, "fr", "paris").isEmpty());
+  }
+}
@@ -0,0 +1,114 @@
+package eu.europeana.enrichment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class NearCacheTest {
+
+  @Test
+  void valuesShouldBeCachedAndCounted() {
+    final NearCache<String, String> cache = new NearCache<>(10, 1000, Duration.ofMinutes(1),
+        String::length);
+    assertNull(cache.get("a"));
+    cache.put("a", "value");
+    assertEquals("value", cache.get("a"));
+    assertEquals("value", cache.get("a"));
+
+    final NearCacheStatistics statistics = cache.getStatistics();
+    assertEquals(2, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(2.0 / 3, statistics.getHitRatio(), 0.0001);
+    assertEquals(1, statistics.getEntryCount());
+    assertEquals(5, statistics.getSizeInBytes());
+
+    cache.clear();
+    assertNull(cache.get("a"));
+    assertEquals(0, statistics.getEntryCount());
+    assertEquals(0, statistics.getSizeInBytes());
+  }
+
+  @Test
+  void leastRecentlyUsedValuesShouldBeEvicted() {
+    final NearCache<String, String> cache = new NearCache<>(2, 10, Duration.ofMinutes(1),
+        String::length);
+    cache.put("a", "aaa");
+    cache.put("b", "bbb");
+    cache.get("a");
+
+    // Too many entries: b is the least recently used.
+    cache.put("c", "ccc");
+    assertNull(cache.get("b"));
+    assertEquals("aaa", cache.get("a"));
+
+    // Too large: both a and c need to go.
+    cache.put("d", "dddddddd");
+    assertNull(cache.get("a"));
+    assertNull(cache.get("c"));
+    assertEquals("dddddddd", cache.get("d"));
+    assertEquals(3, cache.getStatistics().getEvictionCount());
+
+    // Larger than the cache itself: is not added.
+    cache.put("e", "eeeeeeeeeee");
+    assertNull(cache.get("e"));
+    assertEquals(8, cache.getStatistics().getSizeInBytes());
+  }
+
+  @Test
+  void valuesShouldExpire() {
+    final AtomicLong time = new AtomicLong();
+    final NearCache<String, String> cache = new NearCache<>(10, 1000, Duration.ofNanos(100),
+        String::length, time::get);
+    cache.put("a", "value");
+    time.set(99);
+    assertEquals("value", cache.get("a"));
+    time.set(100);
+    assertNull(cache.get("a"));
+    assertEquals(1, cache.getStatistics().getExpiryCount());
+    assertEquals(0, cache.getStatistics().getEntryCount());
+  }
+
+  @Test
+  void concurrentUseShouldRespectTheBounds() throws InterruptedException, ExecutionException {
+    final NearCache<String, String> cache = new NearCache<>(50, 200, Duration.ofMinutes(1),
+        String::length);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        final int offset = thread;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 2000; i++) {
+            final String key = "key" + ((i * 7 + offset) % 100);
+            if (cache.get(key) == null) {
+              cache.put(key, key);
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    final NearCacheStatistics statistics = cache.getStatistics();
+    assertTrue(statistics.getEntryCount() <= 50);
+    assertTrue(statistics.getSizeInBytes() <= 200);
+
+    // The counters are consistent with the content.
+    cache.clear();
+    assertEquals(0, statistics.getEntryCount());
+    assertEquals(0, statistics.getSizeInBytes());
+  }
+}
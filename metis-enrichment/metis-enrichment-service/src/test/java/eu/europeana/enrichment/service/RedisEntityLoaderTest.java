@@ -0,0 +1,122 @@
+package eu.europeana.enrichment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.europeana.corelib.solr.entity.ConceptImpl;
+import eu.europeana.corelib.solr.entity.ContextualClassImpl;
+import eu.europeana.enrichment.api.internal.ConceptTermList;
+import eu.europeana.enrichment.api.internal.MongoTerm;
+import eu.europeana.enrichment.api.internal.MongoTermList;
+import eu.europeana.enrichment.utils.EnrichmentEntityDao;
+import eu.europeana.enrichment.utils.EntityClass;
+import eu.europeana.metis.cache.redis.RedisProvider;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.module.SimpleModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+class RedisEntityLoaderTest {
+
+  private static final String PREFIX = "concept:";
+
+  private EnrichmentEntityDao entityDao;
+  private Jedis jedis;
+  private Pipeline pipeline;
+  private RedisEntityLoader loader;
+  private final Map<String, MongoTermList<ContextualClassImpl>> termLists = new HashMap<>();
+
+  @BeforeEach
+  void setUp() {
+    entityDao = mock(EnrichmentEntityDao.class);
+    final RedisProvider redisProvider = mock(RedisProvider.class);
+    jedis = mock(Jedis.class);
+    pipeline = mock(Pipeline.class);
+    when(redisProvider.getJedis()).thenReturn(jedis);
+    when(jedis.pipelined()).thenReturn(pipeline);
+    when(entityDao.findByCodes(any(), eq(EntityClass.CONCEPT))).thenAnswer(invocation -> {
+      final Collection<String> codeUris = invocation.getArgument(0);
+      return codeUris.stream().filter(termLists::containsKey)
+          .collect(Collectors.toMap(codeUri -> codeUri, termLists::get));
+    });
+    loader = new RedisEntityLoader(entityDao, redisProvider, new ObjectMapper(),
+        new EntityCodec(new SimpleModule("test", Version.unknownVersion())), EntityEncoding.SMILE,
+        EntityClass.CONCEPT, PREFIX);
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void addTermList(String codeUri, String parent, String... sameAs) {
+    final ConceptTermList termList = new ConceptTermList();
+    termList.setCodeUri(codeUri);
+    termList.setParent(parent);
+    termList.setOwlSameAs(sameAs);
+    termList.setRepresentation(new ConceptImpl());
+    termLists.put(codeUri, MongoTermList.cast(termList));
+  }
+
+  private static MongoTerm createTerm(String codeUri, String label, String lang) {
+    final MongoTerm term = new MongoTerm();
+    term.setCodeUri(codeUri);
+    term.setLabel(label);
+    term.setOriginalLabel(label);
+    term.setLang(lang);
+    return term;
+  }
+
+  @Test
+  void entitiesShouldBeLoadedInBatchesWithTheirParents() {
+    addTermList("child", "parent", "sameAsChild");
+    addTermList("parent", "grandparent");
+    addTermList("grandparent", "grandparent");
+    doReturn(3L).when(entityDao).countMongoTerms(EntityClass.CONCEPT);
+    doReturn(Stream.of(createTerm("child", "child", "en"), createTerm("parent", "parent", null),
+        createTerm("unknown", "unknown", "en"))).when(entityDao)
+        .streamAllMongoTerms(EntityClass.CONCEPT);
+
+    assertEquals(3, loader.load());
+
+    // One query for the batch and one for all parents in the batch. No more queries are needed
+    // for the self-referencing grandparent.
+    verify(entityDao).findByCodes(new HashSet<>(Arrays.asList("child", "parent", "unknown")),
+        EntityClass.CONCEPT);
+    verify(entityDao).findByCodes(new HashSet<>(Arrays.asList("parent", "grandparent")),
+        EntityClass.CONCEPT);
+    verify(entityDao, times(2)).findByCodes(any(), any());
+
+    verify(pipeline).sadd("concept:entity:def:child", "child");
+    verify(pipeline).sadd("concept:entity:en:child", "child");
+    verify(pipeline).sadd("concept:entity:def:parent", "parent");
+    verify(pipeline).sadd("concept:labels:child", "concept:entity:def:child",
+        "concept:entity:en:child");
+    verify(pipeline).sadd("concept:labels:parent", "concept:entity:def:parent");
+    verify(pipeline).hset(eq(bytes("concept:uri")), eq(bytes("child")), any(byte[].class));
+    verify(pipeline).hset(eq(bytes("concept:uri")), eq(bytes("parent")), any(byte[].class));
+    verify(pipeline).sadd("concept:parent:child", "parent", "grandparent");
+    verify(pipeline).sadd("concept:parent:parent", "grandparent");
+    verify(pipeline).hset("concept:sameas", "sameAsChild", "child");
+    verify(pipeline, never()).hset(eq(bytes("concept:uri")), eq(bytes("unknown")), any(byte[].class));
+    verify(pipeline).sync();
+    verify(jedis).close();
+  }
+}
@@ -0,0 +1,336 @@
+package eu.europeana.enrichment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.europeana.enrichment.api.external.EntityWrapper;
+import eu.europeana.enrichment.api.internal.MongoTerm;
+import eu.europeana.enrichment.utils.EnrichmentEntityDao;
+import eu.europeana.enrichment.utils.EntityClass;
+import eu.europeana.enrichment.utils.InputValue;
+import eu.europeana.metis.cache.redis.RedisProvider;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.module.SimpleModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+class RedisInternalEnricherTest {
+
+  private Jedis jedis;
+  private Pipeline pipeline;
+  private EnrichmentEntityDao entityDao;
+  private RedisInternalEnricher enricher;
+
+  @BeforeEach
+  void setUp() {
+    final RedisProvider redisProvider = mock(RedisProvider.class);
+    jedis = mock(Jedis.class);
+    pipeline = mock(Pipeline.class);
+    when(redisProvider.getJedis()).thenReturn(jedis);
+    when(jedis.isConnected()).thenReturn(true);
+    when(jedis.pipelined()).thenReturn(pipeline);
+    when(jedis.get("enrichmentversion:active")).thenReturn("3");
+    entityDao = mock(EnrichmentEntityDao.class);
+    enricher = new RedisInternalEnricher(entityDao, redisProvider, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Response<T> response(T value) {
+    final Response<T> response = mock(Response.class);
+    when(response.get()).thenReturn(value);
+    return response;
+  }
+
+  private static byte[] createEntity(String uri, EntityEncoding encoding) throws Exception {
+    final EntityWrapper entity = new EntityWrapper();
+    entity.setUrl(uri);
+    entity.setOriginalField("");
+    entity.setEntityClass(EntityClass.PLACE);
+    return new EntityCodec(new SimpleModule("test", Version.unknownVersion()))
+        .encode(entity, encoding);
+  }
+
+  @Test
+  void tagShouldUseTheActiveVersionAndTheNearCache() throws Exception {
+    final Set<String> noMembers = Collections.emptySet();
+    final Response<Set<String>> parisUris = response(Collections.singleton("paris"));
+    final Response<Set<String>> noUris = response(noMembers);
+    final Response<Set<String>> parisParents = response(Collections.singleton("france"));
+    final Response<Set<String>> noParents = response(noMembers);
+    when(pipeline.smembers(anyString())).thenReturn(noUris);
+    when(pipeline.smembers("v3:place:entity:en:paris")).thenReturn(parisUris);
+    when(pipeline.smembers("v3:place:parent:paris")).thenReturn(parisParents);
+    when(pipeline.smembers("v3:place:parent:france")).thenReturn(noParents);
+    // Entities in both encodings can be read.
+    final Map<String, byte[]> entities = new HashMap<>();
+    entities.put("paris", createEntity("paris", EntityEncoding.JSON));
+    entities.put("france", createEntity("france", EntityEncoding.SMILE));
+    when(pipeline.hmget(eq(RedisInternalEnricher.toBytes("v3:place:uri")), any()))
+        .thenAnswer(invocation -> {
+          final List<byte[]> values = new ArrayList<>();
+          for (int i = 1; i < invocation.getArguments().length; i++) {
+            values.add(entities.get(
+                new String((byte[]) invocation.getArgument(i), StandardCharsets.UTF_8)));
+          }
+          return response(values);
+        });
+
+    final List<InputValue> values = Arrays.asList(
+        new InputValue("field1", "Paris", "en", EntityClass.PLACE),
+        new InputValue("field2", "paris", "en", EntityClass.PLACE),
+        new InputValue("field3", "Nowhere", "en", EntityClass.PLACE));
+    for (int i = 0; i < 2; i++) {
+      final List<EntityWrapper> result = enricher.tag(values);
+      assertEquals(4, result.size());
+      assertEquals("paris", result.get(0).getUrl());
+      assertEquals("field1", result.get(0).getOriginalField());
+      assertEquals("france", result.get(1).getUrl());
+      assertEquals("", result.get(1).getOriginalField());
+      assertEquals("paris", result.get(2).getUrl());
+      assertEquals("field2", result.get(2).getOriginalField());
+    }
+
+    // The second time, everything comes from the near cache: only three round trips in total.
+    verify(pipeline, times(3)).sync();
+    verify(jedis, times(1)).get("enrichmentversion:active");
+    assertEquals(0.5, enricher.getEntityCacheStatistics().getHitRatio(), 0.0001);
+  }
+
+  @Test
+  void tagShouldUseTheLabelDictionaryIfEnabled() throws Exception {
+    final MongoTerm term = new MongoTerm();
+    term.setCodeUri("paris");
+    term.setLabel("paris");
+    term.setLang("en");
+    when(entityDao.streamAllMongoTerms(any())).thenAnswer(invocation ->
+        invocation.getArgument(0) == EntityClass.PLACE ? Stream.of(term) : Stream.empty());
+    enricher.enableLabelDictionary();
+    final Set<String> noMembers = Collections.emptySet();
+    final Response<Set<String>> noParents = response(noMembers);
+    when(pipeline.smembers(anyString())).thenReturn(noParents);
+    final byte[] entity = createEntity("paris", EntityEncoding.JSON);
+    when(pipeline.hmget(eq(RedisInternalEnricher.toBytes("v3:place:uri")), any()))
+        .thenAnswer(invocation -> response(Collections.singletonList(entity)));
+
+    final List<EntityWrapper> result = enricher.tag(Arrays.asList(
+        new InputValue("field1", "Paris", "en", EntityClass.PLACE),
+        new InputValue("field2", "Nowhere", "en", EntityClass.PLACE)));
+    assertEquals(1, result.size());
+    assertEquals("paris", result.get(0).getUrl());
+
+    // Only the parents and the entities are retrieved from Redis.
+    verify(pipeline, never()).smembers("v3:place:entity:en:paris");
+    verify(pipeline).smembers("v3:place:parent:paris");
+    verify(pipeline, times(2)).sync();
+
+    // Removed entities are no longer matched.
+    enricher.remove(Collections.singletonList("paris"));
+    assertTrue(enricher.tag(Collections.singletonList(
+        new InputValue("field1", "Paris", "en", EntityClass.PLACE))).isEmpty());
+  }
+
+  @Test
+  void labelDictionaryShouldBeRebuiltWhenTheActiveVersionChanges() throws Exception {
+    final MongoTerm paris = new MongoTerm();
+    paris.setCodeUri("paris");
+    paris.setLabel("paris");
+    paris.setLang("en");
+    final MongoTerm london = new MongoTerm();
+    london.setCodeUri("london");
+    london.setLabel("london");
+    london.setLang("en");
+    final List<MongoTerm> terms = new ArrayList<>(Collections.singletonList(paris));
+    when(entityDao.streamAllMongoTerms(any())).thenAnswer(invocation ->
+        invocation.getArgument(0) == EntityClass.PLACE ? new ArrayList<>(terms).stream()
+            : Stream.empty());
+    enricher.enableLabelDictionary();
+    final Set<String> noMembers = Collections.emptySet();
+    final Response<Set<String>> noParents = response(noMembers);
+    when(pipeline.smembers(anyString())).thenReturn(noParents);
+    final byte[] entity = createEntity("london", EntityEncoding.JSON);
+    when(pipeline.hmget(eq(RedisInternalEnricher.toBytes("v4:place:uri")), any()))
+        .thenAnswer(invocation -> response(Collections.singletonList(entity)));
+    when(jedis.scan(anyString(), any(ScanParams.class))).thenReturn(
+        new ScanResult<>(ScanParams.SCAN_POINTER_START, Collections.emptyList()));
+
+    // Another instance recreates the cache: the dictionary is rebuilt in the background.
+    terms.add(london);
+    when(jedis.get("enrichmentversion:active")).thenReturn("4");
+    enricher.emptyCache();
+    final List<InputValue> values = Collections
+        .singletonList(new InputValue("field1", "London", "en", EntityClass.PLACE));
+    List<EntityWrapper> result = enricher.tag(values);
+    for (int i = 0; i < 100 && result.isEmpty(); i++) {
+      Thread.sleep(50);
+      result = enricher.tag(values);
+    }
+    assertEquals(1, result.size());
+    assertEquals("london", result.get(0).getUrl());
+    verify(entityDao, times(2)).streamAllMongoTerms(EntityClass.PLACE);
+  }
+
+  @Test
+  void tagPerValueShouldKeepTheResultsOfTheValuesApart() throws Exception {
+    final MongoTerm term = new MongoTerm();
+    term.setCodeUri("paris");
+    term.setLabel("paris");
+    term.setLang("en");
+    when(entityDao.streamAllMongoTerms(any())).thenAnswer(invocation ->
+        invocation.getArgument(0) == EntityClass.PLACE ? Stream.of(term) : Stream.empty());
+    enricher.enableLabelDictionary();
+    final Set<String> noMembers = Collections.emptySet();
+    final Response<Set<String>> noParents = response(noMembers);
+    when(pipeline.smembers(anyString())).thenReturn(noParents);
+    final byte[] entity = createEntity("paris", EntityEncoding.JSON);
+    when(pipeline.hmget(eq(RedisInternalEnricher.toBytes("v3:place:uri")), any()))
+        .thenAnswer(invocation -> response(Collections.singletonList(entity)));
+
+    final InputValue noVocabularies = new InputValue();
+    noVocabularies.setValue("Paris");
+    final List<List<EntityWrapper>> result = enricher.tagPerValue(Arrays.asList(
+        new InputValue("field1", "Nowhere", "en", EntityClass.PLACE), noVocabularies,
+        new InputValue("field2", "Paris", "en", EntityClass.PLACE)));
+    assertEquals(3, result.size());
+    assertTrue(result.get(0).isEmpty());
+    assertTrue(result.get(1).isEmpty());
+    assertEquals(1, result.get(2).size());
+    assertEquals("paris", result.get(2).get(0).getUrl());
+    assertEquals("field2", result.get(2).get(0).getOriginalField());
+    verify(pipeline, times(2)).sync();
+  }
+
+  @Test
+  void removeShouldUseTheReverseIndex() {
+    final Set<String> noMembers = Collections.emptySet();
+    final Response<Set<String>> noLabelKeys = response(noMembers);
+    final Response<Set<String>> parisLabelKeys = response(
+        new HashSet<>(Arrays.asList("v3:place:entity:def:paris", "v3:place:entity:fr:paris")));
+    when(pipeline.smembers(anyString())).thenReturn(noLabelKeys);
+    when(pipeline.smembers("v3:place:labels:paris")).thenReturn(parisLabelKeys);
+
+    enricher.remove(Collections.singletonList("paris"));
+
+    verify(pipeline).srem("v3:place:entity:def:paris", "paris");
+    verify(pipeline).srem("v3:place:entity:fr:paris", "paris");
+    verify(pipeline, times(2)).srem(anyString(), anyString());
+    verify(pipeline).unlink("v3:place:parent:paris", "v3:place:labels:paris");
+    verify(pipeline).hdel("v3:place:uri", "paris");
+    verify(pipeline).hdel("v3:agent:uri", "paris");
+    verify(pipeline, times(2)).sync();
+    verify(jedis, never()).keys(anyString());
+    verify(jedis, never()).scan(anyString(), any());
+  }
+
+  @Test
+  void keysShouldBeRecognizedByVersion() {
+    assertEquals("", RedisInternalEnricher.getNamespace(null));
+    assertEquals("v12:", RedisInternalEnricher.getNamespace("12"));
+    assertTrue(RedisInternalEnricher.isInactiveEntityKey("v11:agent:uri", 12));
+    assertTrue(RedisInternalEnricher.isInactiveEntityKey("agent:uri", 12));
+    assertTrue(RedisInternalEnricher.isInactiveEntityKey("place:entity:def:paris", 12));
+    assertFalse(RedisInternalEnricher.isInactiveEntityKey("v12:agent:uri", 12));
+    assertFalse(RedisInternalEnricher.isInactiveEntityKey("v13:agent:uri", 12));
+    assertFalse(RedisInternalEnricher.isInactiveEntityKey("enrichmentstatus", 12));
+    assertFalse(RedisInternalEnricher.isInactiveEntityKey("vocabulary:agent:uri", 12));
+    assertFalse(RedisInternalEnricher.isInactiveEntityKey("v1:session:abc", 12));
+    assertFalse(RedisInternalEnricher.isInactiveEntityKey("v1x:agent:uri", 12));
+    assertFalse(RedisInternalEnricher.isInactiveEntityKey("place:other", 12));
+  }
+
+  @Test
+  void emptyCacheShouldOnlyRemoveEnrichmentKeys() {
+    final List<String> keys = Arrays.asList("v3:place:entity:def:paris", "place:uri",
+        "v1:session:abc", "place:other", "v3x:agent:uri", "agent:sameas");
+    final List<String> patterns = new ArrayList<>();
+    when(jedis.scan(eq(ScanParams.SCAN_POINTER_START), any(ScanParams.class)))
+        .thenAnswer(invocation -> {
+          final List<String> params = new ArrayList<>();
+          ((ScanParams) invocation.getArgument(1)).getParams()
+              .forEach(param -> params.add(new String(param, StandardCharsets.UTF_8)));
+          final String pattern = params.get(params.indexOf("match") + 1);
+          patterns.add(pattern);
+          return new ScanResult<>(ScanParams.SCAN_POINTER_START, keys.stream()
+              .filter(key -> key.matches(pattern.replace("*", ".*")))
+              .collect(Collectors.toList()));
+        });
+
+    enricher.emptyCache();
+
+    final Set<String> unlinkedKeys = mockingDetails(jedis).getInvocations().stream()
+        .filter(invocation -> "unlink".equals(invocation.getMethod().getName()))
+        .flatMap(invocation -> Arrays.stream(invocation.getArguments()))
+        .map(String.class::cast).collect(Collectors.toSet());
+    assertEquals(new HashSet<>(Arrays.asList("v3:place:entity:def:paris", "place:uri",
+        "agent:sameas", "enrichmentstatus", "enrichmentversion:active",
+        "enrichmentversion:last")), unlinkedKeys);
+    assertFalse(patterns.isEmpty());
+    assertTrue(patterns.stream().allMatch(pattern -> pattern.matches(
+        "^(v\\[0-9]\\*:)?(agent|concept|place|timespan):\\*$")));
+  }
+
+  @Test
+  void recreateShouldNotSwitchBackToAnOlderVersion() {
+    when(entityDao.streamAllMongoTerms(any())).thenAnswer(invocation -> Stream.empty());
+    when(jedis.incr("enrichmentversion:last")).thenReturn(5L);
+    when(jedis.eval(anyString(), eq(Collections.singletonList("enrichmentversion:active")),
+        eq(Collections.singletonList("5")))).thenReturn(Arrays.asList(0L, "6"));
+    final List<String> keys = Arrays.asList("v5:place:entity:def:paris", "v5:agent:uri",
+        "v6:place:entity:def:paris", "v6:agent:uri", "place:uri");
+    when(jedis.scan(eq(ScanParams.SCAN_POINTER_START), any(ScanParams.class)))
+        .thenAnswer(invocation -> {
+          final List<String> params = new ArrayList<>();
+          ((ScanParams) invocation.getArgument(1)).getParams()
+              .forEach(param -> params.add(new String(param, StandardCharsets.UTF_8)));
+          final String pattern = params.get(params.indexOf("match") + 1);
+          return new ScanResult<>(ScanParams.SCAN_POINTER_START, keys.stream()
+              .filter(key -> key.matches(pattern.replace("*", ".*")))
+              .collect(Collectors.toList()));
+        });
+
+    enricher.recreate();
+
+    // Only the keys of the version that was not activated are removed.
+    final Set<String> unlinkedKeys = mockingDetails(jedis).getInvocations().stream()
+        .filter(invocation -> "unlink".equals(invocation.getMethod().getName()))
+        .flatMap(invocation -> Arrays.stream(invocation.getArguments()))
+        .map(String.class::cast).collect(Collectors.toSet());
+    assertEquals(new HashSet<>(Arrays.asList("v5:place:entity:def:paris", "v5:agent:uri")),
+        unlinkedKeys);
+    verify(jedis, never()).getSet(anyString(), anyString());
+    verify(jedis, never()).set("enrichmentversion:active", "5");
+  }
+
+  @Test
+  void keysShouldBeRecognizedByExactVersion() {
+    assertTrue(RedisInternalEnricher.isEntityKeyOfVersion("v5:agent:uri", 5));
+    assertFalse(RedisInternalEnricher.isEntityKeyOfVersion("v15:agent:uri", 5));
+    assertFalse(RedisInternalEnricher.isEntityKeyOfVersion("agent:uri", 5));
+    assertFalse(RedisInternalEnricher.isEntityKeyOfVersion("v5:session:abc", 5));
+  }
+}
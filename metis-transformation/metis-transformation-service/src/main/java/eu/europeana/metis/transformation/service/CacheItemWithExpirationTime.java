@@ -2,6 +2,9 @@ package eu.europeana.metis.transformation.service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.slf4j.Logger;
@@ -17,17 +20,22 @@ class CacheItemWithExpirationTime<V> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CacheItemWithExpirationTime.class);
 
+  private static final CacheStatistics IGNORED_STATISTICS = new CacheStatistics();
+
   // Locked: change only with write lock.
   private V value;
 
   // Locked: change only with write lock.
   private Instant creationTime;
 
-  // No need to be locked: is independent of other data.
-  private Instant lastAccessTime;
+  // No need to be locked: is independent of other data. Set on creation, so that a new item is
+  // not considered the least recently accessed item before its value is requested.
+  private volatile Instant lastAccessTime = Instant.now();
 
   private ReadWriteLock lock = new ReentrantReadWriteLock();
 
+  private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
+
   /**
    * Obtains the value. This method will lock the cache for reading and, if the value is not
    * present, will then also lock it for writing in order to obtain it.
@@ -46,14 +54,52 @@ class CacheItemWithExpirationTime<V> {
    */
   public V getValue(Duration expirationTime, CacheValueSupplier<V> supplier,
       boolean lenientWithReloads) throws CacheValueSupplierException {
+    return getValue(expirationTime, supplier, lenientWithReloads, null, IGNORED_STATISTICS);
+  }
+
+  /**
+   * <p>
+   * Obtains the value. This method will lock the cache for reading and, if the value is not
+   * present, will then also lock it for writing in order to obtain it.
+   * </p>
+   * <p>
+   * If a refresh executor is given, an expired value is not reloaded in the calling thread.
+   * Instead, the expired value is returned and a reload is started on the executor (unless one is
+   * already in progress for this item). Only if no value was obtained previously will the calling
+   * thread wait for the value to be loaded.
+   * </p>
+   *
+   * @param expirationTime The expiration time to be applied. A negative duration time always
+   *        prompts a reload.
+   * @param supplier A supplier that can be used to obtain the latest version of the value. Note
+   *        that null will be considered a legitimate value (and not a failed supply).
+   * @param lenientWithReloads Whether or not we are in lenient mode. If true, a previously obtained
+   *        value will be kept even if it has expired in the case that we have problems obtaining
+   *        the latest value. If false, a failed background reload discards the previous value.
+   * @param refreshExecutor The executor on which to reload expired values. Can be null, in which
+   *        case expired values are reloaded in the calling thread.
+   * @param statistics The statistics object in which to record this access.
+   * @return The value.
+   * @throws CacheValueSupplierException In case the value could not be obtained and we are either
+   *         not in lenient mode or no previous version exists to use instead.
+   */
+  V getValue(Duration expirationTime, CacheValueSupplier<V> supplier, boolean lenientWithReloads,
+      Executor refreshExecutor, CacheStatistics statistics) throws CacheValueSupplierException {
 
     // Mark this access.
     lastAccessTime = getNow();
 
-    // If we have the item and it is still valid, we return it.
+    // If we have the item and it is still valid, we return it. If it is expired but can be
+    // refreshed in the background, we return it as well.
     lock.readLock().lock();
     try {
       if (isInstantInInterval(creationTime, expirationTime, getNow())) {
+        statistics.recordHit();
+        return value;
+      }
+      if (refreshExecutor != null && creationTime != null) {
+        statistics.recordStaleHit();
+        startBackgroundRefresh(supplier, lenientWithReloads, refreshExecutor, statistics);
         return value;
       }
     } finally {
@@ -66,13 +112,20 @@ class CacheItemWithExpirationTime<V> {
 
       // Recheck the state: maybe the item was loaded while we waited for the write lock.
       if (isInstantInInterval(creationTime, expirationTime, getNow())) {
+        statistics.recordHit();
+        return value;
+      }
+      if (refreshExecutor != null && creationTime != null) {
+        statistics.recordStaleHit();
+        startBackgroundRefresh(supplier, lenientWithReloads, refreshExecutor, statistics);
         return value;
       }
 
       // So we need to obtain the item. If something goes wrong and we have a previous version, use
       // that only if we are in lenient mode.
+      statistics.recordMiss();
       try {
-        value = supplier.get();
+        value = load(supplier, statistics);
       } catch (CacheValueSupplierException e) {
         if (creationTime == null || !lenientWithReloads) {
           throw e;
@@ -92,6 +145,68 @@ class CacheItemWithExpirationTime<V> {
     }
   }
 
+  private void startBackgroundRefresh(CacheValueSupplier<V> supplier, boolean lenientWithReloads,
+      Executor refreshExecutor, CacheStatistics statistics) {
+
+    // Make sure that there is only one refresh going on at any time.
+    if (!refreshInProgress.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      refreshExecutor.execute(() -> refresh(supplier, lenientWithReloads, statistics));
+    } catch (RejectedExecutionException e) {
+      refreshInProgress.set(false);
+      LOGGER.warn("Could not start reloading value for caching.", e);
+    }
+  }
+
+  private void refresh(CacheValueSupplier<V> supplier, boolean lenientWithReloads,
+      CacheStatistics statistics) {
+    try {
+
+      // Obtain the value without holding the lock: readers can keep using the current value.
+      V newValue = null;
+      boolean loadSucceeded = false;
+      try {
+        newValue = load(supplier, statistics);
+        loadSucceeded = true;
+      } catch (CacheValueSupplierException e) {
+        LOGGER.warn("Could not obtain value for caching.", e);
+      }
+
+      // Set the new value. If loading failed, keep the old value only if we are in lenient mode.
+      lock.writeLock().lock();
+      try {
+        if (loadSucceeded) {
+          value = newValue;
+          creationTime = getNow();
+        } else if (lenientWithReloads) {
+          creationTime = getNow();
+        } else {
+          value = null;
+          creationTime = null;
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } finally {
+      refreshInProgress.set(false);
+    }
+  }
+
+  private static <V> V load(CacheValueSupplier<V> supplier, CacheStatistics statistics)
+      throws CacheValueSupplierException {
+    final long startTime = System.nanoTime();
+    boolean success = false;
+    try {
+      final V result = supplier.get();
+      success = true;
+      return result;
+    } finally {
+      statistics.recordLoad(System.nanoTime() - startTime, success);
+    }
+  }
+
   /**
    * Determines whether a given instant is in the interval defined by the starting point and the
    * length. If the instant is equal to either boundary of the interval, it is considered not to be
@@ -130,8 +245,8 @@ class CacheItemWithExpirationTime<V> {
   }
 
   /**
-   * @return The last accessed time of the current value, or null if the value has not been accessed
-   *         yet.
+   * @return The last accessed time of the current value, or the creation time of this item if the
+   *         value has not been accessed yet.
    */
   Instant getLastAccessTime() {
     return lastAccessTime;
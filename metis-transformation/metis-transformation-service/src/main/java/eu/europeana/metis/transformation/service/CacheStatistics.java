@@ -0,0 +1,96 @@
+package eu.europeana.metis.transformation.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps track of the usage statistics of a {@link CacheWithExpirationTime}. This class
+ * is thread-safe.
+ */
+public class CacheStatistics {
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder staleHitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder loadSuccessCount = new LongAdder();
+  private final LongAdder loadFailureCount = new LongAdder();
+  private final LongAdder totalLoadTimeInNanos = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  void recordHit() {
+    hitCount.increment();
+  }
+
+  void recordStaleHit() {
+    staleHitCount.increment();
+  }
+
+  void recordMiss() {
+    missCount.increment();
+  }
+
+  void recordLoad(long loadTimeInNanos, boolean success) {
+    totalLoadTimeInNanos.add(loadTimeInNanos);
+    if (success) {
+      loadSuccessCount.increment();
+    } else {
+      loadFailureCount.increment();
+    }
+  }
+
+  void recordEviction() {
+    evictionCount.increment();
+  }
+
+  /**
+   * @return The number of requests that were served a valid value from the cache.
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return The number of requests that were served an expired value from the cache while the
+   * value was being reloaded in the background.
+   */
+  public long getStaleHitCount() {
+    return staleHitCount.sum();
+  }
+
+  /**
+   * @return The number of requests that needed to wait for the value to be loaded.
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return The number of times a value was successfully loaded (in the foreground or in the
+   * background).
+   */
+  public long getLoadSuccessCount() {
+    return loadSuccessCount.sum();
+  }
+
+  /**
+   * @return The number of times loading a value failed (in the foreground or in the background).
+   */
+  public long getLoadFailureCount() {
+    return loadFailureCount.sum();
+  }
+
+  /**
+   * @return The total time spent loading values (in the foreground or in the background).
+   */
+  public Duration getTotalLoadTime() {
+    return Duration.ofNanos(totalLoadTimeInNanos.sum());
+  }
+
+  /**
+   * @return The number of items that were removed from the cache because it reached its maximum
+   * size.
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+}
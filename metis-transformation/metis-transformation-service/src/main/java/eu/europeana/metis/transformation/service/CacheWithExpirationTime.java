@@ -1,10 +1,14 @@
 package eu.europeana.metis.transformation.service;
 
 import java.time.Duration;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import eu.europeana.metis.transformation.service.CacheValueSupplier.CacheValueSupplierException;
 
 /**
@@ -19,6 +23,17 @@ import eu.europeana.metis.transformation.service.CacheValueSupplier.CacheValueSu
  * Another setting is the leniency mode. This indicates whether we allow using a previously obtained
  * version beyond its expiration time if a problem occurred getting the latest version.
  * </p>
+ * <p>
+ * If a refresh executor is provided, expired objects are reloaded in the background: until the
+ * reload is done, the previous version is given out. In this case, only requests for objects that
+ * were never loaded before need to wait for the object to be loaded.
+ * </p>
+ * <p>
+ * Locking is done per key: requests for different keys never wait for each other. The cache has a
+ * maximum size: when it is exceeded, items that have not been accessed recently are removed. To
+ * avoid scanning the whole cache, the item to remove is the least recently accessed one of a small
+ * sample of the oldest items. If the cache has no maximum size, the items are not tracked for this.
+ * </p>
  * 
  * @param <K> The key type of the map in the cache
  * @param <V> The value type of the map in the cache
@@ -31,16 +46,24 @@ public class CacheWithExpirationTime<K, V> {
   /** The default leniency mode. **/
   protected static final boolean DEFAULT_LENIENCY_MODE = true;
 
-  // This value should be locked.
-  private final Map<K, CacheItemWithExpirationTime<V>> cache = new HashMap<>();
+  /** The default maximum size (i.e. no maximum). **/
+  protected static final int DEFAULT_MAX_SIZE = Integer.MAX_VALUE;
+
+  private static final int EVICTION_SAMPLE_SIZE = 8;
+
+  private final Map<K, CacheItemWithExpirationTime<V>> cache = new ConcurrentHashMap<>();
+
+  private final Queue<EvictionCandidate<K, V>> evictionQueue = new ConcurrentLinkedQueue<>();
 
-  // This value should be locked.
-  private Duration expirationTime;
+  private volatile Duration expirationTime;
 
-  // This value should be locked.
-  private boolean lenientWithReloads;
+  private volatile boolean lenientWithReloads;
 
-  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final int maxSize;
+
+  private final Executor refreshExecutor;
+
+  private final CacheStatistics statistics = new CacheStatistics();
 
   /**
    * Constructor.
@@ -48,13 +71,30 @@ public class CacheWithExpirationTime<K, V> {
    * @param expirationTime The expiration time of the cache. A negative expiration time ensures that
    *        all data will always be reloaded.
    * @param lenientWithReloads Whether or not we apply the lenient mode.
+   * @param maxSize The maximum number of items in the cache. Must be positive.
+   * @param refreshExecutor The executor on which to reload expired items. Can be null, in which
+   *        case expired items are reloaded in the requesting thread.
    */
-  public CacheWithExpirationTime(Duration expirationTime, boolean lenientWithReloads) {
-    if (expirationTime == null) {
+  public CacheWithExpirationTime(Duration expirationTime, boolean lenientWithReloads, int maxSize,
+      Executor refreshExecutor) {
+    if (expirationTime == null || maxSize < 1) {
       throw new IllegalArgumentException();
     }
     this.expirationTime = expirationTime;
     this.lenientWithReloads = lenientWithReloads;
+    this.maxSize = maxSize;
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  /**
+   * Constructor without maximum size and without background reloading.
+   * 
+   * @param expirationTime The expiration time of the cache. A negative expiration time ensures that
+   *        all data will always be reloaded.
+   * @param lenientWithReloads Whether or not we apply the lenient mode.
+   */
+  public CacheWithExpirationTime(Duration expirationTime, boolean lenientWithReloads) {
+    this(expirationTime, lenientWithReloads, DEFAULT_MAX_SIZE, null);
   }
 
   /**
@@ -66,30 +106,23 @@ public class CacheWithExpirationTime<K, V> {
   }
 
   /**
-   * Set a new expiration time for this cache. This function will lock the cache for writing.
+   * Set a new expiration time for this cache.
    * 
    * @param expirationTime The new expiration time. A negative expiration time ensures that all data
    *        will always be reloaded.
    */
   public void setExpirationTime(Duration expirationTime) {
-    lock.writeLock().lock();
-    try {
-      this.expirationTime = expirationTime;
-    } finally {
-      lock.writeLock().unlock();
+    if (expirationTime == null) {
+      throw new IllegalArgumentException();
     }
+    this.expirationTime = expirationTime;
   }
 
   /**
    * @return The current expiration time.
    */
   Duration getExpirationTime() {
-    lock.readLock().lock();
-    try {
-      return expirationTime;
-    } finally {
-      lock.readLock().unlock();
-    }
+    return expirationTime;
   }
 
   /**
@@ -98,73 +131,109 @@ public class CacheWithExpirationTime<K, V> {
    * @param lenientWithReloads The new leniency mode.
    */
   public void setLenientWithReloads(boolean lenientWithReloads) {
-    lock.writeLock().lock();
-    try {
-      this.lenientWithReloads = lenientWithReloads;
-    } finally {
-      lock.writeLock().unlock();
-    }
+    this.lenientWithReloads = lenientWithReloads;
   }
 
   /**
    * @return The current leniency mode.
    */
   boolean isLenientWithReloads() {
-    lock.readLock().lock();
-    try {
-      return lenientWithReloads;
-    } finally {
-      lock.readLock().unlock();
-    }
+    return lenientWithReloads;
   }
 
   /**
-   * This method looks up the cache item in the cache, creating the item if it is absent. It returns
-   * a function that resolves the value of the cache item. This method will lock the cache for
-   * reading and, if the cache item is not present, will then also lock it for writing in order to
-   * add it.
+   * @return The usage statistics of this cache.
+   */
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * @return The number of items currently in the cache.
+   */
+  int getSize() {
+    return cache.size();
+  }
+
+  /**
+   * @return The number of items currently tracked for eviction.
+   */
+  int getEvictionQueueSize() {
+    return evictionQueue.size();
+  }
+
+  private boolean hasMaxSize() {
+    return maxSize < DEFAULT_MAX_SIZE;
+  }
+
+  /**
+   * This method looks up the cache item in the cache, creating the item if it is absent. This
+   * method does not lock the cache.
    * 
    * @param key The key to look up.
-   * @return A function that should be used to obtain the value. The function takes a supplier
-   *         (obtaining the value in case the value is absent or expired, and only called if that is
-   *         the case).
+   * @return The cache item.
    */
-  private CacheValueResolver<V> getValueResolver(K key) {
-
-    // If we have the item and it is still valid, we return it.
-    lock.readLock().lock();
-    try {
-      if (cache.containsKey(key)) {
-        final CacheItemWithExpirationTime<V> cachedItem = cache.get(key);
-        return supplier -> cachedItem.getValue(expirationTime, supplier, lenientWithReloads);
-      }
-    } finally {
-      lock.readLock().unlock();
+  private CacheItemWithExpirationTime<V> getCacheItem(K key) {
+
+    // If we have the item, we return it.
+    final CacheItemWithExpirationTime<V> existingItem = cache.get(key);
+    if (existingItem != null) {
+      return existingItem;
     }
 
-    // We are still here: so either we don't have the item or it is no longer valid.
-    lock.writeLock().lock();
-    try {
+    // So we need to add the cache item. Maybe another thread is doing the same.
+    final CacheItemWithExpirationTime<V> newItem = new CacheItemWithExpirationTime<>();
+    final CacheItemWithExpirationTime<V> concurrentlyAddedItem = cache.putIfAbsent(key, newItem);
+    if (concurrentlyAddedItem != null) {
+      return concurrentlyAddedItem;
+    }
 
-      // Recheck the state: maybe the item was added while we waited for the write lock.
-      if (cache.containsKey(key)) {
-        final CacheItemWithExpirationTime<V> cachedItem = cache.get(key);
-        return supplier -> cachedItem.getValue(expirationTime, supplier, lenientWithReloads);
+    // We added the item: make sure the cache does not get too large.
+    if (hasMaxSize()) {
+      evictionQueue.add(new EvictionCandidate<>(key, newItem));
+      while (cache.size() > maxSize && removeItemNotAccessedRecently(key)) {
+        statistics.recordEviction();
       }
+    }
+    return newItem;
+  }
 
-      // So we need to add the cache item.
-      final CacheItemWithExpirationTime<V> result = new CacheItemWithExpirationTime<>();
-      cache.put(key, result);
-      return supplier -> result.getValue(expirationTime, supplier, lenientWithReloads);
+  private boolean removeItemNotAccessedRecently(K keyToKeep) {
 
-    } finally {
-      lock.writeLock().unlock();
+    // Take a sample of the oldest items. Skip candidates that are no longer in the cache (e.g.
+    // removed by a cleanup) and the item that was just added.
+    final List<EvictionCandidate<K, V>> sample = new ArrayList<>(EVICTION_SAMPLE_SIZE);
+    EvictionCandidate<K, V> itemToKeep = null;
+    while (sample.size() < EVICTION_SAMPLE_SIZE) {
+      final EvictionCandidate<K, V> candidate = evictionQueue.poll();
+      if (candidate == null) {
+        break;
+      }
+      if (cache.get(candidate.key) != candidate.item) {
+        continue;
+      }
+      if (candidate.key.equals(keyToKeep)) {
+        itemToKeep = candidate;
+      } else {
+        sample.add(candidate);
+      }
     }
+
+    // Remove the least recently accessed item of the sample and put the others back.
+    final EvictionCandidate<K, V> itemToRemove = sample.stream()
+        .min(Comparator.comparing(candidate -> candidate.item.getLastAccessTime())).orElse(null);
+    sample.stream().filter(candidate -> candidate != itemToRemove).forEach(evictionQueue::add);
+    if (itemToKeep != null) {
+      evictionQueue.add(itemToKeep);
+    }
+    return itemToRemove != null && cache.remove(itemToRemove.key, itemToRemove.item);
   }
 
   /**
    * Obtain the value for the given key. If the value is not present, or has expired, the supplier
-   * is used to get the latest version of the value (and store it in cache).
+   * is used to get the latest version of the value (and store it in cache). If this cache reloads
+   * in the background, this method only waits for the supplier if the value was never loaded
+   * before.
    * 
    * @param key The key to look up.
    * @param valueSupplier A supplier that can be used to obtain the latest version of the value.
@@ -174,14 +243,15 @@ public class CacheWithExpirationTime<K, V> {
    */
   public V getFromCache(K key, CacheValueSupplier<V> valueSupplier)
       throws CacheValueSupplierException {
-    return getValueResolver(key).apply(valueSupplier);
+    return getCacheItem(key).getValue(expirationTime, valueSupplier, lenientWithReloads,
+        refreshExecutor, statistics);
   }
 
   /**
    * <p>
    * This method cleans the cache of any items that have not been accessed for a given amount of
    * time (i.e. in the time span given by the parameter). This method could be called by a scheduled
-   * cleanup.
+   * cleanup. This method does not lock the cache.
    * </p>
    * <p>
    * NOTE: It is theoretically possible that a cached item is being removed that is also currently
@@ -196,15 +266,18 @@ public class CacheWithExpirationTime<K, V> {
    *        duration cleans everything.
    */
   public void removeItemsNotAccessedSince(Duration since) {
-    lock.writeLock().lock();
-    try {
-      cache.entrySet().removeIf(entry -> !entry.getValue().valueWasAccessedRecently(since));
-    } finally {
-      lock.writeLock().unlock();
-    }
+    cache.entrySet().removeIf(entry -> !entry.getValue().valueWasAccessedRecently(since));
+    evictionQueue.removeIf(candidate -> cache.get(candidate.key) != candidate.item);
   }
 
-  private interface CacheValueResolver<V> {
-    V apply(CacheValueSupplier<V> cacheValueSupplier) throws CacheValueSupplierException;
+  private static class EvictionCandidate<K, V> {
+
+    private final K key;
+    private final CacheItemWithExpirationTime<V> item;
+
+    EvictionCandidate(K key, CacheItemWithExpirationTime<V> item) {
+      this.key = key;
+      this.item = item;
+    }
   }
 }
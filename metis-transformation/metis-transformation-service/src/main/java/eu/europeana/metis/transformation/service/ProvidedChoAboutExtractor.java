@@ -0,0 +1,104 @@
+package eu.europeana.metis.transformation.service;
+
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * <p>
+ * This class extracts the rdf:about of the first edm:ProvidedCHO in an RDF record. It is the
+ * streaming equivalent of the XPath expression <code>/rdf:RDF/edm:ProvidedCHO[1]/@rdf:about</code>:
+ * the record is read using StAX and reading stops as soon as the first ProvidedCHO element directly
+ * under the root is encountered. The rest of the record is never parsed.
+ * </p>
+ * <p>
+ * This class has no shared (static) state, so that different instances can be used concurrently
+ * without any synchronization. Instances of this class are <b>not thread-safe</b> (they hold their
+ * own {@link XMLInputFactory}, which is not guaranteed to be thread-safe).
+ * </p>
+ */
+final class ProvidedChoAboutExtractor {
+
+  private static final String RDF_NAMESPACE_URI = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+  private static final String EDM_NAMESPACE_URI = "http://www.europeana.eu/schemas/edm/";
+
+  private static final String RDF_ELEMENT_NAME = "RDF";
+  private static final String PROVIDED_CHO_ELEMENT_NAME = "ProvidedCHO";
+  private static final String ABOUT_ATTRIBUTE_NAME = "about";
+
+  private final XMLInputFactory inputFactory;
+
+  /**
+   * Constructor.
+   */
+  ProvidedChoAboutExtractor() {
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+  }
+
+  /**
+   * Extracts the rdf:about of the first edm:ProvidedCHO in the given record.
+   *
+   * @param inputStream The record. The stream is not closed by this method.
+   * @return The rdf:about value. Returns the empty string if the root is not an rdf:RDF element, if
+   * there is no ProvidedCHO directly under the root or if the first ProvidedCHO has no rdf:about
+   * (this is consistent with XPath string evaluation).
+   * @throws EuropeanaIdException In case the record could not be read up to the first ProvidedCHO.
+   */
+  String extract(InputStream inputStream) throws EuropeanaIdException {
+    XMLStreamReader reader = null;
+    try {
+      reader = inputFactory.createXMLStreamReader(inputStream);
+      return extract(reader);
+    } catch (XMLStreamException e) {
+      throw new EuropeanaIdException(
+          "Something went wrong while extracting the provider ID from the source.", e);
+    } finally {
+      closeQuietly(reader);
+    }
+  }
+
+  private static String extract(XMLStreamReader reader) throws XMLStreamException {
+
+    // Find the root element and check that it is the rdf:RDF element.
+    while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+      // Skip everything before the root element (prolog, comments, processing instructions).
+    }
+    if (!reader.isStartElement() || !isElement(reader, RDF_NAMESPACE_URI, RDF_ELEMENT_NAME)) {
+      return "";
+    }
+
+    // Go through the children of the root, skipping their contents, until we find the first CHO.
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (depth == 2 && isElement(reader, EDM_NAMESPACE_URI, PROVIDED_CHO_ELEMENT_NAME)) {
+          final String result = reader.getAttributeValue(RDF_NAMESPACE_URI, ABOUT_ATTRIBUTE_NAME);
+          return result == null ? "" : result;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+    return "";
+  }
+
+  private static boolean isElement(XMLStreamReader reader, String namespace, String localName) {
+    return namespace.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+  }
+
+  private static void closeQuietly(XMLStreamReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        // Nothing to do: we are done with the reader.
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package eu.europeana.metis.transformation.service;
+
+/**
+ * This class contains the result of transforming one record as part of a batch transformation (see
+ * {@link XsltBatchTransformer}). It contains either the transformed record or the exception that
+ * occurred while processing the record.
+ */
+public class RecordTransformationResult {
+
+  private final long recordIndex;
+  private final EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap;
+  private final byte[] transformedRecord;
+  private final Exception exception;
+
+  /**
+   * Constructor for a successful transformation.
+   *
+   * @param recordIndex The (zero-based) position of the record in the batch.
+   * @param europeanaGeneratedIdsMap The generated identifiers. Can be null if no identifiers were
+   * generated.
+   * @param transformedRecord The transformed record.
+   */
+  RecordTransformationResult(long recordIndex, EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap,
+      byte[] transformedRecord) {
+    this.recordIndex = recordIndex;
+    this.europeanaGeneratedIdsMap = europeanaGeneratedIdsMap;
+    this.transformedRecord = transformedRecord;
+    this.exception = null;
+  }
+
+  /**
+   * Constructor for a failed transformation.
+   *
+   * @param recordIndex The (zero-based) position of the record in the batch.
+   * @param exception The exception that occurred. This is either a {@link EuropeanaIdException} or
+   * a {@link TransformationException}.
+   */
+  RecordTransformationResult(long recordIndex, Exception exception) {
+    this.recordIndex = recordIndex;
+    this.europeanaGeneratedIdsMap = null;
+    this.transformedRecord = null;
+    this.exception = exception;
+  }
+
+  public long getRecordIndex() {
+    return recordIndex;
+  }
+
+  public EuropeanaGeneratedIdsMap getEuropeanaGeneratedIdsMap() {
+    return europeanaGeneratedIdsMap;
+  }
+
+  public byte[] getTransformedRecord() {
+    return transformedRecord;
+  }
+
+  public Exception getException() {
+    return exception;
+  }
+
+  public boolean isSuccessful() {
+    return exception == null;
+  }
+}
@@ -0,0 +1,66 @@
+package eu.europeana.metis.transformation.service;
+
+/**
+ * This class contains the dataset-related information that is needed to transform records of a
+ * dataset. Instances of this class are immutable.
+ */
+public class TransformationContext {
+
+  private final String xsltUrl;
+  private final String datasetId;
+  private final String datasetName;
+  private final String edmCountry;
+  private final String edmLanguage;
+
+  /**
+   * Constructor in the case that no value of the dataset fields needs to be set and no Europeana
+   * IDs need to be generated.
+   *
+   * @param xsltUrl The URL of the XSLT file.
+   */
+  public TransformationContext(String xsltUrl) {
+    this(xsltUrl, null, null, null, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param xsltUrl The URL of the XSLT file.
+   * @param datasetId The ID of the dataset. Can be null, in which case no Europeana IDs can be
+   * generated for the records.
+   * @param datasetName the dataset name related to the dataset
+   * @param edmCountry the Country related to the dataset
+   * @param edmLanguage the language related to the dataset
+   */
+  public TransformationContext(String xsltUrl, String datasetId, String datasetName,
+      String edmCountry, String edmLanguage) {
+    if (xsltUrl == null) {
+      throw new IllegalArgumentException();
+    }
+    this.xsltUrl = xsltUrl;
+    this.datasetId = datasetId;
+    this.datasetName = datasetName;
+    this.edmCountry = edmCountry;
+    this.edmLanguage = edmLanguage;
+  }
+
+  public String getXsltUrl() {
+    return xsltUrl;
+  }
+
+  public String getDatasetId() {
+    return datasetId;
+  }
+
+  public String getDatasetName() {
+    return datasetName;
+  }
+
+  public String getEdmCountry() {
+    return edmCountry;
+  }
+
+  public String getEdmLanguage() {
+    return edmLanguage;
+  }
+}
@@ -0,0 +1,69 @@
+package eu.europeana.metis.transformation.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+
+/**
+ * This class represents a bounded pool of ready {@link Transformer} instances that are all created
+ * from the same compiled XSLT (i.e. the same {@link Templates} instance). This class is
+ * thread-safe.
+ */
+class TransformerPool {
+
+  private final Templates templates;
+  private final BlockingQueue<Transformer> idleTransformers;
+
+  /**
+   * Constructor.
+   *
+   * @param templates The compiled XSLT from which to create the transformers.
+   * @param maxIdleTransformers The maximum number of idle transformers that this pool retains.
+   */
+  TransformerPool(Templates templates, int maxIdleTransformers) {
+    this.templates = templates;
+    this.idleTransformers = new ArrayBlockingQueue<>(maxIdleTransformers);
+  }
+
+  /**
+   * @return The compiled XSLT from which the transformers in this pool are created.
+   */
+  Templates getTemplates() {
+    return templates;
+  }
+
+  /**
+   * Obtains a transformer from this pool. If no idle transformer is available, a new one is created.
+   * This method never blocks.
+   *
+   * @return A transformer that is ready to use. It has no parameters set.
+   * @throws TransformerConfigurationException In case a new transformer could not be created.
+   */
+  Transformer borrowTransformer() throws TransformerConfigurationException {
+    final Transformer transformer = idleTransformers.poll();
+    return transformer == null ? templates.newTransformer() : transformer;
+  }
+
+  /**
+   * Returns a transformer to this pool. The transformer is reset and all parameters are cleared
+   * (note that the Saxon implementation of {@link Transformer#reset()} does not clear the
+   * parameters). If this pool already has the maximum number of idle transformers, the transformer is
+   * discarded.
+   *
+   * @param transformer The transformer to return. It should have been obtained from this pool.
+   */
+  void returnTransformer(Transformer transformer) {
+    transformer.reset();
+    transformer.clearParameters();
+    idleTransformers.offer(transformer);
+  }
+
+  /**
+   * @return The number of idle transformers currently in this pool.
+   */
+  int getIdleTransformerCount() {
+    return idleTransformers.size();
+  }
+}
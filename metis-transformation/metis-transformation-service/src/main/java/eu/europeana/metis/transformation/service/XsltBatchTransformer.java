@@ -0,0 +1,163 @@
+package eu.europeana.metis.transformation.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>
+ * This class transforms a whole stream of records of one dataset in one call: for each record, the
+ * Europeana IDs are generated (if a dataset ID is provided) and the XSL transformation is
+ * performed. The records are processed in parallel on a {@link ForkJoinPool}.
+ * </p>
+ * <p>
+ * The results are returned in the same order as the input records. At most a fixed number of
+ * records is in progress at any time: the input is only read further when the caller consumes
+ * results, so that memory usage is bounded regardless of the size of the input.
+ * </p>
+ * <p>
+ * Instances of this class are thread-safe. Note however that the iterators and streams returned by
+ * this class are not.
+ * </p>
+ */
+public class XsltBatchTransformer {
+
+  private final XsltTransformationService transformationService;
+  private final ForkJoinPool forkJoinPool;
+  private final int maxRecordsInProgress;
+
+  private final ThreadLocal<EuropeanaIdCreator> europeanaIdCreators = new ThreadLocal<>();
+
+  /**
+   * Constructor using the common fork-join pool and allowing four records in progress per thread in
+   * that pool.
+   *
+   * @param transformationService The transformation service to use.
+   */
+  public XsltBatchTransformer(XsltTransformationService transformationService) {
+    this(transformationService, ForkJoinPool.commonPool(),
+        4 * ForkJoinPool.commonPool().getParallelism());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param transformationService The transformation service to use.
+   * @param forkJoinPool The pool on which the records are to be processed.
+   * @param maxRecordsInProgress The maximum number of records that are read from the input but of
+   * which the result is not yet consumed. Must be positive.
+   */
+  public XsltBatchTransformer(XsltTransformationService transformationService,
+      ForkJoinPool forkJoinPool, int maxRecordsInProgress) {
+    if (transformationService == null || forkJoinPool == null || maxRecordsInProgress < 1) {
+      throw new IllegalArgumentException();
+    }
+    this.transformationService = transformationService;
+    this.forkJoinPool = forkJoinPool;
+    this.maxRecordsInProgress = maxRecordsInProgress;
+  }
+
+  /**
+   * Transforms the given records. This method returns immediately: the records are read and
+   * transformed as the results are consumed.
+   *
+   * @param context The dataset context of the transformation. If it contains a dataset ID, the
+   * Europeana IDs are generated for each record and passed on to the transformation.
+   * @param records The records to transform.
+   * @return An iterator over the results, in the same order as the input records.
+   */
+  public Iterator<RecordTransformationResult> transform(TransformationContext context,
+      Iterator<byte[]> records) {
+    return new ResultIterator(context, records);
+  }
+
+  /**
+   * Transforms the given records. This method returns immediately: the records are read and
+   * transformed as the results are consumed. Closing the returned stream closes the input stream.
+   *
+   * @param context The dataset context of the transformation. If it contains a dataset ID, the
+   * Europeana IDs are generated for each record and passed on to the transformation.
+   * @param records The records to transform.
+   * @return A sequential stream of the results, in the same order as the input records.
+   */
+  public Stream<RecordTransformationResult> transform(TransformationContext context,
+      Stream<byte[]> records) {
+    final Spliterator<RecordTransformationResult> spliterator = Spliterators
+        .spliteratorUnknownSize(transform(context, records.iterator()),
+            Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(records::close);
+  }
+
+  private RecordTransformationResult transformRecord(TransformationContext context,
+      long recordIndex, byte[] record) {
+    try {
+      final EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap = context.getDatasetId() == null
+          ? null : getEuropeanaIdCreator().constructEuropeanaId(record, context.getDatasetId());
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(record.length);
+      transformationService.transform(context, record, europeanaGeneratedIdsMap, outputStream);
+      return new RecordTransformationResult(recordIndex, europeanaGeneratedIdsMap,
+          outputStream.toByteArray());
+    } catch (EuropeanaIdException | TransformationException e) {
+      return new RecordTransformationResult(recordIndex, e);
+    }
+  }
+
+  private EuropeanaIdCreator getEuropeanaIdCreator() throws EuropeanaIdException {
+    EuropeanaIdCreator result = europeanaIdCreators.get();
+    if (result == null) {
+      result = new EuropeanaIdCreator();
+      europeanaIdCreators.set(result);
+    }
+    return result;
+  }
+
+  private class ResultIterator implements Iterator<RecordTransformationResult> {
+
+    private final TransformationContext context;
+    private final Iterator<byte[]> records;
+    private final Deque<CompletableFuture<RecordTransformationResult>> recordsInProgress =
+        new ArrayDeque<>(maxRecordsInProgress);
+    private long nextRecordIndex = 0;
+
+    ResultIterator(TransformationContext context, Iterator<byte[]> records) {
+      this.context = context;
+      this.records = records;
+    }
+
+    private void submitRecords() {
+      while (recordsInProgress.size() < maxRecordsInProgress && records.hasNext()) {
+        final byte[] record = records.next();
+        final long recordIndex = nextRecordIndex;
+        nextRecordIndex++;
+        recordsInProgress.add(CompletableFuture
+            .supplyAsync(() -> transformRecord(context, recordIndex, record), forkJoinPool));
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      submitRecords();
+      return !recordsInProgress.isEmpty();
+    }
+
+    @Override
+    public RecordTransformationResult next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final CompletableFuture<RecordTransformationResult> result = recordsInProgress.poll();
+
+      // Top up the records in progress so that the pool keeps working while we wait.
+      submitRecords();
+      return result.join();
+    }
+  }
+}
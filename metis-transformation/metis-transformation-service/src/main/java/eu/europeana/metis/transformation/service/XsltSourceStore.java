@@ -0,0 +1,258 @@
+package eu.europeana.metis.transformation.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * This class represents a local, content-addressed store of XSLT sources. XSLT files obtained over
+ * HTTP(S) are stored on disk together with their ETag and Last-Modified headers. When an XSLT is
+ * requested again (e.g. after a restart of the JVM), a conditional request is sent to the server
+ * and the stored copy is used if the server reports that the XSLT was not modified. If the server
+ * can not be reached or reports a server error, the stored copy is used as well. Client errors
+ * (e.g. when the XSLT no longer exists) are not masked by the stored copy.
+ * </p>
+ * <p>
+ * The content of each XSLT is stored in a file named after the SHA-256 hash of the content, so that
+ * XSLTs with the same content (e.g. the default XSLT under different URLs) are stored only once.
+ * XSLTs with other protocols (e.g. file or jar URLs) are not stored. This class is thread-safe: all
+ * files are written to a temporary file first and then atomically moved into place.
+ * </p>
+ */
+public class XsltSourceStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(XsltSourceStore.class);
+
+  private static final String CONTENT_FILE_SUFFIX = ".xsl";
+  private static final String METADATA_FILE_SUFFIX = ".properties";
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+  private static final String URL_PROPERTY = "url";
+  private static final String CONTENT_HASH_PROPERTY = "contentHash";
+  private static final String ETAG_PROPERTY = "etag";
+  private static final String LAST_MODIFIED_PROPERTY = "lastModified";
+
+  private static final String ETAG_HEADER = "ETag";
+  private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+  private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+  private static final int DEFAULT_CONNECT_TIMEOUT_IN_MS = 10_000;
+  private static final int DEFAULT_READ_TIMEOUT_IN_MS = 30_000;
+
+  private final Path directory;
+  private final int connectTimeoutInMs;
+  private final int readTimeoutInMs;
+
+  /**
+   * Constructor with default connect and read timeouts.
+   *
+   * @param directory The directory in which to store the XSLTs. It will be created if it does not
+   * exist.
+   * @throws IOException In case the directory could not be created.
+   */
+  public XsltSourceStore(Path directory) throws IOException {
+    this(directory, DEFAULT_CONNECT_TIMEOUT_IN_MS, DEFAULT_READ_TIMEOUT_IN_MS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param directory The directory in which to store the XSLTs. It will be created if it does not
+   * exist.
+   * @param connectTimeoutInMs The connect timeout for HTTP requests (in milliseconds).
+   * @param readTimeoutInMs The read timeout for HTTP requests (in milliseconds).
+   * @throws IOException In case the directory could not be created.
+   */
+  public XsltSourceStore(Path directory, int connectTimeoutInMs, int readTimeoutInMs)
+      throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.connectTimeoutInMs = connectTimeoutInMs;
+    this.readTimeoutInMs = readTimeoutInMs;
+  }
+
+  /**
+   * Obtains the XSLT with the given URL. For HTTP(S) URLs, the stored copy is used if it is still
+   * valid or if the server could not be reached or reports a server error.
+   *
+   * @param xsltUrl The URL of the XSLT.
+   * @return The content of the XSLT.
+   * @throws IOException In case the XSLT could not be obtained from the server nor the store.
+   */
+  public byte[] getXslt(String xsltUrl) throws IOException {
+
+    // If this is not an HTTP connection, we just read the XSLT.
+    final URLConnection urlConnection = new URL(xsltUrl).openConnection();
+    if (!(urlConnection instanceof HttpURLConnection)) {
+      try (final InputStream inputStream = urlConnection.getInputStream()) {
+        return IOUtils.toByteArray(inputStream);
+      }
+    }
+    final HttpURLConnection connection = (HttpURLConnection) urlConnection;
+
+    // Find the stored copy and, if there is one, make the request conditional.
+    final Path metadataFile = directory.resolve(computeHash(xsltUrl) + METADATA_FILE_SUFFIX);
+    final Properties metadata = readMetadata(metadataFile, xsltUrl);
+    connection.setConnectTimeout(connectTimeoutInMs);
+    connection.setReadTimeout(readTimeoutInMs);
+    if (metadata != null) {
+      setRequestHeader(connection, IF_NONE_MATCH_HEADER, metadata.getProperty(ETAG_PROPERTY));
+      setRequestHeader(connection, IF_MODIFIED_SINCE_HEADER,
+          metadata.getProperty(LAST_MODIFIED_PROPERTY));
+    }
+
+    // Perform the request and process the result.
+    try {
+      final int responseCode;
+      try {
+        responseCode = connection.getResponseCode();
+      } catch (IOException e) {
+        return readStoredCopy(xsltUrl, metadata, e);
+      }
+      if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && metadata != null) {
+        LOGGER.debug("Using stored copy of XSLT {}: it was not modified.", xsltUrl);
+        return readContent(metadata);
+      }
+      final String responseMessage = String
+          .format("Received response code %d for XSLT %s.", responseCode, xsltUrl);
+      if (responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+        return readStoredCopy(xsltUrl, metadata, new IOException(responseMessage));
+      }
+      if (responseCode != HttpURLConnection.HTTP_OK) {
+        throw new IOException(responseMessage);
+      }
+      final byte[] content;
+      try (final InputStream inputStream = connection.getInputStream()) {
+        content = IOUtils.toByteArray(inputStream);
+      } catch (IOException e) {
+        return readStoredCopy(xsltUrl, metadata, e);
+      }
+      store(xsltUrl, metadataFile, content, connection.getHeaderField(ETAG_HEADER),
+          connection.getHeaderField(LAST_MODIFIED_HEADER));
+      return content;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Falls back to the stored copy in case the server could not be reached or had an internal
+   * error. Client errors (e.g. when the XSLT no longer exists) are not covered by this.
+   */
+  private byte[] readStoredCopy(String xsltUrl, Properties metadata, IOException cause)
+      throws IOException {
+    if (metadata == null) {
+      throw cause;
+    }
+    LOGGER.warn("Could not obtain XSLT {} from server: using stored copy.", xsltUrl, cause);
+    return readContent(metadata);
+  }
+
+  private static void setRequestHeader(HttpURLConnection connection, String header,
+      String value) {
+    if (value != null) {
+      connection.setRequestProperty(header, value);
+    }
+  }
+
+  private Properties readMetadata(Path metadataFile, String xsltUrl) {
+    final Properties metadata = new Properties();
+    try (final InputStream inputStream = Files.newInputStream(metadataFile)) {
+      metadata.load(inputStream);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      LOGGER.warn("Could not read stored metadata for XSLT {}.", xsltUrl, e);
+      return null;
+    }
+    final String contentHash = metadata.getProperty(CONTENT_HASH_PROPERTY);
+    final boolean isValid = xsltUrl.equals(metadata.getProperty(URL_PROPERTY))
+        && contentHash != null
+        && Files.isRegularFile(directory.resolve(contentHash + CONTENT_FILE_SUFFIX));
+    return isValid ? metadata : null;
+  }
+
+  private byte[] readContent(Properties metadata) throws IOException {
+    return Files.readAllBytes(
+        directory.resolve(metadata.getProperty(CONTENT_HASH_PROPERTY) + CONTENT_FILE_SUFFIX));
+  }
+
+  private void store(String xsltUrl, Path metadataFile, byte[] content, String etag,
+      String lastModified) {
+    try {
+
+      // Store the content, if we don't have it yet.
+      final String contentHash = computeHash(content);
+      final Path contentFile = directory.resolve(contentHash + CONTENT_FILE_SUFFIX);
+      if (!Files.isRegularFile(contentFile)) {
+        final Path temporaryFile = Files.createTempFile(directory, contentHash,
+            TEMPORARY_FILE_SUFFIX);
+        Files.write(temporaryFile, content);
+        moveIntoPlace(temporaryFile, contentFile);
+      }
+
+      // Store the metadata.
+      final Properties metadata = new Properties();
+      metadata.setProperty(URL_PROPERTY, xsltUrl);
+      metadata.setProperty(CONTENT_HASH_PROPERTY, contentHash);
+      if (etag != null) {
+        metadata.setProperty(ETAG_PROPERTY, etag);
+      }
+      if (lastModified != null) {
+        metadata.setProperty(LAST_MODIFIED_PROPERTY, lastModified);
+      }
+      final Path temporaryFile = Files.createTempFile(directory, contentHash,
+          TEMPORARY_FILE_SUFFIX);
+      try (final OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+        metadata.store(outputStream, null);
+      }
+      moveIntoPlace(temporaryFile, metadataFile);
+
+    } catch (IOException e) {
+      LOGGER.warn("Could not store XSLT {}.", xsltUrl, e);
+    }
+  }
+
+  private static void moveIntoPlace(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(source);
+    }
+  }
+
+  private static String computeHash(String value) {
+    return computeHash(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String computeHash(byte[] value) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Should not happen: every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+    final StringBuilder result = new StringBuilder();
+    for (byte hashByte : digest.digest(value)) {
+      result.append(String.format("%02x", hashByte));
+    }
+    return result.toString();
+  }
+}
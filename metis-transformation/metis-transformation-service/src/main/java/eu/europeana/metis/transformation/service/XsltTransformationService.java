@@ -0,0 +1,158 @@
+package eu.europeana.metis.transformation.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.transform.Result;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import eu.europeana.metis.transformation.service.CacheValueSupplier.CacheValueSupplierException;
+
+/**
+ * <p>
+ * This class performs XSL transforms (XSLT). Contrary to {@link XsltTransformer}, instances of this
+ * class are <b>thread-safe</b> and can be shared between threads and used for different XSLTs.
+ * </p>
+ * <p>
+ * For every XSLT, this class maintains a bounded pool of ready {@link Transformer} instances. The
+ * pool is tied to the compiled XSLT that is currently in the XSLT cache of {@link XsltTransformer}:
+ * when that cache reloads the XSLT, a new pool is started. Transformers are reset (and all
+ * parameters cleared) before they are returned to the pool. The result of a transformation is
+ * written directly to a result supplied by the caller, avoiding the need to hold the complete
+ * result in memory as a string.
+ * </p>
+ */
+public class XsltTransformationService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(XsltTransformationService.class);
+
+  /** The default maximum number of idle transformers to be retained for each XSLT. **/
+  public static final int DEFAULT_MAX_IDLE_TRANSFORMERS_PER_XSLT = 16;
+
+  private final int maxIdleTransformersPerXslt;
+
+  private final ConcurrentMap<String, TransformerPool> transformerPools =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Constructor using the default maximum number of idle transformers per XSLT (given by
+   * {@link #DEFAULT_MAX_IDLE_TRANSFORMERS_PER_XSLT}).
+   */
+  public XsltTransformationService() {
+    this(DEFAULT_MAX_IDLE_TRANSFORMERS_PER_XSLT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxIdleTransformersPerXslt The maximum number of idle transformers to be retained for
+   * each XSLT. This is not a limit on the number of concurrent transformations. Must be positive.
+   */
+  public XsltTransformationService(int maxIdleTransformersPerXslt) {
+    if (maxIdleTransformersPerXslt < 1) {
+      throw new IllegalArgumentException();
+    }
+    this.maxIdleTransformersPerXslt = maxIdleTransformersPerXslt;
+  }
+
+  /**
+   * Transforms a file using the XSL transformation in the given context and writes the result to
+   * the given output stream.
+   *
+   * @param context The dataset context of the transformation, including the XSLT URL.
+   * @param fileContent The file to be transformed.
+   * @param europeanaGeneratedIdsMap all the identifiers related to europeana RDF elements. Can be
+   * null.
+   * @param outputStream The stream to which the result is to be written. It is not closed.
+   * @throws TransformationException In case there was a problem with the transformation.
+   */
+  public void transform(TransformationContext context, byte[] fileContent,
+      EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap, OutputStream outputStream)
+      throws TransformationException {
+    transform(context, fileContent, europeanaGeneratedIdsMap, new StreamResult(outputStream));
+  }
+
+  /**
+   * Transforms a file using the XSL transformation in the given context and writes the result to
+   * the given result object.
+   *
+   * @param context The dataset context of the transformation, including the XSLT URL.
+   * @param fileContent The file to be transformed.
+   * @param europeanaGeneratedIdsMap all the identifiers related to europeana RDF elements. Can be
+   * null.
+   * @param result The result object to which the result is to be written.
+   * @throws TransformationException In case there was a problem with the transformation.
+   */
+  public void transform(TransformationContext context, byte[] fileContent,
+      EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap, Result result)
+      throws TransformationException {
+    final TransformerPool pool = getTransformerPool(context.getXsltUrl());
+    final Transformer transformer;
+    try {
+      transformer = pool.borrowTransformer();
+    } catch (TransformerException e) {
+      LOGGER.error("Exception during transformation setup", e);
+      throw new TransformationException(e);
+    }
+    boolean transformationSucceeded = false;
+    try {
+      XsltTransformer.setDatasetParameters(transformer, context.getDatasetName(),
+          context.getEdmCountry(), context.getEdmLanguage());
+      XsltTransformer.setIdParameters(transformer, europeanaGeneratedIdsMap);
+      transformer.transform(new StreamSource(new ByteArrayInputStream(fileContent)), result);
+      transformationSucceeded = true;
+    } catch (TransformerException e) {
+      LOGGER.error("Exception during transformation", e);
+      throw new TransformationException(e);
+    } finally {
+      // Transformers that failed are not reused: their state may be compromised.
+      if (transformationSucceeded) {
+        pool.returnTransformer(transformer);
+      }
+    }
+  }
+
+  private TransformerPool getTransformerPool(String xsltUrl) throws TransformationException {
+
+    // Get the current compiled XSLT from the cache.
+    final Templates templates;
+    try {
+      templates = XsltTransformer.getTemplates(xsltUrl);
+    } catch (CacheValueSupplierException e) {
+      LOGGER.error("Exception during transformation setup", e);
+      throw new TransformationException(e);
+    }
+
+    // Return the existing pool if it belongs to these templates. Otherwise, replace it.
+    final TransformerPool existingPool = transformerPools.get(xsltUrl);
+    if (existingPool != null && existingPool.getTemplates() == templates) {
+      return existingPool;
+    }
+    return transformerPools.compute(xsltUrl,
+        (url, pool) -> pool != null && pool.getTemplates() == templates ? pool
+            : new TransformerPool(templates, maxIdleTransformersPerXslt));
+  }
+
+  /**
+   * @param xsltUrl The URL of the XSLT file.
+   * @return The number of idle transformers currently retained for the given XSLT.
+   */
+  int getIdleTransformerCount(String xsltUrl) {
+    final TransformerPool pool = transformerPools.get(xsltUrl);
+    return pool == null ? 0 : pool.getIdleTransformerCount();
+  }
+
+  /**
+   * Discards all idle transformers for all XSLTs. This method could be called after cleaning up the
+   * XSLT cache (see {@link XsltTransformer#removeItemsNotAccessedSince(java.time.Duration)}).
+   */
+  public void clearIdleTransformers() {
+    transformerPools.clear();
+  }
+}
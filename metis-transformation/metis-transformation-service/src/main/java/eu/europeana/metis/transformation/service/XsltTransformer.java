@@ -6,6 +6,14 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URL;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -21,14 +29,26 @@ import net.sf.saxon.TransformerFactoryImpl;
 /**
  * This class performs XSL transforms (XSLT). Instances of this class are <b>not thread-safe</b>.
  * For each thread a new instance needs to be created, but, due to the caching mechanism of the XSLT
- * compilation, this operation is not very expensive.
+ * compilation, this operation is not very expensive. Expired XSLTs are reloaded in the background:
+ * until the reload is done, the previously compiled version is used.
  */
 public class XsltTransformer {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(XsltTransformer.class);
 
+  private static final int TEMPLATES_CACHE_MAX_SIZE = 1000;
+  private static final int TEMPLATES_CACHE_REFRESH_THREAD_COUNT = 2;
+
   private static final CacheWithExpirationTime<String, Templates> TEMPLATES_CACHE =
-      new CacheWithExpirationTime<>();
+      new CacheWithExpirationTime<>(CacheWithExpirationTime.DEFAULT_EXPIRATION_TIME,
+          CacheWithExpirationTime.DEFAULT_LENIENCY_MODE, TEMPLATES_CACHE_MAX_SIZE,
+          Executors.newFixedThreadPool(TEMPLATES_CACHE_REFRESH_THREAD_COUNT, runnable -> {
+            final Thread thread = new Thread(runnable, "xslt-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+          }));
+
+  private static volatile XsltSourceStore xsltSourceStore;
 
   private final Transformer transformer;
 
@@ -59,6 +79,41 @@ public class XsltTransformer {
       LOGGER.error("Exception during transformation setup", e);
       throw new TransformationException(e);
     }
+    setDatasetParameters(transformer, datasetName, edmCountry, edmLanguage);
+  }
+
+  /**
+   * Transforms a file using this instance's XSL transformation.
+   *
+   * @param fileContent The file to be transformed.
+   * @param europeanaGeneratedIdsMap all the identifiers related to europeana RDF elements
+   * @return The transformed file.
+   * @throws TransformationException In case there was a problem with the transformation.
+   */
+  public StringWriter transform(byte[] fileContent,
+      EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap) throws TransformationException {
+    setIdParameters(transformer, europeanaGeneratedIdsMap);
+    try (final InputStream contentStream = new ByteArrayInputStream(fileContent)) {
+      final StringWriter result = new StringWriter();
+      transformer.transform(new StreamSource(contentStream), new StreamResult(result));
+      return result;
+    } catch (TransformerException | IOException e) {
+      LOGGER.error("Exception during transformation", e);
+      throw new TransformationException(e);
+    }
+  }
+
+  /**
+   * Sets the dataset-related parameters on the given transformer. Parameters with empty values are
+   * not set.
+   *
+   * @param transformer The transformer.
+   * @param datasetName the dataset name related to the dataset
+   * @param edmCountry the Country related to the dataset
+   * @param edmLanguage the language related to the dataset
+   */
+  static void setDatasetParameters(Transformer transformer, String datasetName, String edmCountry,
+      String edmLanguage) {
     if (datasetName != null && !datasetName.trim().isEmpty()) {
       transformer.setParameter("datasetName", datasetName);
     }
@@ -71,15 +126,14 @@ public class XsltTransformer {
   }
 
   /**
-   * Transforms a file using this instance's XSL transformation.
+   * Sets the record identifier parameters on the given transformer.
    *
-   * @param fileContent The file to be transformed.
-   * @param europeanaGeneratedIdsMap all the identifiers related to europeana RDF elements
-   * @return The transformed file.
-   * @throws TransformationException In case there was a problem with the transformation.
+   * @param transformer The transformer.
+   * @param europeanaGeneratedIdsMap all the identifiers related to europeana RDF elements. Can be
+   * null, in which case no parameters are set.
    */
-  public StringWriter transform(byte[] fileContent,
-      EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap) throws TransformationException {
+  static void setIdParameters(Transformer transformer,
+      EuropeanaGeneratedIdsMap europeanaGeneratedIdsMap) {
     if (europeanaGeneratedIdsMap != null) {
       transformer.setParameter("providedCHOAboutId",
           europeanaGeneratedIdsMap.getEuropeanaGeneratedId());
@@ -93,24 +147,18 @@ public class XsltTransformer {
       transformer.setParameter("dcIdentifier",
           europeanaGeneratedIdsMap.getSourceProvidedChoAbout());
     }
-    try (final InputStream contentStream = new ByteArrayInputStream(fileContent)) {
-      final StringWriter result = new StringWriter();
-      transformer.transform(new StreamSource(contentStream), new StreamResult(result));
-      return result;
-    } catch (TransformerException | IOException e) {
-      LOGGER.error("Exception during transformation", e);
-      throw new TransformationException(e);
-    }
   }
 
-  private static Templates getTemplates(String xsltUrl) throws CacheValueSupplierException {
+  static Templates getTemplates(String xsltUrl) throws CacheValueSupplierException {
     return TEMPLATES_CACHE.getFromCache(xsltUrl, () -> createTemplatesFromUrl(xsltUrl));
   }
 
   private static Templates createTemplatesFromUrl(String xsltUrl)
       throws CacheValueSupplierException {
     final TransformerFactory transformerFactory = new TransformerFactoryImpl();
-    try (final InputStream xsltStream = new URL(xsltUrl).openStream()) {
+    final XsltSourceStore store = xsltSourceStore;
+    try (final InputStream xsltStream = store == null ? new URL(xsltUrl).openStream()
+        : new ByteArrayInputStream(store.getXslt(xsltUrl))) {
       return transformerFactory.newTemplates(new StreamSource(xsltStream));
     } catch (IOException | TransformerConfigurationException e) {
       throw new CacheValueSupplierException(e);
@@ -147,4 +195,55 @@ public class XsltTransformer {
   public static void removeItemsNotAccessedSince(Duration since) {
     TEMPLATES_CACHE.removeItemsNotAccessedSince(since);
   }
+
+  /**
+   * @return The usage statistics of the internal XSLT cache.
+   */
+  public static CacheStatistics getCacheStatistics() {
+    return TEMPLATES_CACHE.getStatistics();
+  }
+
+  /**
+   * Set a local store of XSLT sources. If set, XSLTs are obtained through this store, so that they
+   * are only downloaded again if they have changed on the server.
+   *
+   * @param store The store. Can be null, in which case XSLTs are always downloaded.
+   */
+  public static void setXsltSourceStore(XsltSourceStore store) {
+    xsltSourceStore = store;
+  }
+
+  /**
+   * Loads and compiles the given XSLTs in parallel and adds them to the internal XSLT cache. This
+   * method could be called at startup, so that the first transformations don't need to wait for
+   * the XSLTs to be downloaded and compiled. This method blocks until all XSLTs are processed.
+   *
+   * @param xsltUrls The URLs of the XSLT files.
+   * @param threadCount The number of XSLTs to be loaded and compiled in parallel. Must be positive.
+   * @return The XSLTs that could not be loaded or compiled, with the exception that occurred. Is
+   * empty if all XSLTs were loaded successfully.
+   * @throws InterruptedException In case the calling thread was interrupted while waiting.
+   */
+  public static Map<String, TransformationException> warmUp(Collection<String> xsltUrls,
+      int threadCount) throws InterruptedException {
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      final Map<String, Future<Templates>> tasks = new LinkedHashMap<>();
+      for (String xsltUrl : new LinkedHashSet<>(xsltUrls)) {
+        tasks.put(xsltUrl, executor.submit(() -> getTemplates(xsltUrl)));
+      }
+      final Map<String, TransformationException> failures = new LinkedHashMap<>();
+      for (Map.Entry<String, Future<Templates>> task : tasks.entrySet()) {
+        try {
+          task.getValue().get();
+        } catch (ExecutionException e) {
+          LOGGER.warn("Could not load XSLT {}.", task.getKey(), e.getCause());
+          failures.put(task.getKey(), new TransformationException(e.getCause()));
+        }
+      }
+      return failures;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
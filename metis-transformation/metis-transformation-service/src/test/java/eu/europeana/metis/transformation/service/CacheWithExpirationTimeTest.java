@@ -1,6 +1,7 @@
 package eu.europeana.metis.transformation.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -9,6 +10,8 @@ import static org.mockito.Mockito.verify;
 import eu.europeana.metis.transformation.service.CacheItemWithExpirationTimeTest.SpyableCacheValueSupplier;
 import eu.europeana.metis.transformation.service.CacheValueSupplier.CacheValueSupplierException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class CacheWithExpirationTimeTest {
@@ -79,4 +82,108 @@ class CacheWithExpirationTimeTest {
     assertEquals(testValue1, returnedValue5);
     verify(supplier5, times(1)).get();
   }
+
+  @Test
+  void testBackgroundRefresh() throws CacheValueSupplierException {
+
+    // Create cache that always expires and that refreshes using a controlled executor.
+    final List<Runnable> refreshTasks = new ArrayList<>();
+    final CacheWithExpirationTime<String, String> cache = new CacheWithExpirationTime<>(
+        Duration.ZERO.minusMillis(1), true, 10, refreshTasks::add);
+    final String testKey = "key";
+    final String testValue1 = "test1";
+    final String testValue2 = "test2";
+
+    // First load happens in the calling thread.
+    final SpyableCacheValueSupplier supplier1 = spy(new SpyableCacheValueSupplier(testValue1));
+    assertEquals(testValue1, cache.getFromCache(testKey, supplier1));
+    verify(supplier1, times(1)).get();
+    assertTrue(refreshTasks.isEmpty());
+    assertEquals(1, cache.getStatistics().getMissCount());
+
+    // Second and third load return the stale value and schedule only one refresh.
+    final SpyableCacheValueSupplier supplier2 = spy(new SpyableCacheValueSupplier(testValue2));
+    assertEquals(testValue1, cache.getFromCache(testKey, supplier2));
+    assertEquals(testValue1, cache.getFromCache(testKey, supplier2));
+    verify(supplier2, never()).get();
+    assertEquals(1, refreshTasks.size());
+    assertEquals(2, cache.getStatistics().getStaleHitCount());
+
+    // Perform the refresh: now the new value is returned.
+    refreshTasks.remove(0).run();
+    verify(supplier2, times(1)).get();
+    assertEquals(testValue2, cache.getFromCache(testKey, supplier2));
+    assertEquals(2, cache.getStatistics().getLoadSuccessCount());
+  }
+
+  @Test
+  void testMaxSize() throws CacheValueSupplierException {
+    final CacheWithExpirationTime<String, String> cache =
+        new CacheWithExpirationTime<>(Duration.ZERO.plusHours(1), true, 2, null);
+
+    // Add three items: the first should be evicted.
+    cache.getFromCache("key1", new SpyableCacheValueSupplier("test1"));
+    cache.getFromCache("key2", new SpyableCacheValueSupplier("test2"));
+    cache.getFromCache("key3", new SpyableCacheValueSupplier("test3"));
+    assertEquals(2, cache.getSize());
+    assertEquals(1, cache.getStatistics().getEvictionCount());
+
+    // Check that the first item needs to be reloaded and the third does not.
+    final SpyableCacheValueSupplier supplier3 = spy(new SpyableCacheValueSupplier("test3"));
+    cache.getFromCache("key3", supplier3);
+    verify(supplier3, never()).get();
+    final SpyableCacheValueSupplier supplier1 = spy(new SpyableCacheValueSupplier("test1"));
+    cache.getFromCache("key1", supplier1);
+    verify(supplier1, times(1)).get();
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  void testMaxSizeEvictsLeastRecentlyAccessedItem()
+      throws CacheValueSupplierException, InterruptedException {
+    final CacheWithExpirationTime<String, String> cache =
+        new CacheWithExpirationTime<>(Duration.ZERO.plusHours(1), true, 2, null);
+
+    // Add two items and access the first one again: adding a third should evict the second.
+    cache.getFromCache("key1", new SpyableCacheValueSupplier("test1"));
+    Thread.sleep(5);
+    cache.getFromCache("key2", new SpyableCacheValueSupplier("test2"));
+    Thread.sleep(5);
+    cache.getFromCache("key1", new SpyableCacheValueSupplier("test1"));
+    Thread.sleep(5);
+    cache.getFromCache("key3", new SpyableCacheValueSupplier("test3"));
+    assertEquals(2, cache.getSize());
+
+    final SpyableCacheValueSupplier supplier1 = spy(new SpyableCacheValueSupplier("test1"));
+    cache.getFromCache("key1", supplier1);
+    verify(supplier1, never()).get();
+    final SpyableCacheValueSupplier supplier2 = spy(new SpyableCacheValueSupplier("test2"));
+    cache.getFromCache("key2", supplier2);
+    verify(supplier2, times(1)).get();
+  }
+
+  @Test
+  void testEvictionQueueDoesNotKeepRemovedItems() throws CacheValueSupplierException {
+
+    // A cache with a maximum size tracks its items, but not after they are removed.
+    final CacheWithExpirationTime<String, String> boundedCache =
+        new CacheWithExpirationTime<>(Duration.ZERO.plusHours(1), true, 10, null);
+    for (int i = 0; i < 5; i++) {
+      boundedCache.getFromCache("key" + i, new SpyableCacheValueSupplier("test" + i));
+    }
+    assertEquals(5, boundedCache.getEvictionQueueSize());
+    boundedCache.removeItemsNotAccessedSince(Duration.ZERO.minusSeconds(1));
+    assertEquals(0, boundedCache.getSize());
+    assertEquals(0, boundedCache.getEvictionQueueSize());
+    boundedCache.getFromCache("key0", new SpyableCacheValueSupplier("test0"));
+    assertEquals(1, boundedCache.getEvictionQueueSize());
+
+    // A cache without maximum size does not track its items.
+    final CacheWithExpirationTime<String, String> unboundedCache = new CacheWithExpirationTime<>();
+    for (int i = 0; i < 5; i++) {
+      unboundedCache.getFromCache("key" + i, new SpyableCacheValueSupplier("test" + i));
+    }
+    assertEquals(5, unboundedCache.getSize());
+    assertEquals(0, unboundedCache.getEvictionQueueSize());
+  }
 }
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import eu.europeana.corelib.definitions.jibx.ProvidedCHOType;
 import eu.europeana.corelib.definitions.jibx.RDF;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -60,6 +61,9 @@ class EuropeanaIdCreatorTest {
     final EuropeanaIdCreator creator = new EuropeanaIdCreator();
     assertEquals(expectedLegacy, creator.constructEuropeanaId(rdfString, datasetId).getEuropeanaGeneratedId());
     assertEquals(expectedLegacy, creator.constructEuropeanaId(rdf, datasetId).getEuropeanaGeneratedId());
+    assertEquals(expectedLegacy, creator
+        .constructEuropeanaId(rdfString.getBytes(StandardCharsets.UTF_8), datasetId)
+        .getEuropeanaGeneratedId());
   }
 
   @Test
@@ -117,4 +121,21 @@ class EuropeanaIdCreatorTest {
   public void testRdfStringIdCreationWithEmptyAbout() {
     assertThrows(EuropeanaIdException.class, () -> new EuropeanaIdCreator().constructEuropeanaId(createRdfString("", RECORD_ID), DATASET_ID));
   }
+
+  @Test
+  public void testRdfStringIdCreationOnlyReadsUpToCho() throws EuropeanaIdException {
+    final String expected = "/" + DATASET_ID + "/" + RECORD_ID;
+    final String rdfString = createRdfString(RECORD_ID).replace("</rdf:RDF>", "<unclosed>");
+    assertEquals(expected, new EuropeanaIdCreator().constructEuropeanaId(rdfString, DATASET_ID)
+        .getEuropeanaGeneratedId());
+  }
+
+  @Test
+  public void testRdfStringIdCreationWithNestedCho() {
+    final String nestedCho = "<edm:WebResource>" + String.format(PROVIDED_CHO_SKELETON,
+        String.format(RDF_ABOUT_SKELETON, RECORD_ID)) + "</edm:WebResource>";
+    final String rdfString = String.format(RDF_SKELETON, nestedCho);
+    assertThrows(EuropeanaIdException.class,
+        () -> new EuropeanaIdCreator().constructEuropeanaId(rdfString, DATASET_ID));
+  }
 }
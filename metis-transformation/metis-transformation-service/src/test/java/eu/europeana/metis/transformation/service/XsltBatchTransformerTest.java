@@ -0,0 +1,72 @@
+package eu.europeana.metis.transformation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class XsltBatchTransformerTest {
+
+  private static final String DATASET_ID = "123456";
+
+  private static final String RDF_SKELETON = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\" "
+      + "xmlns:edm=\"http://www.europeana.eu/schemas/edm/\">"
+      + "<edm:ProvidedCHO rdf:about=\"%s\"/><node1/></rdf:RDF>";
+
+  private ForkJoinPool pool;
+
+  @BeforeEach
+  void setUp() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void shouldTransformInOrder() {
+    final URL xsltFile = getClass().getClassLoader().getResource("inject_node.xslt");
+    final XsltBatchTransformer batchTransformer = new XsltBatchTransformer(
+        new XsltTransformationService(), pool, 3);
+    final TransformationContext context =
+        new TransformationContext(xsltFile.toString(), DATASET_ID, "sample", null, null);
+
+    // Create records: one of them has no rdf:about.
+    final int recordCount = 20;
+    final List<RecordTransformationResult> results = batchTransformer.transform(context,
+        IntStream.range(0, recordCount).mapToObj(index -> index == 5 ? "" : "id" + index)
+            .map(id -> String.format(RDF_SKELETON, id).getBytes(StandardCharsets.UTF_8)))
+        .collect(Collectors.toList());
+
+    // Check the results.
+    assertEquals(recordCount, results.size());
+    for (int index = 0; index < recordCount; index++) {
+      final RecordTransformationResult result = results.get(index);
+      assertEquals(index, result.getRecordIndex());
+      if (index == 5) {
+        assertFalse(result.isSuccessful());
+        assertTrue(result.getException() instanceof EuropeanaIdException);
+      } else {
+        assertTrue(result.isSuccessful());
+        assertEquals("/" + DATASET_ID + "/id" + index,
+            result.getEuropeanaGeneratedIdsMap().getEuropeanaGeneratedId());
+        final String transformed =
+            new String(result.getTransformedRecord(), StandardCharsets.UTF_8);
+        assertTrue(transformed.contains("rdf:about=\"id" + index + "\""));
+        assertTrue(transformed.contains("<injected_node>sample</injected_node>"));
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package eu.europeana.metis.transformation.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class XsltSourceStoreTest {
+
+  private static final String ETAG = "\"version1\"";
+  private static final byte[] XSLT_CONTENT = "<xsl:stylesheet/>".getBytes(StandardCharsets.UTF_8);
+
+  private HttpServer server;
+  private final AtomicInteger fullResponseCount = new AtomicInteger();
+  private final AtomicInteger notModifiedResponseCount = new AtomicInteger();
+  private final AtomicInteger errorResponseCode = new AtomicInteger();
+  private Path directory;
+  private String xsltUrl;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/xslt", exchange -> {
+      if (errorResponseCode.get() > 0) {
+        exchange.sendResponseHeaders(errorResponseCode.get(), -1);
+      } else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModifiedResponseCount.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+      } else {
+        fullResponseCount.incrementAndGet();
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        exchange.sendResponseHeaders(200, XSLT_CONTENT.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+          outputStream.write(XSLT_CONTENT);
+        }
+      }
+      exchange.close();
+    });
+    server.start();
+    xsltUrl = "http://localhost:" + server.getAddress().getPort() + "/xslt";
+    directory = Files.createTempDirectory("xslt-store");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.stop(0);
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  @Test
+  void testConditionalRequests() throws IOException {
+
+    // First request: full download.
+    assertArrayEquals(XSLT_CONTENT, new XsltSourceStore(directory).getXslt(xsltUrl));
+    assertEquals(1, fullResponseCount.get());
+    assertEquals(0, notModifiedResponseCount.get());
+
+    // Second request with new store instance (simulating a restart): not modified.
+    assertArrayEquals(XSLT_CONTENT, new XsltSourceStore(directory).getXslt(xsltUrl));
+    assertEquals(1, fullResponseCount.get());
+    assertEquals(1, notModifiedResponseCount.get());
+
+    // Third request while server is down: use stored copy.
+    server.stop(0);
+    assertArrayEquals(XSLT_CONTENT, new XsltSourceStore(directory).getXslt(xsltUrl));
+  }
+
+  @Test
+  void testServerDownWithoutStoredCopy() throws IOException {
+    final XsltSourceStore store = new XsltSourceStore(directory);
+    server.stop(0);
+    assertThrows(IOException.class, () -> store.getXslt(xsltUrl));
+  }
+
+  @Test
+  void testErrorResponsesWithStoredCopy() throws IOException {
+    assertArrayEquals(XSLT_CONTENT, new XsltSourceStore(directory).getXslt(xsltUrl));
+
+    // Server error: use stored copy.
+    errorResponseCode.set(503);
+    assertArrayEquals(XSLT_CONTENT, new XsltSourceStore(directory).getXslt(xsltUrl));
+
+    // Client error: the XSLT is no longer available.
+    errorResponseCode.set(404);
+    assertThrows(IOException.class, () -> new XsltSourceStore(directory).getXslt(xsltUrl));
+    errorResponseCode.set(410);
+    assertThrows(IOException.class, () -> new XsltSourceStore(directory).getXslt(xsltUrl));
+  }
+}
@@ -0,0 +1,56 @@
+package eu.europeana.metis.transformation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+class XsltTransformationServiceTest {
+
+  @Test
+  void shouldTransformAndReuseTransformer() throws IOException, TransformationException {
+    final URL xsltFile = getClass().getClassLoader().getResource("inject_node.xslt");
+    final byte[] fileToTransform = readFile("xmlForTestingParamInjection.xml");
+    final XsltTransformationService service = new XsltTransformationService(1);
+
+    // Transform with parameter
+    final ByteArrayOutputStream output1 = new ByteArrayOutputStream();
+    service.transform(
+        new TransformationContext(xsltFile.toString(), null, "sample", null, null),
+        fileToTransform, null, output1);
+    final String result1 = new String(output1.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(result1.contains("<injected_node>sample</injected_node>"));
+    assertEquals(1, service.getIdleTransformerCount(xsltFile.toString()));
+
+    // Transform again without parameter: the parameter should have been reset.
+    final ByteArrayOutputStream output2 = new ByteArrayOutputStream();
+    service.transform(new TransformationContext(xsltFile.toString()), fileToTransform, null,
+        output2);
+    final String result2 = new String(output2.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(result2.contains("injected_node"));
+    assertFalse(result2.contains("sample"));
+    assertEquals(1, service.getIdleTransformerCount(xsltFile.toString()));
+  }
+
+  @Test
+  void shouldFailForMalformedFile() throws IOException {
+    final URL xsltFile = getClass().getClassLoader().getResource("inject_node.xslt");
+    final byte[] fileToTransform = readFile("malformedFile.xml");
+    final XsltTransformationService service = new XsltTransformationService();
+    assertThrows(TransformationException.class,
+        () -> service.transform(new TransformationContext(xsltFile.toString()), fileToTransform,
+            null, new ByteArrayOutputStream()));
+    assertEquals(0, service.getIdleTransformerCount(xsltFile.toString()));
+  }
+
+  private byte[] readFile(String fileName) throws IOException {
+    return IOUtils.toByteArray(getClass().getClassLoader().getResource(fileName));
+  }
+}
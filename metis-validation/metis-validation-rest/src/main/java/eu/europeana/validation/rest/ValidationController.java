@@ -1,11 +1,22 @@
 package eu.europeana.validation.rest;
 
 import static eu.europeana.metis.RestEndpoints.SCHEMA_BATCH_VALIDATE;
+import static eu.europeana.metis.RestEndpoints.SCHEMA_BATCH_VALIDATE_STREAM;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,6 +51,12 @@ public class ValidationController {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ValidationController.class);
 
+  private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+  private static final ObjectWriter NDJSON_WRITER = new ObjectMapper()
+      .writerFor(ValidationResult.class);
+  private static final String ERROR_LINE_FIELD = "error";
+  private static final ObjectWriter ERROR_LINE_WRITER = new ObjectMapper().writer();
+
   private final ValidationExecutionService validator;
   private final SchemaProvider schemaProvider;
 
@@ -108,31 +125,106 @@ public class ValidationController {
           new ValidationResultList());
     }
 
-    final List<String> records;
-    try {
-      records = new ZipFileReader().getRecordsFromZipFile(providedZipFile.getInputStream());
-    } catch (IOException e) {
+    final List<ValidationResult> failures = new ArrayList<>();
+    try (final Stream<String> records = new ZipFileReader()
+        .getRecordStreamFromZipFile(providedZipFile.getInputStream())) {
+      final long recordCount = validator
+          .streamingBatchValidation(targetSchema, null, null, records.iterator(), failures::add);
+      if (recordCount == 0) {
+        throw new ServerException("No suitable records found in zip file.");
+      }
+    } catch (IOException | UncheckedIOException | ExecutionException e) {
+      throw new ServerException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       throw new ServerException(e);
     }
-    if (records.isEmpty()) {
-      throw new ServerException("No suitable records found in zip file.");
+
+    final ValidationResultList list = new ValidationResultList();
+    list.setResultList(failures);
+    list.setSuccess(true);
+    return list;
+  }
+
+  /**
+   * Streaming Batch Validation REST API implementation. It is exposed via
+   * /validate/batch/EDM-{EXTERNAL,INTERNAL}/stream. The parameters are a zip file with records
+   * (folders are not currently supported so records need to be at the root of the file). The
+   * records are read from the zip file and validated one by one (with a bounded number of records
+   * in progress), so that the zip file never needs to be held in memory. The failed validation
+   * results are written to the response as they occur, as newline-delimited JSON (one
+   * ValidationResult per line). An empty response therefore means that all records are valid. If
+   * validation fails after the first result was written (so that the response status can no longer
+   * be changed), a final line with an "error" field describing the problem is written instead.
+   *
+   * @param targetSchema The schema to validate against
+   * @param providedZipFile A zip file
+   * @param response The response to which the failed validation results are written
+   * @throws ServerException encapsulates several errors
+   * @throws BatchValidationException if the schema does not exist.
+   */
+  @RequestMapping(value = SCHEMA_BATCH_VALIDATE_STREAM, method = RequestMethod.POST)
+  @ApiOperation(value = "Validate zip file based on schema, streaming the failures as NDJSON")
+  public void batchValidateStreaming(
+      @ApiParam(value = "schema") @PathVariable("schema") String targetSchema,
+      @ApiParam(value = "file") @RequestParam("file") MultipartFile providedZipFile,
+      HttpServletResponse response) throws ServerException, BatchValidationException {
+
+    if (!schemaProvider.isPredefined(targetSchema)) {
+      throw new BatchValidationException("It is not predefined schema.",
+          new ValidationResultList());
     }
-        
-    try {
-      ValidationResultList list = validator.batchValidation(targetSchema, null, null, records);
-      if (list.getResultList() != null || list.getResultList().isEmpty()) {
-        list.setSuccess(true);
+
+    try (final Stream<String> records = new ZipFileReader()
+        .getRecordStreamFromZipFile(providedZipFile.getInputStream())) {
+      final Iterator<String> recordIterator = records.iterator();
+      if (!recordIterator.hasNext()) {
+        throw new ServerException("No suitable records found in zip file.");
       }
-      if (list.isSuccess()) {
-        return list;
-      } else {
-        throw new BatchValidationException("Batch service failed", list);
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentType(APPLICATION_NDJSON_VALUE);
+      response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+      final OutputStream outputStream = response.getOutputStream();
+      try {
+        validator.streamingBatchValidation(targetSchema, null, null, recordIterator,
+            failure -> writeLine(outputStream, failure));
+      } catch (UncheckedIOException | ExecutionException | InterruptedException e) {
+        if (e instanceof InterruptedException) {
+          Thread.currentThread().interrupt();
+        }
+        if (!response.isCommitted()) {
+          throw e;
+        }
+        LOGGER.warn("Batch validation failed after the response was committed.", e);
+        writeErrorLine(outputStream, e);
       }
-    } catch (ExecutionException e) {
+      outputStream.flush();
+    } catch (IOException | UncheckedIOException | ExecutionException e) {
       throw new ServerException(e);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new ServerException(e);
     }
   }
+
+  private static void writeErrorLine(OutputStream outputStream, Exception exception)
+      throws IOException {
+    final Throwable cause = exception instanceof ExecutionException && exception.getCause() != null
+        ? exception.getCause() : exception;
+    final String message = cause.getMessage() == null ? cause.getClass().getName()
+        : cause.getMessage();
+    outputStream.write(ERROR_LINE_WRITER
+        .writeValueAsBytes(Collections.singletonMap(ERROR_LINE_FIELD, message)));
+    outputStream.write('\n');
+  }
+
+  private static void writeLine(OutputStream outputStream, ValidationResult failure) {
+    try {
+      outputStream.write(NDJSON_WRITER.writeValueAsBytes(failure));
+      outputStream.write('\n');
+      outputStream.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 }
@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import eu.europeana.metis.RestEndpoints;
 import eu.europeana.validation.model.ValidationResult;
@@ -196,6 +197,31 @@ class TestValidationController {
     }
   }
 
+  @Test
+  void shouldStreamValidationFailuresAsNdjson() throws Exception {
+
+    wireMockServer.resetAll();
+    wireMockServer.stubFor(get(urlEqualTo("/schema.zip"))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBodyFile("test_schema.zip")));
+
+    MockMultipartFile file = new MockMultipartFile("file", "filename.txt", "text/plain",
+        new FileInputStream("src/test/resources/test_wrong.zip"));
+    MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+        .fileUpload(RestEndpoints.SCHEMA_BATCH_VALIDATE_STREAM, "EDM-INTERNAL")
+        .file(file))
+        .andExpect(MockMvcResultMatchers.status().is(200))
+        .andReturn();
+    assertTrue(result.getResponse().getContentType().startsWith("application/x-ndjson"));
+    ObjectMapper objectMapper = new ObjectMapper();
+    for (String line : result.getResponse().getContentAsString().split("\n")) {
+      if (!line.isEmpty()) {
+        assertFalse(objectMapper.readValue(line, ValidationResult.class).isSuccess());
+      }
+    }
+  }
+
   @Test
   void ShouldReturnResultSetOfExceptionsForUndefinedSchemaForZipFile() throws Exception {
     MockMultipartFile file = new MockMultipartFile("file", "filename.txt", "text/plain",
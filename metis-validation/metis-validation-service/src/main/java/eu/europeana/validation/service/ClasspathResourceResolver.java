@@ -1,14 +1,15 @@
 package eu.europeana.validation.service;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.ls.LSInput;
@@ -17,44 +18,103 @@ import org.w3c.dom.ls.LSResourceResolver;
 /**
  * Class enabling classpath XSD reading for split XSDs. This is because of an issue with JAXP XSD
  * loading Created by ymamakis on 12/21/15.
+ * <p>
+ * Instances of this class are immutable and can be used concurrently. Relative resources are
+ * resolved against the prefix of the resolver: use {@link #forPrefix(String)} to obtain a resolver
+ * for the directory of a schema. The contents of the resolved resources are cached (keyed on their
+ * absolute path), so that compiling a schema does not require disk I/O for resources that were
+ * resolved before.
+ * </p>
  */
 public class ClasspathResourceResolver implements LSResourceResolver {
 
-  private String prefix;
   private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathResourceResolver.class);
-  private static Map<String, InputStream> cache = new HashMap<>();
+  private static final String XML_XSD_RESOURCE = "xml.xsd";
+  private static final String CLASSPATH_KEY_PREFIX = "classpath:";
+  private static final ConcurrentMap<String, byte[]> CACHE = new ConcurrentHashMap<>();
+
+  private final String prefix;
+
+  /**
+   * Constructor for a resolver without prefix. Relative resources are resolved against the current
+   * working directory.
+   */
+  public ClasspathResourceResolver() {
+    this(null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param prefix The directory against which relative resources are resolved.
+   */
+  public ClasspathResourceResolver(String prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * Creates a resolver that resolves relative resources against the given prefix. This resolver is
+   * not changed.
+   *
+   * @param prefix The directory against which relative resources are resolved.
+   * @return The resolver.
+   */
+  public ClasspathResourceResolver forPrefix(String prefix) {
+    return new ClasspathResourceResolver(prefix);
+  }
 
   @Override
   public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId,
       String baseURI) {
+    final byte[] content;
     try {
-      LSInput input = new ClasspathLSInput();
-      InputStream stream;
       if (systemId.startsWith("http")) {
-        if (cache.get(systemId) == null) {
-          stream = Thread.currentThread().getContextClassLoader().getResourceAsStream("xml.xsd");
-          cache.put(systemId, stream);
-        } else {
-          stream = cache.get(systemId);
-        }
+        content = getContent(CLASSPATH_KEY_PREFIX + XML_XSD_RESOURCE,
+            ClasspathResourceResolver::readXmlXsdResource);
       } else {
-        String fullPath = new File(prefix, systemId).getAbsolutePath();
-        if (cache.get(fullPath) == null) {
-          stream = Files.newInputStream(Paths.get(fullPath));
-          cache.put(systemId, stream);
-        } else {
-          stream = cache.get(fullPath);
-        }
+        final String fullPath = new File(prefix, systemId).getAbsolutePath();
+        content = getContent(fullPath, () -> Files.readAllBytes(Paths.get(fullPath)));
       }
-      input.setPublicId(publicId);
-      input.setSystemId(systemId);
-      input.setBaseURI(baseURI);
-      input.setCharacterStream(new InputStreamReader(stream, StandardCharsets.UTF_8.name()));
-      return input;
     } catch (IOException e) {
       LOGGER.error("An error occurred while resolving a resource", e);
+      return null;
+    }
+    LSInput input = new ClasspathLSInput();
+    input.setPublicId(publicId);
+    input.setSystemId(systemId);
+    input.setBaseURI(baseURI);
+    input.setByteStream(new ByteArrayInputStream(content));
+    return input;
+  }
+
+  private static byte[] readXmlXsdResource() throws IOException {
+    try (final InputStream stream = Thread.currentThread().getContextClassLoader()
+        .getResourceAsStream(XML_XSD_RESOURCE)) {
+      if (stream == null) {
+        throw new IOException("Could not find resource " + XML_XSD_RESOURCE + " on classpath.");
+      }
+      return IOUtils.toByteArray(stream);
     }
-    return null;
+  }
+
+  private static byte[] getContent(String key, ContentReader reader) throws IOException {
+    try {
+      return CACHE.computeIfAbsent(key, k -> {
+        try {
+          return reader.read();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ContentReader {
+
+    byte[] read() throws IOException;
   }
 
   /**
@@ -63,12 +123,4 @@ public class ClasspathResourceResolver implements LSResourceResolver {
   public String getPrefix() {
     return prefix;
   }
-
-  /**
-   * @param prefix the prefix to set
-   */
-  public void setPrefix(String prefix) {
-    this.prefix = prefix;
-  }
 }
-
@@ -1,78 +1,113 @@
 package eu.europeana.validation.service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
- * Helper class for EDM service exposing two validator and a DOMParser
+ * Helper class for EDM service exposing the schema validators
  */
 final class EDMParser {
 
   private static EDMParser p;
   private static final ConcurrentMap<String, Schema> CACHE = new ConcurrentHashMap<>();
-  private static final DocumentBuilderFactory PARSE_FACTORY;
-  private static final Logger LOGGER = LoggerFactory.getLogger(EDMParser.class);
+  private static final ConcurrentMap<String, ObjectPool<javax.xml.validation.Validator,
+      RuntimeException>> VALIDATOR_POOLS = new ConcurrentHashMap<>();
+  private static final SAXParserFactory SECURE_PARSER_FACTORY = createSecureParserFactory();
 
-  static {
-    DocumentBuilderFactory temp = null;
-    try {
-      temp = DocumentBuilderFactory.newInstance();
-      temp.setNamespaceAware(true);
-      temp.setFeature("http://apache.org/xml/features/validation/schema-full-checking", false);
-      temp.setFeature("http://apache.org/xml/features/honour-all-schemaLocations", true);
-      temp.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-    } catch (ParserConfigurationException e) {
-      LOGGER.error("Unable to create DocumentBuilderFactory", e);
-    }
-    PARSE_FACTORY = temp;
-  }
+  /**
+   * The maximum number of validators per schema. Threads that validate against a schema for which
+   * all validators are in use wait for one to become available.
+   */
+  static final int MAX_POOL_SIZE = 32;
 
   private EDMParser() {
   }
 
+  private static SAXParserFactory createSecureParserFactory() {
+    final SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    try {
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+      factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+      factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd",
+          false);
+    } catch (ParserConfigurationException | SAXException e) {
+      throw new IllegalStateException("Unable to create secure SAXParserFactory", e);
+    }
+    return factory;
+  }
+
   /**
-   * Get an EDM Parser using DOM
+   * Create a source for the given (untrusted) document that is parsed with secure processing
+   * enabled and with external entities and external DTDs disabled. Documents with a DOCTYPE
+   * declaration are still accepted. This source should be used for both the
+   * XSD validation and the schematron transformation. Note that the secure processing can not be
+   * set on the (pooled) validators, as resetting them would clear it.
    *
-   * @return EDM parser.
+   * @param documentBytes The document.
+   * @return The source.
+   * @throws SAXException In case the parser could not be created.
    */
-  public DocumentBuilder getEdmParser() {
+  static SAXSource createSecureSource(byte[] documentBytes) throws SAXException {
     try {
-      return PARSE_FACTORY.newDocumentBuilder();
+      return new SAXSource(SECURE_PARSER_FACTORY.newSAXParser().getXMLReader(),
+          new InputSource(new ByteArrayInputStream(documentBytes)));
     } catch (ParserConfigurationException e) {
-      LOGGER.error("Unable to configure parser", e);
+      throw new SAXException("Unable to create secure parser", e);
     }
-    return null;
   }
 
   /**
-   * Get a JAXP schema validator (singleton)
+   * Get the pool of JAXP schema validators for the given schema. Validators are reset when they are
+   * returned to the pool.
    *
    * @param path The path location of the schema
    * @param resolver the resolver used for the schema
-   * @return JAXP schema validator.
+   * @return The pool of JAXP schema validators.
+   * @throws SAXException In case the schema could not be compiled.
+   * @throws IOException In case the schema could not be read.
    */
-  public javax.xml.validation.Validator getEdmValidator(String path, LSResourceResolver resolver) {
-    try {
-      Schema schema = getSchema(path, resolver);
-      return schema.newValidator();
-    } catch (SAXException | IOException e) {
-      LOGGER.error("Unable to create validator", e);
+  ObjectPool<javax.xml.validation.Validator, RuntimeException> getEdmValidatorPool(String path,
+      LSResourceResolver resolver) throws SAXException, IOException {
+    final ObjectPool<javax.xml.validation.Validator, RuntimeException> pool = VALIDATOR_POOLS
+        .get(path);
+    if (pool != null) {
+      return pool;
     }
-    return null;
+    final Schema schema = getSchema(path, resolver);
+    final ObjectPool<javax.xml.validation.Validator, RuntimeException> newPool = new ObjectPool<>(
+        MAX_POOL_SIZE, schema::newValidator, javax.xml.validation.Validator::reset);
+    final ObjectPool<javax.xml.validation.Validator, RuntimeException> existingPool =
+        VALIDATOR_POOLS.putIfAbsent(path, newPool);
+    return existingPool == null ? newPool : existingPool;
+  }
+
+  /**
+   * Get the statistics of the pools of JAXP schema validators.
+   *
+   * @return The statistics, mapped by the path location of the schema.
+   */
+  static Map<String, PoolStatistics> getEdmValidatorPoolStatistics() {
+    return VALIDATOR_POOLS.entrySet().stream().collect(
+        Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getStatistics()));
   }
 
   private Schema getSchema(String path, LSResourceResolver resolver)
@@ -84,8 +119,9 @@ final class EDMParser {
       factory.setFeature("http://apache.org/xml/features/validation/schema-full-checking",
           false);
       factory.setFeature("http://apache.org/xml/features/honour-all-schemaLocations", true);
-      Schema schema = factory.newSchema(new StreamSource(Files.newInputStream(Paths.get(path))));
-      CACHE.put(path, schema);
+      try (InputStream inputStream = Files.newInputStream(Paths.get(path))) {
+        CACHE.putIfAbsent(path, factory.newSchema(new StreamSource(inputStream)));
+      }
     }
     return CACHE.get(path);
   }
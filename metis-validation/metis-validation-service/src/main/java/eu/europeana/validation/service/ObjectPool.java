@@ -0,0 +1,129 @@
+package eu.europeana.validation.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of objects that are expensive to create and not thread-safe (like XSD validators
+ * and schematron transformers). Objects are created lazily, up to the maximum size of the pool.
+ * When all objects are in use, a borrowing thread waits until one is returned. Objects are reset
+ * when they are returned. This class is thread-safe.
+ *
+ * @param <T> The type of the pooled objects.
+ * @param <E> The type of the exception that the creation of an object can throw.
+ */
+class ObjectPool<T, E extends Exception> {
+
+  private static final long WAIT_INTERVAL_IN_MS = 100;
+
+  /**
+   * Creates new objects for the pool.
+   *
+   * @param <T> The type of the pooled objects.
+   * @param <E> The type of the exception that the creation of an object can throw.
+   */
+  @FunctionalInterface
+  interface ObjectFactory<T, E extends Exception> {
+
+    T create() throws E;
+  }
+
+  private final ObjectFactory<T, E> factory;
+  private final Consumer<T> resetter;
+  private final int maxSize;
+  private final BlockingQueue<T> idleObjects;
+  private final AtomicInteger size = new AtomicInteger();
+  private final PoolStatistics statistics;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize The maximum number of objects this pool will create.
+   * @param factory The factory for new objects.
+   * @param resetter Resets an object before it is returned to the pool.
+   */
+  ObjectPool(int maxSize, ObjectFactory<T, E> factory, Consumer<T> resetter) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("The maximum size must be positive.");
+    }
+    this.factory = factory;
+    this.resetter = resetter;
+    this.maxSize = maxSize;
+    this.idleObjects = new ArrayBlockingQueue<>(maxSize);
+    this.statistics = new PoolStatistics(maxSize, () -> Math.min(size.get(), maxSize),
+        idleObjects::size);
+  }
+
+  /**
+   * Borrows an object from the pool. If no object is available, and the pool is not full, a new
+   * object is created. Otherwise this method waits for an object to be returned. The object must be
+   * returned using {@link #returnObject(Object)} once it is no longer needed.
+   *
+   * @return The object.
+   * @throws E In case a new object could not be created.
+   * @throws InterruptedException In case the thread was interrupted while waiting for an object.
+   */
+  T borrowObject() throws E, InterruptedException {
+    final long startTime = System.nanoTime();
+    T result = idleObjects.poll();
+    while (result == null) {
+      result = createIfNotFull();
+      if (result == null) {
+        // Wait for a while: an object may be returned, or space may become available if the
+        // creation of an object by another thread fails or an object is invalidated.
+        result = idleObjects.poll(WAIT_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+      }
+    }
+    statistics.recordBorrow(System.nanoTime() - startTime);
+    return result;
+  }
+
+  private T createIfNotFull() throws E {
+    final int count = size.getAndIncrement();
+    if (count >= maxSize) {
+      size.decrementAndGet();
+      return null;
+    }
+    boolean created = false;
+    try {
+      final T result = factory.create();
+      statistics.recordCreation();
+      created = true;
+      return result;
+    } finally {
+      if (!created) {
+        size.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns an object to the pool after resetting it.
+   *
+   * @param object The object that was borrowed from this pool.
+   */
+  void returnObject(T object) {
+    resetter.accept(object);
+    idleObjects.offer(object);
+  }
+
+  /**
+   * Removes an object from the pool that was borrowed but can no longer be used (e.g. because an
+   * exception occurred during use). This makes room for a new object to be created.
+   *
+   * @param object The object that was borrowed from this pool.
+   */
+  void invalidateObject(T object) {
+    size.decrementAndGet();
+  }
+
+  /**
+   * @return The statistics of this pool.
+   */
+  PoolStatistics getStatistics() {
+    return statistics;
+  }
+}
@@ -0,0 +1,89 @@
+package eu.europeana.validation.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * This class contains the statistics of an object pool used during validation (e.g. the pool of
+ * XSD validators or schematron transformers of one schema). This class is thread-safe.
+ */
+public class PoolStatistics {
+
+  private final int maxSize;
+  private final IntSupplier sizeSupplier;
+  private final IntSupplier idleCountSupplier;
+  private final LongAdder createdCount = new LongAdder();
+  private final LongAdder borrowCount = new LongAdder();
+  private final LongAdder totalBorrowWaitTime = new LongAdder();
+  private final LongAccumulator maxBorrowWaitTime = new LongAccumulator(Math::max, 0);
+
+  PoolStatistics(int maxSize, IntSupplier sizeSupplier, IntSupplier idleCountSupplier) {
+    this.maxSize = maxSize;
+    this.sizeSupplier = sizeSupplier;
+    this.idleCountSupplier = idleCountSupplier;
+  }
+
+  void recordCreation() {
+    createdCount.increment();
+  }
+
+  void recordBorrow(long waitTimeInNanos) {
+    borrowCount.increment();
+    totalBorrowWaitTime.add(waitTimeInNanos);
+    maxBorrowWaitTime.accumulate(waitTimeInNanos);
+  }
+
+  /**
+   * @return The maximum number of objects that the pool will create.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return The number of objects that currently belong to the pool (idle or in use).
+   */
+  public int getSize() {
+    return sizeSupplier.getAsInt();
+  }
+
+  /**
+   * @return The number of objects that the pool has created so far (including objects that were
+   * invalidated).
+   */
+  public long getCreatedCount() {
+    return createdCount.sum();
+  }
+
+  /**
+   * @return The number of objects that are currently in the pool and not in use.
+   */
+  public int getIdleCount() {
+    return idleCountSupplier.getAsInt();
+  }
+
+  /**
+   * @return The number of times an object was borrowed from the pool.
+   */
+  public long getBorrowCount() {
+    return borrowCount.sum();
+  }
+
+  /**
+   * @return The total time spent waiting to borrow an object (including the time needed to create
+   * new objects).
+   */
+  public Duration getTotalBorrowWaitTime() {
+    return Duration.ofNanos(totalBorrowWaitTime.sum());
+  }
+
+  /**
+   * @return The longest time spent waiting to borrow a single object (including the time needed to
+   * create new objects).
+   */
+  public Duration getMaxBorrowWaitTime() {
+    return Duration.ofNanos(maxBorrowWaitTime.get());
+  }
+}
@@ -9,7 +9,11 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
@@ -34,6 +38,14 @@ public class SchemaProvider {
 
   private final PredefinedSchemas predefinedSchemasLocations;
 
+  /**
+   * The schemas that are already resolved, keyed by their file location, root file location and
+   * schematron location. The schema objects in this map are never handed out (as they are mutable):
+   * callers receive a copy.
+   */
+  private final ConcurrentMap<List<String>, Schema> resolvedSchemas = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Object> resolveLocks = new ConcurrentHashMap<>();
+
   /**
    * Creates {@link SchemaProvider} for given {@link PredefinedSchemas} object.
    *
@@ -51,7 +63,10 @@ public class SchemaProvider {
   }
 
   /**
-   * Retrieves schema object from given (remote) location.
+   * Retrieves schema object from given (remote) location. Schemas are resolved (i.e. downloaded and
+   * unzipped if needed) only once: after that, the resolved schema is served from memory without
+   * any locking. Resolving a schema for the first time only blocks other threads that want to
+   * resolve a schema from the same location.
    *
    * @param fileLocation place where (remote) zip file is located. Accepts url to file or one of the
    * predefined values (EDM-INTERNAL or EDM-EXTERNAL)
@@ -61,15 +76,38 @@ public class SchemaProvider {
    * @return schema object
    * @throws SchemaProviderException any exception that can occur during retrieving schema files
    */
-  public synchronized Schema getSchema(String fileLocation, String rootFileLocation,
+  public Schema getSchema(String fileLocation, String rootFileLocation,
       String schematronLocation) throws SchemaProviderException {
+    final List<String> key = Arrays.asList(fileLocation, rootFileLocation, schematronLocation);
+    Schema schema = resolvedSchemas.get(key);
+    if (schema == null) {
+      synchronized (resolveLocks.computeIfAbsent(fileLocation, location -> new Object())) {
+        schema = resolvedSchemas.get(key);
+        if (schema == null) {
+          schema = resolveSchema(fileLocation, rootFileLocation, schematronLocation);
+          resolvedSchemas.put(key, schema);
+        }
+      }
+    }
+    return copySchema(schema);
+  }
 
+  private Schema resolveSchema(String fileLocation, String rootFileLocation,
+      String schematronLocation) throws SchemaProviderException {
     File downloadedFile = downloadZipIfNeeded(fileLocation, prepareDirectoryName(fileLocation));
     unzipArchiveIfNeeded(downloadedFile, rootFileLocation);
     return prepareSchema(prepareDirectoryName(fileLocation), downloadedFile.getParentFile(),
         rootFileLocation, schematronLocation);
   }
 
+  private static Schema copySchema(Schema schema) {
+    final Schema copy = new Schema();
+    copy.setName(schema.getName());
+    copy.setPath(schema.getPath());
+    copy.setSchematronPath(schema.getSchematronPath());
+    return copy;
+  }
+
   /**
    * Creates intance of {@link Schema} class based on provided type of schema
    *
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PreDestroy;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * Schema service service
@@ -18,6 +19,7 @@ public class ValidationExecutionService {
 
     private final ClasspathResourceResolver lsResourceResolver;
     private final ExecutorService es;
+    private final int maxRecordsInProgress;
 
     public static final int DEFAULT_THREADS_COUNT = 10;
 
@@ -34,6 +36,7 @@ public class ValidationExecutionService {
     public ValidationExecutionService(ValidationServiceConfig config, ClasspathResourceResolver lsResourceResolver) {
         this.lsResourceResolver = lsResourceResolver;
         this.es = Executors.newFixedThreadPool(config.getThreadCount());
+        this.maxRecordsInProgress = 2 * config.getThreadCount();
     }
 
     /**
@@ -123,6 +126,55 @@ public class ValidationExecutionService {
         return resultList;
     }
 
+    /**
+     * Streaming batch service given a schema. The documents are obtained from the iterator only when
+     * there is room for them: at most a fixed number of documents (twice the number of validation
+     * threads) is held in memory and validated at the same time. The results of failed validations
+     * are passed to the consumer as they become available (and not necessarily in the order of the
+     * documents). The consumer is always called from the calling thread.
+     *
+     * @param schema                 The schema to validate against
+     * @param rootFileLocation       place where entry xsd file is located
+     * @param schematronFileLocation place where schematron file is located
+     * @param documents              The documents to validate
+     * @param failureConsumer        The consumer for the results of failed validations
+     * @return The number of documents that were validated
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public long streamingBatchValidation(
+            final String schema,
+            final String rootFileLocation,
+            final String schematronFileLocation,
+            Iterator<String> documents,
+            Consumer<ValidationResult> failureConsumer) throws InterruptedException, ExecutionException {
+
+        ExecutorCompletionService<ValidationResult> cs = new ExecutorCompletionService<>(es);
+        long documentCount = 0;
+        int documentsInProgress = 0;
+        while (documents.hasNext()) {
+            if (documentsInProgress >= maxRecordsInProgress) {
+                processResult(cs.take(), failureConsumer);
+                documentsInProgress--;
+            }
+            cs.submit(new Validator(schema, rootFileLocation, schematronFileLocation, documents.next(), schemaProvider, lsResourceResolver));
+            documentsInProgress++;
+            documentCount++;
+        }
+        for (; documentsInProgress > 0; documentsInProgress--) {
+            processResult(cs.take(), failureConsumer);
+        }
+        return documentCount;
+    }
+
+    private static void processResult(Future<ValidationResult> future, Consumer<ValidationResult> failureConsumer)
+            throws InterruptedException, ExecutionException {
+        ValidationResult res = future.get();
+        if (!res.isSuccess()) {
+            failureConsumer.accept(res);
+        }
+    }
+
     @PreDestroy
     void cleanup() {
         if (es != null) {
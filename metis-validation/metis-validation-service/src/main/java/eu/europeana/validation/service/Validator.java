@@ -2,32 +2,31 @@ package eu.europeana.validation.service;
 
 import eu.europeana.validation.model.Schema;
 import eu.europeana.validation.model.ValidationResult;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -38,7 +37,8 @@ public class Validator implements Callable<ValidationResult> {
 
   private static final String NODE_ID_ATTR = "nodeId";
   private static final Logger LOGGER = LoggerFactory.getLogger(Validator.class);
-  private static ConcurrentMap<String, Templates> templatesCache;
+  private static final ConcurrentMap<String, ObjectPool<Transformer,
+      TransformerConfigurationException>> TRANSFORMER_POOLS = new ConcurrentHashMap<>();
 
   private final String schema;
   private final String rootFileLocation;
@@ -47,11 +47,6 @@ public class Validator implements Callable<ValidationResult> {
   private final SchemaProvider schemaProvider;
   private final ClasspathResourceResolver resolver;
 
-  static {
-    templatesCache = new ConcurrentHashMap<>();
-  }
-
-
   /**
    * Constructor specifying the schema to validate against and the document
    *
@@ -93,27 +88,23 @@ public class Validator implements Callable<ValidationResult> {
   }
 
   /**
-   * Validate method using JAXP
+   * Validate method using JAXP. The document is not parsed into a DOM: the XSD validation is
+   * performed on the stream of the document and the schematron transformation builds its own
+   * (compact) tree of the document. Both parse the document securely (see {@link
+   * EDMParser#createSecureSource(byte[])}). The XSD validators and schematron transformers are borrowed
+   * from pools that are kept per schema.
    *
    * @return The outcome of the Validation
    */
   private ValidationResult validate() {
     LOGGER.info("Validation started");
-    InputSource source = new InputSource();
-    source.setByteStream(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    final byte[] documentBytes = document.getBytes(StandardCharsets.UTF_8);
     try {
       Schema savedSchema = getSchemaByName(schema);
 
-      resolver.setPrefix(StringUtils.substringBeforeLast(savedSchema.getPath(), File.separator));
-
-      Document doc = EDMParser.getInstance().getEdmParser().parse(source);
-      EDMParser.getInstance().getEdmValidator(savedSchema.getPath(), resolver)
-          .validate(new DOMSource(doc));
+      validateAgainstXsd(savedSchema, documentBytes);
       if (StringUtils.isNotEmpty(savedSchema.getSchematronPath())) {
-        Transformer transformer = getTransformer(savedSchema);
-
-        DOMResult result = new DOMResult();
-        transformer.transform(new DOMSource(doc), result);
+        final DOMResult result = validateAgainstSchematron(savedSchema, documentBytes);
         NodeList nresults = result.getNode().getFirstChild().getChildNodes();
         for (int i = 0; i < nresults.getLength(); i++) {
           Node nresult = nresults.item(i);
@@ -127,25 +118,84 @@ public class Validator implements Callable<ValidationResult> {
       }
     } catch (IOException | SchemaProviderException | SAXException | TransformerException e) {
       return constructValidationError(document, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return constructValidationError(document, e);
     }
     LOGGER.info("Validation ended");
     return constructOk();
   }
 
-  private Transformer getTransformer(Schema schema)
-      throws IOException, TransformerConfigurationException {
-    StringReader reader;
-    String schematronPath = schema.getSchematronPath();
-
-    if (!templatesCache.containsKey(schematronPath)) {
-      reader = new StringReader(
-          FileUtils.readFileToString(new File(schematronPath), StandardCharsets.UTF_8.name()));
-      Templates template = TransformerFactory.newInstance()
-          .newTemplates(new StreamSource(reader));
-      templatesCache.put(schematronPath, template);
+  private void validateAgainstXsd(Schema schema, byte[] documentBytes)
+      throws IOException, SAXException, InterruptedException {
+    final ClasspathResourceResolver schemaResolver = resolver
+        .forPrefix(StringUtils.substringBeforeLast(schema.getPath(), File.separator));
+    final ObjectPool<javax.xml.validation.Validator, RuntimeException> pool = EDMParser
+        .getInstance().getEdmValidatorPool(schema.getPath(), schemaResolver);
+    final javax.xml.validation.Validator validator = pool.borrowObject();
+    try {
+      validator.validate(EDMParser.createSecureSource(documentBytes));
+    } finally {
+      pool.returnObject(validator);
+    }
+  }
+
+  private static DOMResult validateAgainstSchematron(Schema schema, byte[] documentBytes)
+      throws IOException, SAXException, TransformerException, InterruptedException {
+    final ObjectPool<Transformer, TransformerConfigurationException> pool =
+        getTransformerPool(schema.getSchematronPath());
+    final SAXSource source = EDMParser.createSecureSource(documentBytes);
+    final Transformer transformer = pool.borrowObject();
+    final DOMResult result = new DOMResult();
+    try {
+      transformer.transform(source, result);
+    } catch (TransformerException | RuntimeException e) {
+      // Don't reuse a transformer that failed: its state is unknown.
+      pool.invalidateObject(transformer);
+      throw e;
     }
+    pool.returnObject(transformer);
+    return result;
+  }
 
-    return templatesCache.get(schematronPath).newTransformer();
+  private static ObjectPool<Transformer, TransformerConfigurationException> getTransformerPool(
+      String schematronPath) throws IOException, TransformerConfigurationException {
+    final ObjectPool<Transformer, TransformerConfigurationException> pool = TRANSFORMER_POOLS
+        .get(schematronPath);
+    if (pool != null) {
+      return pool;
+    }
+    final StringReader reader = new StringReader(
+        FileUtils.readFileToString(new File(schematronPath), StandardCharsets.UTF_8.name()));
+    final Templates template = TransformerFactory.newInstance()
+        .newTemplates(new StreamSource(reader));
+    final ObjectPool<Transformer, TransformerConfigurationException> newPool = new ObjectPool<>(
+        EDMParser.MAX_POOL_SIZE, template::newTransformer, transformer -> {
+      transformer.reset();
+      transformer.clearParameters();
+    });
+    final ObjectPool<Transformer, TransformerConfigurationException> existingPool =
+        TRANSFORMER_POOLS.putIfAbsent(schematronPath, newPool);
+    return existingPool == null ? newPool : existingPool;
+  }
+
+  /**
+   * Get the statistics of the pools of XSD validators (one pool per schema).
+   *
+   * @return The statistics, mapped by the path of the schema root file.
+   */
+  public static Map<String, PoolStatistics> getXsdValidatorPoolStatistics() {
+    return EDMParser.getEdmValidatorPoolStatistics();
+  }
+
+  /**
+   * Get the statistics of the pools of schematron transformers (one pool per schema).
+   *
+   * @return The statistics, mapped by the path of the schematron file.
+   */
+  public static Map<String, PoolStatistics> getSchematronTransformerPoolStatistics() {
+    return TRANSFORMER_POOLS.entrySet().stream().collect(
+        Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getStatistics()));
   }
 
   private ValidationResult constructValidationError(String document, Exception e) {
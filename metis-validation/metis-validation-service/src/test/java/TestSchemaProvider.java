@@ -1,9 +1,11 @@
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -16,6 +18,11 @@ import eu.europeana.validation.service.SchemaProvider;
 import eu.europeana.validation.service.SchemaProviderException;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -212,6 +219,33 @@ class TestSchemaProvider {
     assertZipFileExistence(s);
   }
 
+  @Test
+  void schemaShouldBeResolvedOnlyOnce() throws Exception {
+    wireMockServer.stubFor(get(urlEqualTo("/resolved_once_schema.zip"))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBodyFile("test_schema.zip")));
+    FileUtils.deleteDirectory(new File(SchemaProvider.TMP_DIR,
+        "schemas" + File.separator + "localhost_resolved_once_schema"));
+    //given
+    SchemaProvider provider = new SchemaProvider(PREDEFINED_SCHEMAS_LOCATIONS);
+    String location = "http://localhost:" + portForWireMock + "/resolved_once_schema.zip";
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    //when
+    List<Future<Schema>> schemas = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      schemas.add(executor.submit(() -> provider.getSchema(location, "EDM.xsd", null)));
+    }
+    executor.shutdown();
+    //then
+    for (Future<Schema> schema : schemas) {
+      assertEquals(entryFileLocation(provider, "localhost_resolved_once_schema", "EDM.xsd"),
+          schema.get().getPath());
+    }
+    assertNotSame(schemas.get(0).get(), schemas.get(1).get());
+    wireMockServer.verify(1, getRequestedFor(urlEqualTo("/resolved_once_schema.zip")));
+  }
+
   private void clearSchemasDir() throws IOException {
     String TMP_DIR = System.getProperty("java.io.tmpdir");
     File schemasDirectory = new File(TMP_DIR, "schemas");
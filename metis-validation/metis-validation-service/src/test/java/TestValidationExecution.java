@@ -271,6 +271,29 @@ class TestValidationExecution {
     FileUtils.forceDelete(new File(fileName));
   }
 
+  @Test
+  void testStreamingBatchValidationFailureWrongSchema()
+      throws IOException, ExecutionException, InterruptedException, ZipException {
+
+    String fileName = "src/test/resources/test";
+    ZipFile file = new ZipFile("src/test/resources/test_batch.zip");
+    file.extractAll(fileName);
+
+    File[] files = new File(fileName).listFiles();
+    List<String> xmls = new ArrayList<>();
+    for (File input : files) {
+      xmls.add(IOUtils.toString(new FileInputStream(input), StandardCharsets.UTF_8));
+    }
+    List<ValidationResult> failures = new ArrayList<>();
+    long recordCount = validationExecutionService
+        .streamingBatchValidation(EDM_EXTERNAL, "EDM.xsd", "schematron/schematron.xsl",
+            xmls.iterator(), failures::add);
+    assertEquals(xmls.size(), recordCount);
+    assertEquals(1506, failures.size());
+    failures.forEach(failure -> assertFalse(failure.isSuccess()));
+
+    FileUtils.forceDelete(new File(fileName));
+  }
 
   private Properties loadDefaultProperties(String propertyFile) {
     Properties properties = new Properties();
@@ -0,0 +1,57 @@
+package eu.europeana.validation.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.ls.LSInput;
+
+class ClasspathResourceResolverTest {
+
+  private Path directory;
+
+  @BeforeEach
+  void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("resolver-test");
+  }
+
+  @AfterEach
+  void deleteDirectory() throws IOException {
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  @Test
+  void resourcesShouldBeResolvedAgainstPrefixAndReadMoreThanOnce() throws IOException {
+    final byte[] content = "<xs:schema/>".getBytes(StandardCharsets.UTF_8);
+    Files.write(directory.resolve("included.xsd"), content);
+
+    final ClasspathResourceResolver resolver = new ClasspathResourceResolver()
+        .forPrefix(directory.toString());
+    assertEquals(directory.toString(), resolver.getPrefix());
+    for (int i = 0; i < 2; i++) {
+      final LSInput input = resolver.resolveResource(null, null, null, "included.xsd", null);
+      assertEquals("included.xsd", input.getSystemId());
+      assertArrayEquals(content, IOUtils.toByteArray(input.getByteStream()));
+    }
+
+    // The content is cached: it should be available even if the file is gone.
+    Files.delete(directory.resolve("included.xsd"));
+    final LSInput input = resolver.resolveResource(null, null, null, "included.xsd", null);
+    assertArrayEquals(content, IOUtils.toByteArray(input.getByteStream()));
+  }
+
+  @Test
+  void missingResourcesShouldResolveToNull() {
+    final ClasspathResourceResolver resolver = new ClasspathResourceResolver(directory.toString());
+    assertNull(resolver.resolveResource(null, null, null, "missing.xsd", null));
+  }
+}
@@ -0,0 +1,47 @@
+package eu.europeana.validation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.transform.sax.SAXSource;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+class EDMParserTest {
+
+  private static String parseText(String document) throws SAXException, IOException {
+    final SAXSource source = EDMParser
+        .createSecureSource(document.getBytes(StandardCharsets.UTF_8));
+    final StringBuilder text = new StringBuilder();
+    source.getXMLReader().setContentHandler(new DefaultHandler() {
+      @Override
+      public void characters(char[] characters, int start, int length) {
+        text.append(characters, start, length);
+      }
+    });
+    source.getXMLReader().parse(source.getInputSource());
+    return text.toString();
+  }
+
+  @Test
+  void documentsWithDoctypeShouldBeAccepted() throws SAXException, IOException {
+    assertEquals("value", parseText("<?xml version=\"1.0\"?>\n"
+        + "<!DOCTYPE record [<!ENTITY internal \"value\">]>\n<record>&internal;</record>"));
+  }
+
+  @Test
+  void externalEntitiesShouldNotBeResolved() throws SAXException, IOException {
+    final File secret = File.createTempFile("secret", ".txt");
+    try {
+      Files.write(secret.toPath(), "secret".getBytes(StandardCharsets.UTF_8));
+      assertEquals("", parseText("<?xml version=\"1.0\"?>\n<!DOCTYPE record [<!ENTITY external "
+          + "SYSTEM \"" + secret.toURI() + "\">]>\n<record>&external;</record>"));
+    } finally {
+      Files.delete(secret.toPath());
+    }
+  }
+}
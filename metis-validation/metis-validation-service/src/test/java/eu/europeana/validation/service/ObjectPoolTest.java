@@ -0,0 +1,87 @@
+package eu.europeana.validation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ObjectPoolTest {
+
+  @Test
+  void objectsShouldBeReusedAndReset() throws InterruptedException {
+    final List<StringBuilder> resetObjects = new ArrayList<>();
+    final ObjectPool<StringBuilder, RuntimeException> pool = new ObjectPool<>(2,
+        StringBuilder::new, resetObjects::add);
+
+    final StringBuilder first = pool.borrowObject();
+    final StringBuilder second = pool.borrowObject();
+    assertNotSame(first, second);
+    assertEquals(2, pool.getStatistics().getSize());
+    assertEquals(0, pool.getStatistics().getIdleCount());
+
+    pool.returnObject(first);
+    assertEquals(1, resetObjects.size());
+    assertSame(first, resetObjects.get(0));
+    assertEquals(1, pool.getStatistics().getIdleCount());
+    assertSame(first, pool.borrowObject());
+
+    assertEquals(2, pool.getStatistics().getCreatedCount());
+    assertEquals(3, pool.getStatistics().getBorrowCount());
+  }
+
+  @Test
+  void borrowShouldWaitWhenPoolIsFull() throws Exception {
+    final ObjectPool<Object, RuntimeException> pool = new ObjectPool<>(1, Object::new, o -> {
+    });
+    final Object object = pool.borrowObject();
+
+    final CompletableFuture<Object> waitingBorrow = CompletableFuture.supplyAsync(() -> {
+      try {
+        return pool.borrowObject();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    Thread.sleep(200);
+    pool.returnObject(object);
+
+    assertSame(object, waitingBorrow.get(5, TimeUnit.SECONDS));
+    assertEquals(1, pool.getStatistics().getCreatedCount());
+    assertEquals(2, pool.getStatistics().getBorrowCount());
+  }
+
+  @Test
+  void invalidatedObjectsShouldBeReplaced() throws InterruptedException {
+    final ObjectPool<Object, RuntimeException> pool = new ObjectPool<>(1, Object::new, o -> {
+    });
+    final Object object = pool.borrowObject();
+    pool.invalidateObject(object);
+    assertEquals(0, pool.getStatistics().getSize());
+    assertNotSame(object, pool.borrowObject());
+    assertEquals(2, pool.getStatistics().getCreatedCount());
+  }
+
+  @Test
+  void failedCreationShouldNotTakeUpSpace() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    final ObjectPool<Object, IOException> pool = new ObjectPool<>(1, () -> {
+      if (attempts.getAndIncrement() == 0) {
+        throw new IOException("Creation failed.");
+      }
+      return new Object();
+    }, o -> {
+    });
+    assertThrows(IOException.class, pool::borrowObject);
+    assertEquals(0, pool.getStatistics().getSize());
+    pool.borrowObject();
+    assertEquals(1, pool.getStatistics().getSize());
+  }
+}